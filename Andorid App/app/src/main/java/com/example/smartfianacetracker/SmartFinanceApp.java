@@ -1,22 +1,15 @@
 package com.example.smartfianacetracker;
 
 import android.app.Application;
-import com.google.firebase.FirebaseApp;
-import com.google.android.gms.auth.api.signin.GoogleSignIn;
-import com.google.android.gms.auth.api.signin.GoogleSignInOptions;
+import com.example.smartfianacetracker.utils.StartupOrchestrator;
 
 public class SmartFinanceApp extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
-        
-        // Initialize Firebase
-        FirebaseApp.initializeApp(this);
-        
-        // Initialize Google Sign In with web client ID
-        GoogleSignInOptions gso = new GoogleSignInOptions.Builder(GoogleSignInOptions.DEFAULT_SIGN_IN)
-                .requestIdToken("687898768842-016uetfn4soao9j866tbn1hg50d2dr1k.apps.googleusercontent.com")
-                .requestEmail()
-                .build();
+
+        // Firebase is initialized by FirebaseInitProvider before this runs;
+        // everything else is warmed in the background or built on first use.
+        StartupOrchestrator.getInstance(this).start();
     }
-} 
\ No newline at end of file
+}
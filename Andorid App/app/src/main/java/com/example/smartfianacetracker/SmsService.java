@@ -13,6 +13,7 @@ import android.util.Log;
 import androidx.core.app.NotificationCompat;
 import com.example.smartfianacetracker.utils.ServiceManager;
 import com.example.smartfianacetracker.utils.PreferenceManager;
+import com.example.smartfianacetracker.utils.TransactionIngestor;
 
 public class SmsService extends Service {
     private static final String TAG = "SmsService";
@@ -29,7 +30,7 @@ public class SmsService extends Service {
         Log.d(TAG, "SMS Service created");
         
         serviceManager = ServiceManager.getInstance(this);
-        preferenceManager = new PreferenceManager(this);
+        preferenceManager = PreferenceManager.getInstance(this);
         
         if (!preferenceManager.isLoggedIn()) {
             Log.e(TAG, "No user logged in, stopping service");
@@ -40,7 +41,7 @@ public class SmsService extends Service {
         createNotificationChannel();
         startForeground(NOTIFICATION_ID, createNotification());
 
-        smsReceiver = new SmsReceiver(serviceManager);
+        smsReceiver = new SmsReceiver(TransactionIngestor.getInstance(this));
         registerReceiver(smsReceiver, new IntentFilter(Telephony.Sms.Intents.SMS_RECEIVED_ACTION));
         
         serviceManager.updateServiceStatus("running");
@@ -5,6 +5,10 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
@@ -14,16 +18,29 @@ import androidx.appcompat.widget.Toolbar;
 import com.example.smartfianacetracker.R;
 import com.example.smartfianacetracker.SmsService;
 import com.example.smartfianacetracker.utils.PreferenceManager;
+import com.example.smartfianacetracker.utils.SpendAnalytics;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.switchmaterial.SwitchMaterial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
     private static final int PERMISSION_REQUEST_CODE = 123;
+    /** Categories listed under this month's spend. */
+    private static final int TOP_CATEGORIES = 3;
+    private final ExecutorService analyticsExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private SwitchMaterial serviceToggle;
     private PreferenceManager preferenceManager;
     private Toolbar toolbar;
     private MaterialButton linkedinButton;
     private MaterialButton githubButton;
+    private MaterialButton historyButton;
+    private TextView monthSpend;
+    private TextView topCategories;
 
     private final String[] REQUIRED_PERMISSIONS = {
         Manifest.permission.RECEIVE_SMS,
@@ -39,6 +56,9 @@ public class MainActivity extends AppCompatActivity {
         setupToolbar();
         setupServiceToggle();
         setupSocialButtons();
+        setupHistoryButton();
+        monthSpend = findViewById(R.id.monthSpend);
+        topCategories = findViewById(R.id.topCategories);
         
         // Show permission dialog if permissions not granted
         if (!checkPermissions()) {
@@ -46,13 +66,25 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        showMonthSpend();
+    }
+
+    @Override
+    protected void onDestroy() {
+        analyticsExecutor.shutdownNow();
+        super.onDestroy();
+    }
+
     private void setupToolbar() {
         toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
     }
 
     private void setupServiceToggle() {
-        preferenceManager = new PreferenceManager(this);
+        preferenceManager = PreferenceManager.getInstance(this);
         serviceToggle = findViewById(R.id.serviceToggle);
         
         // Check if service is running and update switch state
@@ -94,6 +126,42 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    private void setupHistoryButton() {
+        historyButton = findViewById(R.id.historyButton);
+        historyButton.setOnClickListener(v ->
+            startActivity(new Intent(this, TransactionHistoryActivity.class)));
+    }
+
+    /**
+     * This month's spend and its largest categories, worked out from the
+     * transactions on the phone each time the screen is shown.
+     */
+    private void showMonthSpend() {
+        analyticsExecutor.execute(() -> {
+            // Built from the whole local history on first use, so never on the main thread
+            SpendAnalytics analytics = SpendAnalytics.getInstance(this);
+            int month = analytics.month(System.currentTimeMillis());
+            double spent = analytics.spendByMonth(month, month)[0];
+            List<String> lines = new ArrayList<>(TOP_CATEGORIES);
+            for (SpendAnalytics.Total total
+                    : analytics.monthly(SpendAnalytics.Dimension.CATEGORY, month, month, TOP_CATEGORIES)) {
+                lines.add(getString(R.string.month_category, total.name, formatAmount(total.amount)));
+            }
+            mainHandler.post(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                monthSpend.setText(getString(R.string.month_spend, formatAmount(spent)));
+                topCategories.setText(lines.isEmpty()
+                        ? getString(R.string.no_spend_this_month) : TextUtils.join("\n", lines));
+            });
+        });
+    }
+
+    private static String formatAmount(double amount) {
+        return String.format(Locale.US, "₹%,.2f", amount);
+    }
+
     private void updateServiceIndicator(boolean isRunning) {
         int color = isRunning ? 
             ContextCompat.getColor(this, R.color.success_green) : 
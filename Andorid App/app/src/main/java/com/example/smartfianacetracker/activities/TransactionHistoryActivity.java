@@ -0,0 +1,301 @@
+package com.example.smartfianacetracker.activities;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Spinner;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+import com.example.smartfianacetracker.R;
+import com.example.smartfianacetracker.models.Transaction;
+import com.example.smartfianacetracker.utils.DeltaSync;
+import com.example.smartfianacetracker.utils.LocalTransactionStore;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The user's debits and credits, newest first, read a page at a time from
+ * the {@link LocalTransactionStore} as the list scrolls. Pages follow on
+ * from the last record shown rather than an offset, so opening the screen
+ * reads one page however long the history is. When the store changes, the
+ * range already shown is read again and handed to the adapter, which
+ * updates only the rows that differ. Each time the screen is shown it asks
+ * {@link DeltaSync} for anything written elsewhere meanwhile.
+ */
+public class TransactionHistoryActivity extends AppCompatActivity
+        implements LocalTransactionStore.ChangeListener {
+    private static final int PAGE_SIZE = 50;
+    /** Rows left below the last visible one when the next page is read. */
+    private static final int PREFETCH_DISTANCE = 20;
+
+    private final ExecutorService pageExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean changePosted = new AtomicBoolean();
+    private LocalTransactionStore store;
+    private TransactionAdapter adapter;
+    private TextView emptyView;
+    private Spinner typeFilter;
+    private Spinner modeFilter;
+    private Spinner accountFilter;
+
+    // Main thread only
+    private LocalTransactionStore.Filter filter = LocalTransactionStore.Filter.ALL;
+    private List<LocalTransactionStore.Item> loaded = Collections.emptyList();
+    private LocalTransactionStore.PageKey next;
+    private boolean exhausted;
+    private boolean loading;
+    private boolean reloadPending;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_transaction_history);
+        store = LocalTransactionStore.getInstance(this);
+
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+        toolbar.setNavigationOnClickListener(v -> finish());
+
+        emptyView = findViewById(R.id.emptyView);
+        setupList();
+        setupFilters();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        store.addChangeListener(this);
+        load(true);
+        DeltaSync.getInstance(this).requestSync();
+    }
+
+    @Override
+    protected void onStop() {
+        store.removeChangeListener(this);
+        super.onStop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        pageExecutor.shutdownNow();
+        super.onDestroy();
+    }
+
+    @Override
+    public void onStoreChanged() {
+        // Called on whichever thread changed the store; one reload covers a burst of changes
+        if (changePosted.compareAndSet(false, true)) {
+            mainHandler.post(() -> {
+                changePosted.set(false);
+                load(true);
+            });
+        }
+    }
+
+    private void setupList() {
+        RecyclerView list = findViewById(R.id.transactionList);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        list.setLayoutManager(layoutManager);
+        list.setHasFixedSize(true);
+        adapter = new TransactionAdapter();
+        list.setAdapter(adapter);
+        list.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    load(false);
+                }
+            }
+        });
+    }
+
+    private void setupFilters() {
+        typeFilter = findViewById(R.id.typeFilter);
+        modeFilter = findViewById(R.id.modeFilter);
+        accountFilter = findViewById(R.id.accountFilter);
+        setOptions(typeFilter, getString(R.string.filter_all_types),
+                Arrays.asList(getString(R.string.filter_debits), getString(R.string.filter_credits)));
+        setOptions(modeFilter, getString(R.string.filter_all_modes), Collections.emptyList());
+        setOptions(accountFilter, getString(R.string.filter_all_accounts), Collections.emptyList());
+
+        AdapterView.OnItemSelectedListener onSelected = new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                applyFilters();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        };
+        typeFilter.setOnItemSelectedListener(onSelected);
+        modeFilter.setOnItemSelectedListener(onSelected);
+        accountFilter.setOnItemSelectedListener(onSelected);
+
+        pageExecutor.execute(() -> {
+            List<String> modes = store.modes();
+            List<String> accounts = store.accounts();
+            mainHandler.post(() -> {
+                setOptions(modeFilter, getString(R.string.filter_all_modes), modes);
+                setOptions(accountFilter, getString(R.string.filter_all_accounts), accounts);
+            });
+        });
+    }
+
+    private void setOptions(Spinner spinner, String all, List<String> values) {
+        List<String> options = new ArrayList<>(values.size() + 1);
+        options.add(all);
+        options.addAll(values);
+        ArrayAdapter<String> optionsAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, options);
+        optionsAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinner.setAdapter(optionsAdapter);
+    }
+
+    private void applyFilters() {
+        int type = typeFilter.getSelectedItemPosition();
+        Boolean debit = type == 1 ? Boolean.TRUE : type == 2 ? Boolean.FALSE : null;
+        String mode = modeFilter.getSelectedItemPosition() > 0 ? (String) modeFilter.getSelectedItem() : null;
+        String account = accountFilter.getSelectedItemPosition() > 0
+                ? (String) accountFilter.getSelectedItem() : null;
+        LocalTransactionStore.Filter selected = new LocalTransactionStore.Filter(debit, mode, account);
+        if (sameFilter(selected, filter)) {
+            return;
+        }
+        filter = selected;
+        loaded = Collections.emptyList();
+        load(true);
+    }
+
+    private static boolean sameFilter(LocalTransactionStore.Filter a, LocalTransactionStore.Filter b) {
+        return Objects.equals(a.debit, b.debit) && Objects.equals(a.mode, b.mode)
+                && Objects.equals(a.account, b.account);
+    }
+
+    /**
+     * Reads the next page, or with {@code fromStart} the whole range shown
+     * so far again. One read runs at a time; a reload asked for meanwhile
+     * follows it.
+     */
+    private void load(boolean fromStart) {
+        if (loading) {
+            reloadPending |= fromStart;
+            return;
+        }
+        if (!fromStart && exhausted) {
+            return;
+        }
+        loading = true;
+        LocalTransactionStore.Filter pageFilter = filter;
+        LocalTransactionStore.PageKey after = fromStart ? null : next;
+        int limit = fromStart ? Math.max(PAGE_SIZE, loaded.size()) : PAGE_SIZE;
+        pageExecutor.execute(() -> {
+            LocalTransactionStore.Page page = store.page(pageFilter, after, limit);
+            mainHandler.post(() -> {
+                loading = false;
+                if (pageFilter != filter) {
+                    // Filters changed while reading; start over with the new ones
+                    load(true);
+                    return;
+                }
+                List<LocalTransactionStore.Item> items;
+                if (fromStart) {
+                    items = page.items;
+                } else {
+                    items = new ArrayList<>(loaded.size() + page.items.size());
+                    items.addAll(loaded);
+                    items.addAll(page.items);
+                }
+                loaded = items;
+                next = page.next;
+                exhausted = page.next == null;
+                adapter.submitList(items);
+                emptyView.setVisibility(items.isEmpty() ? View.VISIBLE : View.GONE);
+                if (reloadPending) {
+                    reloadPending = false;
+                    load(true);
+                }
+            });
+        });
+    }
+
+    private static final DiffUtil.ItemCallback<LocalTransactionStore.Item> DIFF =
+            new DiffUtil.ItemCallback<LocalTransactionStore.Item>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull LocalTransactionStore.Item oldItem,
+                                               @NonNull LocalTransactionStore.Item newItem) {
+                    return oldItem.id.equals(newItem.id);
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull LocalTransactionStore.Item oldItem,
+                                                  @NonNull LocalTransactionStore.Item newItem) {
+                    // The store replaces a changed record rather than editing it
+                    return oldItem.transaction == newItem.transaction;
+                }
+            };
+
+    private static final class TransactionAdapter
+            extends ListAdapter<LocalTransactionStore.Item, TransactionViewHolder> {
+        private final DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+
+        TransactionAdapter() {
+            super(DIFF);
+        }
+
+        @NonNull
+        @Override
+        public TransactionViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_transaction, parent, false);
+            return new TransactionViewHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull TransactionViewHolder holder, int position) {
+            Transaction transaction = getItem(position).transaction;
+            holder.merchantName.setText(transaction.merchantName);
+            holder.details.setText(dateFormat.format(new Date(transaction.timestamp)) + " · "
+                    + transaction.transactionMode + " · " + transaction.accountNumber);
+            holder.amount.setText(String.format(Locale.US, "%s₹%,.2f",
+                    transaction.isDebit ? "-" : "+", transaction.amount));
+            holder.amount.setTextColor(ContextCompat.getColor(holder.itemView.getContext(),
+                    transaction.isDebit ? R.color.error : R.color.success_green));
+        }
+    }
+
+    private static final class TransactionViewHolder extends RecyclerView.ViewHolder {
+        final TextView merchantName;
+        final TextView details;
+        final TextView amount;
+
+        TransactionViewHolder(View itemView) {
+            super(itemView);
+            merchantName = itemView.findViewById(R.id.merchantName);
+            details = itemView.findViewById(R.id.details);
+            amount = itemView.findViewById(R.id.amount);
+        }
+    }
+}
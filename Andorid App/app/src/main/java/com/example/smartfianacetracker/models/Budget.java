@@ -0,0 +1,28 @@
+package com.example.smartfianacetracker.models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A spending budget as stored under {@code users/{uid}/budgets}. */
+public class Budget {
+    public double amount;
+    /** Spend over the budget's whole life; a budget with a period is measured by {@link #spentByPeriod}. */
+    public double spent;
+    public String category = "";
+    public String description = "";
+    public List<String> merchants = new ArrayList<>();
+    /** Optional; null is not written. */
+    public List<String> upiIds;
+    public long createdAt;
+    public boolean isActive = true;
+    /** Whether this, or for a budget with a period the current period's spend, has reached {@link #amount}. */
+    public boolean budgetReached;
+    /** One of {@link BudgetPeriod}'s names, or empty for a budget that never rolls over. */
+    public String period = "";
+    /** Length of a {@link BudgetPeriod#CUSTOM} period, counted from the day the budget was created. */
+    public int periodDays;
+    /** Spend per period, keyed by {@link BudgetPeriod#key}; past periods are kept for trends. */
+    public Map<String, Double> spentByPeriod = new HashMap<>();
+}
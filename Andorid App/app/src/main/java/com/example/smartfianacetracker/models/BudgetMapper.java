@@ -0,0 +1,93 @@
+package com.example.smartfianacetracker.models;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Map conversion for {@link Budget}; see {@link TransactionMapper}. */
+public final class BudgetMapper {
+    public static final String AMOUNT = "amount";
+    public static final String SPENT = "spent";
+    public static final String CATEGORY = "category";
+    public static final String DESCRIPTION = "description";
+    public static final String MERCHANTS = "merchants";
+    public static final String UPI_IDS = "upiIds";
+    public static final String CREATED_AT = "createdAt";
+    public static final String IS_ACTIVE = "isActive";
+    public static final String BUDGET_REACHED = "budgetReached";
+    public static final String PERIOD = "period";
+    public static final String PERIOD_DAYS = "periodDays";
+    public static final String SPENT_BY_PERIOD = "spentByPeriod";
+    /**
+     * Sibling of {@code budgets} holding, per budget, the id of every charge
+     * applied to it; see {@code BudgetBook#chargeId}.
+     */
+    public static final String CHARGES_NODE = "budgetCharges";
+
+    public static final Map<String, Class<?>> SCHEMA;
+
+    static {
+        Map<String, Class<?>> schema = new LinkedHashMap<>();
+        schema.put(AMOUNT, Number.class);
+        schema.put(SPENT, Number.class);
+        schema.put(CATEGORY, String.class);
+        schema.put(DESCRIPTION, String.class);
+        schema.put(MERCHANTS, List.class);
+        schema.put(UPI_IDS, List.class);
+        schema.put(CREATED_AT, Number.class);
+        schema.put(IS_ACTIVE, Boolean.class);
+        schema.put(BUDGET_REACHED, Boolean.class);
+        schema.put(PERIOD, String.class);
+        schema.put(PERIOD_DAYS, Number.class);
+        // Period key to amount
+        schema.put(SPENT_BY_PERIOD, Object.class);
+        SCHEMA = Collections.unmodifiableMap(schema);
+    }
+
+    private BudgetMapper() {
+    }
+
+    public static Map<String, Object> toMap(Budget budget) {
+        Map<String, Object> map = new HashMap<>(16, 1f);
+        map.put(AMOUNT, budget.amount);
+        map.put(SPENT, budget.spent);
+        map.put(CATEGORY, budget.category);
+        map.put(DESCRIPTION, budget.description);
+        map.put(MERCHANTS, budget.merchants);
+        if (budget.upiIds != null) {
+            map.put(UPI_IDS, budget.upiIds);
+        }
+        map.put(CREATED_AT, budget.createdAt);
+        map.put(IS_ACTIVE, budget.isActive);
+        map.put(BUDGET_REACHED, budget.budgetReached);
+        if (!budget.period.isEmpty()) {
+            map.put(PERIOD, budget.period);
+        }
+        if (budget.periodDays > 0) {
+            map.put(PERIOD_DAYS, budget.periodDays);
+        }
+        if (!budget.spentByPeriod.isEmpty()) {
+            map.put(SPENT_BY_PERIOD, budget.spentByPeriod);
+        }
+        return map;
+    }
+
+    public static Budget fromMap(Map<?, ?> map) {
+        Budget budget = new Budget();
+        budget.amount = MapValues.number(map, AMOUNT, 0).doubleValue();
+        budget.spent = MapValues.number(map, SPENT, 0).doubleValue();
+        budget.category = MapValues.string(map, CATEGORY, "");
+        budget.description = MapValues.string(map, DESCRIPTION, "");
+        budget.merchants = MapValues.strings(map, MERCHANTS);
+        budget.upiIds = map.containsKey(UPI_IDS) ? MapValues.strings(map, UPI_IDS) : null;
+        budget.createdAt = MapValues.number(map, CREATED_AT, 0).longValue();
+        budget.isActive = MapValues.bool(map, IS_ACTIVE, true);
+        budget.budgetReached = MapValues.bool(map, BUDGET_REACHED, false);
+        budget.period = MapValues.string(map, PERIOD, "");
+        budget.periodDays = MapValues.number(map, PERIOD_DAYS, 0).intValue();
+        budget.spentByPeriod = MapValues.numbers(map, SPENT_BY_PERIOD);
+        return budget;
+    }
+}
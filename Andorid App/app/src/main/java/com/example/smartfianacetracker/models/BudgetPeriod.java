@@ -0,0 +1,96 @@
+package com.example.smartfianacetracker.models;
+
+import java.util.TimeZone;
+
+/**
+ * The periods a {@link Budget} can roll over on, and the key its spend for
+ * a given moment is kept under in {@link Budget#spentByPeriod}: the local
+ * date the period starts on, as {@code yyyy-MM-dd}. A new period simply
+ * starts writing to a new key, so rollover needs no reset, keys sort in time
+ * order, and the web client's {@code lib/budget-period.ts} computes the same
+ * key. The arithmetic works on day numbers, without a {@code Calendar}.
+ */
+public final class BudgetPeriod {
+    /** Monday to Sunday. */
+    public static final String WEEKLY = "weekly";
+    /** Calendar month. */
+    public static final String MONTHLY = "monthly";
+    /** {@link Budget#periodDays} days at a time, from the day the budget was created. */
+    public static final String CUSTOM = "custom";
+
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private BudgetPeriod() {
+    }
+
+    /** Whether {@code budget} rolls over at all. */
+    public static boolean isPeriodic(Budget budget) {
+        return WEEKLY.equals(budget.period) || MONTHLY.equals(budget.period)
+                || (CUSTOM.equals(budget.period) && budget.periodDays > 0);
+    }
+
+    /** Key of the period holding {@code timestamp}, or null for a budget without a period. */
+    public static String key(Budget budget, long timestamp, TimeZone zone) {
+        long day = epochDay(timestamp, zone);
+        long start;
+        if (WEEKLY.equals(budget.period)) {
+            // Day 0, 1970-01-01, was a Thursday
+            start = day - Math.floorMod(day + 3, 7L);
+        } else if (MONTHLY.equals(budget.period)) {
+            long[] date = civil(day);
+            return format(date[0], date[1], 1);
+        } else if (CUSTOM.equals(budget.period) && budget.periodDays > 0) {
+            long anchor = epochDay(budget.createdAt, zone);
+            start = anchor + Math.floorDiv(day - anchor, (long) budget.periodDays) * budget.periodDays;
+        } else {
+            return null;
+        }
+        long[] date = civil(start);
+        return format(date[0], date[1], date[2]);
+    }
+
+    /** Months since 0000-01 of the local date of {@code timestamp}: {@code year * 12 + month - 1}. */
+    public static int month(long timestamp, TimeZone zone) {
+        long[] date = civil(epochDay(timestamp, zone));
+        return (int) (date[0] * 12 + date[1] - 1);
+    }
+
+    /** A {@link #month} as {@code yyyy-MM}. */
+    public static String monthKey(int month) {
+        return format(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1, 1).substring(0, 7);
+    }
+
+    private static long epochDay(long millis, TimeZone zone) {
+        return Math.floorDiv(millis + zone.getOffset(millis), DAY_MILLIS);
+    }
+
+    /** Year, month and day of an epoch day in the proleptic Gregorian calendar. */
+    private static long[] civil(long epochDay) {
+        // Howard Hinnant's days-to-civil: eras of 400 years starting 0000-03-01
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return new long[] {year, month, day};
+    }
+
+    private static String format(long year, long month, long day) {
+        char[] text = new char[10];
+        text[0] = (char) ('0' + year / 1000 % 10);
+        text[1] = (char) ('0' + year / 100 % 10);
+        text[2] = (char) ('0' + year / 10 % 10);
+        text[3] = (char) ('0' + year % 10);
+        text[4] = '-';
+        text[5] = (char) ('0' + month / 10);
+        text[6] = (char) ('0' + month % 10);
+        text[7] = '-';
+        text[8] = (char) ('0' + day / 10);
+        text[9] = (char) ('0' + day % 10);
+        return new String(text);
+    }
+}
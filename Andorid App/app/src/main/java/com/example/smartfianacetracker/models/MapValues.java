@@ -0,0 +1,65 @@
+package com.example.smartfianacetracker.models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed reads from snapshot maps. The database hands back whole numbers as
+ * {@code Long} and others as {@code Double}, and arrays as either a list or,
+ * when sparse, a map keyed by index; these accept all of them and fall back
+ * to the default on a missing or mistyped value.
+ */
+final class MapValues {
+    private MapValues() {
+    }
+
+    static String string(Map<?, ?> map, String key, String fallback) {
+        Object value = map.get(key);
+        return value instanceof String ? (String) value : fallback;
+    }
+
+    static Number number(Map<?, ?> map, String key, Number fallback) {
+        Object value = map.get(key);
+        return value instanceof Number ? (Number) value : fallback;
+    }
+
+    static boolean bool(Map<?, ?> map, String key, boolean fallback) {
+        Object value = map.get(key);
+        return value instanceof Boolean ? (Boolean) value : fallback;
+    }
+
+    /** A map of numbers, such as amounts keyed by period; entries that are not numbers are dropped. */
+    static Map<String, Double> numbers(Map<?, ?> map, String key) {
+        Map<String, Double> numbers = new HashMap<>();
+        Object value = map.get(key);
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (entry.getValue() instanceof Number) {
+                    numbers.put(String.valueOf(entry.getKey()), ((Number) entry.getValue()).doubleValue());
+                }
+            }
+        }
+        return numbers;
+    }
+
+    static List<String> strings(Map<?, ?> map, String key) {
+        Object value = map.get(key);
+        Iterable<?> items;
+        if (value instanceof List) {
+            items = (List<?>) value;
+        } else if (value instanceof Map) {
+            items = ((Map<?, ?>) value).values();
+        } else {
+            return new ArrayList<>();
+        }
+        List<String> strings = new ArrayList<>();
+        for (Object item : items) {
+            if (item instanceof String) {
+                strings.add((String) item);
+            }
+        }
+        return strings;
+    }
+}
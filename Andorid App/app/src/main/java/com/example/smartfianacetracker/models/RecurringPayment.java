@@ -0,0 +1,16 @@
+package com.example.smartfianacetracker.models;
+
+/** A payee debited on a regular schedule, as stored under {@code users/{uid}/recurring}. */
+public class RecurringPayment {
+    public String merchantName = "";
+    /** Empty when the payee's category is not known; not written then. */
+    public String category = "";
+    /** Mean interval between payments, in days. */
+    public double periodDays;
+    /** Expected amount of the next payment. */
+    public double amount;
+    public long nextDueAt;
+    public long lastPaidAt;
+    /** Payments seen in the current unbroken series. */
+    public int occurrences;
+}
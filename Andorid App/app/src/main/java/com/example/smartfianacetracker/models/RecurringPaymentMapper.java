@@ -0,0 +1,69 @@
+package com.example.smartfianacetracker.models;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compact encoding of {@link RecurringPayment}, one entry per payee id, in
+ * the style of {@link TransactionWireV2}:
+ *
+ * <pre>
+ * users/{uid}/recurring/{payeeId}  {"n": "NETFLIX", "g": "Entertainment", "p": 30.4, "a": 649, "d": 1714..., "l": 1711..., "k": 4}
+ * </pre>
+ */
+public final class RecurringPaymentMapper {
+    public static final String NODE = "recurring";
+
+    public static final String NAME = "n";
+    public static final String CATEGORY = "g";
+    public static final String PERIOD_DAYS = "p";
+    public static final String AMOUNT = "a";
+    public static final String NEXT_DUE_AT = "d";
+    public static final String LAST_PAID_AT = "l";
+    public static final String OCCURRENCES = "k";
+
+    public static final Map<String, Class<?>> SCHEMA;
+
+    static {
+        Map<String, Class<?>> schema = new LinkedHashMap<>();
+        schema.put(NAME, String.class);
+        schema.put(CATEGORY, String.class);
+        schema.put(PERIOD_DAYS, Number.class);
+        schema.put(AMOUNT, Number.class);
+        schema.put(NEXT_DUE_AT, Number.class);
+        schema.put(LAST_PAID_AT, Number.class);
+        schema.put(OCCURRENCES, Number.class);
+        SCHEMA = Collections.unmodifiableMap(schema);
+    }
+
+    private RecurringPaymentMapper() {
+    }
+
+    public static Map<String, Object> toMap(RecurringPayment payment) {
+        Map<String, Object> map = new HashMap<>(8, 1f);
+        map.put(NAME, payment.merchantName);
+        if (!payment.category.isEmpty()) {
+            map.put(CATEGORY, payment.category);
+        }
+        map.put(PERIOD_DAYS, payment.periodDays);
+        map.put(AMOUNT, payment.amount);
+        map.put(NEXT_DUE_AT, payment.nextDueAt);
+        map.put(LAST_PAID_AT, payment.lastPaidAt);
+        map.put(OCCURRENCES, payment.occurrences);
+        return map;
+    }
+
+    public static RecurringPayment fromMap(Map<?, ?> map) {
+        RecurringPayment payment = new RecurringPayment();
+        payment.merchantName = MapValues.string(map, NAME, "");
+        payment.category = MapValues.string(map, CATEGORY, "");
+        payment.periodDays = MapValues.number(map, PERIOD_DAYS, 0).doubleValue();
+        payment.amount = MapValues.number(map, AMOUNT, 0).doubleValue();
+        payment.nextDueAt = MapValues.number(map, NEXT_DUE_AT, 0).longValue();
+        payment.lastPaidAt = MapValues.number(map, LAST_PAID_AT, 0).longValue();
+        payment.occurrences = MapValues.number(map, OCCURRENCES, 0).intValue();
+        return payment;
+    }
+}
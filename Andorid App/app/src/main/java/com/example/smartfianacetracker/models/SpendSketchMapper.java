@@ -0,0 +1,98 @@
+package com.example.smartfianacetracker.models;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compact encoding of the spend sketches kept on the phone, small enough
+ * for a dashboard to read whole:
+ *
+ * <pre>
+ * users/{uid}/sketches/payees/{payeeId}   {"n": "SWIGGY", "w": 18250.5, "e": 0}
+ * users/{uid}/sketches/amounts/{category} {"g": "Food &amp; Dining", "k": 212, "m": 240, "q": 1180, "x": 4100, "c": "12.50:1 48.00:3 ..."}
+ * </pre>
+ *
+ * A payee entry is a top-K counter: spend {@code w}, overestimated by at
+ * most {@code e}. An amount entry is a category's debit count and its 50th,
+ * 90th and 99th percentile amounts, with the digest's centroids in
+ * {@code c} for anyone who needs another quantile.
+ */
+public final class SpendSketchMapper {
+    public static final String NODE = "sketches";
+    public static final String PAYEES = "payees";
+    public static final String AMOUNTS = "amounts";
+
+    public static final String NAME = "n";
+    public static final String WEIGHT = "w";
+    public static final String ERROR = "e";
+
+    public static final String CATEGORY = "g";
+    public static final String COUNT = "k";
+    public static final String P50 = "m";
+    public static final String P90 = "q";
+    public static final String P99 = "x";
+    public static final String CENTROIDS = "c";
+
+    public static final Map<String, Class<?>> PAYEE_SCHEMA;
+    public static final Map<String, Class<?>> AMOUNT_SCHEMA;
+
+    static {
+        Map<String, Class<?>> payee = new LinkedHashMap<>();
+        payee.put(NAME, String.class);
+        payee.put(WEIGHT, Number.class);
+        payee.put(ERROR, Number.class);
+        PAYEE_SCHEMA = Collections.unmodifiableMap(payee);
+
+        Map<String, Class<?>> amount = new LinkedHashMap<>();
+        amount.put(CATEGORY, String.class);
+        amount.put(COUNT, Number.class);
+        amount.put(P50, Number.class);
+        amount.put(P90, Number.class);
+        amount.put(P99, Number.class);
+        amount.put(CENTROIDS, String.class);
+        AMOUNT_SCHEMA = Collections.unmodifiableMap(amount);
+    }
+
+    private SpendSketchMapper() {
+    }
+
+    public static Map<String, Object> payeeMap(String name, double weight, double error) {
+        Map<String, Object> map = new HashMap<>(4, 1f);
+        map.put(NAME, name);
+        map.put(WEIGHT, round(weight));
+        map.put(ERROR, round(error));
+        return map;
+    }
+
+    public static Map<String, Object> amountMap(String category, long count, double p50, double p90, double p99,
+                                                String centroids) {
+        Map<String, Object> map = new HashMap<>(8, 1f);
+        map.put(CATEGORY, category);
+        map.put(COUNT, count);
+        map.put(P50, round(p50));
+        map.put(P90, round(p90));
+        map.put(P99, round(p99));
+        map.put(CENTROIDS, centroids);
+        return map;
+    }
+
+    /**
+     * Key a category is stored under: its letters, digits and hyphens, with
+     * anything else replaced by an underscore.
+     */
+    public static String categoryKey(String category) {
+        StringBuilder key = new StringBuilder(category.length());
+        for (int i = 0; i < category.length(); i++) {
+            char c = category.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-';
+            key.append(safe ? c : '_');
+        }
+        return key.toString();
+    }
+
+    private static double round(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+}
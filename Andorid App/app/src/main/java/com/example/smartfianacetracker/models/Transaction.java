@@ -0,0 +1,52 @@
+package com.example.smartfianacetracker.models;
+
+/**
+ * A debit or credit as stored under {@code users/{uid}/debit} or
+ * {@code users/{uid}/credit}. Which of the two it is decides the node, so
+ * {@link #isDebit} is not itself a stored field.
+ */
+public class Transaction {
+    public static final String DEBIT_NODE = "debit";
+    public static final String CREDIT_NODE = "credit";
+
+    public boolean isDebit;
+    public String accountNumber = "";
+    public double amount;
+    public String merchantName = "";
+    public long timestamp;
+    public String transactionMode = "";
+    /** Optional; null is not written. */
+    public String category;
+    /** Optional; null is not written. */
+    public String upiId;
+    /** Canonical payee shared by every alias of the merchant; optional, null is not written. */
+    public String payeeId;
+    /** UPI reference, UTR or RRN from the SMS; optional, null is not written. */
+    public String referenceNumber;
+    /** On a debit, key of the credit that reversed it; optional, null is not written. */
+    public String reversedBy;
+    /** On a credit, key of the debit it reverses; optional, null is not written. */
+    public String reversalOf;
+    /** On either leg of a transfer between the user's own accounts, key of the other leg; optional. */
+    public String internalTransfer;
+    /** Optional; null is not written. */
+    public Long uploadedAt;
+
+    public Transaction() {
+    }
+
+    public Transaction(boolean isDebit, String accountNumber, double amount, String merchantName,
+                       long timestamp, String transactionMode, String upiId) {
+        this.isDebit = isDebit;
+        this.accountNumber = accountNumber;
+        this.amount = amount;
+        this.merchantName = merchantName;
+        this.timestamp = timestamp;
+        this.transactionMode = transactionMode;
+        this.upiId = upiId;
+    }
+
+    public String node() {
+        return isDebit ? DEBIT_NODE : CREDIT_NODE;
+    }
+}
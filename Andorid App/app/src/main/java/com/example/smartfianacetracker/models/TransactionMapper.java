@@ -0,0 +1,107 @@
+package com.example.smartfianacetracker.models;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Converts {@link Transaction} to and from the plain maps the Realtime
+ * Database reads and writes, field by field, so the SDK never has to map a
+ * bean reflectively. {@link #SCHEMA} lists every stored field with its
+ * type; {@code ModelSchemaTest} checks it against database.rules.json.
+ */
+public final class TransactionMapper {
+    public static final String ACCOUNT_NUMBER = "accountNumber";
+    public static final String AMOUNT = "amount";
+    public static final String MERCHANT_NAME = "merchantName";
+    public static final String TIMESTAMP = "timestamp";
+    public static final String TRANSACTION_MODE = "transactionMode";
+    public static final String UPI_ID = "upiId";
+    public static final String CATEGORY = "category";
+    public static final String PAYEE_ID = "payeeId";
+    public static final String REFERENCE_NUMBER = "referenceNumber";
+    public static final String REVERSED_BY = "reversedBy";
+    public static final String REVERSAL_OF = "reversalOf";
+    public static final String INTERNAL_TRANSFER = "internalTransfer";
+    public static final String UPLOADED_AT = "uploadedAt";
+
+    public static final Map<String, Class<?>> SCHEMA;
+
+    static {
+        Map<String, Class<?>> schema = new LinkedHashMap<>();
+        schema.put(ACCOUNT_NUMBER, String.class);
+        schema.put(AMOUNT, Number.class);
+        schema.put(MERCHANT_NAME, String.class);
+        schema.put(TIMESTAMP, Number.class);
+        schema.put(TRANSACTION_MODE, String.class);
+        schema.put(UPI_ID, String.class);
+        schema.put(CATEGORY, String.class);
+        schema.put(PAYEE_ID, String.class);
+        schema.put(REFERENCE_NUMBER, String.class);
+        schema.put(REVERSED_BY, String.class);
+        schema.put(REVERSAL_OF, String.class);
+        schema.put(INTERNAL_TRANSFER, String.class);
+        schema.put(UPLOADED_AT, Number.class);
+        SCHEMA = Collections.unmodifiableMap(schema);
+    }
+
+    private TransactionMapper() {
+    }
+
+    public static Map<String, Object> toMap(Transaction transaction) {
+        // Sized for every field so the map never rehashes
+        Map<String, Object> map = new HashMap<>(13, 1f);
+        map.put(ACCOUNT_NUMBER, transaction.accountNumber);
+        map.put(AMOUNT, transaction.amount);
+        map.put(MERCHANT_NAME, transaction.merchantName);
+        map.put(TIMESTAMP, transaction.timestamp);
+        map.put(TRANSACTION_MODE, transaction.transactionMode);
+        if (transaction.upiId != null) {
+            map.put(UPI_ID, transaction.upiId);
+        }
+        if (transaction.category != null) {
+            map.put(CATEGORY, transaction.category);
+        }
+        if (transaction.payeeId != null) {
+            map.put(PAYEE_ID, transaction.payeeId);
+        }
+        if (transaction.referenceNumber != null) {
+            map.put(REFERENCE_NUMBER, transaction.referenceNumber);
+        }
+        if (transaction.reversedBy != null) {
+            map.put(REVERSED_BY, transaction.reversedBy);
+        }
+        if (transaction.reversalOf != null) {
+            map.put(REVERSAL_OF, transaction.reversalOf);
+        }
+        if (transaction.internalTransfer != null) {
+            map.put(INTERNAL_TRANSFER, transaction.internalTransfer);
+        }
+        if (transaction.uploadedAt != null) {
+            map.put(UPLOADED_AT, transaction.uploadedAt);
+        }
+        return map;
+    }
+
+    /** Reads a snapshot value; {@code isDebit} comes from the node it was read under. */
+    public static Transaction fromMap(Map<?, ?> map, boolean isDebit) {
+        Transaction transaction = new Transaction();
+        transaction.isDebit = isDebit;
+        transaction.accountNumber = MapValues.string(map, ACCOUNT_NUMBER, "");
+        transaction.amount = MapValues.number(map, AMOUNT, 0).doubleValue();
+        transaction.merchantName = MapValues.string(map, MERCHANT_NAME, "");
+        transaction.timestamp = MapValues.number(map, TIMESTAMP, 0).longValue();
+        transaction.transactionMode = MapValues.string(map, TRANSACTION_MODE, "");
+        transaction.upiId = MapValues.string(map, UPI_ID, null);
+        transaction.category = MapValues.string(map, CATEGORY, null);
+        transaction.payeeId = MapValues.string(map, PAYEE_ID, null);
+        transaction.referenceNumber = MapValues.string(map, REFERENCE_NUMBER, null);
+        transaction.reversedBy = MapValues.string(map, REVERSED_BY, null);
+        transaction.reversalOf = MapValues.string(map, REVERSAL_OF, null);
+        transaction.internalTransfer = MapValues.string(map, INTERNAL_TRANSFER, null);
+        Number uploadedAt = MapValues.number(map, UPLOADED_AT, null);
+        transaction.uploadedAt = uploadedAt != null ? uploadedAt.longValue() : null;
+        return transaction;
+    }
+}
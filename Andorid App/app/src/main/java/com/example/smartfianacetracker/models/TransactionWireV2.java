@@ -0,0 +1,194 @@
+package com.example.smartfianacetracker.models;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compact v2 encoding of {@link Transaction}, the reference the web client's
+ * {@code lib/wire-v2.ts} mirrors.
+ *
+ * <pre>
+ * users/{uid}/tx2/{base36 millis}  {"d": true, "a": 1250.5, "c": "XX4521", "p": "1x9k3...", "t": 1712..., "o": 1, "g": "Food", "r": "5123..."}
+ * users/{uid}/payees2/{payeeId}    {"n": "SAI STORES", "u": "sai.stores@okaxis"}
+ * </pre>
+ *
+ * Keys are one or two letters, the mode is a code into {@link #MODES} (or the
+ * string itself for a mode not in the table), and merchant name and UPI id
+ * are written once per payee and referenced by id. The payee id is the one
+ * {@code PayeeCanonicalizer} resolved, so every alias of a payee shares one
+ * entry; records stored without one fall back to a hash of the pair. An
+ * empty account number or UPI id is left out.
+ */
+public final class TransactionWireV2 {
+    public static final String NODE = "tx2";
+    public static final String PAYEE_NODE = "payees2";
+
+    public static final String DEBIT = "d";
+    public static final String AMOUNT = "a";
+    public static final String ACCOUNT = "c";
+    public static final String PAYEE = "p";
+    public static final String TIMESTAMP = "t";
+    public static final String MODE = "o";
+    public static final String CATEGORY = "g";
+    public static final String REFERENCE = "r";
+    /** Key of the reversing credit, on a debit; of the reversed debit, on a credit. */
+    public static final String REVERSED_BY = "rb";
+    public static final String REVERSAL_OF = "ro";
+    /** Key of the other leg of a transfer between the user's own accounts. */
+    public static final String INTERNAL_TRANSFER = "it";
+    public static final String UPLOADED_AT = "ua";
+
+    public static final String PAYEE_NAME = "n";
+    public static final String PAYEE_UPI = "u";
+
+    /** Index is the wire code. Append only: codes are stored. */
+    public static final String[] MODES = {"OTHER", "UPI", "NEFT", "IMPS"};
+
+    public static final Map<String, Class<?>> SCHEMA;
+    public static final Map<String, Class<?>> PAYEE_SCHEMA;
+
+    static {
+        Map<String, Class<?>> schema = new LinkedHashMap<>();
+        schema.put(DEBIT, Boolean.class);
+        schema.put(AMOUNT, Number.class);
+        schema.put(ACCOUNT, String.class);
+        schema.put(PAYEE, String.class);
+        schema.put(TIMESTAMP, Number.class);
+        schema.put(MODE, Object.class);
+        schema.put(CATEGORY, String.class);
+        schema.put(REFERENCE, String.class);
+        schema.put(REVERSED_BY, String.class);
+        schema.put(REVERSAL_OF, String.class);
+        schema.put(INTERNAL_TRANSFER, String.class);
+        schema.put(UPLOADED_AT, Number.class);
+        SCHEMA = Collections.unmodifiableMap(schema);
+
+        Map<String, Class<?>> payeeSchema = new LinkedHashMap<>();
+        payeeSchema.put(PAYEE_NAME, String.class);
+        payeeSchema.put(PAYEE_UPI, String.class);
+        PAYEE_SCHEMA = Collections.unmodifiableMap(payeeSchema);
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long PAYEE_ID_MASK = (1L << 48) - 1;
+
+    private TransactionWireV2() {
+    }
+
+    /** Base 36 millis: 8 characters, in time order, until 2059. */
+    public static String key(long millis) {
+        return Long.toString(millis, 36);
+    }
+
+    /** 48-bit FNV-1a of name and UPI id, in base 36 (at most 10 characters). */
+    public static String payeeId(String merchantName, String upiId) {
+        long hash = FNV_OFFSET;
+        hash = fnv(hash, merchantName);
+        // Separator, so ("ab", "c") and ("a", "bc") differ
+        hash *= FNV_PRIME;
+        hash = fnv(hash, upiId != null ? upiId : "");
+        return Long.toString(hash & PAYEE_ID_MASK, 36);
+    }
+
+    /** 48-bit FNV-1a of a canonical payee key, in base 36. */
+    public static String payeeId(String canonicalKey) {
+        return Long.toString(fnv(FNV_OFFSET, canonicalKey) & PAYEE_ID_MASK, 36);
+    }
+
+    public static Map<String, Object> encode(Transaction transaction, String payeeId) {
+        Map<String, Object> map = new HashMap<>(12, 1f);
+        map.put(DEBIT, transaction.isDebit);
+        map.put(AMOUNT, transaction.amount);
+        if (!transaction.accountNumber.isEmpty()) {
+            map.put(ACCOUNT, transaction.accountNumber);
+        }
+        map.put(PAYEE, payeeId);
+        map.put(TIMESTAMP, transaction.timestamp);
+        int code = modeCode(transaction.transactionMode);
+        map.put(MODE, code >= 0 ? (Object) code : transaction.transactionMode);
+        if (transaction.category != null) {
+            map.put(CATEGORY, transaction.category);
+        }
+        if (transaction.referenceNumber != null) {
+            map.put(REFERENCE, transaction.referenceNumber);
+        }
+        if (transaction.reversedBy != null) {
+            map.put(REVERSED_BY, transaction.reversedBy);
+        }
+        if (transaction.reversalOf != null) {
+            map.put(REVERSAL_OF, transaction.reversalOf);
+        }
+        if (transaction.internalTransfer != null) {
+            map.put(INTERNAL_TRANSFER, transaction.internalTransfer);
+        }
+        if (transaction.uploadedAt != null) {
+            map.put(UPLOADED_AT, transaction.uploadedAt);
+        }
+        return map;
+    }
+
+    public static Map<String, Object> encodePayee(String merchantName, String upiId) {
+        Map<String, Object> map = new HashMap<>(4, 1f);
+        map.put(PAYEE_NAME, merchantName);
+        if (upiId != null && !upiId.isEmpty()) {
+            map.put(PAYEE_UPI, upiId);
+        }
+        return map;
+    }
+
+    /**
+     * Expands a v2 record using the user's payee dictionary. A payee missing
+     * from the dictionary (not synced yet) decodes with an empty name.
+     */
+    public static Transaction decode(Map<?, ?> map, Map<?, ?> payees) {
+        Transaction transaction = new Transaction();
+        transaction.isDebit = MapValues.bool(map, DEBIT, false);
+        transaction.amount = MapValues.number(map, AMOUNT, 0).doubleValue();
+        transaction.accountNumber = MapValues.string(map, ACCOUNT, "");
+        transaction.timestamp = MapValues.number(map, TIMESTAMP, 0).longValue();
+        Object mode = map.get(MODE);
+        if (mode instanceof Number) {
+            int code = ((Number) mode).intValue();
+            transaction.transactionMode = code >= 0 && code < MODES.length ? MODES[code] : MODES[0];
+        } else {
+            transaction.transactionMode = mode instanceof String ? (String) mode : MODES[0];
+        }
+        transaction.category = MapValues.string(map, CATEGORY, null);
+        transaction.referenceNumber = MapValues.string(map, REFERENCE, null);
+        transaction.reversedBy = MapValues.string(map, REVERSED_BY, null);
+        transaction.reversalOf = MapValues.string(map, REVERSAL_OF, null);
+        transaction.internalTransfer = MapValues.string(map, INTERNAL_TRANSFER, null);
+        Number uploadedAt = MapValues.number(map, UPLOADED_AT, null);
+        transaction.uploadedAt = uploadedAt != null ? uploadedAt.longValue() : null;
+
+        Object payee = payees.get(MapValues.string(map, PAYEE, ""));
+        if (payee instanceof Map) {
+            transaction.merchantName = MapValues.string((Map<?, ?>) payee, PAYEE_NAME, "");
+            transaction.upiId = MapValues.string((Map<?, ?>) payee, PAYEE_UPI, "");
+        } else {
+            transaction.upiId = "";
+        }
+        return transaction;
+    }
+
+    private static int modeCode(String mode) {
+        for (int code = 0; code < MODES.length; code++) {
+            if (MODES[code].equals(mode)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    private static long fnv(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Running balance per account, kept on the device and moved one transaction
+ * at a time, so the current balance of {@code XX4521} is a lookup rather than
+ * a sum over history. Accounts are keyed by the masked number the bank prints.
+ *
+ * <p>A balance reported in an SMS anchors the account. Between reports the
+ * ledger carries the balance forward by each parsed amount; when the next
+ * report disagrees, the difference is recorded as a gap (a missed or
+ * misparsed SMS, interest, a charge) and the report wins. An account has no
+ * known balance until its first report.
+ *
+ * <p>A transaction older than the last one applied to its account, such as a
+ * quarantine replay, is skipped: the balances reported since already include
+ * it.
+ *
+ * <p>The ledger is kept in {@code account_ledger.bin}; see {@link StateFile}.
+ */
+public class AccountLedger implements TransactionIngestor.Listener {
+    private static final String TAG = "AccountLedger";
+    private static final String FILE_NAME = "account_ledger.bin";
+    private static final int FORMAT_VERSION = 1;
+    private static AccountLedger instance;
+
+    /** Immutable view of one account. */
+    public static final class Entry {
+        public final String accountNumber;
+        /** NaN until a balance has been reported for the account. */
+        public final double balance;
+        /** Timestamp of the last transaction applied. */
+        public final long asOf;
+        public final int gapCount;
+        /** Reported minus expected balance at the most recent gap; 0 if none. */
+        public final double lastGap;
+        public final long lastGapAt;
+
+        Entry(String accountNumber, double balance, long asOf, int gapCount, double lastGap, long lastGapAt) {
+            this.accountNumber = accountNumber;
+            this.balance = balance;
+            this.asOf = asOf;
+            this.gapCount = gapCount;
+            this.lastGap = lastGap;
+            this.lastGapAt = lastGapAt;
+        }
+    }
+
+    private static final class Account {
+        final String accountNumber;
+        // Whole paise, so carrying the balance forward never drifts
+        long balancePaise;
+        boolean anchored;
+        long asOf;
+        int gapCount;
+        long lastGapPaise;
+        long lastGapAt;
+
+        Account(String accountNumber) {
+            this.accountNumber = accountNumber;
+        }
+
+        Entry toEntry() {
+            return new Entry(accountNumber, anchored ? balancePaise / 100.0 : Double.NaN, asOf,
+                    gapCount, lastGapPaise / 100.0, lastGapAt);
+        }
+    }
+
+    private final StateFile<List<Account>> stateFile;
+    // A user has a handful of accounts; a list scanned in place keeps lookups allocation-free
+    private List<Account> accounts;
+
+    public AccountLedger(File directory) {
+        stateFile = new StateFile<>(directory, FILE_NAME, "the account ledger", ArrayList::new,
+                AccountLedger::read, this::write);
+    }
+
+    public static synchronized AccountLedger getInstance(Context context) {
+        if (instance == null) {
+            instance = new AccountLedger(context.getApplicationContext().getFilesDir());
+        }
+        return instance;
+    }
+
+    @Override
+    public synchronized void onTransactionStored(TransactionRecord record, long keyMillis) {
+        if (record.accountNumber.isEmpty()) {
+            return;
+        }
+        Account account = find(record.accountNumber);
+        if (account == null) {
+            account = new Account(record.accountNumber.toString());
+            accounts.add(account);
+        } else if (record.timestamp < account.asOf) {
+            return;
+        }
+
+        long amountPaise = Math.round(record.amount * 100);
+        long expected = account.balancePaise + (record.isDebit ? -amountPaise : amountPaise);
+        if (record.hasBalance) {
+            long reported = Math.round(record.balance * 100);
+            if (account.anchored && reported != expected) {
+                account.gapCount++;
+                account.lastGapPaise = reported - expected;
+                account.lastGapAt = record.timestamp;
+                Log.w(TAG, "Balance gap on " + account.accountNumber + ": reported "
+                        + reported / 100.0 + ", expected " + expected / 100.0);
+            }
+            account.balancePaise = reported;
+            account.anchored = true;
+        } else if (account.anchored) {
+            account.balancePaise = expected;
+        }
+        account.asOf = record.timestamp;
+        stateFile.scheduleSave();
+    }
+
+    /** Current balance of {@code accountNumber}, or NaN when none has been reported yet. */
+    public synchronized double balance(String accountNumber) {
+        Account account = find(accountNumber);
+        return account != null && account.anchored ? account.balancePaise / 100.0 : Double.NaN;
+    }
+
+    /** The account's state, or null for an account never seen. */
+    public synchronized Entry entry(String accountNumber) {
+        Account account = find(accountNumber);
+        return account != null ? account.toEntry() : null;
+    }
+
+    public synchronized List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>(accounts().size());
+        for (Account account : accounts) {
+            entries.add(account.toEntry());
+        }
+        return entries;
+    }
+
+    /** Completes once every change made so far has been written. */
+    Future<?> flush() {
+        return stateFile.flush();
+    }
+
+    private Account find(CharSequence accountNumber) {
+        List<Account> accounts = accounts();
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            if (contentEquals(account.accountNumber, accountNumber)) {
+                return account;
+            }
+        }
+        return null;
+    }
+
+    private static boolean contentEquals(String a, CharSequence b) {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Account> accounts() {
+        if (accounts == null) {
+            accounts = stateFile.load();
+        }
+        return accounts;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        List<Entry> entries = entries();
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeUTF(entry.accountNumber);
+            out.writeBoolean(!Double.isNaN(entry.balance));
+            out.writeLong(Double.isNaN(entry.balance) ? 0 : Math.round(entry.balance * 100));
+            out.writeLong(entry.asOf);
+            out.writeInt(entry.gapCount);
+            out.writeLong(Math.round(entry.lastGap * 100));
+            out.writeLong(entry.lastGapAt);
+        }
+    }
+
+    private static List<Account> read(DataInputStream in) throws IOException {
+        List<Account> accounts = new ArrayList<>();
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            Log.w(TAG, "Ignoring account ledger format " + version);
+            return accounts;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Account account = new Account(in.readUTF());
+            account.anchored = in.readBoolean();
+            account.balancePaise = in.readLong();
+            account.asOf = in.readLong();
+            account.gapCount = in.readInt();
+            account.lastGapPaise = in.readLong();
+            account.lastGapAt = in.readLong();
+            accounts.add(account);
+        }
+        return accounts;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.smartfianacetracker.utils;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Build;
+import androidx.core.app.NotificationCompat;
+import com.example.smartfianacetracker.R;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Posts each {@link AnomalyDetector.Anomaly} as a heads-up notification on
+ * its own high-importance channel, separate from the SMS service's silent one.
+ */
+public class AlertNotifier implements AnomalyDetector.AlertListener {
+    private static final String CHANNEL_ID = "SpendingAlertsChannel";
+    // Clear of SmsService's foreground notification id
+    private static final int FIRST_NOTIFICATION_ID = 1000;
+
+    private final Context context;
+    private final NotificationManager manager;
+    private final AtomicInteger nextId = new AtomicInteger(FIRST_NOTIFICATION_ID);
+
+    public AlertNotifier(Context context) {
+        this.context = context.getApplicationContext();
+        manager = this.context.getSystemService(NotificationManager.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            manager.createNotificationChannel(new NotificationChannel(
+                CHANNEL_ID,
+                "Spending Alerts",
+                NotificationManager.IMPORTANCE_HIGH
+            ));
+        }
+    }
+
+    @Override
+    public void onAnomaly(AnomalyDetector.Anomaly anomaly) {
+        String title;
+        String text;
+        switch (anomaly.kind) {
+            case UNUSUAL_FOR_PAYEE:
+                title = "Unusual payment to " + anomaly.merchantName;
+                text = rupees(anomaly.amount) + ", you usually pay about " + rupees(anomaly.typicalAmount);
+                break;
+            case UNUSUAL_FOR_ACCOUNT:
+                title = "Unusually large debit on " + anomaly.accountNumber;
+                text = rupees(anomaly.amount) + " to " + anomaly.merchantName
+                    + ", debits here are usually about " + rupees(anomaly.typicalAmount);
+                break;
+            default:
+                title = "Several debits in a few minutes";
+                text = "Latest: " + rupees(anomaly.amount) + " to " + anomaly.merchantName
+                    + (anomaly.accountNumber.isEmpty() ? "" : " from " + anomaly.accountNumber);
+                break;
+        }
+        // Dropped by the system when POST_NOTIFICATIONS has not been granted
+        manager.notify(nextId.getAndIncrement(), new NotificationCompat.Builder(context, CHANNEL_ID)
+            .setContentTitle(title)
+            .setContentText(text)
+            .setStyle(new NotificationCompat.BigTextStyle().bigText(text))
+            .setSmallIcon(R.drawable.finance_logo)
+            .setPriority(NotificationCompat.PRIORITY_HIGH)
+            .setCategory(NotificationCompat.CATEGORY_ALARM)
+            .setWhen(anomaly.timestamp)
+            .setShowWhen(true)
+            .setAutoCancel(true)
+            .build());
+    }
+
+    private static String rupees(double amount) {
+        return String.format(Locale.US, "₹%,.0f", amount);
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores every stored debit against its payee's and its account's running
+ * statistics and raises an {@link Anomaly} the moment one stands out:
+ *
+ * <ul>
+ * <li>an amount far above what this payee, or failing that this account,
+ *     usually sees: {@link #Z_THRESHOLD} standard deviations over an
+ *     exponentially weighted mean of log amounts, once there is enough
+ *     history to trust it;
+ * <li>a burst: the exponentially decayed debit count of the payee or the
+ *     account reaching {@link #BURST_COUNT}, about five debits in as many
+ *     minutes; only the debit that starts the burst alerts.
+ * </ul>
+ *
+ * Each payee and account costs one fixed-size slot (mean, variance, decayed
+ * rate, last timestamp, count) in an open-addressed table over primitive
+ * arrays, so scoring is a few arithmetic operations and two hash probes,
+ * with no history read and no allocation unless an alert fires. Statistics
+ * work on log amounts because spend is multiplicative: a 300 rupee habit
+ * and a 30,000 rupee outlier are the same distance apart as 3 and 300.
+ *
+ * <p>A transaction older than the newest one seen for its payee (a
+ * quarantine replay) still updates the mean and variance but never alerts
+ * or counts toward a burst. The table is kept in
+ * {@code anomaly_stats.bin}, 33 bytes a key; see {@link StateFile}.
+ */
+public class AnomalyDetector implements TransactionIngestor.Listener {
+    private static final String TAG = "AnomalyDetector";
+    private static final String FILE_NAME = "anomaly_stats.bin";
+    private static final int FORMAT_VERSION = 1;
+    private static final int INITIAL_CAPACITY = 256;
+    private static final long EMPTY = 0;
+    private static final long PAYEE_SEED = 0xcbf29ce484222325L;
+    private static final long ACCOUNT_SEED = 0x84222325cbf29ce4L;
+
+    /** Weight of the newest debit; the mean reflects roughly the last 2 / ALPHA debits. */
+    static final double ALPHA = 0.1;
+    static final double Z_THRESHOLD = 3.0;
+    /** Debits of a key before its mean and variance are trusted. */
+    static final int MIN_HISTORY = 5;
+    /** Floor on the log-amount variance, so a payee always charged the same amount is not infinitely sensitive. */
+    static final double MIN_VARIANCE = 0.05;
+    /** Amounts below this never count as unusual, however far from the mean. */
+    static final double MIN_ALERT_AMOUNT = 500;
+    static final long BURST_HALF_LIFE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final double BURST_COUNT = 4.5;
+    private static AnomalyDetector instance;
+
+    public enum Kind { UNUSUAL_FOR_PAYEE, UNUSUAL_FOR_ACCOUNT, BURST }
+
+    /** One alert; immutable. */
+    public static final class Anomaly {
+        public final Kind kind;
+        public final double amount;
+        public final String merchantName;
+        public final String accountNumber;
+        public final String payeeId;
+        /** The usual amount for the payee or account (the geometric mean); 0 for a burst. */
+        public final double typicalAmount;
+        /** Standard deviations above the mean, or the decayed debit count for a burst. */
+        public final double score;
+        public final long timestamp;
+
+        Anomaly(Kind kind, TransactionRecord record, double typicalAmount, double score) {
+            this.kind = kind;
+            this.amount = record.amount;
+            this.merchantName = record.merchantName.toString();
+            this.accountNumber = record.accountNumber.toString();
+            this.payeeId = record.payeeId;
+            this.typicalAmount = typicalAmount;
+            this.score = score;
+            this.timestamp = record.timestamp;
+        }
+    }
+
+    public interface AlertListener {
+        /** Called on the ingest thread; hand anything slow to another thread. */
+        void onAnomaly(Anomaly anomaly);
+    }
+
+    private final AlertListener alerts;
+    private final StateFile<Integer> stateFile;
+    private boolean ready;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private double[] means = new double[INITIAL_CAPACITY];
+    private double[] variances = new double[INITIAL_CAPACITY];
+    private double[] rates = new double[INITIAL_CAPACITY];
+    private long[] lastTimestamps = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private boolean[] bursting = new boolean[INITIAL_CAPACITY];
+    private int size;
+
+    public AnomalyDetector(File directory, AlertListener alerts) {
+        this.alerts = alerts;
+        stateFile = new StateFile<>(directory, FILE_NAME, "anomaly statistics", () -> 0, this::read,
+                this::write);
+    }
+
+    public static synchronized AnomalyDetector getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new AnomalyDetector(appContext.getFilesDir(), new AlertNotifier(appContext));
+        }
+        return instance;
+    }
+
+    @Override
+    public void onTransactionStored(TransactionRecord record, long keyMillis) {
+        if (!record.isDebit || record.amount <= 0) {
+            return;
+        }
+        Anomaly anomaly = score(record);
+        if (anomaly != null) {
+            Log.i(TAG, anomaly.kind + " debit of " + anomaly.amount + " to " + anomaly.merchantName);
+            alerts.onAnomaly(anomaly);
+        }
+    }
+
+    /** Updates the statistics with a debit and returns the alert it raises, if any. */
+    synchronized Anomaly score(TransactionRecord record) {
+        awaitLoaded();
+        double x = Math.log(record.amount);
+        long timestamp = record.timestamp;
+
+        int payee = slotFor(hash(PAYEE_SEED, record.payeeId != null ? record.payeeId : ""));
+        boolean inOrder = timestamp >= lastTimestamps[payee];
+        double payeeZ = zScore(payee, x);
+        double payeeTypical = Math.exp(means[payee]);
+        boolean burst = observe(payee, x, timestamp);
+        double rate = rates[payee];
+
+        double accountZ = 0;
+        double accountTypical = 0;
+        if (!record.accountNumber.isEmpty()) {
+            // May grow the table and move the payee slot; everything needed from it is read above
+            int account = slotFor(hash(ACCOUNT_SEED, record.accountNumber));
+            inOrder &= timestamp >= lastTimestamps[account];
+            accountZ = zScore(account, x);
+            accountTypical = Math.exp(means[account]);
+            burst |= observe(account, x, timestamp);
+            rate = Math.max(rate, rates[account]);
+        }
+        stateFile.scheduleSave();
+
+        if (!inOrder) {
+            return null;
+        }
+        if (record.amount >= MIN_ALERT_AMOUNT) {
+            if (payeeZ >= Z_THRESHOLD) {
+                return new Anomaly(Kind.UNUSUAL_FOR_PAYEE, record, payeeTypical, payeeZ);
+            }
+            if (accountZ >= Z_THRESHOLD) {
+                return new Anomaly(Kind.UNUSUAL_FOR_ACCOUNT, record, accountTypical, accountZ);
+            }
+        }
+        return burst ? new Anomaly(Kind.BURST, record, 0, rate) : null;
+    }
+
+    /** Number of payees and accounts with statistics. */
+    public synchronized int keyCount() {
+        awaitLoaded();
+        return size;
+    }
+
+    /** Completes once every change made so far has been written. */
+    Future<?> flush() {
+        return stateFile.flush();
+    }
+
+    /** Standard deviations {@code x} lies above the slot's mean; 0 until the history is trusted. */
+    private double zScore(int slot, double x) {
+        if (counts[slot] < MIN_HISTORY) {
+            return 0;
+        }
+        return (x - means[slot]) / Math.sqrt(Math.max(variances[slot], MIN_VARIANCE));
+    }
+
+    /**
+     * Folds {@code x} into the slot's mean, variance and decayed debit count,
+     * and returns whether this debit starts a burst. A burst ends, and the
+     * next one can alert, once the count decays below half the threshold.
+     */
+    private boolean observe(int slot, double x, long timestamp) {
+        // An exact running mean and variance until there are 1 / ALPHA debits, exponentially weighted after
+        int count = ++counts[slot];
+        double weight = Math.max(ALPHA, 1.0 / count);
+        double delta = x - means[slot];
+        means[slot] += weight * delta;
+        variances[slot] = (1 - weight) * (variances[slot] + weight * delta * delta);
+
+        long last = lastTimestamps[slot];
+        if (timestamp < last) {
+            // A replay: it happened long before the burst being tracked, if any
+            return false;
+        }
+        double decay = last == 0 ? 0 : Math.pow(0.5, (timestamp - last) / (double) BURST_HALF_LIFE_MILLIS);
+        double rate = rates[slot] * decay + 1;
+        rates[slot] = rate;
+        lastTimestamps[slot] = timestamp;
+        if (rate < BURST_COUNT / 2) {
+            bursting[slot] = false;
+        } else if (rate >= BURST_COUNT && !bursting[slot]) {
+            bursting[slot] = true;
+            return true;
+        }
+        return false;
+    }
+
+    /** The slot holding {@code key}, claiming an empty one if it is new. */
+    private int slotFor(long key) {
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = slot(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        return slot;
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        double[] oldMeans = means;
+        double[] oldVariances = variances;
+        double[] oldRates = rates;
+        long[] oldLast = lastTimestamps;
+        int[] oldCounts = counts;
+        boolean[] oldBursting = bursting;
+        int capacity = oldKeys.length * 2;
+        keys = new long[capacity];
+        means = new double[capacity];
+        variances = new double[capacity];
+        rates = new double[capacity];
+        lastTimestamps = new long[capacity];
+        counts = new int[capacity];
+        bursting = new boolean[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                means[slot] = oldMeans[i];
+                variances[slot] = oldVariances[i];
+                rates[slot] = oldRates[i];
+                lastTimestamps[slot] = oldLast[i];
+                counts[slot] = oldCounts[i];
+                bursting[slot] = oldBursting[i];
+            }
+        }
+    }
+
+    /** FNV-1a, seeded by kind so a payee and an account never share a slot; never {@link #EMPTY}. */
+    private static long hash(long seed, CharSequence text) {
+        long hash = seed;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return hash != EMPTY ? hash : 1;
+    }
+
+    private void awaitLoaded() {
+        if (ready) {
+            return;
+        }
+        stateFile.load();
+        ready = true;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        long[] keys;
+        double[] means;
+        double[] variances;
+        double[] rates;
+        long[] lastTimestamps;
+        int[] counts;
+        boolean[] bursting;
+        int size;
+        synchronized (this) {
+            keys = Arrays.copyOf(this.keys, this.keys.length);
+            means = Arrays.copyOf(this.means, this.means.length);
+            variances = Arrays.copyOf(this.variances, this.variances.length);
+            rates = Arrays.copyOf(this.rates, this.rates.length);
+            lastTimestamps = Arrays.copyOf(this.lastTimestamps, this.lastTimestamps.length);
+            counts = Arrays.copyOf(this.counts, this.counts.length);
+            bursting = Arrays.copyOf(this.bursting, this.bursting.length);
+            size = this.size;
+        }
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                // Floats hold a log amount and a count to far better than alerting needs
+                out.writeLong(keys[i]);
+                out.writeFloat((float) means[i]);
+                out.writeFloat((float) variances[i]);
+                out.writeFloat((float) rates[i]);
+                out.writeLong(lastTimestamps[i]);
+                out.writeInt(counts[i]);
+                out.writeBoolean(bursting[i]);
+            }
+        }
+    }
+
+    /**
+     * Runs before any caller touches the table (they wait for the load,
+     * holding the lock), so it fills the arrays without taking the lock itself.
+     */
+    private Integer read(DataInputStream in) throws IOException {
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            Log.w(TAG, "Ignoring anomaly statistics format " + version);
+            return 0;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int slot = slotFor(in.readLong());
+            means[slot] = in.readFloat();
+            variances[slot] = in.readFloat();
+            rates[slot] = in.readFloat();
+            lastTimestamps[slot] = in.readLong();
+            counts[slot] = in.readInt();
+            bursting[slot] = in.readBoolean();
+        }
+        return count;
+    }
+}
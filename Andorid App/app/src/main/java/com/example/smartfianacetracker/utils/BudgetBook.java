@@ -0,0 +1,209 @@
+package com.example.smartfianacetracker.utils;
+
+import com.example.smartfianacetracker.models.Budget;
+import com.example.smartfianacetracker.models.BudgetMapper;
+import com.example.smartfianacetracker.models.BudgetPeriod;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.function.LongSupplier;
+
+/**
+ * The user's budgets as last synced, held in memory so the ingest path can
+ * tell which budgets a debit counts against without a read. A debit counts
+ * against every active budget that lists its merchant name or UPI id, or
+ * whose category is the debit's category; all three compare
+ * case-insensitively.
+ *
+ * <p>{@link ServiceManager} keeps the book current from
+ * {@code users/{uid}/budgets} and moves {@code spent} here as it charges and
+ * refunds, so {@code budgetReached} can go out in the same update as the
+ * server-side increment.
+ *
+ * <p>A budget with a {@link Budget#period} is also charged under the key of
+ * the period the debit falls in ({@link BudgetPeriod#key}), and its
+ * {@code budgetReached} tracks the current period's spend. A new period
+ * starts from nothing under its own key, so rollover writes nothing, and
+ * the first charge in it clears a {@code budgetReached} left over from the
+ * last one.
+ *
+ * <p>Spend only ever moves by server-side increments, so debits from several
+ * devices never lose an update or retry a transaction; the web edits a
+ * budget's settings but never its spend.
+ * Each charge also writes a marker under
+ * {@code budgetCharges/{budgetId}/{chargeId}}, which the rules only accept
+ * if it is not there yet; the marker goes in the same multi-path update as
+ * the increments, so a charge seen twice, by a second device or a replay,
+ * is rejected whole instead of counted twice. The rejected write's local
+ * events are rolled back, which brings the book back in line.
+ */
+public class BudgetBook {
+    private static final String SPENT_PATH = "/" + BudgetMapper.SPENT;
+    private static final String REACHED_PATH = "/" + BudgetMapper.BUDGET_REACHED;
+    private static final String PERIOD_PATH = "/" + BudgetMapper.SPENT_BY_PERIOD + "/";
+    private static final String CHARGES_PATH = BudgetMapper.CHARGES_NODE + "/";
+
+    private final LongSupplier clock;
+    private final TimeZone zone;
+    private Map<String, Budget> budgets = Collections.emptyMap();
+    private boolean loaded;
+
+    public BudgetBook() {
+        this(System::currentTimeMillis, TimeZone.getDefault());
+    }
+
+    BudgetBook(LongSupplier clock, TimeZone zone) {
+        this.clock = clock;
+        this.zone = zone;
+    }
+
+    /** Replaces every budget with those in a {@code budgets} snapshot value. */
+    public synchronized void update(Object snapshotValue) {
+        Map<String, Budget> updated = new LinkedHashMap<>();
+        if (snapshotValue instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) snapshotValue).entrySet()) {
+                if (entry.getValue() instanceof Map) {
+                    updated.put(String.valueOf(entry.getKey()), BudgetMapper.fromMap((Map<?, ?>) entry.getValue()));
+                }
+            }
+        }
+        budgets = updated;
+        loaded = true;
+    }
+
+    /** Empties the book until the next {@link #update}. */
+    public synchronized void clear() {
+        budgets = Collections.emptyMap();
+        loaded = false;
+    }
+
+    /** Whether a snapshot has arrived since the book was built or cleared. */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized Budget get(String budgetId) {
+        return budgets.get(budgetId);
+    }
+
+    /**
+     * What counts against the budget's limit now, in O(1): the current
+     * period's spend for a budget with a period, its lifetime spend
+     * otherwise; 0 for a budget not in the book.
+     */
+    public synchronized double currentSpend(String budgetId) {
+        Budget budget = budgets.get(budgetId);
+        return budget != null ? currentSpend(budget) : 0;
+    }
+
+    /** Ids of the active budgets a debit with these fields counts against; empty if none. */
+    public synchronized List<String> matching(String merchantName, String upiId, String category) {
+        List<String> matched = Collections.emptyList();
+        for (Map.Entry<String, Budget> entry : budgets.entrySet()) {
+            Budget budget = entry.getValue();
+            if (budget.isActive && (containsIgnoreCase(budget.upiIds, upiId)
+                    || containsIgnoreCase(budget.merchants, merchantName)
+                    || (category != null && category.equalsIgnoreCase(budget.category.trim())))) {
+                if (matched.isEmpty()) {
+                    matched = new ArrayList<>(2);
+                }
+                matched.add(entry.getKey());
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Id of the charge a message makes, the same on every device that parses
+     * it: {@code d} for a debit or {@code c} for the credit that takes one
+     * back, then the message's time, amount, account and any reference,
+     * restricted to characters allowed in a key.
+     */
+    public static String chargeId(boolean debit, String accountNumber, double amount, long timestamp,
+                                  CharSequence reference) {
+        StringBuilder id = new StringBuilder(48);
+        id.append(debit ? 'd' : 'c').append('_').append(Long.toString(timestamp, 36))
+                .append('_').append(Math.round(amount * 100)).append('_');
+        appendKeySafe(id, accountNumber);
+        if (reference != null && reference.length() > 0) {
+            id.append('_');
+            appendKeySafe(id, reference);
+        }
+        return id.toString();
+    }
+
+    /**
+     * Adds {@code amount} (negative to refund) to the {@code spent} of each
+     * budget, and for a budget with a period to the spend of the period
+     * holding {@code timestamp}, putting the writes into {@code updates}
+     * relative to {@code users/{uid}}: server-side increments, the
+     * {@code chargeId} marker, and {@code budgetReached} when the budget
+     * crosses its limit either way. A refund never takes either spend below
+     * zero, which the rules reject: it takes off at most what the book
+     * holds. Budgets no longer in the book are skipped, since writing to a
+     * deleted budget would recreate it half-empty.
+     */
+    public synchronized void addSpend(List<String> budgetIds, double amount, long timestamp, String chargeId,
+                                      Map<String, Object> updates, DatabaseWriter writer) {
+        for (int i = 0; i < budgetIds.size(); i++) {
+            String budgetId = budgetIds.get(i);
+            Budget budget = budgets.get(budgetId);
+            if (budget == null) {
+                continue;
+            }
+            double spentDelta = Math.max(amount, -budget.spent);
+            budget.spent += spentDelta;
+            String path = "budgets/" + budgetId;
+            updates.put(path + SPENT_PATH, writer.increment(spentDelta));
+            updates.put(CHARGES_PATH + budgetId + "/" + chargeId, amount);
+            String periodKey = BudgetPeriod.key(budget, timestamp, zone);
+            if (periodKey != null) {
+                Double stored = budget.spentByPeriod.get(periodKey);
+                double periodSpent = stored != null ? stored : 0;
+                double periodDelta = Math.max(amount, -periodSpent);
+                budget.spentByPeriod.put(periodKey, periodSpent + periodDelta);
+                updates.put(path + PERIOD_PATH + periodKey, writer.increment(periodDelta));
+            }
+            boolean reached = budget.amount > 0 && currentSpend(budget) >= budget.amount;
+            if (reached != budget.budgetReached) {
+                budget.budgetReached = reached;
+                updates.put(path + REACHED_PATH, reached);
+            }
+        }
+    }
+
+    private double currentSpend(Budget budget) {
+        String periodKey = BudgetPeriod.key(budget, clock.getAsLong(), zone);
+        if (periodKey == null) {
+            return budget.spent;
+        }
+        Double periodSpent = budget.spentByPeriod.get(periodKey);
+        return periodSpent != null ? periodSpent : 0;
+    }
+
+    private static void appendKeySafe(StringBuilder id, CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-') {
+                id.append(c);
+            }
+        }
+    }
+
+    private static boolean containsIgnoreCase(List<String> values, String value) {
+        if (values == null || value == null || value.trim().isEmpty()) {
+            return false;
+        }
+        String trimmed = value.trim();
+        for (int i = 0; i < values.size(); i++) {
+            String candidate = values.get(i);
+            if (candidate != null && candidate.trim().equalsIgnoreCase(trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only merchant → category table, memory-mapped from
+ * {@code assets/merchant_categories.bin} and searched in place, so opening it
+ * costs nothing and lookups allocate nothing. Layout, big-endian:
+ *
+ * <pre>
+ * int   magic 'CAT1'
+ * int   categoryCount, entryCount
+ * int   kindStart[KIND_COUNT]          first entry of each kind
+ * categoryCount x (byte length, ASCII name)
+ * entryCount x (int keyOffset, short keyLength, short category)
+ * key bytes
+ * </pre>
+ *
+ * Entries are sorted by kind, then by key bytes. VPA prefixes and handles
+ * are lowercase; merchant names are normalized with {@link #normalizeName}.
+ * The file is generated from {@code merchant_categories.tsv} by the test
+ * tree's {@code CategoryDatabaseBuilder}.
+ */
+public final class CategoryDatabase {
+    public static final String ASSET = "merchant_categories.bin";
+    public static final int MAGIC = 0x43415431;
+
+    public static final int KIND_VPA_PREFIX = 0;
+    public static final int KIND_HANDLE = 1;
+    public static final int KIND_NAME = 2;
+    public static final int KIND_COUNT = 3;
+
+    public static final String OTHER = "Other";
+    public static final int NOT_FOUND = -1;
+
+    private static final int ENTRY_SIZE = 8;
+
+    /** No entries: everything is {@link #OTHER}. */
+    public static final CategoryDatabase EMPTY = new CategoryDatabase(new String[0], 0, new int[KIND_COUNT + 1], null);
+
+    private final String[] categories;
+    private final int entriesOffset;
+    private final int[] kindBounds;
+    private final ByteBuffer buffer;
+
+    private CategoryDatabase(String[] categories, int entriesOffset, int[] kindBounds, ByteBuffer buffer) {
+        this.categories = categories;
+        this.entriesOffset = entriesOffset;
+        this.kindBounds = kindBounds;
+        this.buffer = buffer;
+    }
+
+    /** Maps the bundled table. The asset must be stored uncompressed (see build.gradle). */
+    public static CategoryDatabase open(Context context) throws IOException {
+        try (AssetFileDescriptor fd = context.getAssets().openFd(ASSET);
+             FileInputStream in = fd.createInputStream()) {
+            return read(in.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength()));
+        }
+    }
+
+    public static CategoryDatabase open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return read(in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+        }
+    }
+
+    static CategoryDatabase read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 12 + 4 * KIND_COUNT || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a category database");
+        }
+        int categoryCount = buffer.getInt(4);
+        int entryCount = buffer.getInt(8);
+        int[] kindBounds = new int[KIND_COUNT + 1];
+        for (int kind = 0; kind < KIND_COUNT; kind++) {
+            kindBounds[kind] = buffer.getInt(12 + 4 * kind);
+        }
+        kindBounds[KIND_COUNT] = entryCount;
+
+        int position = 12 + 4 * KIND_COUNT;
+        String[] categories = new String[categoryCount];
+        for (int i = 0; i < categoryCount; i++) {
+            int length = buffer.get(position) & 0xff;
+            char[] name = new char[length];
+            for (int c = 0; c < length; c++) {
+                name[c] = (char) (buffer.get(position + 1 + c) & 0xff);
+            }
+            categories[i] = new String(name);
+            position += 1 + length;
+        }
+        if (position + (long) entryCount * ENTRY_SIZE > buffer.limit()) {
+            throw new IOException("Truncated category database");
+        }
+        return new CategoryDatabase(categories, position, kindBounds, buffer);
+    }
+
+    public int entryCount() {
+        return kindBounds[KIND_COUNT];
+    }
+
+    public int categoryCount() {
+        return categories.length;
+    }
+
+    public String categoryName(int category) {
+        return category >= 0 && category < categories.length ? categories[category] : OTHER;
+    }
+
+    /** Category index for an exact key of {@code kind}, or {@link #NOT_FOUND}. */
+    public int find(int kind, char[] key, int length) {
+        int low = kindBounds[kind];
+        int high = kindBounds[kind + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKey(mid, key, length);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return buffer.getShort(entriesOffset + mid * ENTRY_SIZE + 6);
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private int compareKey(int entry, char[] key, int length) {
+        int offset = buffer.getInt(entriesOffset + entry * ENTRY_SIZE);
+        int keyLength = buffer.getShort(entriesOffset + entry * ENTRY_SIZE + 4);
+        int common = Math.min(keyLength, length);
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(offset + i) & 0xff) - key[i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return keyLength - length;
+    }
+
+    /**
+     * Upper-cases letters and digits and collapses every other run into one
+     * space, trimmed: {@code "Big-Bazaar  pune"} becomes {@code "BIG BAZAAR PUNE"}.
+     * Writes into {@code out} and returns the length, at most {@code out.length}.
+     */
+    public static int normalizeName(CharSequence name, char[] out) {
+        int length = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < name.length() && length < out.length; i++) {
+            char c = name.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                c = (char) (c - ('a' - 'A'));
+            } else if (!(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9')) {
+                pendingSpace = length > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                out[length++] = ' ';
+                pendingSpace = false;
+                if (length == out.length) {
+                    break;
+                }
+            }
+            out[length++] = c;
+        }
+        return length;
+    }
+}
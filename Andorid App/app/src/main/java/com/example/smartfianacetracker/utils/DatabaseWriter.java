@@ -0,0 +1,62 @@
+package com.example.smartfianacetracker.utils;
+
+import java.util.Map;
+
+/**
+ * The narrow slice of Realtime Database access the ingest path needs. Paths
+ * are relative to the database root. The production implementation wraps a
+ * {@code DatabaseReference}; tests substitute an in-memory fake.
+ */
+public interface DatabaseWriter {
+    void setValue(String path, Object value, CompletionListener listener);
+
+    void updateChildren(String path, Map<String, Object> updates, CompletionListener listener);
+
+    /**
+     * A value that, written to a path, adds {@code delta} to the number
+     * already there (0 if none) atomically on the server.
+     */
+    Object increment(double delta);
+
+    /** A value that, written to a path, becomes the server's time of the write. */
+    Object serverTimestamp();
+
+    /**
+     * Delivers the value at {@code path} now and after every change, as the
+     * plain maps, lists and numbers a snapshot holds (null when absent),
+     * until the returned handle is closed.
+     */
+    Subscription listen(String path, ValueListener listener);
+
+    /** Reads the value at {@code path} once, in the shape {@link #listen} delivers. */
+    void get(String path, ReadListener listener);
+
+    /**
+     * Reads, once, up to {@code limit} children of {@code path} in order of
+     * their {@code orderByChild} value, from {@code startAt} and, among
+     * children with exactly that value, from key {@code startKey} when it is
+     * not null; children without the field are left out. With a null
+     * {@code orderByChild} they are in key order from {@code startKey}
+     * instead. Delivered as a map of key to value, in that order.
+     */
+    void query(String path, String orderByChild, double startAt, String startKey, int limit,
+               ReadListener listener);
+
+    interface CompletionListener {
+        /** Called once per write; {@code error} is null on success. */
+        void onComplete(Exception error);
+    }
+
+    interface ValueListener {
+        void onValue(Object value);
+    }
+
+    interface ReadListener {
+        /** Called once; {@code error} is null on success. */
+        void onRead(Object value, Exception error);
+    }
+
+    interface Subscription {
+        void close();
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import com.example.smartfianacetracker.models.Transaction;
+import com.example.smartfianacetracker.models.TransactionMapper;
+import com.example.smartfianacetracker.models.TransactionWireV2;
+import com.google.firebase.database.FirebaseDatabase;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pulls changes to the user's transactions into the
+ * {@link LocalTransactionStore}, a page of {@link #PAGE_SIZE} at a time,
+ * without downloading whole subtrees. Every record in {@code debit},
+ * {@code credit} and {@code tx2} carries the server's time of its last
+ * write ({@code uploadedAt}, {@code ua} in v2), stamped by
+ * {@link ServiceManager} and by the web app, statement imports included, so
+ * each collection keeps a cursor on the highest one pulled and asks only
+ * for children ordered after it. The rules declare the matching
+ * {@code .indexOn}.
+ *
+ * <p>The first sync of a collection walks it in key order instead, since
+ * records written before {@code uploadedAt} existed have none, and then
+ * carries on from the highest value seen. Each later pull starts
+ * {@link #OVERLAP_MILLIS} before the cursor, because a write stamped just
+ * before another can land just after it; a record only replaces the stored
+ * one when it was written later. Every page goes into the store as one batch together with the
+ * cursor it reaches, so an interrupted sync resumes from the last page
+ * stored.
+ *
+ * <p>Removals are not seen. v1 and v2 copies of a record the app wrote are
+ * stored once, under {@link #localId}, and links between records are
+ * rewritten to local ids too.
+ *
+ * <p>A sync is requested when the app starts for a signed-in user, on
+ * sign-in, and each time the history screen is shown.
+ */
+public class DeltaSync {
+    private static final String TAG = "DeltaSync";
+    static final int PAGE_SIZE = 200;
+    static final long OVERLAP_MILLIS = 5_000;
+    private static final long READ_TIMEOUT_SECONDS = 30;
+    private static final String[] COLLECTIONS = {
+            Transaction.DEBIT_NODE, Transaction.CREDIT_NODE, TransactionWireV2.NODE};
+    private static DeltaSync instance;
+
+    private final DatabaseWriter databaseWriter;
+    private final PreferenceManager preferenceManager;
+    private final LocalTransactionStore store;
+    private final ExecutorService syncExecutor;
+    private final AtomicBoolean syncPending = new AtomicBoolean();
+    // v2 payee entries by id, read as records first need them
+    private final Map<String, Object> payees = new HashMap<>();
+    private String payeesUserId;
+
+    public DeltaSync(DatabaseWriter databaseWriter, PreferenceManager preferenceManager,
+                     LocalTransactionStore store) {
+        this.databaseWriter = databaseWriter;
+        this.preferenceManager = preferenceManager;
+        this.store = store;
+        syncExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "DeltaSync");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public static synchronized DeltaSync getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new DeltaSync(new FirebaseDatabaseWriter(FirebaseDatabase.getInstance().getReference()),
+                    PreferenceManager.getInstance(appContext), LocalTransactionStore.getInstance(appContext));
+        }
+        return instance;
+    }
+
+    /** Runs a sync in the background, unless one is already waiting to start. */
+    public void requestSync() {
+        if (!syncPending.compareAndSet(false, true)) {
+            return;
+        }
+        syncExecutor.execute(() -> {
+            syncPending.set(false);
+            try {
+                int applied = syncNow();
+                Log.d(TAG, "Synced " + applied + " changed records");
+            } catch (IOException e) {
+                Log.w(TAG, "Sync stopped; the next one resumes from the last page stored", e);
+            }
+        });
+    }
+
+    /**
+     * Brings every collection up to date and returns how many records
+     * changed locally. Waits on the network, so never call it on the main
+     * thread.
+     */
+    public synchronized int syncNow() throws IOException {
+        String userId = preferenceManager.getUserId();
+        if (userId == null) {
+            return 0;
+        }
+        if (!userId.equals(store.owner())) {
+            store.reset(userId);
+        }
+        if (!userId.equals(payeesUserId)) {
+            payees.clear();
+            payeesUserId = userId;
+        }
+        int applied = 0;
+        for (String collection : COLLECTIONS) {
+            applied += sync(userId, collection);
+        }
+        return applied;
+    }
+
+    /**
+     * Id a record is stored under locally: the v2 key of a record the app
+     * wrote, whichever format it was pulled in, and the key as it is for
+     * anything else, such as the web app's push keys.
+     */
+    static String localId(String collection, String key) {
+        String prefix = collection + "_";
+        if (!collection.equals(TransactionWireV2.NODE) && key.startsWith(prefix)) {
+            try {
+                return TransactionWireV2.key(Long.parseLong(key.substring(prefix.length())));
+            } catch (NumberFormatException e) {
+                return key;
+            }
+        }
+        return key;
+    }
+
+    private int sync(String userId, String collection) throws IOException {
+        String path = "users/" + userId + "/" + collection;
+        String field = collection.equals(TransactionWireV2.NODE)
+                ? TransactionWireV2.UPLOADED_AT : TransactionMapper.UPLOADED_AT;
+        int applied = 0;
+        LocalTransactionStore.Cursor cursor = store.cursor(collection);
+
+        // First pass, by key
+        while (cursor == null || !cursor.scanned) {
+            String after = cursor != null ? cursor.key : null;
+            Map<?, ?> page = read(userId, path, collection, null, 0, after);
+            LocalTransactionStore.Batch batch = new LocalTransactionStore.Batch();
+            String last = after;
+            double high = cursor != null ? cursor.value : 0;
+            for (Map.Entry<?, ?> child : page.entrySet()) {
+                String key = String.valueOf(child.getKey());
+                if (key.equals(after)) {
+                    continue;
+                }
+                last = key;
+                high = Math.max(high, uploadedAt(child.getValue(), field));
+                add(batch, collection, key, child.getValue());
+            }
+            cursor = new LocalTransactionStore.Cursor(page.size() < PAGE_SIZE, last, high);
+            store.apply(batch.advance(collection, cursor));
+            applied += batch.size();
+        }
+
+        // Then everything stamped since, oldest first
+        double from = cursor.value - OVERLAP_MILLIS;
+        String fromKey = null;
+        while (true) {
+            Map<?, ?> page = read(userId, path, collection, field, from, fromKey);
+            LocalTransactionStore.Batch batch = new LocalTransactionStore.Batch();
+            double high = cursor.value;
+            String last = cursor.key;
+            for (Map.Entry<?, ?> child : page.entrySet()) {
+                String key = String.valueOf(child.getKey());
+                double value = uploadedAt(child.getValue(), field);
+                if (key.equals(fromKey) && value == from) {
+                    continue;
+                }
+                from = value;
+                last = key;
+                high = Math.max(high, value);
+                add(batch, collection, key, child.getValue());
+            }
+            fromKey = last;
+            if (batch.size() > 0 || high != cursor.value) {
+                cursor = new LocalTransactionStore.Cursor(true, last, high);
+                store.apply(batch.advance(collection, cursor));
+                applied += batch.size();
+            }
+            if (page.size() < PAGE_SIZE) {
+                return applied;
+            }
+        }
+    }
+
+    /** Decodes a child into {@code batch} unless the store already has it, or a later write of it. */
+    private void add(LocalTransactionStore.Batch batch, String collection, String key, Object value) {
+        if (!(value instanceof Map)) {
+            return;
+        }
+        Map<?, ?> map = (Map<?, ?>) value;
+        Transaction transaction;
+        if (collection.equals(TransactionWireV2.NODE)) {
+            Object payeeId = map.get(TransactionWireV2.PAYEE);
+            transaction = TransactionWireV2.decode(map, payees);
+            transaction.payeeId = payeeId instanceof String ? (String) payeeId : null;
+        } else {
+            transaction = TransactionMapper.fromMap(map, collection.equals(Transaction.DEBIT_NODE));
+            transaction.reversedBy = localLink(transaction.reversedBy);
+            transaction.reversalOf = localLink(transaction.reversalOf);
+            transaction.internalTransfer = localLink(transaction.internalTransfer);
+        }
+        String id = localId(collection, key);
+        Transaction stored = store.get(id);
+        if (stored != null && !isLater(transaction.uploadedAt, stored.uploadedAt)) {
+            return;
+        }
+        batch.put(id, transaction);
+    }
+
+    /** A v1 link, {@code <node>_<millis>}, as the local id of the record it points at. */
+    private static String localLink(String key) {
+        if (key == null) {
+            return null;
+        }
+        return localId(key.startsWith(Transaction.DEBIT_NODE) ? Transaction.DEBIT_NODE : Transaction.CREDIT_NODE, key);
+    }
+
+    private static boolean isLater(Long uploadedAt, Long storedUploadedAt) {
+        return uploadedAt != null && (storedUploadedAt == null || uploadedAt > storedUploadedAt);
+    }
+
+    /** Reads the payee entries a page of v2 records needs and does not have yet, all at once. */
+    private void readPayees(String userId, Map<?, ?> page) throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (Object value : page.values()) {
+            Object payeeId = value instanceof Map ? ((Map<?, ?>) value).get(TransactionWireV2.PAYEE) : null;
+            if (payeeId instanceof String && !payees.containsKey(payeeId) && !ids.contains(payeeId)) {
+                ids.add((String) payeeId);
+            }
+        }
+        List<CompletableFuture<Object>> reads = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            CompletableFuture<Object> read = new CompletableFuture<>();
+            databaseWriter.get("users/" + userId + "/" + TransactionWireV2.PAYEE_NODE + "/" + id,
+                    (value, error) -> complete(read, value, error));
+            reads.add(read);
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            payees.put(ids.get(i), await(reads.get(i)));
+        }
+    }
+
+    /** A page of {@code collection}, with the payees of any v2 records in it read. */
+    private Map<?, ?> read(String userId, String path, String collection, String orderByChild, double startAt,
+                           String startKey) throws IOException {
+        CompletableFuture<Object> read = new CompletableFuture<>();
+        databaseWriter.query(path, orderByChild, startAt, startKey, PAGE_SIZE,
+                (value, error) -> complete(read, value, error));
+        Object value = await(read);
+        Map<?, ?> page = value instanceof Map ? (Map<?, ?>) value : Collections.emptyMap();
+        if (collection.equals(TransactionWireV2.NODE)) {
+            readPayees(userId, page);
+        }
+        return page;
+    }
+
+    private static void complete(CompletableFuture<Object> read, Object value, Exception error) {
+        if (error != null) {
+            read.completeExceptionally(error);
+        } else {
+            read.complete(value);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> read) throws IOException {
+        try {
+            return read.get(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException("Read failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Read timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    private static double uploadedAt(Object value, String field) {
+        Object uploadedAt = value instanceof Map ? ((Map<?, ?>) value).get(field) : null;
+        return uploadedAt instanceof Number ? ((Number) uploadedAt).doubleValue() : 0;
+    }
+}
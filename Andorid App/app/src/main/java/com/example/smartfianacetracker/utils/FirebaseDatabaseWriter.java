@@ -0,0 +1,97 @@
+package com.example.smartfianacetracker.utils;
+
+import android.util.Log;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class FirebaseDatabaseWriter implements DatabaseWriter {
+    private static final String TAG = "FirebaseDatabaseWriter";
+    private final DatabaseReference root;
+
+    public FirebaseDatabaseWriter(DatabaseReference root) {
+        this.root = root;
+    }
+
+    @Override
+    public void setValue(String path, Object value, CompletionListener listener) {
+        root.child(path).setValue(value, (error, ref) ->
+                listener.onComplete(error != null ? error.toException() : null));
+    }
+
+    @Override
+    public void updateChildren(String path, Map<String, Object> updates, CompletionListener listener) {
+        root.child(path).updateChildren(updates, (error, ref) ->
+                listener.onComplete(error != null ? error.toException() : null));
+    }
+
+    @Override
+    public Object increment(double delta) {
+        return ServerValue.increment(delta);
+    }
+
+    @Override
+    public Object serverTimestamp() {
+        return ServerValue.TIMESTAMP;
+    }
+
+    @Override
+    public Subscription listen(String path, ValueListener listener) {
+        DatabaseReference ref = root.child(path);
+        ValueEventListener eventListener = ref.addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                listener.onValue(snapshot.getValue());
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                Log.e(TAG, "Listening to " + path + " was cancelled", error.toException());
+            }
+        });
+        return () -> ref.removeEventListener(eventListener);
+    }
+
+    @Override
+    public void get(String path, ReadListener listener) {
+        root.child(path).get().addOnCompleteListener(task -> {
+            if (task.isSuccessful()) {
+                listener.onRead(task.getResult().getValue(), null);
+            } else {
+                listener.onRead(null, task.getException());
+            }
+        });
+    }
+
+    @Override
+    public void query(String path, String orderByChild, double startAt, String startKey, int limit,
+                      ReadListener listener) {
+        Query query;
+        if (orderByChild == null) {
+            query = root.child(path).orderByKey();
+            if (startKey != null) {
+                query = query.startAt(startKey);
+            }
+        } else {
+            query = root.child(path).orderByChild(orderByChild);
+            query = startKey != null ? query.startAt(startAt, startKey) : query.startAt(startAt);
+        }
+        query.limitToFirst(limit).get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                listener.onRead(null, task.getException());
+                return;
+            }
+            // getValue() would give a HashMap and lose the order
+            Map<String, Object> children = new LinkedHashMap<>();
+            for (DataSnapshot child : task.getResult().getChildren()) {
+                children.put(child.getKey(), child.getValue());
+            }
+            listener.onRead(children, null);
+        });
+    }
+}
@@ -3,10 +3,8 @@ package com.example.smartfianacetracker.utils;
 import android.content.Context;
 import android.util.Log;
 import androidx.annotation.NonNull;
-import com.google.android.gms.auth.api.signin.GoogleSignIn;
 import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
 import com.google.android.gms.auth.api.signin.GoogleSignInClient;
-import com.google.android.gms.auth.api.signin.GoogleSignInOptions;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.AuthCredential;
@@ -22,23 +20,24 @@ import java.util.Map;
 
 public class FirebaseManager {
     private static final String TAG = "FirebaseManager";
+    private static final String USER_MARKER_NODE = "service_status";
     private final FirebaseAuth firebaseAuth;
     private final DatabaseReference databaseReference;
     private final PreferenceManager preferenceManager;
-    private final GoogleSignInClient googleSignInClient;
+    private final StartupOrchestrator startupOrchestrator;
+    private final TokenManager tokenManager;
+    private final ServiceManager serviceManager;
+    private final DeltaSync deltaSync;
     private static FirebaseManager instance;
 
     private FirebaseManager(Context context) {
         firebaseAuth = FirebaseAuth.getInstance();
         databaseReference = FirebaseDatabase.getInstance().getReference();
-        preferenceManager = new PreferenceManager(context);
-
-        // Configure Google Sign In with web client ID
-        GoogleSignInOptions gso = new GoogleSignInOptions.Builder(GoogleSignInOptions.DEFAULT_SIGN_IN)
-                .requestIdToken("687898768842-016uetfn4soao9j866tbn1hg50d2dr1k.apps.googleusercontent.com")
-                .requestEmail()
-                .build();
-        googleSignInClient = GoogleSignIn.getClient(context, gso);
+        preferenceManager = PreferenceManager.getInstance(context);
+        startupOrchestrator = StartupOrchestrator.getInstance(context);
+        tokenManager = TokenManager.getInstance(context);
+        serviceManager = ServiceManager.getInstance(context);
+        deltaSync = DeltaSync.getInstance(context);
     }
 
     public static synchronized FirebaseManager getInstance(Context context) {
@@ -53,27 +52,9 @@ public class FirebaseManager {
                 .continueWithTask(task -> {
                     if (task.isSuccessful() && task.getResult() != null) {
                         FirebaseUser user = task.getResult().getUser();
-                        return initializeUserData(user);
+                        return bootstrapUser(user, initializeUserData(user));
                     }
                     throw task.getException();
-                })
-                .continueWithTask(task -> {
-                    if (task.isSuccessful() && firebaseAuth.getCurrentUser() != null) {
-                        return firebaseAuth.getCurrentUser().getIdToken(true);
-                    }
-                    throw task.getException();
-                })
-                .continueWith(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        String token = task.getResult().getToken();
-                        FirebaseUser user = firebaseAuth.getCurrentUser();
-                        preferenceManager.saveUserSession(
-                            user.getUid(),
-                            user.getEmail(),
-                            token
-                        );
-                    }
-                    return null;
                 });
     }
 
@@ -81,19 +62,22 @@ public class FirebaseManager {
         return firebaseAuth.signInWithEmailAndPassword(email, password)
                 .continueWithTask(task -> {
                     if (task.isSuccessful() && firebaseAuth.getCurrentUser() != null) {
-                        return firebaseAuth.getCurrentUser().getIdToken(true);
+                        return tokenManager.refresh(false);
                     }
                     throw task.getException();
                 })
                 .continueWith(task -> {
                     if (task.isSuccessful() && task.getResult() != null) {
-                        String token = task.getResult().getToken();
+                        String token = task.getResult();
                         FirebaseUser user = firebaseAuth.getCurrentUser();
                         preferenceManager.saveUserSession(
                             user.getUid(),
                             user.getEmail(),
                             token
                         );
+                        serviceManager.watchBudgets();
+                        // Brings down what the web app and other devices wrote
+                        deltaSync.requestSync();
                     }
                     return null;
                 });
@@ -112,39 +96,50 @@ public class FirebaseManager {
                     if (task.isSuccessful() && task.getResult() != null) {
                         FirebaseUser user = task.getResult().getUser();
                         Log.d(TAG, "signInWithGoogle: Firebase auth successful");
-                        return checkAndInitializeUserData(user);
+                        return bootstrapUser(user, checkAndInitializeUserData(user));
                     }
                     Log.e(TAG, "signInWithGoogle: Firebase auth failed", task.getException());
                     throw task.getException();
-                })
-                .continueWithTask(task -> {
-                    if (task.isSuccessful() && firebaseAuth.getCurrentUser() != null) {
-                        Log.d(TAG, "signInWithGoogle: Getting ID token");
-                        return firebaseAuth.getCurrentUser().getIdToken(true);
-                    }
-                    Log.e(TAG, "signInWithGoogle: User data initialization failed", task.getException());
-                    throw task.getException();
-                })
+                });
+    }
+
+    /**
+     * Runs the token fetch alongside the profile check/initialization instead
+     * of after it, then saves the session once both have finished.
+     */
+    private Task<Void> bootstrapUser(FirebaseUser user, Task<Void> profileTask) {
+        Task<String> tokenTask = tokenManager.refresh(false);
+        return Tasks.whenAll(profileTask, tokenTask)
                 .continueWith(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        String token = task.getResult().getToken();
-                        FirebaseUser user = firebaseAuth.getCurrentUser();
-                        Log.d(TAG, "signInWithGoogle: Saving user session");
-                        preferenceManager.saveUserSession(
-                            user.getUid(),
-                            user.getEmail(),
-                            token
-                        );
-                    } else {
-                        Log.e(TAG, "signInWithGoogle: Token retrieval failed", task.getException());
+                    if (!profileTask.isSuccessful()) {
+                        Log.e(TAG, "bootstrapUser: User data initialization failed", profileTask.getException());
+                        throw profileTask.getException();
+                    }
+                    if (!tokenTask.isSuccessful()) {
+                        Log.e(TAG, "bootstrapUser: Token retrieval failed", tokenTask.getException());
+                        throw tokenTask.getException();
                     }
+                    Log.d(TAG, "bootstrapUser: Saving user session");
+                    preferenceManager.saveUserSession(
+                        user.getUid(),
+                        user.getEmail(),
+                        tokenTask.getResult()
+                    );
+                    serviceManager.watchBudgets();
+                    // Brings down what the web app and other devices wrote
+                    deltaSync.requestSync();
                     return null;
                 });
     }
 
+    /**
+     * Probes the small service_status marker that both the web and Android
+     * initializers write, rather than downloading the whole user subtree.
+     */
     private Task<Void> checkAndInitializeUserData(FirebaseUser user) {
         Log.d(TAG, "checkAndInitializeUserData: Checking user data");
         return databaseReference.child("users").child(user.getUid())
+                .child(USER_MARKER_NODE)
                 .get()
                 .continueWithTask(task -> {
                     if (task.isSuccessful()) {
@@ -168,24 +163,20 @@ public class FirebaseManager {
         userData.put("photoUrl", user.getPhotoUrl() != null ? user.getPhotoUrl().toString() : null);
         userData.put("createdAt", System.currentTimeMillis());
         userData.put("lastLogin", System.currentTimeMillis());
-        userData.put("budgets", new HashMap<>());
-        userData.put("credit", new HashMap<>());
-        userData.put("debit", new HashMap<>());
-        userData.put("service_status", "initialized_" + System.currentTimeMillis());
-        
-        Map<String, String> transactions = new HashMap<>();
-        transactions.put("test", "connection_test");
-        userData.put("transactions", transactions);
+        userData.put(USER_MARKER_NODE, "initialized_" + System.currentTimeMillis());
+        userData.put("transactions/test", "connection_test");
 
+        // Multi-path update so a stale existence check can never wipe existing history
         Log.d(TAG, "initializeUserData: Creating new user data");
         return databaseReference.child("users").child(user.getUid())
-                .setValue(userData)
+                .updateChildren(userData)
                 .addOnFailureListener(e -> Log.e(TAG, "initializeUserData: Failed to initialize user data", e));
     }
 
     public Task<Void> signOut() {
-        return googleSignInClient.signOut()
+        return getGoogleSignInClient().signOut()
                 .continueWith(task -> {
+                    tokenManager.clear();
                     firebaseAuth.signOut();
                     preferenceManager.clearSession();
                     return null;
@@ -196,8 +187,13 @@ public class FirebaseManager {
         return firebaseAuth.getCurrentUser();
     }
 
+    /** Cached ID token for authenticated calls; only hits the network near expiry. */
+    public Task<String> getIdToken() {
+        return tokenManager.getToken();
+    }
+
     public GoogleSignInClient getGoogleSignInClient() {
-        return googleSignInClient;
+        return startupOrchestrator.getGoogleSignInClient();
     }
 
     public boolean isLoggedIn() {
@@ -0,0 +1,798 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import com.example.smartfianacetracker.models.Transaction;
+import com.example.smartfianacetracker.models.TransactionWireV2;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * On-device copy of the user's transaction history, kept current by
+ * {@link DeltaSync} so nothing on the phone has to download the whole
+ * {@code debit}, {@code credit} or {@code tx2} subtree. Records are held by
+ * a local id that the v1 and v2 copies of one record share (see
+ * {@link DeltaSync#localId}), next to each collection's sync cursor.
+ *
+ * <p>Changes arrive as {@link Batch batches}. Each is appended to
+ * {@code transactions.log} as one length-prefixed, checksummed entry holding
+ * its records and the cursors they advance to, so after a crash a batch is
+ * either all there or not at all, and a cursor is never ahead of the records
+ * behind it. A torn last entry is cut off on load. Once most records in the
+ * log have been superseded it is rewritten as a single entry.
+ *
+ * <p>For the history screen the store keeps every record in time order,
+ * newest first, and again per type, mode and account. {@link #page} walks
+ * the smallest index a {@link Filter} allows from a {@link PageKey}, so a
+ * page costs the same however many records come before it or are held in
+ * all. Messages the phone parses go in once they are stored, before the
+ * sync brings back their server copy; they are added on the store's own
+ * thread, so the receiver never waits for the log to load.
+ *
+ * <p>Loading the log and building the indexes costs time in proportion to
+ * the history, so it happens in the background. Meanwhile pages are served
+ * from {@code transactions.head}: the newest {@link #HEAD_SIZE} records and
+ * the modes and accounts in use, rewritten whenever the log has caught up
+ * with memory. It records the log length it matches and is ignored when
+ * the log has moved on.
+ *
+ * <p>The store holds one user's records; {@link #reset} starts it over for
+ * another.
+ */
+public class LocalTransactionStore implements TransactionIngestor.Listener {
+    private static final String TAG = "LocalTransactionStore";
+    private static final String FILE_NAME = "transactions.log";
+    private static final String HEAD_FILE_NAME = "transactions.head";
+    private static final int FORMAT_VERSION = 1;
+    /** Newest records kept in the head: a few screens of history. */
+    static final int HEAD_SIZE = 200;
+    /** Superseded records the log may hold beyond the live ones before it is rewritten. */
+    private static final int COMPACT_SLACK = 1_000;
+    private static LocalTransactionStore instance;
+
+    /** Where a collection's sync has got to; see {@link DeltaSync}. */
+    public static final class Cursor {
+        /** Whether the first full pass, in key order, has finished. */
+        public final boolean scanned;
+        /** Last key pulled, or null. */
+        public final String key;
+        /** Highest {@code uploadedAt} pulled. */
+        public final double value;
+
+        public Cursor(boolean scanned, String key, double value) {
+            this.scanned = scanned;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /** Records and cursors to apply together. */
+    public static final class Batch {
+        final Map<String, Transaction> records = new LinkedHashMap<>();
+        final Map<String, Cursor> cursors = new HashMap<>(2);
+        // Set only on the batch a rewritten log starts with
+        String owner;
+
+        public Batch put(String id, Transaction transaction) {
+            records.put(id, transaction);
+            return this;
+        }
+
+        public Batch advance(String collection, Cursor cursor) {
+            cursors.put(collection, cursor);
+            return this;
+        }
+
+        public int size() {
+            return records.size();
+        }
+    }
+
+    /** Where a record sorts: newest first, then by id. Pages continue after one. */
+    public static final class PageKey implements Comparable<PageKey> {
+        public final long timestamp;
+        public final String id;
+
+        public PageKey(long timestamp, String id) {
+            this.timestamp = timestamp;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(PageKey other) {
+            int byTime = Long.compare(other.timestamp, timestamp);
+            return byTime != 0 ? byTime : id.compareTo(other.id);
+        }
+    }
+
+    /** Which records a page holds; a null field matches anything. */
+    public static final class Filter {
+        public static final Filter ALL = new Filter(null, null, null);
+
+        public final Boolean debit;
+        public final String mode;
+        public final String account;
+
+        public Filter(Boolean debit, String mode, String account) {
+            this.debit = debit;
+            this.mode = mode;
+            this.account = account;
+        }
+
+        boolean matches(Transaction transaction) {
+            return (debit == null || debit == transaction.isDebit)
+                    && (mode == null || mode.equals(transaction.transactionMode))
+                    && (account == null || account.equals(transaction.accountNumber));
+        }
+    }
+
+    public static final class Item {
+        public final String id;
+        /** Never changed in place; a changed record is a new instance. */
+        public final Transaction transaction;
+
+        Item(String id, Transaction transaction) {
+            this.id = id;
+            this.transaction = transaction;
+        }
+    }
+
+    public static final class Page {
+        public final List<Item> items;
+        /** Where the next page starts, or null when there are no more. */
+        public final PageKey next;
+
+        Page(List<Item> items, PageKey next) {
+            this.items = items;
+            this.next = next;
+        }
+    }
+
+    /** Told after every change, on the thread that made it; must not block. */
+    public interface ChangeListener {
+        void onStoreChanged();
+    }
+
+    /** Like {@link ChangeListener}, but told which records changed, with the store locked. */
+    public interface RecordListener {
+        /** Records added or replaced, by id. */
+        void onRecordsPut(Map<String, Transaction> records);
+
+        /** Every record was dropped by {@link #reset}. */
+        void onCleared();
+    }
+
+    /** Records, cursors and indexes, as built from the log. */
+    private static final class State {
+        final Map<String, Transaction> records = new HashMap<>();
+        final Map<String, Cursor> cursors = new HashMap<>();
+        String owner;
+        // Records written to the log, live or superseded
+        int loggedRecords;
+        final TreeSet<PageKey> byTime = new TreeSet<>();
+        final Map<String, TreeSet<PageKey>> byType = new HashMap<>(4);
+        final TreeMap<String, TreeSet<PageKey>> byMode = new TreeMap<>();
+        final TreeMap<String, TreeSet<PageKey>> byAccount = new TreeMap<>();
+
+        /** Stores {@code transaction} under {@code id}, moving it in every index. */
+        void put(String id, Transaction transaction) {
+            Transaction previous = records.put(id, transaction);
+            if (previous != null) {
+                PageKey key = new PageKey(previous.timestamp, id);
+                byTime.remove(key);
+                remove(byType, previous.node(), key);
+                remove(byMode, previous.transactionMode, key);
+                remove(byAccount, previous.accountNumber, key);
+            }
+            PageKey key = new PageKey(transaction.timestamp, id);
+            byTime.add(key);
+            add(byType, transaction.node(), key);
+            add(byMode, transaction.transactionMode, key);
+            add(byAccount, transaction.accountNumber, key);
+        }
+    }
+
+    /** The newest records, and the modes and accounts of them all; see {@link #HEAD_SIZE}. */
+    private static final class Head {
+        final List<Item> items;
+        /** Whether {@link #items} is every record. */
+        final boolean complete;
+        final List<String> modes;
+        final List<String> accounts;
+
+        Head(List<Item> items, boolean complete, List<String> modes, List<String> accounts) {
+            this.items = items;
+            this.complete = complete;
+            this.modes = modes;
+            this.accounts = accounts;
+        }
+
+        /** Like {@link LocalTransactionStore#page}, or null when the head does not reach far enough. */
+        Page page(Filter filter, PageKey after, int limit) {
+            List<Item> page = new ArrayList<>(Math.min(limit, items.size()));
+            for (Item item : items) {
+                PageKey key = new PageKey(item.transaction.timestamp, item.id);
+                if ((after != null && key.compareTo(after) <= 0) || !filter.matches(item.transaction)) {
+                    continue;
+                }
+                page.add(item);
+                if (page.size() == limit) {
+                    return new Page(page, key);
+                }
+            }
+            return complete ? new Page(page, null) : null;
+        }
+    }
+
+    private final File file;
+    private final File headFile;
+    private final ExecutorService ioExecutor;
+    private final Future<Head> head;
+    private final Future<State> loaded;
+    private final AtomicBoolean headPending = new AtomicBoolean();
+
+    // Null until the log has been read
+    private State state;
+    // Batches applied in memory that are not in the log yet
+    private int unlogged;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<RecordListener> recordListeners = new CopyOnWriteArrayList<>();
+
+    /** A null {@code directory} keeps the store in memory only. */
+    public LocalTransactionStore(File directory) {
+        file = directory != null ? new File(directory, FILE_NAME) : null;
+        headFile = directory != null ? new File(directory, HEAD_FILE_NAME) : null;
+        ioExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "LocalTransactionStore");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        // The head first: it is small, and is what the first pages wait for
+        head = ioExecutor.submit(this::readHead);
+        loaded = ioExecutor.submit(this::load);
+    }
+
+    public static synchronized LocalTransactionStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalTransactionStore(context.getApplicationContext().getFilesDir());
+        }
+        return instance;
+    }
+
+    /**
+     * Applies {@code batch} in memory at once and appends it to the log in
+     * the background; the returned future completes once it is on disk.
+     */
+    public synchronized Future<?> apply(Batch batch) {
+        ensureLoaded();
+        for (Map.Entry<String, Transaction> entry : batch.records.entrySet()) {
+            state.put(entry.getKey(), entry.getValue());
+        }
+        state.cursors.putAll(batch.cursors);
+        state.loggedRecords += batch.records.size();
+        if (!batch.records.isEmpty()) {
+            for (RecordListener listener : recordListeners) {
+                listener.onRecordsPut(batch.records);
+            }
+        }
+        Future<?> written;
+        if (file == null) {
+            written = ioExecutor.submit(() -> { });
+        } else {
+            unlogged++;
+            written = ioExecutor.submit(() -> append(batch));
+            if (state.loggedRecords > 2 * state.records.size() + COMPACT_SLACK) {
+                state.loggedRecords = state.records.size();
+                ioExecutor.execute(this::compact);
+            }
+        }
+        notifyChanged();
+        return written;
+    }
+
+    /**
+     * Adds a debit or credit the phone has just stored, under the id the sync
+     * will later bring its server copy back as, on the store's thread once
+     * the log is loaded. Records of a user the store does not hold yet are
+     * dropped again by the sync's {@link #reset}.
+     */
+    @Override
+    public void onTransactionStored(TransactionRecord record, long keyMillis) {
+        if (keyMillis == 0) {
+            return;
+        }
+        String id = TransactionWireV2.key(keyMillis);
+        // Converted here: the record is reused once this returns
+        Transaction transaction = ServiceManager.toTransaction(record);
+        ioExecutor.execute(() -> {
+            synchronized (this) {
+                if (get(id) == null) {
+                    apply(new Batch().put(id, transaction));
+                }
+            }
+        });
+    }
+
+    /**
+     * Up to {@code limit} records matching {@code filter}, newest first,
+     * starting after {@code after}, or from the newest when it is null.
+     * Served from the head while the log is loading, when it reaches.
+     */
+    public Page page(Filter filter, PageKey after, int limit) {
+        Page fromHead = loaded.isDone() ? null : headPage(filter, after, limit);
+        return fromHead != null ? fromHead : loadedPage(filter, after, limit);
+    }
+
+    /** The page as the head saved at startup has it; null without a head, or past its end. */
+    Page headPage(Filter filter, PageKey after, int limit) {
+        Head saved = savedHead();
+        return saved != null ? saved.page(filter, after, limit) : null;
+    }
+
+    private synchronized Page loadedPage(Filter filter, PageKey after, int limit) {
+        ensureLoaded();
+        NavigableSet<PageKey> index = state.byTime;
+        if (filter.debit != null) {
+            index = smaller(index,
+                    state.byType.get(filter.debit ? Transaction.DEBIT_NODE : Transaction.CREDIT_NODE));
+        }
+        if (filter.mode != null) {
+            index = smaller(index, state.byMode.get(filter.mode));
+        }
+        if (filter.account != null) {
+            index = smaller(index, state.byAccount.get(filter.account));
+        }
+        List<Item> items = new ArrayList<>(Math.min(limit, index.size()));
+        // Only the fields the chosen index does not cover can skip records here
+        for (PageKey key : after != null ? index.tailSet(after, false) : index) {
+            Transaction transaction = state.records.get(key.id);
+            if (!filter.matches(transaction)) {
+                continue;
+            }
+            items.add(new Item(key.id, transaction));
+            if (items.size() == limit) {
+                return new Page(items, key);
+            }
+        }
+        return new Page(items, null);
+    }
+
+    /** Accounts the records are on, sorted. */
+    public List<String> accounts() {
+        Head saved = loaded.isDone() ? null : savedHead();
+        if (saved != null) {
+            return new ArrayList<>(saved.accounts);
+        }
+        synchronized (this) {
+            ensureLoaded();
+            return new ArrayList<>(state.byAccount.keySet());
+        }
+    }
+
+    /** Modes the records were paid by, sorted. */
+    public List<String> modes() {
+        Head saved = loaded.isDone() ? null : savedHead();
+        if (saved != null) {
+            return new ArrayList<>(saved.modes);
+        }
+        synchronized (this) {
+            ensureLoaded();
+            return new ArrayList<>(state.byMode.keySet());
+        }
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Adds {@code listener} and tells it of every record already held, before any later change. */
+    public synchronized void addRecordListener(RecordListener listener) {
+        ensureLoaded();
+        recordListeners.add(listener);
+        if (!state.records.isEmpty()) {
+            listener.onRecordsPut(Collections.unmodifiableMap(state.records));
+        }
+    }
+
+    /** User whose records the store holds; null while it has never held any. */
+    public synchronized String owner() {
+        ensureLoaded();
+        return state.owner;
+    }
+
+    /** Empties the store, cursors included, to hold {@code owner}'s records from now on. */
+    public synchronized void reset(String owner) {
+        ensureLoaded();
+        state = new State();
+        state.owner = owner;
+        if (file != null) {
+            ioExecutor.execute(this::compact);
+        }
+        for (RecordListener listener : recordListeners) {
+            listener.onCleared();
+        }
+        notifyChanged();
+    }
+
+    /** The cursor last applied for {@code collection}, or null before its first sync. */
+    public synchronized Cursor cursor(String collection) {
+        ensureLoaded();
+        return state.cursors.get(collection);
+    }
+
+    public synchronized Transaction get(String id) {
+        ensureLoaded();
+        return state.records.get(id);
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return state.records.size();
+    }
+
+    /** Completes once every batch applied so far has been written. */
+    Future<?> flush() {
+        return ioExecutor.submit(() -> { });
+    }
+
+    private void ensureLoaded() {
+        if (state != null) {
+            return;
+        }
+        try {
+            state = loaded.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Failed to read the transaction log; starting empty", e.getCause());
+            state = new State();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.w(TAG, "Interrupted reading the transaction log; starting empty");
+            state = new State();
+        }
+    }
+
+    /** The head read at startup, or null when there was none that matched the log. */
+    private Head savedHead() {
+        try {
+            return head.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /** Reads the log and builds the indexes, on the store's thread. */
+    private State load() throws IOException {
+        State built = new State();
+        for (Batch batch : readAll()) {
+            if (batch.owner != null) {
+                built.owner = batch.owner;
+            }
+            for (Map.Entry<String, Transaction> entry : batch.records.entrySet()) {
+                built.put(entry.getKey(), entry.getValue());
+            }
+            built.cursors.putAll(batch.cursors);
+            built.loggedRecords += batch.records.size();
+        }
+        return built;
+    }
+
+    private static void add(Map<String, TreeSet<PageKey>> index, String value, PageKey key) {
+        TreeSet<PageKey> keys = index.get(value);
+        if (keys == null) {
+            keys = new TreeSet<>();
+            index.put(value, keys);
+        }
+        keys.add(key);
+    }
+
+    private static void remove(Map<String, TreeSet<PageKey>> index, String value, PageKey key) {
+        TreeSet<PageKey> keys = index.get(value);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            index.remove(value);
+        }
+    }
+
+    private static NavigableSet<PageKey> smaller(NavigableSet<PageKey> current, NavigableSet<PageKey> candidate) {
+        if (candidate == null) {
+            return new TreeSet<>();
+        }
+        return candidate.size() < current.size() ? candidate : current;
+    }
+
+    private void notifyChanged() {
+        for (ChangeListener listener : listeners) {
+            listener.onStoreChanged();
+        }
+    }
+
+    private void append(Batch batch) {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(frame(batch));
+            out.getFD().sync();
+        } catch (IOException e) {
+            // A later batch could carry a cursor past this one; rewrite the whole log from memory
+            Log.e(TAG, "Failed to append to the transaction log", e);
+            compact();
+        }
+        synchronized (this) {
+            unlogged--;
+        }
+        scheduleHead();
+    }
+
+    private void compact() {
+        Batch all = new Batch();
+        synchronized (this) {
+            // Transactions are never changed in place, so sharing them is safe
+            all.records.putAll(state.records);
+            all.cursors.putAll(state.cursors);
+            all.owner = state.owner;
+        }
+        try {
+            StateFile.replace(file, out -> out.write(frame(all)));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to compact the transaction log", e);
+            return;
+        }
+        scheduleHead();
+    }
+
+    private void scheduleHead() {
+        if (headPending.compareAndSet(false, true)) {
+            ioExecutor.execute(this::writeHead);
+        }
+    }
+
+    /** Rewrites the head from memory, if the log holds everything memory does. */
+    private void writeHead() {
+        headPending.set(false);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 * 1_024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            synchronized (this) {
+                if (unlogged > 0) {
+                    // The append still to come writes it again
+                    return;
+                }
+                out.writeByte(FORMAT_VERSION);
+                // Only this thread writes the log, so its length cannot change meanwhile
+                out.writeLong(file.length());
+                int count = Math.min(HEAD_SIZE, state.byTime.size());
+                out.writeBoolean(count == state.byTime.size());
+                out.writeInt(count);
+                for (PageKey key : state.byTime) {
+                    if (count-- == 0) {
+                        break;
+                    }
+                    out.writeUTF(key.id);
+                    write(out, state.records.get(key.id));
+                }
+                writeStrings(out, state.byMode.keySet());
+                writeStrings(out, state.byAccount.keySet());
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to build the transaction log head", e);
+            return;
+        }
+        try {
+            StateFile.replace(headFile, bytes::writeTo);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write the transaction log head", e);
+        }
+    }
+
+    /** The head, if there is one and it matches the log as it stands; null otherwise. */
+    private Head readHead() {
+        if (headFile == null || !headFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(headFile)))) {
+            int version = in.readByte();
+            if (version != FORMAT_VERSION || in.readLong() != file.length()) {
+                return null;
+            }
+            boolean complete = in.readBoolean();
+            int count = in.readInt();
+            List<Item> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                items.add(new Item(in.readUTF(), read(in)));
+            }
+            return new Head(items, complete, readStrings(in), readStrings(in));
+        } catch (IOException e) {
+            Log.w(TAG, "Ignoring an unreadable transaction log head", e);
+            return null;
+        }
+    }
+
+    /** Length, payload and CRC-32 of the payload. */
+    private static byte[] frame(Batch batch) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64 + batch.records.size() * 96);
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeByte(FORMAT_VERSION);
+            writeNullable(out, batch.owner);
+            out.writeInt(batch.cursors.size());
+            for (Map.Entry<String, Cursor> entry : batch.cursors.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeBoolean(entry.getValue().scanned);
+                writeNullable(out, entry.getValue().key);
+                out.writeDouble(entry.getValue().value);
+            }
+            out.writeInt(batch.records.size());
+            for (Map.Entry<String, Transaction> entry : batch.records.entrySet()) {
+                out.writeUTF(entry.getKey());
+                write(out, entry.getValue());
+            }
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(bytes.length + 12);
+        try (DataOutputStream out = new DataOutputStream(framed)) {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeLong(crc.getValue());
+        }
+        return framed.toByteArray();
+    }
+
+    private List<Batch> readAll() throws IOException {
+        List<Batch> all = new ArrayList<>();
+        if (file == null || !file.exists()) {
+            return all;
+        }
+        long length = file.length();
+        long good = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte[] bytes;
+                try {
+                    int size = in.readInt();
+                    if (size < 0 || good + 4 + size + 8 > length) {
+                        Log.w(TAG, "Dropping a torn batch at " + good);
+                        break;
+                    }
+                    bytes = new byte[size];
+                    in.readFully(bytes);
+                    CRC32 crc = new CRC32();
+                    crc.update(bytes);
+                    if (crc.getValue() != in.readLong()) {
+                        Log.w(TAG, "Dropping a torn batch at " + good);
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                Batch batch = parse(bytes);
+                if (batch == null) {
+                    break;
+                }
+                all.add(batch);
+                good += 4 + bytes.length + 8;
+            }
+        }
+        if (good < length) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(good);
+            }
+        }
+        return all;
+    }
+
+    private static Batch parse(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                Log.w(TAG, "Ignoring transaction log format " + version);
+                return null;
+            }
+            Batch batch = new Batch();
+            batch.owner = readNullable(in);
+            int cursorCount = in.readInt();
+            for (int i = 0; i < cursorCount; i++) {
+                String collection = in.readUTF();
+                batch.cursors.put(collection, new Cursor(in.readBoolean(), readNullable(in), in.readDouble()));
+            }
+            int recordCount = in.readInt();
+            for (int i = 0; i < recordCount; i++) {
+                batch.records.put(in.readUTF(), read(in));
+            }
+            return batch;
+        }
+    }
+
+    private static void write(DataOutputStream out, Transaction transaction) throws IOException {
+        out.writeBoolean(transaction.isDebit);
+        out.writeDouble(transaction.amount);
+        out.writeUTF(transaction.accountNumber);
+        out.writeUTF(transaction.merchantName);
+        out.writeLong(transaction.timestamp);
+        out.writeUTF(transaction.transactionMode);
+        writeNullable(out, transaction.category);
+        writeNullable(out, transaction.upiId);
+        writeNullable(out, transaction.payeeId);
+        writeNullable(out, transaction.referenceNumber);
+        writeNullable(out, transaction.reversedBy);
+        writeNullable(out, transaction.reversalOf);
+        writeNullable(out, transaction.internalTransfer);
+        out.writeLong(transaction.uploadedAt != null ? transaction.uploadedAt : -1);
+    }
+
+    private static Transaction read(DataInputStream in) throws IOException {
+        Transaction transaction = new Transaction();
+        transaction.isDebit = in.readBoolean();
+        transaction.amount = in.readDouble();
+        transaction.accountNumber = in.readUTF();
+        transaction.merchantName = in.readUTF();
+        transaction.timestamp = in.readLong();
+        transaction.transactionMode = in.readUTF();
+        transaction.category = readNullable(in);
+        transaction.upiId = readNullable(in);
+        transaction.payeeId = readNullable(in);
+        transaction.referenceNumber = readNullable(in);
+        transaction.reversedBy = readNullable(in);
+        transaction.reversalOf = readNullable(in);
+        transaction.internalTransfer = readNullable(in);
+        long uploadedAt = in.readLong();
+        transaction.uploadedAt = uploadedAt >= 0 ? uploadedAt : null;
+        return transaction;
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.smartfianacetracker.utils;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity LRU map from long keys to ints, held in
+ * parallel primitive arrays so neither hits nor misses allocate. Not
+ * thread-safe.
+ */
+final class LongLruCache {
+    static final int MISSING = Integer.MIN_VALUE;
+    private static final int NONE = -1;
+
+    private final long[] keys;
+    private final int[] values;
+    // Recency list, most recent at head
+    private final int[] newer;
+    private final int[] older;
+    // Hash chains
+    private final int[] buckets;
+    private final int[] chain;
+    private int size;
+    private int head = NONE;
+    private int tail = NONE;
+
+    LongLruCache(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        newer = new int[capacity];
+        older = new int[capacity];
+        chain = new int[capacity];
+        buckets = new int[Integer.highestOneBit(Math.max(1, capacity) * 2)];
+        Arrays.fill(buckets, NONE);
+    }
+
+    int get(long key) {
+        for (int slot = buckets[bucket(key)]; slot != NONE; slot = chain[slot]) {
+            if (keys[slot] == key) {
+                moveToHead(slot);
+                return values[slot];
+            }
+        }
+        return MISSING;
+    }
+
+    void put(long key, int value) {
+        if (keys.length == 0) {
+            return;
+        }
+        int slot;
+        if (size < keys.length) {
+            slot = size++;
+        } else {
+            slot = tail;
+            unlinkRecency(slot);
+            unlinkChain(slot);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        int bucket = bucket(key);
+        chain[slot] = buckets[bucket];
+        buckets[bucket] = slot;
+        linkHead(slot);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** FNV-1a over both fields, with a separator between them: a cache key for a payee. */
+    static long hash(CharSequence merchantName, CharSequence upiId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < merchantName.length(); i++) {
+            hash = (hash ^ merchantName.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ 0xffff) * 0x100000001b3L;
+        for (int i = 0; i < upiId.length(); i++) {
+            hash = (hash ^ upiId.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private int bucket(long key) {
+        int h = (int) (key ^ (key >>> 32));
+        return (h ^ (h >>> 16)) & (buckets.length - 1);
+    }
+
+    private void moveToHead(int slot) {
+        if (slot != head) {
+            unlinkRecency(slot);
+            linkHead(slot);
+        }
+    }
+
+    private void linkHead(int slot) {
+        newer[slot] = NONE;
+        older[slot] = head;
+        if (head != NONE) {
+            newer[head] = slot;
+        }
+        head = slot;
+        if (tail == NONE) {
+            tail = slot;
+        }
+    }
+
+    private void unlinkRecency(int slot) {
+        if (newer[slot] != NONE) {
+            older[newer[slot]] = older[slot];
+        } else {
+            head = older[slot];
+        }
+        if (older[slot] != NONE) {
+            newer[older[slot]] = newer[slot];
+        } else {
+            tail = newer[slot];
+        }
+    }
+
+    private void unlinkChain(int slot) {
+        int bucket = bucket(keys[slot]);
+        if (buckets[bucket] == slot) {
+            buckets[bucket] = chain[slot];
+            return;
+        }
+        for (int previous = buckets[bucket]; previous != NONE; previous = chain[previous]) {
+            if (chain[previous] == slot) {
+                chain[previous] = chain[slot];
+                return;
+            }
+        }
+    }
+}
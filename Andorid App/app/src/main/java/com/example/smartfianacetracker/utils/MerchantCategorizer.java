@@ -0,0 +1,102 @@
+package com.example.smartfianacetracker.utils;
+
+/**
+ * Ingest stage that picks a category for a transaction from the
+ * {@link CategoryDatabase}, trying in order:
+ *
+ * <ol>
+ * <li>the longest known prefix of the VPA's local part that ends at a
+ *     non-letter ({@code swiggy} for {@code swiggy.instamart@icici}),
+ * <li>the normalized merchant name, or its longest known leading run of words,
+ * <li>the VPA handle ({@code irctc} for {@code x@irctc}).
+ * </ol>
+ *
+ * Recent decisions are kept in a small LRU keyed by a 64-bit hash of the
+ * merchant name and UPI id, so the common case of a repeat payee skips the
+ * search entirely. Nothing here allocates per call.
+ */
+public class MerchantCategorizer {
+    private static final int MAX_KEY = 64;
+    private static final int MIN_VPA_PREFIX = 3;
+
+    private final CategoryDatabase database;
+    private final LongLruCache recent;
+    // Scratch buffer for normalized keys; calls are serialized
+    private final char[] key = new char[MAX_KEY];
+
+    public MerchantCategorizer(CategoryDatabase database, int cacheSize) {
+        this.database = database;
+        this.recent = new LongLruCache(cacheSize);
+    }
+
+    public synchronized String categorize(CharSequence merchantName, CharSequence upiId) {
+        long hash = LongLruCache.hash(merchantName, upiId);
+        int category = recent.get(hash);
+        if (category == LongLruCache.MISSING) {
+            category = lookup(merchantName, upiId);
+            recent.put(hash, category);
+        }
+        return database.categoryName(category);
+    }
+
+    private int lookup(CharSequence merchantName, CharSequence upiId) {
+        int at = indexOf(upiId, '@');
+
+        if (at > 0) {
+            int length = lowercase(upiId, 0, at);
+            for (int prefix = length; prefix >= MIN_VPA_PREFIX; prefix--) {
+                // Only on a boundary, so "uber.rides" matches "uber" but "uberoi" does not
+                if (prefix < length && isLetter(key[prefix])) {
+                    continue;
+                }
+                int category = database.find(CategoryDatabase.KIND_VPA_PREFIX, key, prefix);
+                if (category != CategoryDatabase.NOT_FOUND) {
+                    return category;
+                }
+            }
+        }
+
+        int length = CategoryDatabase.normalizeName(merchantName, key);
+        while (length > 0) {
+            int category = database.find(CategoryDatabase.KIND_NAME, key, length);
+            if (category != CategoryDatabase.NOT_FOUND) {
+                return category;
+            }
+            // Drop the last word: "BIG BAZAAR PUNE" -> "BIG BAZAAR"
+            do {
+                length--;
+            } while (length > 0 && key[length] != ' ');
+        }
+
+        if (at >= 0 && at < upiId.length() - 1) {
+            int handleLength = lowercase(upiId, at + 1, upiId.length());
+            int category = database.find(CategoryDatabase.KIND_HANDLE, key, handleLength);
+            if (category != CategoryDatabase.NOT_FOUND) {
+                return category;
+            }
+        }
+        return CategoryDatabase.NOT_FOUND;
+    }
+
+    private int lowercase(CharSequence text, int start, int end) {
+        int length = Math.min(end - start, MAX_KEY);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(start + i);
+            key[i] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return length;
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static int indexOf(CharSequence text, char c) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.smartfianacetracker.utils;
+
+/** Thrown when a single message blows through {@link SmsParser}'s time budget. */
+public class ParseTimeoutException extends RuntimeException {
+    public ParseTimeoutException(int position) {
+        super("SMS parse exceeded its time budget at offset " + position);
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.smartfianacetracker.utils;
+
+import android.util.Log;
+import com.example.smartfianacetracker.models.TransactionWireV2;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Maps the raw merchant name and UPI id of a transaction to a stable payee
+ * id, so {@code 9371110123}, {@code 9371110123@superyes} and the name the
+ * bank printed for them all count as one payee. A transaction yields up to
+ * three alias keys:
+ *
+ * <ul>
+ * <li>{@code v:} the lowercased VPA,
+ * <li>{@code m:} a ten-digit mobile number, taken from the VPA's local part
+ *     or from a name or UPI id that is only a number,
+ * <li>{@code n:} the merchant name, normalized with
+ *     {@link CategoryDatabase#normalizeName}.
+ * </ul>
+ *
+ * A VPA or mobile number identifies a payee on its own: it resolves through
+ * the alias already learned for it, or starts a new payee whose id is a hash
+ * of that key. A name only decides the payee when the transaction has no VPA
+ * or number, since two people can share a name but not a VPA. Every key the
+ * transaction carried is then learned as an alias of the resolved id; the
+ * first id learned for a key is kept, so ids already written never move.
+ *
+ * <p>The alias table is appended to {@code payee_aliases.bin} as it grows and
+ * read back on creation, both on a background thread; a pair torn by a
+ * crash is cut off before anything is appended after it. Recent (name, UPI id)
+ * pairs sit in a bounded LRU in front of it, so a repeat payee resolves
+ * without normalizing or allocating.
+ */
+public class PayeeCanonicalizer {
+    private static final String TAG = "PayeeCanonicalizer";
+    private static final String FILE_NAME = "payee_aliases.bin";
+    private static final String VPA = "v:";
+    private static final String MOBILE = "m:";
+    private static final String NAME = "n:";
+    private static final int MOBILE_DIGITS = 10;
+    private static final String COUNTRY_CODE = "91";
+
+    private final File file;
+    private final ExecutorService ioExecutor;
+    private final Future<Map<String, String>> loaded;
+    // Alias key -> payee id; null until the file has been read
+    private Map<String, String> aliases;
+    private final LongLruCache recent;
+    // Cache values are indexes into ids, so the cache stays primitive
+    private final List<String> ids = new ArrayList<>();
+    private final Map<String, Integer> idIndexes = new HashMap<>();
+    private final char[] nameKey = new char[64];
+
+    /** A null {@code directory} keeps the alias table in memory only. */
+    public PayeeCanonicalizer(File directory, int cacheSize) {
+        file = directory != null ? new File(directory, FILE_NAME) : null;
+        recent = new LongLruCache(cacheSize);
+        ioExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "PayeeAliases");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        loaded = ioExecutor.submit(this::readAll);
+    }
+
+    /** The payee id for this pair, learning any new aliases it carries. */
+    public synchronized String resolve(CharSequence merchantName, CharSequence upiId) {
+        long hash = LongLruCache.hash(merchantName, upiId);
+        int cached = recent.get(hash);
+        if (cached != LongLruCache.MISSING) {
+            return ids.get(cached);
+        }
+        String payeeId = resolveAndLearn(merchantName, upiId.toString().trim());
+        recent.put(hash, indexOf(payeeId));
+        return payeeId;
+    }
+
+    /** Number of alias keys learned so far, including those read from disk. */
+    public synchronized int aliasCount() {
+        return aliases().size();
+    }
+
+    /** Completes once every alias learned so far has been written. */
+    Future<?> flush() {
+        return ioExecutor.submit(() -> { });
+    }
+
+    private String resolveAndLearn(CharSequence merchantName, String upiId) {
+        Map<String, String> aliases = aliases();
+        String vpa = vpaKey(upiId);
+        String mobile = mobileKey(upiId, merchantName);
+        String name = nameKey(merchantName);
+
+        String payeeId;
+        if (vpa != null || mobile != null) {
+            payeeId = vpa != null ? aliases.get(vpa) : null;
+            if (payeeId == null && mobile != null) {
+                payeeId = aliases.get(mobile);
+            }
+            if (payeeId == null) {
+                payeeId = TransactionWireV2.payeeId(vpa != null ? vpa : mobile);
+            }
+        } else if (name != null) {
+            payeeId = aliases.get(name);
+            if (payeeId == null) {
+                payeeId = TransactionWireV2.payeeId(name);
+            }
+        } else {
+            // Nothing to go on; every such transaction shares one payee
+            return TransactionWireV2.payeeId(NAME);
+        }
+
+        List<String> learned = new ArrayList<>(6);
+        learn(aliases, vpa, payeeId, learned);
+        learn(aliases, mobile, payeeId, learned);
+        learn(aliases, name, payeeId, learned);
+        if (!learned.isEmpty()) {
+            append(learned);
+        }
+        return payeeId;
+    }
+
+    private static void learn(Map<String, String> aliases, String key, String payeeId, List<String> learned) {
+        if (key != null && aliases.putIfAbsent(key, payeeId) == null) {
+            learned.add(key);
+            learned.add(payeeId);
+        }
+    }
+
+    private static String vpaKey(String upiId) {
+        int at = upiId.indexOf('@');
+        if (at <= 0 || at == upiId.length() - 1) {
+            return null;
+        }
+        return VPA + upiId.toLowerCase(Locale.ROOT);
+    }
+
+    private static String mobileKey(String upiId, CharSequence merchantName) {
+        int at = upiId.indexOf('@');
+        String mobile = mobile(at >= 0 ? upiId.substring(0, at) : upiId);
+        if (mobile == null) {
+            mobile = mobile(merchantName.toString().trim());
+        }
+        return mobile != null ? MOBILE + mobile : null;
+    }
+
+    /** The ten digits of an Indian mobile number, with or without a leading 91. */
+    private static String mobile(String text) {
+        if (text.length() == MOBILE_DIGITS + COUNTRY_CODE.length() && text.startsWith(COUNTRY_CODE)) {
+            text = text.substring(COUNTRY_CODE.length());
+        }
+        if (text.length() != MOBILE_DIGITS) {
+            return null;
+        }
+        for (int i = 0; i < MOBILE_DIGITS; i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return null;
+            }
+        }
+        return text;
+    }
+
+    private String nameKey(CharSequence merchantName) {
+        int length = CategoryDatabase.normalizeName(merchantName, nameKey);
+        boolean digitsOnly = true;
+        for (int i = 0; i < length && digitsOnly; i++) {
+            digitsOnly = nameKey[i] >= '0' && nameKey[i] <= '9';
+        }
+        // A bare number is an account or phone, not a name
+        return length > 0 && !digitsOnly ? NAME + new String(nameKey, 0, length) : null;
+    }
+
+    private int indexOf(String payeeId) {
+        Integer index = idIndexes.get(payeeId);
+        if (index == null) {
+            index = ids.size();
+            ids.add(payeeId);
+            idIndexes.put(payeeId, index);
+        }
+        return index;
+    }
+
+    private Map<String, String> aliases() {
+        if (aliases == null) {
+            try {
+                aliases = loaded.get();
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Failed to read payee aliases; starting empty", e.getCause());
+                aliases = new HashMap<>();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Log.w(TAG, "Interrupted reading payee aliases; starting empty");
+                aliases = new HashMap<>();
+            }
+        }
+        return aliases;
+    }
+
+    /** Queues key/id pairs for appending; never blocks the caller on disk. */
+    private void append(List<String> pairs) {
+        if (file == null) {
+            return;
+        }
+        ioExecutor.execute(() -> {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file, true)))) {
+                for (String value : pairs) {
+                    out.writeUTF(value);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to persist payee aliases", e);
+            }
+        });
+    }
+
+    /**
+     * Reads the table, cutting the file back to the last complete pair: it
+     * runs before any append, which must not land after a torn tail.
+     */
+    private Map<String, String> readAll() throws IOException {
+        Map<String, String> aliases = new HashMap<>();
+        if (file == null || !file.exists()) {
+            return aliases;
+        }
+        byte[] bytes = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+        ByteArrayInputStream buffer = new ByteArrayInputStream(bytes);
+        DataInputStream in = new DataInputStream(buffer);
+        int good = 0;
+        try {
+            while (buffer.available() > 0) {
+                String key = in.readUTF();
+                aliases.putIfAbsent(key, in.readUTF());
+                good = bytes.length - buffer.available();
+            }
+        } catch (EOFException | UTFDataFormatException torn) {
+            // A crash mid-append leaves a partial tail; keep everything before it
+            Log.w(TAG, "Dropping a torn payee alias at " + good);
+        }
+        if (good < bytes.length) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(good);
+            }
+        }
+        return aliases;
+    }
+}
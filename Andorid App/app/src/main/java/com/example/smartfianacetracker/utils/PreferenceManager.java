@@ -2,7 +2,16 @@ package com.example.smartfianacetracker.utils;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Process-wide session store. The backing preferences are read once when the
+ * singleton is created; after that every getter is served from an immutable
+ * {@link Session} snapshot, and writes swap in a new snapshot and schedule a
+ * single coalesced flush on a background thread.
+ */
 public class PreferenceManager {
     private static final String PREF_NAME = "SKNHackfestPrefs";
     private static final String KEY_USER_ID = "user_id";
@@ -11,61 +20,198 @@ public class PreferenceManager {
     private static final String KEY_IS_LOGGED_IN = "is_logged_in";
     private static final String KEY_SERVICE_RUNNING = "is_service_running";
     private static final String KEY_LAST_SMS_TIMESTAMP = "last_sms_timestamp";
+    private static final String KEY_WIRE_FORMAT = "wire_format";
+
+    private static PreferenceManager instance;
 
     private final SharedPreferences sharedPreferences;
+    private final ExecutorService writeExecutor;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile Session session;
+    private volatile boolean clearPending;
 
-    public PreferenceManager(Context context) {
+    private PreferenceManager(Context context) {
         sharedPreferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        writeExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "PreferenceWriter");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        session = Session.from(sharedPreferences);
+    }
+
+    /** Memory-only instance for host-side tests; nothing is ever persisted. */
+    PreferenceManager(String userId) {
+        sharedPreferences = null;
+        writeExecutor = null;
+        session = Session.EMPTY.withUser(userId, null, null);
+    }
+
+    public static synchronized PreferenceManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new PreferenceManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /** Returns the current immutable snapshot; never blocks on disk. */
+    public Session getSession() {
+        return session;
     }
 
     public void saveUserSession(String userId, String email, String authToken) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(KEY_USER_ID, userId);
-        editor.putString(KEY_USER_EMAIL, email);
-        editor.putString(KEY_AUTH_TOKEN, authToken);
-        editor.putBoolean(KEY_IS_LOGGED_IN, true);
-        editor.apply();
+        update(session.withUser(userId, email, authToken));
+    }
+
+    public void updateAuthToken(String authToken) {
+        update(session.withAuthToken(authToken));
     }
 
     public boolean isLoggedIn() {
-        return sharedPreferences.getBoolean(KEY_IS_LOGGED_IN, false);
+        return session.isLoggedIn;
     }
 
     public String getUserId() {
-        return sharedPreferences.getString(KEY_USER_ID, null);
+        return session.userId;
     }
 
     public String getUserEmail() {
-        return sharedPreferences.getString(KEY_USER_EMAIL, null);
+        return session.userEmail;
     }
 
     public String getAuthToken() {
-        return sharedPreferences.getString(KEY_AUTH_TOKEN, null);
+        return session.authToken;
     }
 
     public void setServiceRunning(boolean isRunning) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putBoolean(KEY_SERVICE_RUNNING, isRunning);
-        editor.apply();
+        update(session.withServiceRunning(isRunning));
     }
 
     public boolean isServiceRunning() {
-        return sharedPreferences.getBoolean(KEY_SERVICE_RUNNING, false);
+        return session.isServiceRunning;
     }
 
     public void updateLastSmsTimestamp(long timestamp) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putLong(KEY_LAST_SMS_TIMESTAMP, timestamp);
-        editor.apply();
+        update(session.withLastSmsTimestamp(timestamp));
     }
 
     public long getLastSmsTimestamp() {
-        return sharedPreferences.getLong(KEY_LAST_SMS_TIMESTAMP, 0);
+        return session.lastSmsTimestamp;
+    }
+
+    /** Which transaction schema(s) ServiceManager writes; survives sign-out. */
+    public WireFormat getWireFormat() {
+        return session.wireFormat;
+    }
+
+    public void setWireFormat(WireFormat wireFormat) {
+        update(session.withWireFormat(wireFormat));
     }
 
     public void clearSession() {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.clear();
-        editor.apply();
+        clearPending = true;
+        update(Session.EMPTY.withWireFormat(session.wireFormat));
+    }
+
+    private synchronized void update(Session next) {
+        session = next;
+        scheduleFlush();
+    }
+
+    /**
+     * Any number of updates made before the writer thread runs are persisted
+     * by a single flush of whatever snapshot is current at that point.
+     */
+    private void scheduleFlush() {
+        if (writeExecutor == null || !flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        writeExecutor.execute(() -> {
+            flushScheduled.set(false);
+            boolean clear;
+            Session snapshot;
+            synchronized (this) {
+                clear = clearPending;
+                clearPending = false;
+                snapshot = session;
+            }
+            SharedPreferences.Editor editor = sharedPreferences.edit();
+            if (clear) {
+                editor.clear();
+            }
+            snapshot.writeTo(editor);
+            editor.commit();
+        });
+    }
+
+    public static final class Session {
+        static final Session EMPTY = new Session(null, null, null, false, false, 0, WireFormat.V1);
+
+        public final String userId;
+        public final String userEmail;
+        public final String authToken;
+        public final boolean isLoggedIn;
+        public final boolean isServiceRunning;
+        public final long lastSmsTimestamp;
+        public final WireFormat wireFormat;
+
+        private Session(String userId, String userEmail, String authToken,
+                        boolean isLoggedIn, boolean isServiceRunning, long lastSmsTimestamp,
+                        WireFormat wireFormat) {
+            this.userId = userId;
+            this.userEmail = userEmail;
+            this.authToken = authToken;
+            this.isLoggedIn = isLoggedIn;
+            this.isServiceRunning = isServiceRunning;
+            this.lastSmsTimestamp = lastSmsTimestamp;
+            this.wireFormat = wireFormat;
+        }
+
+        static Session from(SharedPreferences prefs) {
+            return new Session(
+                prefs.getString(KEY_USER_ID, null),
+                prefs.getString(KEY_USER_EMAIL, null),
+                prefs.getString(KEY_AUTH_TOKEN, null),
+                prefs.getBoolean(KEY_IS_LOGGED_IN, false),
+                prefs.getBoolean(KEY_SERVICE_RUNNING, false),
+                prefs.getLong(KEY_LAST_SMS_TIMESTAMP, 0),
+                WireFormat.parse(prefs.getString(KEY_WIRE_FORMAT, null))
+            );
+        }
+
+        Session withUser(String userId, String email, String authToken) {
+            return new Session(userId, email, authToken, true, isServiceRunning, lastSmsTimestamp,
+                    wireFormat);
+        }
+
+        Session withAuthToken(String authToken) {
+            return new Session(userId, userEmail, authToken, isLoggedIn, isServiceRunning, lastSmsTimestamp,
+                    wireFormat);
+        }
+
+        Session withServiceRunning(boolean running) {
+            return new Session(userId, userEmail, authToken, isLoggedIn, running, lastSmsTimestamp,
+                    wireFormat);
+        }
+
+        Session withLastSmsTimestamp(long timestamp) {
+            return new Session(userId, userEmail, authToken, isLoggedIn, isServiceRunning, timestamp,
+                    wireFormat);
+        }
+
+        Session withWireFormat(WireFormat format) {
+            return new Session(userId, userEmail, authToken, isLoggedIn, isServiceRunning,
+                    lastSmsTimestamp, format);
+        }
+
+        void writeTo(SharedPreferences.Editor editor) {
+            editor.putString(KEY_USER_ID, userId);
+            editor.putString(KEY_USER_EMAIL, userEmail);
+            editor.putString(KEY_AUTH_TOKEN, authToken);
+            editor.putBoolean(KEY_IS_LOGGED_IN, isLoggedIn);
+            editor.putBoolean(KEY_SERVICE_RUNNING, isServiceRunning);
+            editor.putLong(KEY_LAST_SMS_TIMESTAMP, lastSmsTimestamp);
+            editor.putString(KEY_WIRE_FORMAT, wireFormat.name());
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,250 @@
+package com.example.smartfianacetracker.utils;
+
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only on-device store for financial SMS the parser could not turn
+ * into a trustworthy transaction. Each entry keeps the raw message, the reason
+ * and the parser version that rejected it, so a later parser can replay the
+ * whole backlog in one pass instead of rescanning the inbox.
+ *
+ * <p>Each entry is written as one length-prefixed, checksummed record, so
+ * an append cut short by a crash leaves a torn tail. The file is checked
+ * and the tail cut off when the store is opened, before anything is
+ * appended after it. All file access happens on one background thread,
+ * which also orders appends against replay compaction.
+ */
+public class QuarantineStore {
+    private static final String TAG = "QuarantineStore";
+    private static final String FILE_NAME = "sms_quarantine.bin";
+
+    public enum Reason {
+        PARSE_TIMEOUT,
+        PARSE_ERROR,
+        ZERO_AMOUNT,
+        UNKNOWN_MERCHANT
+    }
+
+    public static final class Entry {
+        public final Reason reason;
+        public final int parserVersion;
+        public final long receivedAt;
+        public final String sender;
+        public final String body;
+
+        public Entry(Reason reason, int parserVersion, long receivedAt, String sender, String body) {
+            this.reason = reason;
+            this.parserVersion = parserVersion;
+            this.receivedAt = receivedAt;
+            this.sender = sender;
+            this.body = body;
+        }
+    }
+
+    /** Decides what happens to an entry during replay. */
+    public interface ReplayHandler {
+        /** Returns null when the entry was recovered, otherwise the reason it still fails. */
+        Reason replay(Entry entry);
+    }
+
+    public static final class ReplayResult {
+        public final int replayed;
+        public final int recovered;
+        public final int remaining;
+
+        ReplayResult(int replayed, int recovered, int remaining) {
+            this.replayed = replayed;
+            this.recovered = recovered;
+            this.remaining = remaining;
+        }
+    }
+
+    private final File file;
+    private final ExecutorService ioExecutor;
+
+    public QuarantineStore(File directory) {
+        file = new File(directory, FILE_NAME);
+        ioExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "SmsQuarantine");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        // First on the thread: appends must not land after a torn tail
+        ioExecutor.execute(() -> {
+            try {
+                readAll();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to check the quarantine file", e);
+            }
+        });
+    }
+
+    /** Queues an entry for appending; never blocks the caller on disk. */
+    public void add(Entry entry) {
+        ioExecutor.execute(() -> {
+            try (FileOutputStream out = new FileOutputStream(file, true)) {
+                out.write(frame(entry));
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to quarantine SMS", e);
+            }
+        });
+    }
+
+    /** Snapshot of all entries, read on the store's thread. */
+    public Future<List<Entry>> entries() {
+        return ioExecutor.submit(this::readAll);
+    }
+
+    /**
+     * Feeds every entry recorded by a parser older than {@code parserVersion}
+     * (or every entry, if {@code includeSameVersion}) to {@code handler} in a
+     * single batch, then rewrites the file with whatever is still unparsed.
+     * Entries still failing are re-stamped with {@code parserVersion}.
+     */
+    public Future<ReplayResult> replay(int parserVersion, boolean includeSameVersion, ReplayHandler handler) {
+        return ioExecutor.submit(() -> {
+            List<Entry> remaining = new ArrayList<>();
+            int replayed = 0;
+            int recovered = 0;
+            for (Entry entry : readAll()) {
+                if (entry.parserVersion > parserVersion
+                        || (entry.parserVersion == parserVersion && !includeSameVersion)) {
+                    remaining.add(entry);
+                    continue;
+                }
+                replayed++;
+                Reason reason = handler.replay(entry);
+                if (reason == null) {
+                    recovered++;
+                } else {
+                    remaining.add(new Entry(reason, parserVersion, entry.receivedAt, entry.sender, entry.body));
+                }
+            }
+            rewrite(remaining);
+            Log.d(TAG, "Replayed " + replayed + " quarantined SMS, recovered " + recovered);
+            return new ReplayResult(replayed, recovered, remaining.size());
+        });
+    }
+
+    private List<Entry> readAll() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!file.exists()) {
+            return entries;
+        }
+        long length = file.length();
+        long good = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte[] bytes;
+                try {
+                    int size = in.readInt();
+                    if (size < 0 || good + 4 + size + 8 > length) {
+                        Log.w(TAG, "Dropping a torn quarantine entry at " + good);
+                        break;
+                    }
+                    bytes = new byte[size];
+                    in.readFully(bytes);
+                    CRC32 crc = new CRC32();
+                    crc.update(bytes);
+                    if (crc.getValue() != in.readLong()) {
+                        Log.w(TAG, "Dropping a torn quarantine entry at " + good);
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                Entry entry = parse(bytes);
+                if (entry == null) {
+                    Log.w(TAG, "Dropping an unreadable quarantine entry at " + good);
+                    break;
+                }
+                entries.add(entry);
+                good += 4 + bytes.length + 8;
+            }
+        }
+        // A crash mid-append leaves a partial tail; keep everything before it
+        if (good < length) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(good);
+            }
+        }
+        return entries;
+    }
+
+    private void rewrite(List<Entry> entries) throws IOException {
+        StateFile.replace(file, out -> {
+            for (Entry entry : entries) {
+                out.write(frame(entry));
+            }
+        });
+    }
+
+    /**
+     * Length, payload and CRC-32 of the payload. The body is written as
+     * length-prefixed UTF-8 rather than {@code writeUTF}, which cannot hold
+     * more than 64 KB.
+     */
+    private static byte[] frame(Entry entry) throws IOException {
+        byte[] body = entry.body.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(32 + body.length);
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeByte(entry.reason.ordinal());
+            out.writeInt(entry.parserVersion);
+            out.writeLong(entry.receivedAt);
+            out.writeUTF(entry.sender != null ? entry.sender : "");
+            out.writeInt(body.length);
+            out.write(body);
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(bytes.length + 12);
+        try (DataOutputStream out = new DataOutputStream(framed)) {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeLong(crc.getValue());
+        }
+        return framed.toByteArray();
+    }
+
+    /** The entry in {@code bytes}, or null when they do not hold one. */
+    private static Entry parse(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int reason = in.readByte();
+            if (reason < 0 || reason >= Reason.values().length) {
+                return null;
+            }
+            int version = in.readInt();
+            long receivedAt = in.readLong();
+            String sender = in.readUTF();
+            int size = in.readInt();
+            if (size < 0 || size > in.available()) {
+                return null;
+            }
+            byte[] body = new byte[size];
+            in.readFully(body);
+            return new Entry(Reason.values()[reason], version, receivedAt, sender,
+                    new String(body, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
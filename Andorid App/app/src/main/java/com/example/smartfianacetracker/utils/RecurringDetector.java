@@ -0,0 +1,292 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import com.example.smartfianacetracker.models.RecurringPayment;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spots rent, SIP, subscription and EMI debits as they arrive: for each
+ * payee it keeps a running mean and variance of the interval between
+ * payments and of the amount, weighted exponentially so a plan change is
+ * picked up within a few payments. A payee whose interval is steady
+ * (coefficient of variation at most {@link #MAX_PERIOD_CV}) over at least
+ * {@link #MIN_INTERVALS} intervals, between a week and a year, with a
+ * steady amount, is a recurring payment. Its next due date and amount are
+ * written by {@link ServiceManager#recordRecurring} to the compact
+ * {@code recurring} node, and removed again once the series breaks.
+ *
+ * <p>One or two missed periods (an interval of about 2 or 3 times the mean)
+ * are folded in as single periods. A second debit to the payee within
+ * {@link #MIN_GAP_DAYS}, or an interval far off the mean, starts the series
+ * over from that debit: a bill is paid once per period, and a payee paid
+ * more often is a shop. Debits older than the payee's last payment (a
+ * quarantine replay) are ignored.
+ *
+ * <p>State is a fixed handful of numbers per payee, kept in
+ * {@code recurring_series.bin} (see {@link StateFile}). It belongs to the user it was built for, whose id is
+ * saved with it; a debit stored for anyone else starts it over.
+ */
+public class RecurringDetector implements TransactionIngestor.Listener {
+    private static final String TAG = "RecurringDetector";
+    private static final String FILE_NAME = "recurring_series.bin";
+    private static final int FORMAT_VERSION = 2;
+    private static final double DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /** Weight of the newest interval and amount once a series is long enough. */
+    static final double ALPHA = 0.25;
+    static final int MIN_INTERVALS = 2;
+    static final double MIN_GAP_DAYS = 3;
+    static final double MIN_PERIOD_DAYS = 6;
+    static final double MAX_PERIOD_DAYS = 400;
+    static final double MAX_PERIOD_CV = 0.15;
+    static final double MAX_AMOUNT_CV = 0.25;
+    /** How far an interval, after folding in missed periods, may stray from the mean and keep the series. */
+    static final double PERIOD_TOLERANCE = 0.3;
+    static final int MAX_MISSED_PERIODS = 2;
+    private static RecurringDetector instance;
+
+    /** What the file holds. */
+    private static final class Saved {
+        final String owner;
+        final List<Series> series;
+
+        Saved(String owner, List<Series> series) {
+            this.owner = owner;
+            this.series = series;
+        }
+    }
+
+    private static final class Series {
+        final String payeeId;
+        int payments;
+        long lastPaidAt;
+        double periodMean;
+        double periodVariance;
+        double amountMean;
+        double amountVariance;
+        /** Whether the series is currently written as recurring. */
+        boolean published;
+
+        Series(String payeeId) {
+            this.payeeId = payeeId;
+        }
+
+        Series(Series other) {
+            payeeId = other.payeeId;
+            payments = other.payments;
+            lastPaidAt = other.lastPaidAt;
+            periodMean = other.periodMean;
+            periodVariance = other.periodVariance;
+            amountMean = other.amountMean;
+            amountVariance = other.amountVariance;
+            published = other.published;
+        }
+
+        void restart(double amount, long timestamp) {
+            payments = 1;
+            lastPaidAt = timestamp;
+            periodMean = 0;
+            periodVariance = 0;
+            amountMean = amount;
+            amountVariance = 0;
+        }
+
+        boolean isRecurring() {
+            return payments - 1 >= MIN_INTERVALS
+                    && periodMean >= MIN_PERIOD_DAYS && periodMean <= MAX_PERIOD_DAYS
+                    && Math.sqrt(periodVariance) <= MAX_PERIOD_CV * periodMean
+                    && Math.sqrt(amountVariance) <= MAX_AMOUNT_CV * amountMean;
+        }
+    }
+
+    private final ServiceManager serviceManager;
+    private final StateFile<Saved> stateFile;
+
+    // Null until the file has been read
+    private Map<String, Series> byPayee;
+    // User the series were built for; null while there are none
+    private String owner;
+
+    public RecurringDetector(File directory, ServiceManager serviceManager) {
+        this.serviceManager = serviceManager;
+        stateFile = new StateFile<>(directory, FILE_NAME, "recurring series",
+                () -> new Saved(null, Collections.emptyList()), RecurringDetector::read, this::write);
+    }
+
+    public static synchronized RecurringDetector getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new RecurringDetector(appContext.getFilesDir(), ServiceManager.getInstance(appContext));
+        }
+        return instance;
+    }
+
+    @Override
+    public synchronized void onTransactionStored(TransactionRecord record, long keyMillis) {
+        if (keyMillis == 0 || !record.isDebit || record.payeeId == null || record.amount <= 0) {
+            return;
+        }
+        ensureLoaded();
+        String userId = serviceManager.getUserId();
+        if (userId == null) {
+            return;
+        }
+        if (!userId.equals(owner)) {
+            if (!byPayee.isEmpty()) {
+                Log.d(TAG, "Signed-in user changed; dropping " + byPayee.size() + " series");
+            }
+            byPayee.clear();
+            owner = userId;
+        }
+        Series series = byPayee.get(record.payeeId);
+        if (series == null) {
+            series = new Series(record.payeeId);
+            series.restart(record.amount, record.timestamp);
+            byPayee.put(record.payeeId, series);
+            stateFile.scheduleSave();
+            return;
+        }
+        if (record.timestamp <= series.lastPaidAt) {
+            return;
+        }
+
+        double gapDays = (record.timestamp - series.lastPaidAt) / DAY_MILLIS;
+        int intervals = series.payments - 1;
+        if (intervals > 0) {
+            long periods = Math.round(gapDays / series.periodMean);
+            if (periods >= 2 && periods <= MAX_MISSED_PERIODS + 1) {
+                gapDays /= periods;
+            }
+        }
+        boolean broken = gapDays < MIN_GAP_DAYS
+                || (intervals >= MIN_INTERVALS
+                        && Math.abs(gapDays - series.periodMean) > PERIOD_TOLERANCE * series.periodMean);
+        if (broken) {
+            series.restart(record.amount, record.timestamp);
+        } else {
+            intervals++;
+            series.payments++;
+            series.lastPaidAt = record.timestamp;
+            double weight = Math.max(ALPHA, 1.0 / intervals);
+            double delta = gapDays - series.periodMean;
+            series.periodMean += weight * delta;
+            series.periodVariance = (1 - weight) * (series.periodVariance + weight * delta * delta);
+            weight = Math.max(ALPHA, 1.0 / series.payments);
+            delta = record.amount - series.amountMean;
+            series.amountMean += weight * delta;
+            series.amountVariance = (1 - weight) * (series.amountVariance + weight * delta * delta);
+        }
+        stateFile.scheduleSave();
+
+        if (series.isRecurring()) {
+            series.published = true;
+            serviceManager.recordRecurring(series.payeeId, toPayment(series, record));
+        } else if (series.published) {
+            series.published = false;
+            Log.d(TAG, "Series for " + record.merchantName + " broken");
+            serviceManager.recordRecurring(series.payeeId, null);
+        }
+    }
+
+    /** Number of payees currently paid on a schedule. */
+    public synchronized int recurringCount() {
+        ensureLoaded();
+        int count = 0;
+        for (Series series : byPayee.values()) {
+            if (series.published) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Completes once every change made so far has been written. */
+    Future<?> flush() {
+        return stateFile.flush();
+    }
+
+    private static RecurringPayment toPayment(Series series, TransactionRecord record) {
+        RecurringPayment payment = new RecurringPayment();
+        payment.merchantName = record.merchantName.toString();
+        payment.category = record.category;
+        payment.periodDays = Math.round(series.periodMean * 10) / 10.0;
+        payment.amount = Math.round(series.amountMean * 100) / 100.0;
+        payment.nextDueAt = series.lastPaidAt + Math.round(series.periodMean * DAY_MILLIS);
+        payment.lastPaidAt = series.lastPaidAt;
+        payment.occurrences = series.payments;
+        return payment;
+    }
+
+    private void ensureLoaded() {
+        if (byPayee != null) {
+            return;
+        }
+        Saved saved = stateFile.load();
+        owner = saved.owner;
+        byPayee = new HashMap<>();
+        for (Series series : saved.series) {
+            byPayee.put(series.payeeId, series);
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        List<Series> all;
+        String savedOwner;
+        synchronized (this) {
+            savedOwner = owner;
+            // Copies, since the fields change in place
+            all = new ArrayList<>(byPayee.size());
+            for (Series series : byPayee.values()) {
+                all.add(new Series(series));
+            }
+        }
+        out.writeByte(FORMAT_VERSION);
+        out.writeUTF(savedOwner != null ? savedOwner : "");
+        out.writeInt(all.size());
+        for (Series series : all) {
+            out.writeUTF(series.payeeId);
+            out.writeInt(series.payments);
+            out.writeLong(series.lastPaidAt);
+            out.writeDouble(series.periodMean);
+            out.writeDouble(series.periodVariance);
+            out.writeDouble(series.amountMean);
+            out.writeDouble(series.amountVariance);
+            out.writeBoolean(series.published);
+        }
+    }
+
+    private static Saved read(DataInputStream in) throws IOException {
+        List<Series> all = new ArrayList<>();
+        int version = in.readByte();
+        // Earlier formats did not say whose series they were
+        if (version != FORMAT_VERSION) {
+            Log.w(TAG, "Ignoring recurring series format " + version);
+            return new Saved(null, all);
+        }
+        String savedOwner = in.readUTF();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Series series = new Series(in.readUTF());
+            series.payments = in.readInt();
+            series.lastPaidAt = in.readLong();
+            series.periodMean = in.readDouble();
+            series.periodVariance = in.readDouble();
+            series.amountMean = in.readDouble();
+            series.amountVariance = in.readDouble();
+            series.published = in.readBoolean();
+            all.add(series);
+        }
+        return new Saved(savedOwner.isEmpty() ? null : savedOwner, all);
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hash index from a transaction's UPI reference, UTR or RRN to where it was
+ * stored, so dedup, refund matching and statement reconciliation are one
+ * lookup instead of a fuzzy match on amount and time over the whole history.
+ *
+ * <p>Debits and credits are indexed separately: both legs of a transfer
+ * between the user's own accounts carry the same reference. References are
+ * compared case-insensitively, by a 64-bit hash; at a few thousand
+ * references a year a collision is not a practical concern.
+ *
+ * <p>The table is open-addressed over primitive arrays, so lookups and
+ * inserts allocate nothing once it has grown. New entries are appended to
+ * {@code reference_index.bin} on a background thread, one write per burst.
+ */
+public class ReferenceIndex {
+    private static final String TAG = "ReferenceIndex";
+    private static final String FILE_NAME = "reference_index.bin";
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long EMPTY = 0;
+    // Four longs: key, key millis, timestamp, amount in paise
+    private static final int ENTRY_SIZE = 32;
+    private static ReferenceIndex instance;
+
+    /** Filled by {@link #find}; reusable. */
+    public static final class Entry {
+        public boolean isDebit;
+        public double amount;
+        public long timestamp;
+        /** Millis the stored record's key was built from, see {@link ServiceManager#storeTransaction}. */
+        public long keyMillis;
+    }
+
+    private final File file;
+    private final ExecutorService ioExecutor;
+    private final Future<Integer> loaded;
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private boolean ready;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private long[] keyMillis = new long[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private long[] amountsPaise = new long[INITIAL_CAPACITY];
+    private int size;
+
+    // Entries added since the last save, four longs each
+    private long[] pending = new long[64];
+    private int pendingLength;
+
+    /** A null {@code directory} keeps the index in memory only. */
+    public ReferenceIndex(File directory) {
+        file = directory != null ? new File(directory, FILE_NAME) : null;
+        ioExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ReferenceIndex");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        loaded = ioExecutor.submit(this::readAll);
+    }
+
+    public static synchronized ReferenceIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReferenceIndex(context.getApplicationContext().getFilesDir());
+        }
+        return instance;
+    }
+
+    public synchronized boolean contains(CharSequence reference, boolean isDebit) {
+        awaitLoaded();
+        return reference.length() > 0 && keys[slot(hash(reference, isDebit))] != EMPTY;
+    }
+
+    /** Fills {@code out} and returns true if {@code reference} has been indexed for that direction. */
+    public synchronized boolean find(CharSequence reference, boolean isDebit, Entry out) {
+        awaitLoaded();
+        if (reference.length() == 0) {
+            return false;
+        }
+        int slot = slot(hash(reference, isDebit));
+        if (keys[slot] == EMPTY) {
+            return false;
+        }
+        out.isDebit = isDebit;
+        out.amount = amountsPaise[slot] / 100.0;
+        out.timestamp = timestamps[slot];
+        out.keyMillis = keyMillis[slot];
+        return true;
+    }
+
+    /**
+     * Indexes a stored record under its reference; records without one are
+     * ignored. Returns false if the reference was already indexed.
+     */
+    public synchronized boolean add(TransactionRecord record, long storedKeyMillis) {
+        awaitLoaded();
+        if (record.referenceNumber.isEmpty()) {
+            return false;
+        }
+        long key = hash(record.referenceNumber, record.isDebit);
+        long amountPaise = Math.round(record.amount * 100);
+        if (!put(key, storedKeyMillis, record.timestamp, amountPaise)) {
+            return false;
+        }
+        if (file != null) {
+            if (pendingLength + 4 > pending.length) {
+                pending = Arrays.copyOf(pending, pending.length * 2);
+            }
+            pending[pendingLength++] = key;
+            pending[pendingLength++] = storedKeyMillis;
+            pending[pendingLength++] = record.timestamp;
+            pending[pendingLength++] = amountPaise;
+            if (savePending.compareAndSet(false, true)) {
+                ioExecutor.execute(this::save);
+            }
+        }
+        return true;
+    }
+
+    public synchronized int size() {
+        awaitLoaded();
+        return size;
+    }
+
+    /** Completes once every entry added so far has been written. */
+    Future<?> flush() {
+        return ioExecutor.submit(() -> { });
+    }
+
+    private boolean put(long key, long storedKeyMillis, long timestamp, long amountPaise) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int slot = slot(key);
+        if (keys[slot] != EMPTY) {
+            return false;
+        }
+        keys[slot] = key;
+        keyMillis[slot] = storedKeyMillis;
+        timestamps[slot] = timestamp;
+        amountsPaise[slot] = amountPaise;
+        size++;
+        return true;
+    }
+
+    /** The slot holding {@code key}, or the empty slot where it would go. */
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldKeyMillis = keyMillis;
+        long[] oldTimestamps = timestamps;
+        long[] oldAmounts = amountsPaise;
+        int capacity = oldKeys.length * 2;
+        keys = new long[capacity];
+        keyMillis = new long[capacity];
+        timestamps = new long[capacity];
+        amountsPaise = new long[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                keyMillis[slot] = oldKeyMillis[i];
+                timestamps[slot] = oldTimestamps[i];
+                amountsPaise[slot] = oldAmounts[i];
+            }
+        }
+    }
+
+    /** FNV-1a over the upper-cased reference, seeded by direction; never {@link #EMPTY}. */
+    private static long hash(CharSequence reference, boolean isDebit) {
+        long hash = isDebit ? 0xcbf29ce484222325L : 0x84222325cbf29ce4L;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                c = (char) (c - ('a' - 'A'));
+            }
+            hash = (hash ^ c) * 0x100000001b3L;
+        }
+        return hash != EMPTY ? hash : 1;
+    }
+
+    private void awaitLoaded() {
+        if (ready) {
+            return;
+        }
+        try {
+            loaded.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Failed to read the reference index; starting empty", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.w(TAG, "Interrupted reading the reference index; starting empty");
+        }
+        ready = true;
+    }
+
+    private void save() {
+        savePending.set(false);
+        long[] batch;
+        synchronized (this) {
+            batch = Arrays.copyOf(pending, pendingLength);
+            pendingLength = 0;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            for (long value : batch) {
+                out.writeLong(value);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to persist references", e);
+        }
+    }
+
+    /**
+     * Runs before any caller touches the table (they wait on {@link #loaded},
+     * holding the lock), so it fills the arrays without taking the lock itself,
+     * and before any append on the same thread.
+     */
+    private Integer readAll() throws IOException {
+        if (file == null || !file.exists()) {
+            return 0;
+        }
+        int read = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                long key;
+                try {
+                    key = in.readLong();
+                } catch (EOFException end) {
+                    break;
+                }
+                long storedKeyMillis = in.readLong();
+                long timestamp = in.readLong();
+                long amountPaise = in.readLong();
+                put(key, storedKeyMillis, timestamp, amountPaise);
+                read++;
+            }
+        } catch (EOFException truncated) {
+            Log.w(TAG, "Ignoring truncated reference entry");
+        }
+        // A crash mid-append leaves a partial tail; cut it off, or every later
+        // entry would be read out of alignment
+        long good = (long) read * ENTRY_SIZE;
+        if (good < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(good);
+            }
+        }
+        Log.d(TAG, "Loaded " + read + " references");
+        return read;
+    }
+}
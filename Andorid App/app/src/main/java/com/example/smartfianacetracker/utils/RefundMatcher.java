@@ -0,0 +1,342 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pairs each new credit with the earlier debit it reverses, so a refund or
+ * the reversal of a failed UPI debit cancels the debit instead of counting
+ * as income, and the budgets the debit was charged to get the amount back.
+ *
+ * <p>Every stored debit is kept open for {@link #DEFAULT_WINDOW_MILLIS}. A
+ * credit is matched, in order, by:
+ *
+ * <ol>
+ * <li>reference: a debit carrying the same UPI reference, found with one
+ *     {@link ReferenceIndex} lookup, for up to the debit's amount;
+ * <li>counterparty: for a credit worded as a refund
+ *     ({@link TransactionRecord#isRefund}), the most recent open debit to
+ *     the same payee for exactly the same amount, found in that payee's set
+ *     of open debits ordered by (amount, time), in O(log n).
+ * </ol>
+ *
+ * Either way the debit must be on the same account when both name one, and
+ * no later than the credit. A matched debit is closed, and the match is
+ * written by {@link ServiceManager#recordReversal} as one update that links
+ * both records and takes the amount off the budgets' {@code spent}.
+ *
+ * <p>Open debits are kept in {@code open_debits.bin}; see {@link StateFile}.
+ * They belong to the user they were stored for, whose id is saved with
+ * them; a transaction stored for anyone else starts them over.
+ */
+public class RefundMatcher implements TransactionIngestor.Listener {
+    private static final String TAG = "RefundMatcher";
+    private static final String FILE_NAME = "open_debits.bin";
+    private static final int FORMAT_VERSION = 2;
+    /** Reversals land within days; merchant refunds within a few weeks. */
+    public static final long DEFAULT_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(30);
+    private static RefundMatcher instance;
+
+    /** What the file holds. */
+    private static final class Saved {
+        final String owner;
+        final List<OpenDebit> debits;
+
+        Saved(String owner, List<OpenDebit> debits) {
+            this.owner = owner;
+            this.debits = debits;
+        }
+    }
+
+    private static final class OpenDebit implements Comparable<OpenDebit> {
+        final long keyMillis;
+        final String payeeId;
+        final String accountNumber;
+        final long amountPaise;
+        final long timestamp;
+        final List<String> chargedBudgets;
+        boolean closed;
+
+        OpenDebit(long keyMillis, String payeeId, String accountNumber, long amountPaise, long timestamp,
+                  List<String> chargedBudgets) {
+            this.keyMillis = keyMillis;
+            this.payeeId = payeeId;
+            this.accountNumber = accountNumber;
+            this.amountPaise = amountPaise;
+            this.timestamp = timestamp;
+            this.chargedBudgets = chargedBudgets;
+        }
+
+        @Override
+        public int compareTo(OpenDebit other) {
+            if (amountPaise != other.amountPaise) {
+                return Long.compare(amountPaise, other.amountPaise);
+            }
+            if (timestamp != other.timestamp) {
+                return Long.compare(timestamp, other.timestamp);
+            }
+            return Long.compare(keyMillis, other.keyMillis);
+        }
+    }
+
+    private final ServiceManager serviceManager;
+    private final ReferenceIndex references;
+    private final long windowMillis;
+    private final StateFile<Saved> stateFile;
+    private final ReferenceIndex.Entry found = new ReferenceIndex.Entry();
+
+    // Null until the file has been read
+    private Map<String, TreeSet<OpenDebit>> byPayee;
+    private Map<Long, OpenDebit> byKey;
+    // In the order stored, which is close to time order; closed debits stay until they age out
+    private ArrayDeque<OpenDebit> byAge;
+    private long latestTimestamp;
+    // User the debits were stored for; null while there are none
+    private String owner;
+
+    public RefundMatcher(File directory, ServiceManager serviceManager, ReferenceIndex references,
+                         long windowMillis) {
+        this.serviceManager = serviceManager;
+        this.references = references;
+        this.windowMillis = windowMillis;
+        stateFile = new StateFile<>(directory, FILE_NAME, "open debits",
+                () -> new Saved(null, Collections.emptyList()), RefundMatcher::read, this::write);
+    }
+
+    public static synchronized RefundMatcher getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new RefundMatcher(appContext.getFilesDir(), ServiceManager.getInstance(appContext),
+                    ReferenceIndex.getInstance(appContext), DEFAULT_WINDOW_MILLIS);
+        }
+        return instance;
+    }
+
+    @Override
+    public synchronized void onTransactionStored(TransactionRecord record, long keyMillis) {
+        if (keyMillis == 0) {
+            return;
+        }
+        ensureLoaded();
+        if (checkOwner() == null) {
+            return;
+        }
+        if (record.timestamp > latestTimestamp) {
+            latestTimestamp = record.timestamp;
+            evictBefore(latestTimestamp - windowMillis);
+        }
+
+        if (record.isDebit) {
+            String payeeId = record.payeeId != null ? record.payeeId : "";
+            open(new OpenDebit(keyMillis, payeeId, record.accountNumber.toString(),
+                    Math.round(record.amount * 100), record.timestamp, record.chargedBudgets));
+            stateFile.scheduleSave();
+            return;
+        }
+
+        OpenDebit debit = matchByReference(record);
+        if (debit == null && record.isRefund) {
+            debit = matchByPayee(record);
+        }
+        if (debit == null) {
+            return;
+        }
+        close(debit);
+        stateFile.scheduleSave();
+        double amount = Math.min(Math.round(record.amount * 100), debit.amountPaise) / 100.0;
+        Log.d(TAG, "Credit " + keyMillis + " reverses debit " + debit.keyMillis + " (" + amount + ")");
+        String chargeId = BudgetBook.chargeId(false, record.accountNumber.toString(), record.amount,
+                record.timestamp, record.referenceNumber);
+        serviceManager.recordReversal(debit.keyMillis, keyMillis, amount, debit.timestamp, chargeId,
+                debit.chargedBudgets);
+    }
+
+    /** Number of debits still waiting for a possible reversal. */
+    public synchronized int openCount() {
+        ensureLoaded();
+        return checkOwner() != null ? byKey.size() : 0;
+    }
+
+    /** Completes once every change made so far has been written. */
+    Future<?> flush() {
+        return stateFile.flush();
+    }
+
+    private OpenDebit matchByReference(TransactionRecord credit) {
+        if (!references.find(credit.referenceNumber, true, found)) {
+            return null;
+        }
+        OpenDebit debit = byKey.get(found.keyMillis);
+        return debit != null && Math.round(credit.amount * 100) <= debit.amountPaise && matches(debit, credit)
+                ? debit : null;
+    }
+
+    private OpenDebit matchByPayee(TransactionRecord credit) {
+        TreeSet<OpenDebit> open = byPayee.get(credit.payeeId != null ? credit.payeeId : "");
+        if (open == null) {
+            return null;
+        }
+        long amountPaise = Math.round(credit.amount * 100);
+        // Latest debit of this amount at or before the credit
+        OpenDebit probe = new OpenDebit(Long.MAX_VALUE, null, null, amountPaise, credit.timestamp, null);
+        for (OpenDebit debit = open.floor(probe); debit != null && debit.amountPaise == amountPaise;
+                debit = open.lower(debit)) {
+            if (matches(debit, credit)) {
+                return debit;
+            }
+            if (credit.timestamp - debit.timestamp > windowMillis) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(OpenDebit debit, TransactionRecord credit) {
+        return debit.timestamp <= credit.timestamp
+                && credit.timestamp - debit.timestamp <= windowMillis
+                && (debit.accountNumber.isEmpty() || credit.accountNumber.isEmpty()
+                        || credit.accountNumber.contentEquals(debit.accountNumber));
+    }
+
+    private void open(OpenDebit debit) {
+        if (byKey.put(debit.keyMillis, debit) != null) {
+            return;
+        }
+        TreeSet<OpenDebit> open = byPayee.get(debit.payeeId);
+        if (open == null) {
+            open = new TreeSet<>();
+            byPayee.put(debit.payeeId, open);
+        }
+        open.add(debit);
+        byAge.add(debit);
+    }
+
+    private void close(OpenDebit debit) {
+        debit.closed = true;
+        byKey.remove(debit.keyMillis);
+        TreeSet<OpenDebit> open = byPayee.get(debit.payeeId);
+        open.remove(debit);
+        if (open.isEmpty()) {
+            byPayee.remove(debit.payeeId);
+        }
+    }
+
+    private void evictBefore(long cutoff) {
+        boolean evicted = false;
+        while (!byAge.isEmpty() && byAge.peekFirst().timestamp < cutoff) {
+            OpenDebit debit = byAge.pollFirst();
+            if (!debit.closed) {
+                close(debit);
+                evicted = true;
+            }
+        }
+        if (evicted) {
+            stateFile.scheduleSave();
+        }
+    }
+
+    /**
+     * The signed-in user, dropping the open debits when they were stored for
+     * someone else; null when signed out.
+     */
+    private String checkOwner() {
+        String userId = serviceManager.getUserId();
+        if (userId == null || userId.equals(owner)) {
+            return userId;
+        }
+        if (!byKey.isEmpty()) {
+            Log.d(TAG, "Signed-in user changed; dropping " + byKey.size() + " open debits");
+        }
+        byPayee.clear();
+        byKey.clear();
+        byAge.clear();
+        latestTimestamp = 0;
+        owner = userId;
+        stateFile.scheduleSave();
+        return userId;
+    }
+
+    private void ensureLoaded() {
+        if (byKey != null) {
+            return;
+        }
+        Saved saved = stateFile.load();
+        owner = saved.owner;
+        byPayee = new HashMap<>();
+        byKey = new HashMap<>();
+        byAge = new ArrayDeque<>();
+        for (OpenDebit debit : saved.debits) {
+            open(debit);
+            latestTimestamp = Math.max(latestTimestamp, debit.timestamp);
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        List<OpenDebit> debits;
+        String savedOwner;
+        synchronized (this) {
+            savedOwner = owner;
+            debits = new ArrayList<>(byAge.size());
+            for (OpenDebit debit : byAge) {
+                if (!debit.closed) {
+                    debits.add(debit);
+                }
+            }
+        }
+        out.writeByte(FORMAT_VERSION);
+        out.writeUTF(savedOwner != null ? savedOwner : "");
+        out.writeInt(debits.size());
+        for (OpenDebit debit : debits) {
+            out.writeLong(debit.keyMillis);
+            out.writeUTF(debit.payeeId);
+            out.writeUTF(debit.accountNumber);
+            out.writeLong(debit.amountPaise);
+            out.writeLong(debit.timestamp);
+            out.writeShort(debit.chargedBudgets.size());
+            for (String budgetId : debit.chargedBudgets) {
+                out.writeUTF(budgetId);
+            }
+        }
+    }
+
+    private static Saved read(DataInputStream in) throws IOException {
+        List<OpenDebit> debits = new ArrayList<>();
+        int version = in.readByte();
+        // Earlier formats did not say whose debits they were
+        if (version != FORMAT_VERSION) {
+            Log.w(TAG, "Ignoring open debits format " + version);
+            return new Saved(null, debits);
+        }
+        String savedOwner = in.readUTF();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            long keyMillis = in.readLong();
+            String payeeId = in.readUTF();
+            String accountNumber = in.readUTF();
+            long amountPaise = in.readLong();
+            long timestamp = in.readLong();
+            int budgetCount = in.readShort();
+            List<String> chargedBudgets = budgetCount == 0
+                    ? Collections.emptyList() : new ArrayList<>(budgetCount);
+            for (int b = 0; b < budgetCount; b++) {
+                chargedBudgets.add(in.readUTF());
+            }
+            debits.add(new OpenDebit(keyMillis, payeeId, accountNumber, amountPaise, timestamp,
+                    chargedBudgets));
+        }
+        return new Saved(savedOwner.isEmpty() ? null : savedOwner, debits);
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.smartfianacetracker.utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A compiled, immutable set of SMS parser rules. Packs are JSON documents
+ * with a {@code defaults} rule set and a list of {@code banks}, each naming
+ * the sender headers it applies to and overriding any default list:
+ *
+ * <pre>
+ * {"version": 3,
+ *  "defaults": {"financialKeywords": [...], "debitKeywords": [...], ...},
+ *  "banks": [{"id": "hdfc", "senders": ["HDFCBK"], "merchantLeads": [...]}]}
+ * </pre>
+ *
+ * Rules are keyword lists rather than regular expressions so that every pack,
+ * however it was authored, runs through {@link SmsParser}'s linear scanners.
+ * All lowercasing and sender indexing happens once in {@link #compile}.
+ */
+public final class RulePack {
+    public final int version;
+    public final RuleSet defaults;
+    // Open-addressed on normalized sender, probed in place so lookups allocate nothing
+    private final String[] senderKeys;
+    private final RuleSet[] senderRules;
+    private final int senderCount;
+
+    /** The rules compiled into the app, used until a pack has been loaded. */
+    public static final RulePack BUILT_IN = new RulePack(0, new RuleSet(
+        new String[] {
+            "debited", "credited", "spent", "received", "payment", "transferred",
+            "transaction", "upi", "neft", "imps", "withdrawn", "deposited", "balance"
+        },
+        new String[] {"debited", "spent", "paid"},
+        new String[] {"rs", "inr", "₹"},
+        new String[] {"a/c", "acct", "account"},
+        new String[] {"no", "number", "#", ""},
+        new String[] {"to", "from"},
+        new String[] {"via", "through", "using", "by"},
+        new String[] {"UPI", "NEFT", "IMPS"},
+        new String[] {"available balance", "avl bal", "avl. bal", "avbl bal", "balance", "bal"},
+        new String[] {"utr", "rrn", "refno", "ref", "reference", "txn id", "transaction id"},
+        new String[] {"refund", "reversal", "reversed"}
+    ), Collections.emptyMap());
+
+    private RulePack(int version, RuleSet defaults, Map<String, RuleSet> bySender) {
+        this.version = version;
+        this.defaults = defaults;
+        this.senderCount = bySender.size();
+        int capacity = Integer.highestOneBit(Math.max(1, bySender.size()) * 2) * 2;
+        this.senderKeys = new String[capacity];
+        this.senderRules = new RuleSet[capacity];
+        for (Map.Entry<String, RuleSet> entry : bySender.entrySet()) {
+            String key = entry.getKey();
+            int slot = hash(key, 0, key.length()) & (capacity - 1);
+            while (senderKeys[slot] != null) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            senderKeys[slot] = key;
+            senderRules[slot] = entry.getValue();
+        }
+    }
+
+    /** Rules for a sender header such as {@code VM-HDFCBK}; defaults when unknown. */
+    public RuleSet forSender(String sender) {
+        if (sender == null || senderCount == 0) {
+            return defaults;
+        }
+        // Same bounds as normalizeSender, without building the string
+        int start = 0;
+        int end = sender.length();
+        while (start < end && sender.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && sender.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int firstDash = sender.indexOf('-', start);
+        if (firstDash >= 0 && firstDash < end) {
+            start = firstDash + 1;
+            int secondDash = sender.indexOf('-', start);
+            if (secondDash >= 0 && secondDash < end) {
+                end = secondDash;
+            }
+        }
+
+        int mask = senderKeys.length - 1;
+        for (int slot = hash(sender, start, end) & mask; senderKeys[slot] != null; slot = (slot + 1) & mask) {
+            String key = senderKeys[slot];
+            if (key.length() == end - start && sender.regionMatches(true, start, key, 0, key.length())) {
+                return senderRules[slot];
+            }
+        }
+        return defaults;
+    }
+
+    public int bankCount() {
+        return senderCount;
+    }
+
+    /** Parses and compiles a pack. Throws on malformed JSON or missing fields. */
+    public static RulePack compile(String json) throws JSONException {
+        JSONObject root = new JSONObject(json);
+        int version = root.getInt("version");
+        RuleSet defaults = RuleSet.from(root.getJSONObject("defaults"), BUILT_IN.defaults);
+
+        Map<String, RuleSet> bySender = new HashMap<>();
+        JSONArray banks = root.optJSONArray("banks");
+        if (banks != null) {
+            for (int i = 0; i < banks.length(); i++) {
+                JSONObject bank = banks.getJSONObject(i);
+                RuleSet rules = RuleSet.from(bank, defaults);
+                JSONArray senders = bank.getJSONArray("senders");
+                for (int s = 0; s < senders.length(); s++) {
+                    bySender.put(normalizeSender(senders.getString(s)), rules);
+                }
+            }
+        }
+        return new RulePack(version, defaults, Collections.unmodifiableMap(bySender));
+    }
+
+    /**
+     * Reduces DLT sender headers like {@code VM-HDFCBK} or {@code AD-HDFCBK-S}
+     * to the bank part, {@code HDFCBK}.
+     */
+    static String normalizeSender(String sender) {
+        String upper = sender.trim().toUpperCase(Locale.ROOT);
+        int firstDash = upper.indexOf('-');
+        if (firstDash < 0) {
+            return upper;
+        }
+        int secondDash = upper.indexOf('-', firstDash + 1);
+        return secondDash < 0
+                ? upper.substring(firstDash + 1)
+                : upper.substring(firstDash + 1, secondDash);
+    }
+
+    /** Case-insensitive over ASCII, matching the upper-cased keys. */
+    private static int hash(String text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            h = 31 * h + (c >= 'a' && c <= 'z' ? c - ('a' - 'A') : c);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** One bank's keyword lists, lowercased where matching is case-insensitive. */
+    public static final class RuleSet {
+        public final String[] financialKeywords;
+        public final String[] debitKeywords;
+        public final String[] currencyTokens;
+        public final String[] accountKeywords;
+        public final String[] accountQualifiers;
+        public final String[] merchantLeads;
+        public final String[] merchantTerminators;
+        /** Case-sensitive, checked in order; the first one present is the mode. */
+        public final String[] modes;
+        /** Phrases that introduce the post-transaction balance, e.g. "avl bal". */
+        public final String[] balanceKeywords;
+        /** Phrases that introduce the UPI reference, UTR or RRN, e.g. "ref no". */
+        public final String[] referenceKeywords;
+        /** Words that mark a credit as a refund or the reversal of a failed debit. */
+        public final String[] refundKeywords;
+
+        RuleSet(String[] financialKeywords, String[] debitKeywords, String[] currencyTokens,
+                String[] accountKeywords, String[] accountQualifiers, String[] merchantLeads,
+                String[] merchantTerminators, String[] modes, String[] balanceKeywords,
+                String[] referenceKeywords, String[] refundKeywords) {
+            this.financialKeywords = financialKeywords;
+            this.debitKeywords = debitKeywords;
+            this.currencyTokens = currencyTokens;
+            this.accountKeywords = accountKeywords;
+            this.accountQualifiers = accountQualifiers;
+            this.merchantLeads = merchantLeads;
+            this.merchantTerminators = merchantTerminators;
+            this.modes = modes;
+            this.balanceKeywords = balanceKeywords;
+            this.referenceKeywords = referenceKeywords;
+            this.refundKeywords = refundKeywords;
+        }
+
+        static RuleSet from(JSONObject json, RuleSet base) throws JSONException {
+            return new RuleSet(
+                lowercase(json, "financialKeywords", base.financialKeywords),
+                lowercase(json, "debitKeywords", base.debitKeywords),
+                lowercase(json, "currencyTokens", base.currencyTokens),
+                lowercase(json, "accountKeywords", base.accountKeywords),
+                lowercase(json, "accountQualifiers", base.accountQualifiers),
+                lowercase(json, "merchantLeads", base.merchantLeads),
+                lowercase(json, "merchantTerminators", base.merchantTerminators),
+                strings(json, "modes", base.modes, false),
+                lowercase(json, "balanceKeywords", base.balanceKeywords),
+                lowercase(json, "referenceKeywords", base.referenceKeywords),
+                lowercase(json, "refundKeywords", base.refundKeywords)
+            );
+        }
+
+        private static String[] lowercase(JSONObject json, String key, String[] fallback) throws JSONException {
+            return strings(json, key, fallback, true);
+        }
+
+        private static String[] strings(JSONObject json, String key, String[] fallback,
+                                        boolean lowercase) throws JSONException {
+            JSONArray array = json.optJSONArray(key);
+            if (array == null) {
+                return fallback;
+            }
+            String[] values = new String[array.length()];
+            for (int i = 0; i < values.length; i++) {
+                String value = array.getString(i);
+                values[i] = lowercase ? value.toLowerCase(Locale.ROOT) : value;
+            }
+            return values;
+        }
+    }
+}
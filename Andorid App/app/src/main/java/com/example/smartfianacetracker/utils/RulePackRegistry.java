@@ -0,0 +1,203 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the {@link RulePack} the parser currently uses. Packs ship in assets
+ * ({@code parser_rules.json}) and can be replaced later by a newer one saved in
+ * the local cache; either way the file must carry a valid ECDSA signature from
+ * the rules signing key, and is compiled completely before it is published.
+ * Publishing is a single reference swap, so a parse in progress keeps the pack
+ * it started with and never sees a half-built one.
+ *
+ * <p>Packs are signed off-device:
+ * {@code openssl dgst -sha256 -sign rules_key.pem -out parser_rules.json.sig parser_rules.json}
+ */
+public class RulePackRegistry {
+    private static final String TAG = "RulePackRegistry";
+    private static final String PACK_FILE = "parser_rules.json";
+    private static final String SIGNATURE_SUFFIX = ".sig";
+    private static final String CACHE_DIR = "parser_rules";
+    // X.509 SubjectPublicKeyInfo of the P-256 rules signing key, hex encoded
+    private static final String TRUSTED_KEY_HEX =
+            "3059301306072a8648ce3d020106082a8648ce3d03010703420004c2338b1ab5"
+            + "4b7f5d097dcb5d130148371fc4252f2d1c289007e54f34847d0bc4b5939a623a"
+            + "86cebe363bb674bdaf79dbbaddbb4b082ec4ffa7a295359ee42522";
+
+    private static RulePackRegistry instance;
+
+    /** Notified on the loader thread after a newer pack has been swapped in. */
+    public interface Listener {
+        void onRulePackChanged(RulePack pack);
+    }
+
+    private final AtomicReference<RulePack> current = new AtomicReference<>(RulePack.BUILT_IN);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final PublicKey trustedKey;
+    private final Context context;
+    private final ExecutorService loadExecutor;
+
+    private RulePackRegistry(Context context) {
+        this.trustedKey = trustedKey();
+        this.context = context;
+        this.loadExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "RulePackLoader");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    RulePackRegistry(PublicKey trustedKey) {
+        this.trustedKey = trustedKey;
+        this.context = null;
+        this.loadExecutor = null;
+    }
+
+    /** Returns the registry, starting a background load of the bundled and cached packs. */
+    public static synchronized RulePackRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new RulePackRegistry(context.getApplicationContext());
+            instance.loadExecutor.execute(instance::loadInstalled);
+        }
+        return instance;
+    }
+
+    public RulePack current() {
+        return current.get();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Installs a pack obtained at runtime: verified and compiled here, then
+     * saved to the cache so it survives restarts. Runs on the loader thread.
+     */
+    public void installUpdate(byte[] json, byte[] signature) {
+        loadExecutor.execute(() -> {
+            RulePack pack = offer(json, signature, "update");
+            if (pack == null) {
+                return;
+            }
+            File dir = new File(context.getFilesDir(), CACHE_DIR);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                Log.e(TAG, "Cannot create rule pack cache " + dir);
+                return;
+            }
+            try {
+                // A crash between the two leaves a pair that fails verification; the bundled pack is used
+                StateFile.replace(new File(dir, PACK_FILE + SIGNATURE_SUFFIX), out -> out.write(signature));
+                StateFile.replace(new File(dir, PACK_FILE), out -> out.write(json));
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to cache rule pack v" + pack.version, e);
+            }
+        });
+    }
+
+    /**
+     * Verifies and compiles a pack and swaps it in if it is newer than the
+     * current one. Returns the pack if it was published, otherwise null.
+     */
+    RulePack offer(byte[] json, byte[] signature, String origin) {
+        RulePack pack;
+        try {
+            if (!verify(json, signature, trustedKey)) {
+                Log.w(TAG, "Rejected " + origin + " rule pack: bad signature");
+                return null;
+            }
+            pack = RulePack.compile(new String(json, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            Log.e(TAG, "Rejected " + origin + " rule pack", e);
+            return null;
+        }
+
+        while (true) {
+            RulePack existing = current.get();
+            if (pack.version <= existing.version) {
+                Log.d(TAG, "Ignoring " + origin + " rule pack v" + pack.version
+                        + ", have v" + existing.version);
+                return null;
+            }
+            if (current.compareAndSet(existing, pack)) {
+                break;
+            }
+        }
+        Log.d(TAG, "Using " + origin + " rule pack v" + pack.version
+                + " (" + pack.bankCount() + " sender headers)");
+        for (Listener listener : listeners) {
+            listener.onRulePackChanged(pack);
+        }
+        return pack;
+    }
+
+    static boolean verify(byte[] json, byte[] signature, PublicKey key)
+            throws GeneralSecurityException {
+        Signature verifier = Signature.getInstance("SHA256withECDSA");
+        verifier.initVerify(key);
+        verifier.update(json);
+        return verifier.verify(signature);
+    }
+
+    private void loadInstalled() {
+        long start = System.nanoTime();
+        try (InputStream json = context.getAssets().open(PACK_FILE);
+             InputStream signature = context.getAssets().open(PACK_FILE + SIGNATURE_SUFFIX)) {
+            offer(readFully(json), readFully(signature), "bundled");
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read bundled rule pack", e);
+        }
+
+        File dir = new File(context.getFilesDir(), CACHE_DIR);
+        File cachedJson = new File(dir, PACK_FILE);
+        File cachedSignature = new File(dir, PACK_FILE + SIGNATURE_SUFFIX);
+        if (cachedJson.isFile() && cachedSignature.isFile()) {
+            try (InputStream json = new FileInputStream(cachedJson);
+                 InputStream signature = new FileInputStream(cachedSignature)) {
+                offer(readFully(json), readFully(signature), "cached");
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read cached rule pack", e);
+            }
+        }
+        Log.d(TAG, "Rule packs loaded in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    static PublicKey trustedKey() {
+        byte[] encoded = new byte[TRUSTED_KEY_HEX.length() / 2];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = (byte) Integer.parseInt(TRUSTED_KEY_HEX.substring(2 * i, 2 * i + 2), 16);
+        }
+        try {
+            return KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid rules signing key", e);
+        }
+    }
+}
@@ -2,22 +2,72 @@ package com.example.smartfianacetracker.utils;
 
 import android.content.Context;
 import android.util.Log;
-import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DatabaseReference;
+import com.example.smartfianacetracker.models.Budget;
+import com.example.smartfianacetracker.models.BudgetMapper;
+import com.example.smartfianacetracker.models.RecurringPayment;
+import com.example.smartfianacetracker.models.RecurringPaymentMapper;
+import com.example.smartfianacetracker.models.SpendSketchMapper;
+import com.example.smartfianacetracker.models.Transaction;
+import com.example.smartfianacetracker.models.TransactionMapper;
+import com.example.smartfianacetracker.models.TransactionWireV2;
 import com.google.firebase.database.FirebaseDatabase;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ServiceManager {
     private static final String TAG = "ServiceManager";
-    private final DatabaseReference databaseReference;
+    private final DatabaseWriter databaseWriter;
     private final PreferenceManager preferenceManager;
+    private final BudgetBook budgets;
+    private final AtomicLong lastKeyMillis = new AtomicLong();
+    // "uid/payeeId" of v2 payee entries written by this process; rewriting one is harmless
+    private final Set<String> writtenPayees = ConcurrentHashMap.newKeySet();
+    // User whose budgets the book holds, and the listener keeping it current
+    private String budgetsUserId;
+    private DatabaseWriter.Subscription budgetsSubscription;
+    // Charges and refunds made before the book's first snapshot, replayed when it lands
+    private final List<PendingCharge> pendingCharges = new ArrayList<>();
+    // Budgets the debits among them were charged to on replay, by key millis
+    private final Map<Long, List<String>> replayedCharges = new HashMap<>();
     private static ServiceManager instance;
 
+    /** A debit to charge, or a refund of one, waiting for the budget book. */
+    private static final class PendingCharge {
+        final long debitKeyMillis;
+        // Null for a refund
+        final Transaction debit;
+        final double amount;
+        final long timestamp;
+        final String chargeId;
+        final List<String> budgetIds;
+
+        PendingCharge(long debitKeyMillis, Transaction debit, double amount, long timestamp, String chargeId,
+                      List<String> budgetIds) {
+            this.debitKeyMillis = debitKeyMillis;
+            this.debit = debit;
+            this.amount = amount;
+            this.timestamp = timestamp;
+            this.chargeId = chargeId;
+            this.budgetIds = budgetIds;
+        }
+    }
+
     private ServiceManager(Context context) {
-        databaseReference = FirebaseDatabase.getInstance().getReference();
-        preferenceManager = new PreferenceManager(context);
+        this(new FirebaseDatabaseWriter(FirebaseDatabase.getInstance().getReference()),
+                PreferenceManager.getInstance(context));
+    }
+
+    ServiceManager(DatabaseWriter databaseWriter, PreferenceManager preferenceManager) {
+        this.databaseWriter = databaseWriter;
+        this.preferenceManager = preferenceManager;
+        this.budgets = new BudgetBook();
+        watchBudgets();
     }
 
     public static synchronized ServiceManager getInstance(Context context) {
@@ -27,13 +77,33 @@ public class ServiceManager {
         return instance;
     }
 
+    /**
+     * Starts keeping the budget book current for the signed-in user, so the
+     * first snapshot is usually in before the first debit; called when the
+     * manager is built and on sign-in.
+     */
+    public void watchBudgets() {
+        String userId = preferenceManager.getUserId();
+        if (userId != null) {
+            watchBudgets(userId);
+        }
+    }
+
+    /** The signed-in user, whose nodes every write here goes under; null when signed out. */
+    public String getUserId() {
+        return preferenceManager.getUserId();
+    }
+
     public void updateServiceStatus(String status) {
         String userId = preferenceManager.getUserId();
         if (userId != null) {
-            databaseReference.child("users").child(userId)
-                .child("service_status")
-                .setValue("running_" + System.currentTimeMillis())
-                .addOnFailureListener(e -> Log.e(TAG, "Failed to update service status", e));
+            databaseWriter.setValue(userPath(userId, "service_status"),
+                "running_" + System.currentTimeMillis(),
+                error -> {
+                    if (error != null) {
+                        Log.e(TAG, "Failed to update service status", error);
+                    }
+                });
         }
     }
 
@@ -44,13 +114,52 @@ public class ServiceManager {
             return;
         }
 
-        String key = type + "_" + System.currentTimeMillis();
-        databaseReference.child("users").child(userId)
-            .child(type)
-            .child(key)
-            .setValue(transactionData)
-            .addOnSuccessListener(aVoid -> Log.d(TAG, "Transaction stored successfully"))
-            .addOnFailureListener(e -> Log.e(TAG, "Failed to store transaction", e));
+        writeV1(userId, type, nextKeyMillis(), transactionData);
+    }
+
+    /**
+     * The record alone. Records in either format carry the server's time of
+     * their last write as {@code uploadedAt}, the field {@link DeltaSync}
+     * pulls by.
+     */
+    private void writeV1(String userId, String type, long keyMillis, Map<String, Object> transactionData) {
+        String key = type + "_" + keyMillis;
+        transactionData.put(TransactionMapper.UPLOADED_AT, databaseWriter.serverTimestamp());
+        DatabaseWriter.CompletionListener listener = error -> {
+            if (error == null) {
+                Log.d(TAG, "Transaction stored successfully");
+            } else {
+                Log.e(TAG, "Failed to store transaction", error);
+            }
+        };
+        databaseWriter.setValue(userPath(userId, type + "/" + key), transactionData, listener);
+    }
+
+    /** One multi-path write: the record, and its payee entry the first time we see it. */
+    private void writeV2(String userId, long keyMillis, Transaction transaction) {
+        String payeeId = transaction.payeeId != null
+                ? transaction.payeeId
+                : TransactionWireV2.payeeId(transaction.merchantName, transaction.upiId);
+        String payeeKey = userId + "/" + payeeId;
+        Map<String, Object> updates = new HashMap<>(4, 1f);
+        Map<String, Object> record = TransactionWireV2.encode(transaction, payeeId);
+        record.put(TransactionWireV2.UPLOADED_AT, databaseWriter.serverTimestamp());
+        updates.put(TransactionWireV2.NODE + "/" + TransactionWireV2.key(keyMillis), record);
+        boolean newPayee = writtenPayees.add(payeeKey);
+        if (newPayee) {
+            updates.put(TransactionWireV2.PAYEE_NODE + "/" + payeeId,
+                    TransactionWireV2.encodePayee(transaction.merchantName, transaction.upiId));
+        }
+        databaseWriter.updateChildren("users/" + userId, updates, error -> {
+            if (error == null) {
+                Log.d(TAG, "Transaction stored successfully (v2)");
+            } else {
+                if (newPayee) {
+                    writtenPayees.remove(payeeKey);
+                }
+                Log.e(TAG, "Failed to store transaction (v2)", error);
+            }
+        });
     }
 
     public void updateBudget(String budgetId, Map<String, Object> updates) {
@@ -60,12 +169,17 @@ public class ServiceManager {
             return;
         }
 
-        databaseReference.child("users").child(userId)
-            .child("budgets")
-            .child(budgetId)
-            .updateChildren(updates)
-            .addOnSuccessListener(aVoid -> Log.d(TAG, "Budget updated successfully"))
-            .addOnFailureListener(e -> Log.e(TAG, "Failed to update budget", e));
+        databaseWriter.updateChildren(userPath(userId, "budgets/" + budgetId), updates, error -> {
+            if (error == null) {
+                Log.d(TAG, "Budget updated successfully");
+            } else {
+                Log.e(TAG, "Failed to update budget", error);
+            }
+        });
+    }
+
+    public void createBudget(Budget budget) {
+        createBudget(BudgetMapper.toMap(budget));
     }
 
     public void createBudget(Map<String, Object> budgetData) {
@@ -75,38 +189,347 @@ public class ServiceManager {
             return;
         }
 
-        String budgetId = "budget_" + System.currentTimeMillis();
-        databaseReference.child("users").child(userId)
-            .child("budgets")
-            .child(budgetId)
-            .setValue(budgetData)
-            .addOnSuccessListener(aVoid -> Log.d(TAG, "Budget created successfully"))
-            .addOnFailureListener(e -> Log.e(TAG, "Failed to create budget", e));
+        String budgetId = "budget_" + nextKeyMillis();
+        databaseWriter.setValue(userPath(userId, "budgets/" + budgetId), budgetData, error -> {
+            if (error == null) {
+                Log.d(TAG, "Budget created successfully");
+            } else {
+                Log.e(TAG, "Failed to create budget", error);
+            }
+        });
     }
 
-    public void storeDebitTransaction(String accountNumber, String merchantName, double amount, 
+    public void storeDebitTransaction(String accountNumber, String merchantName, double amount,
                                     String transactionMode, String upiId) {
-        Map<String, Object> transactionData = new HashMap<>();
-        transactionData.put("accountNumber", accountNumber);
-        transactionData.put("amount", amount);
-        transactionData.put("merchantName", merchantName);
-        transactionData.put("timestamp", System.currentTimeMillis());
-        transactionData.put("transactionMode", transactionMode);
-        transactionData.put("upiId", upiId);
+        storeDebitTransaction(accountNumber, merchantName, amount, transactionMode, upiId,
+                System.currentTimeMillis());
+    }
 
-        storeTransaction("debit", transactionData);
+    public void storeDebitTransaction(String accountNumber, String merchantName, double amount,
+                                    String transactionMode, String upiId, long timestamp) {
+        storeTransaction(new Transaction(true, accountNumber, amount, merchantName, timestamp,
+                transactionMode, upiId));
     }
 
-    public void storeCreditTransaction(String accountNumber, String merchantName, double amount, 
+    public void storeCreditTransaction(String accountNumber, String merchantName, double amount,
                                      String transactionMode, String upiId) {
-        Map<String, Object> transactionData = new HashMap<>();
-        transactionData.put("accountNumber", accountNumber);
-        transactionData.put("amount", amount);
-        transactionData.put("merchantName", merchantName);
-        transactionData.put("timestamp", System.currentTimeMillis());
-        transactionData.put("transactionMode", transactionMode);
-        transactionData.put("upiId", upiId);
+        storeCreditTransaction(accountNumber, merchantName, amount, transactionMode, upiId,
+                System.currentTimeMillis());
+    }
+
+    public void storeCreditTransaction(String accountNumber, String merchantName, double amount,
+                                     String transactionMode, String upiId, long timestamp) {
+        storeTransaction(new Transaction(false, accountNumber, amount, merchantName, timestamp,
+                transactionMode, upiId));
+    }
+
+    /**
+     * Writes the v1 record, the v2 record or both, depending on the
+     * {@link WireFormat} setting. Both share one key timestamp, which is
+     * returned (0 when nothing was written): {@code <node>_<millis>} in v1,
+     * {@link TransactionWireV2#key} in v2.
+     *
+     * <p>A debit is charged to the {@link BudgetBook budgets} it counts
+     * against in a write of its own, sent right after its records, so a
+     * charge the rules reject (one already made on another device) never
+     * loses the record. A debit stored before the budgets have first loaded
+     * is charged once they have.
+     */
+    public long storeTransaction(Transaction transaction) {
+        return store(transaction, null);
+    }
+
+    /**
+     * Persists a parsed record. The model and map built here are the only
+     * allocations per transaction on the ingest path; the record can be
+     * reused as soon as this returns. Returns the key millis, as above, and
+     * sets {@link TransactionRecord#chargedBudgets}.
+     */
+    public long storeTransaction(TransactionRecord record) {
+        return store(toTransaction(record), record);
+    }
+
+    /** The model stored for a parsed record. */
+    static Transaction toTransaction(TransactionRecord record) {
+        Transaction transaction = new Transaction(record.isDebit, record.accountNumber.toString(),
+                record.amount, record.merchantName.toString(), record.timestamp, record.transactionMode,
+                record.upiId.toString());
+        transaction.category = record.category;
+        transaction.payeeId = record.payeeId;
+        if (!record.referenceNumber.isEmpty()) {
+            transaction.referenceNumber = record.referenceNumber.toString();
+        }
+        return transaction;
+    }
+
+    private long store(Transaction transaction, TransactionRecord record) {
+        String userId = preferenceManager.getUserId();
+        if (userId == null) {
+            Log.e(TAG, "Cannot store transaction: User ID is null");
+            return 0;
+        }
+
+        long keyMillis = nextKeyMillis();
+        List<String> charged = Collections.emptyList();
+        Map<String, Object> budgetUpdates = null;
+        if (transaction.isDebit) {
+            String chargeId = BudgetBook.chargeId(true, transaction.accountNumber, transaction.amount,
+                    transaction.timestamp, transaction.referenceNumber);
+            synchronized (this) {
+                watchBudgets(userId);
+                if (!budgets.isLoaded()) {
+                    pendingCharges.add(new PendingCharge(keyMillis, transaction, transaction.amount,
+                            transaction.timestamp, chargeId, null));
+                } else {
+                    charged = budgets.matching(transaction.merchantName, transaction.upiId, transaction.category);
+                    if (!charged.isEmpty()) {
+                        budgetUpdates = new HashMap<>();
+                        budgets.addSpend(charged, transaction.amount, transaction.timestamp, chargeId,
+                                budgetUpdates, databaseWriter);
+                    }
+                }
+            }
+        }
+        if (record != null) {
+            record.chargedBudgets = charged;
+        }
+
+        WireFormat format = preferenceManager.getWireFormat();
+        if (format.writesV1()) {
+            writeV1(userId, transaction.node(), keyMillis, TransactionMapper.toMap(transaction));
+        }
+        if (format.writesV2()) {
+            writeV2(userId, keyMillis, transaction);
+        }
+        // After the record and apart from it, so a charge the rules reject never loses the record
+        if (budgetUpdates != null) {
+            sendSpend(userId, transaction.amount, budgetUpdates);
+        }
+        return keyMillis;
+    }
+
+    /**
+     * Links a credit to the debit it reverses, in each format the records
+     * are written in, and takes {@code amount} back off the budgets the debit
+     * was charged to, in the period of the debit's {@code debitTimestamp}.
+     * The refund is a write of its own, so a refund the rules reject never
+     * loses the links. {@code creditChargeId} is the credit's
+     * {@link BudgetBook#chargeId}, so the same reversal seen twice is only
+     * taken off once.
+     */
+    public void recordReversal(long debitKeyMillis, long creditKeyMillis, double amount, long debitTimestamp,
+                               String creditChargeId, List<String> chargedBudgets) {
+        linkPair("reversal", debitKeyMillis, creditKeyMillis,
+                TransactionMapper.REVERSED_BY, TransactionMapper.REVERSAL_OF,
+                TransactionWireV2.REVERSED_BY, TransactionWireV2.REVERSAL_OF, amount, debitTimestamp,
+                creditChargeId, chargedBudgets);
+    }
+
+    /**
+     * Marks both legs of a transfer between the user's own accounts, each
+     * pointing at the other, and takes the debit leg back off the budgets it
+     * was charged to, like {@link #recordReversal}.
+     */
+    public void recordInternalTransfer(long debitKeyMillis, long creditKeyMillis, double amount,
+                                       long debitTimestamp, String creditChargeId, List<String> chargedBudgets) {
+        linkPair("internal transfer", debitKeyMillis, creditKeyMillis,
+                TransactionMapper.INTERNAL_TRANSFER, TransactionMapper.INTERNAL_TRANSFER,
+                TransactionWireV2.INTERNAL_TRANSFER, TransactionWireV2.INTERNAL_TRANSFER, amount, debitTimestamp,
+                creditChargeId, chargedBudgets);
+    }
 
-        storeTransaction("credit", transactionData);
+    /**
+     * Writes the recurring series for {@code payeeId}, or removes it when
+     * {@code payment} is null because the payee no longer pays on a schedule.
+     */
+    public void recordRecurring(String payeeId, RecurringPayment payment) {
+        String userId = preferenceManager.getUserId();
+        if (userId == null) {
+            Log.e(TAG, "Cannot record recurring payment: User ID is null");
+            return;
+        }
+
+        databaseWriter.setValue(userPath(userId, RecurringPaymentMapper.NODE + "/" + payeeId),
+                payment != null ? RecurringPaymentMapper.toMap(payment) : null, error -> {
+            if (error == null) {
+                Log.d(TAG, "Recurring payment " + (payment != null ? "updated" : "removed"));
+            } else {
+                Log.e(TAG, "Failed to record recurring payment", error);
+            }
+        });
+    }
+
+    /**
+     * Writes changed entries of the spend sketches; see {@link SpendSketches}.
+     * Keys are relative to the {@code sketches} node, and a null value
+     * removes an entry.
+     */
+    public void recordSketches(Map<String, Object> updates) {
+        String userId = preferenceManager.getUserId();
+        if (userId == null) {
+            Log.e(TAG, "Cannot record spend sketches: User ID is null");
+            return;
+        }
+
+        databaseWriter.updateChildren(userPath(userId, SpendSketchMapper.NODE), updates, error -> {
+            if (error == null) {
+                Log.d(TAG, "Spend sketches updated: " + updates.size() + " entries");
+            } else {
+                Log.e(TAG, "Failed to record spend sketches", error);
+            }
+        });
+    }
+
+    /** Sets {@code debitField} on the debit to the credit's key and {@code creditField} on the credit to the debit's. */
+    private void linkPair(String kind, long debitKeyMillis, long creditKeyMillis, String debitField,
+                          String creditField, String debitFieldV2, String creditFieldV2, double amount,
+                          long debitTimestamp, String creditChargeId, List<String> chargedBudgets) {
+        String userId = preferenceManager.getUserId();
+        if (userId == null) {
+            Log.e(TAG, "Cannot record " + kind + ": User ID is null");
+            return;
+        }
+
+        Map<String, Object> updates = new HashMap<>();
+        // Bumped so the change reaches other devices' DeltaSync
+        Object now = databaseWriter.serverTimestamp();
+        WireFormat format = preferenceManager.getWireFormat();
+        if (format.writesV1()) {
+            String debitKey = Transaction.DEBIT_NODE + "_" + debitKeyMillis;
+            String creditKey = Transaction.CREDIT_NODE + "_" + creditKeyMillis;
+            updates.put(Transaction.DEBIT_NODE + "/" + debitKey + "/" + debitField, creditKey);
+            updates.put(Transaction.CREDIT_NODE + "/" + creditKey + "/" + creditField, debitKey);
+            updates.put(Transaction.DEBIT_NODE + "/" + debitKey + "/" + TransactionMapper.UPLOADED_AT, now);
+            updates.put(Transaction.CREDIT_NODE + "/" + creditKey + "/" + TransactionMapper.UPLOADED_AT, now);
+        }
+        if (format.writesV2()) {
+            String debitKey = TransactionWireV2.key(debitKeyMillis);
+            String creditKey = TransactionWireV2.key(creditKeyMillis);
+            updates.put(TransactionWireV2.NODE + "/" + debitKey + "/" + debitFieldV2, creditKey);
+            updates.put(TransactionWireV2.NODE + "/" + creditKey + "/" + creditFieldV2, debitKey);
+            updates.put(TransactionWireV2.NODE + "/" + debitKey + "/" + TransactionWireV2.UPLOADED_AT, now);
+            updates.put(TransactionWireV2.NODE + "/" + creditKey + "/" + TransactionWireV2.UPLOADED_AT, now);
+        }
+        databaseWriter.updateChildren("users/" + userId, updates, error -> {
+            if (error == null) {
+                Log.d(TAG, "Recorded " + kind);
+            } else {
+                Log.e(TAG, "Failed to record " + kind, error);
+            }
+        });
+
+        synchronized (this) {
+            watchBudgets(userId);
+            if (!budgets.isLoaded()) {
+                pendingCharges.add(new PendingCharge(debitKeyMillis, null, -amount, debitTimestamp, creditChargeId,
+                        chargedBudgets));
+            } else {
+                refund(userId, debitKeyMillis, amount, debitTimestamp, creditChargeId, chargedBudgets);
+            }
+        }
+    }
+
+    /**
+     * Takes {@code amount} back off the budgets a debit was charged to: those
+     * given, or, for a debit charged only once the book had loaded, those
+     * it was charged to then.
+     */
+    private void refund(String userId, long debitKeyMillis, double amount, long debitTimestamp, String chargeId,
+                        List<String> budgetIds) {
+        if (budgetIds == null || budgetIds.isEmpty()) {
+            budgetIds = replayedCharges.get(debitKeyMillis);
+        }
+        if (budgetIds != null) {
+            writeSpend(userId, budgetIds, -amount, debitTimestamp, chargeId);
+        }
+    }
+
+    /** Moves the budgets' spend in a write of its own, as {@link BudgetBook#addSpend} lays it out. */
+    private void writeSpend(String userId, List<String> budgetIds, double amount, long timestamp, String chargeId) {
+        Map<String, Object> updates = new HashMap<>();
+        budgets.addSpend(budgetIds, amount, timestamp, chargeId, updates, databaseWriter);
+        sendSpend(userId, amount, updates);
+    }
+
+    /** Writes {@code updates} from {@link BudgetBook#addSpend} on their own. */
+    private void sendSpend(String userId, double amount, Map<String, Object> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        databaseWriter.updateChildren("users/" + userId, updates, error -> {
+            if (error == null) {
+                Log.d(TAG, "Budget spend moved by " + amount);
+            } else {
+                // Also when the charge was already made elsewhere; the next snapshot corrects the book
+                Log.w(TAG, "Budget spend not moved by " + amount, error);
+            }
+        });
+    }
+
+    /** Charges and refunds everything that waited for the book, in the order it came. */
+    private void replayPending(String userId) {
+        for (PendingCharge pending : pendingCharges) {
+            if (pending.debit != null) {
+                List<String> charged = budgets.matching(pending.debit.merchantName, pending.debit.upiId,
+                        pending.debit.category);
+                if (!charged.isEmpty()) {
+                    replayedCharges.put(pending.debitKeyMillis, charged);
+                    writeSpend(userId, charged, pending.amount, pending.timestamp, pending.chargeId);
+                }
+            } else {
+                refund(userId, pending.debitKeyMillis, -pending.amount, pending.timestamp, pending.chargeId,
+                        pending.budgetIds);
+            }
+        }
+        if (!pendingCharges.isEmpty()) {
+            Log.d(TAG, "Replayed " + pendingCharges.size() + " budget charges made before the budgets loaded");
+        }
+        pendingCharges.clear();
+    }
+
+    /**
+     * Points the budget book at {@code userId}'s budgets, once per signed-in
+     * user. Until its first snapshot arrives, charges and refunds wait in
+     * memory rather than being checked against an empty book.
+     */
+    private synchronized void watchBudgets(String userId) {
+        if (userId.equals(budgetsUserId)) {
+            return;
+        }
+        if (budgetsSubscription != null) {
+            budgetsSubscription.close();
+        }
+        budgets.clear();
+        pendingCharges.clear();
+        replayedCharges.clear();
+        budgetsUserId = userId;
+        budgetsSubscription = databaseWriter.listen(userPath(userId, "budgets"), value -> {
+            synchronized (this) {
+                if (userId.equals(budgetsUserId)) {
+                    budgets.update(value);
+                    replayPending(userId);
+                }
+            }
+        });
+    }
+
+    private static String userPath(String userId, String child) {
+        return "users/" + userId + "/" + child;
+    }
+
+    /**
+     * Keys stay in the existing {@code <type>_<millis>} shape but are strictly
+     * increasing, so two messages handled in the same millisecond no longer
+     * overwrite each other.
+     */
+    private long nextKeyMillis() {
+        long now = System.currentTimeMillis();
+        while (true) {
+            long last = lastKeyMillis.get();
+            long next = Math.max(now, last + 1);
+            if (lastKeyMillis.compareAndSet(last, next)) {
+                return next;
+            }
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,569 @@
+package com.example.smartfianacetracker.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Turns the body of a bank SMS into {@link TransactionDetails}. Kept free of
+ * Android dependencies so the ingest path can be exercised on the host JVM.
+ *
+ * <p>Every field is extracted by a single forward scan rather than a
+ * backtracking regex, so parse time is linear in the message length whatever
+ * the input looks like. A per-message time budget is enforced on top of that
+ * as a backstop; a message that exceeds it raises
+ * {@link ParseTimeoutException} instead of stalling the ingest thread.
+ *
+ * <p>The keywords themselves come from a {@link RulePack}. The pack is read
+ * once at the start of each message, so a pack swapped in mid-parse only
+ * affects the next message.
+ */
+public class SmsParser {
+    /**
+     * Bump whenever extraction code changes. Combined with the rule pack
+     * version in {@link #version()} so quarantined messages rejected by an
+     * older parser or older rules are picked up by {@link QuarantineStore#replay}.
+     */
+    public static final int VERSION = 6;
+
+    /** Generous for a real SMS (a few microseconds), tiny for the ingest thread. */
+    public static final long DEFAULT_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    // Above the steps every scan together takes on a long multi-part SMS, so the clock is only
+    // read for pathological input and a preempted ingest thread never times out a real message
+    private static final int DEADLINE_CHECK_INTERVAL = 8192;
+    // Anything longer is a reference or phone number, not a rupee amount
+    private static final int MAX_AMOUNT_DIGITS = 12;
+    // RRNs are 12 digits, NEFT/RTGS UTRs 16 to 22 characters
+    private static final int MIN_REFERENCE_LENGTH = 6;
+    private static final int MAX_REFERENCE_LENGTH = 35;
+    private static final int MIN_REFERENCE_DIGITS = 4;
+    private static final String[] REFERENCE_FILLERS = {"no", "number", "id", "is"};
+
+    public static final String UNKNOWN_MERCHANT = "Unknown";
+
+    private final Supplier<RulePack> rulePacks;
+    private final long budgetNanos;
+    // One reusable deadline per ingest thread
+    private final ThreadLocal<Deadline> deadlines = ThreadLocal.withInitial(Deadline::new);
+
+    public SmsParser() {
+        this(DEFAULT_BUDGET_NANOS);
+    }
+
+    public SmsParser(long budgetNanos) {
+        this(() -> RulePack.BUILT_IN, budgetNanos);
+    }
+
+    public SmsParser(Supplier<RulePack> rulePacks, long budgetNanos) {
+        this.rulePacks = rulePacks;
+        this.budgetNanos = budgetNanos;
+    }
+
+    /** Parser code version and active rule pack version, as one comparable number. */
+    public int version() {
+        return VERSION * 100_000 + rulePacks.get().version;
+    }
+
+    public boolean isFinancialMessage(String message) {
+        return isFinancialMessage(null, message);
+    }
+
+    public boolean isFinancialMessage(String sender, String message) {
+        RulePack.RuleSet rules = rulePacks.get().forSender(sender);
+        for (String keyword : rules.financialKeywords) {
+            if (containsIgnoreCase(message, keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public TransactionDetails extractTransactionDetails(String message) {
+        return extractTransactionDetails(null, message);
+    }
+
+    public TransactionDetails extractTransactionDetails(String sender, String message) {
+        TransactionRecord record = new TransactionRecord();
+        parse(sender, message, record);
+        TransactionDetails details = new TransactionDetails();
+        details.isDebit = record.isDebit;
+        details.amount = record.amount;
+        details.accountNumber = record.accountNumber.toString();
+        details.merchantName = record.merchantName.toString();
+        details.transactionMode = record.transactionMode;
+        details.upiId = record.upiId.toString();
+        details.referenceNumber = record.referenceNumber.toString();
+        details.hasBalance = record.hasBalance;
+        details.balance = record.balance;
+        details.isRefund = record.isRefund;
+        return details;
+    }
+
+    /**
+     * Fills {@code out} from {@code message} without allocating: text fields
+     * become views over {@code message}. A message with neither a merchant
+     * phrase nor a UPI id gets {@link #UNKNOWN_MERCHANT} as its merchant.
+     */
+    public void parse(String sender, String message, TransactionRecord out) {
+        RulePack.RuleSet rules = rulePacks.get().forSender(sender);
+        Deadline deadline = deadlines.get().start(budgetNanos);
+
+        // Determine transaction type
+        out.isDebit = false;
+        for (String keyword : rules.debitKeywords) {
+            if (containsIgnoreCase(message, keyword)) {
+                out.isDebit = true;
+                break;
+            }
+        }
+        out.isRefund = false;
+        for (int i = 0; i < rules.refundKeywords.length && !out.isDebit; i++) {
+            if (containsIgnoreCase(message, rules.refundKeywords[i])) {
+                out.isRefund = true;
+                break;
+            }
+        }
+
+        out.amount = extractAmount(message, rules, deadline);
+        double balance = extractBalance(message, rules, deadline);
+        out.hasBalance = balance >= 0;
+        out.balance = out.hasBalance ? balance : 0;
+        extractAccountNumber(message, rules, deadline, out.accountNumber);
+        extractUpiId(message, deadline, out.upiId);
+        extractReference(message, rules, deadline, out.referenceNumber);
+
+        // Determine transaction mode
+        out.transactionMode = "OTHER";
+        for (String mode : rules.modes) {
+            if (message.contains(mode)) {
+                out.transactionMode = mode;
+                break;
+            }
+        }
+
+        if (!extractMerchant(message, rules, deadline, out.merchantName)) {
+            if (!out.upiId.isEmpty()) {
+                out.merchantName.set(out.upiId);
+            } else {
+                out.merchantName.set(UNKNOWN_MERCHANT, 0, UNKNOWN_MERCHANT.length());
+            }
+        }
+    }
+
+    /**
+     * First {@code <currency token>[.\s]*} followed by an {@link #amountAt amount};
+     * 0 when absent. The separator run after each currency token ends at the
+     * next non-separator, so no character is scanned more than twice.
+     */
+    private static double extractAmount(String message, RulePack.RuleSet rules, Deadline deadline) {
+        int n = message.length();
+        for (int i = 0; i < n; i++) {
+            deadline.tick(i);
+            int j = currencyEnd(message, i, rules.currencyTokens);
+            if (j < 0) {
+                continue;
+            }
+            double amount = amountAt(message, skipDotsAndSpaces(message, j));
+            if (amount >= 0) {
+                return amount;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The amount after the first balance phrase, as in {@code "Avl Bal: Rs 12,000.50"}
+     * or {@code "Bal INR 300"}; the currency token is optional. -1 when the
+     * message has none. A balance written with a minus sign is left out
+     * rather than read as positive.
+     */
+    private static double extractBalance(String message, RulePack.RuleSet rules, Deadline deadline) {
+        int n = message.length();
+        for (int i = 0; i < n; i++) {
+            deadline.tick(i);
+            if (i > 0 && isLetter(message.charAt(i - 1))) {
+                continue;
+            }
+            int j = keywordEnd(message, i, rules.balanceKeywords);
+            if (j < 0) {
+                continue;
+            }
+            j = skipBalanceSeparators(message, j);
+            if (matchesAt(message, j, "is") && (j + 2 >= n || !isLetter(message.charAt(j + 2)))) {
+                j = skipBalanceSeparators(message, j + 2);
+            }
+            int afterCurrency = currencyEnd(message, j, rules.currencyTokens);
+            if (afterCurrency >= 0) {
+                j = skipDotsAndSpaces(message, afterCurrency);
+            }
+            double balance = amountAt(message, j);
+            if (balance >= 0) {
+                return balance;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The UPI reference, UTR or RRN after a reference phrase, as in
+     * {@code "UPI Ref No. 512345678901"} or {@code "UTR: HDFCN52025031412345678"}:
+     * a run of letters and digits of plausible length with at least a few
+     * digits. Empty when absent.
+     */
+    private static void extractReference(String message, RulePack.RuleSet rules, Deadline deadline,
+                                         TextSlice out) {
+        int n = message.length();
+        for (int i = 0; i < n; i++) {
+            deadline.tick(i);
+            if (i > 0 && isLetter(message.charAt(i - 1))) {
+                continue;
+            }
+            int j = keywordEnd(message, i, rules.referenceKeywords);
+            if (j < 0) {
+                continue;
+            }
+            // "Ref No.:", "txn id is", "UTR#"
+            while (true) {
+                j = skipReferenceSeparators(message, j);
+                int filler = keywordEnd(message, j, REFERENCE_FILLERS);
+                if (filler < 0) {
+                    break;
+                }
+                j = filler;
+            }
+            int start = j;
+            int digits = 0;
+            while (j < n && (isLetter(message.charAt(j)) || isDigit(message.charAt(j)))) {
+                if (isDigit(message.charAt(j))) {
+                    digits++;
+                }
+                j++;
+            }
+            int length = j - start;
+            if (length >= MIN_REFERENCE_LENGTH && length <= MAX_REFERENCE_LENGTH
+                    && digits >= MIN_REFERENCE_DIGITS) {
+                out.set(message, start, j);
+                return;
+            }
+        }
+        out.clear();
+    }
+
+    /**
+     * {@code digits[,digits][.dd]} starting at {@code j} with a plausible
+     * number of digits, or -1. Digits are accumulated as a whole number of
+     * hundredths, so the result is the same double
+     * {@code Double.parseDouble} would give.
+     */
+    private static double amountAt(String message, int j) {
+        int n = message.length();
+        if (j >= n || !isDigit(message.charAt(j))) {
+            return -1;
+        }
+        long whole = 0;
+        int digits = 0;
+        while (j < n && (isDigit(message.charAt(j)) || message.charAt(j) == ',')) {
+            if (message.charAt(j) != ',') {
+                if (++digits <= MAX_AMOUNT_DIGITS) {
+                    whole = whole * 10 + (message.charAt(j) - '0');
+                }
+            }
+            j++;
+        }
+        if (digits > MAX_AMOUNT_DIGITS) {
+            return -1;
+        }
+        if (j + 1 < n && message.charAt(j) == '.' && isDigit(message.charAt(j + 1))) {
+            long tenths = whole * 10 + (message.charAt(j + 1) - '0');
+            if (j + 2 < n && isDigit(message.charAt(j + 2))) {
+                return (tenths * 10 + (message.charAt(j + 2) - '0')) / 100.0;
+            }
+            return tenths / 10.0;
+        }
+        return whole;
+    }
+
+    /** Index just past a keyword starting at {@code i} that ends a word, or -1. */
+    private static int keywordEnd(String message, int i, String[] keywords) {
+        for (String keyword : keywords) {
+            int end = i + keyword.length();
+            if (matchesAt(message, i, keyword)
+                    && (end >= message.length() || !isLetter(message.charAt(end)))) {
+                return end;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipDotsAndSpaces(String message, int i) {
+        while (i < message.length() && (message.charAt(i) == '.' || isSpace(message.charAt(i)))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipReferenceSeparators(String message, int i) {
+        while (i < message.length()) {
+            char c = message.charAt(i);
+            if (c != '.' && c != ':' && c != '#' && c != '-' && !isSpace(c)) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipBalanceSeparators(String message, int i) {
+        while (i < message.length()) {
+            char c = message.charAt(i);
+            if (c != '.' && c != ':' && c != '=' && !isSpace(c)) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Index just past a currency token starting at {@code i}, or -1. Tokens
+     * that start with a letter must also start a word.
+     */
+    private static int currencyEnd(String message, int i, String[] currencyTokens) {
+        boolean wordStart = i == 0 || !isLetter(message.charAt(i - 1));
+        for (String token : currencyTokens) {
+            if ((wordStart || !isLetter(token.charAt(0)))
+                    && matchesAt(message, i, token)) {
+                return i + token.length();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Masked or plain account number after an account keyword such as
+     * "a/c", e.g. {@code XX1234}; empty when absent.
+     */
+    private static void extractAccountNumber(String message, RulePack.RuleSet rules, Deadline deadline,
+                                             TextSlice out) {
+        int n = message.length();
+        for (int i = 0; i < n; i++) {
+            deadline.tick(i);
+            if (i > 0 && isLetter(message.charAt(i - 1))) {
+                continue;
+            }
+            for (String keyword : rules.accountKeywords) {
+                if (!matchesAt(message, i, keyword)) {
+                    continue;
+                }
+                int afterKeyword = skipSpaces(message, i + keyword.length());
+                for (String qualifier : rules.accountQualifiers) {
+                    if (!matchesAt(message, afterKeyword, qualifier)) {
+                        continue;
+                    }
+                    int j = skipSpaces(message, afterKeyword + qualifier.length());
+                    while (j < n && (message.charAt(j) == '.' || message.charAt(j) == ':')) {
+                        j++;
+                    }
+                    j = skipSpaces(message, j);
+                    int start = j;
+                    while (j < n && isMaskChar(message.charAt(j))) {
+                        j++;
+                    }
+                    while (j < n && isDigit(message.charAt(j))) {
+                        j++;
+                    }
+                    if (j > start) {
+                        out.set(message, start, j);
+                        return;
+                    }
+                }
+            }
+        }
+        out.clear();
+    }
+
+    /**
+     * First {@code [\w.-]+@[\w.-]+}. Anchored on each '@' and expanded in both
+     * directions, so a long run without '@' is never rescanned.
+     */
+    private static void extractUpiId(String message, Deadline deadline, TextSlice out) {
+        int n = message.length();
+        int searchFrom = 0;
+        for (int at = message.indexOf('@'); at >= 0; at = message.indexOf('@', at + 1)) {
+            deadline.tick(at);
+            int start = at;
+            while (start > searchFrom && isHandleChar(message.charAt(start - 1))) {
+                start--;
+            }
+            int end = at + 1;
+            while (end < n && isHandleChar(message.charAt(end))) {
+                end++;
+            }
+            if (start < at && end > at + 1) {
+                out.set(message, start, end);
+                return;
+            }
+            searchFrom = end;
+        }
+        out.clear();
+    }
+
+    /**
+     * Text between a lead word ("to"/"from") and the last terminator word
+     * ("via"/"through"/"using"/"by") in the same run of word and space characters,
+     * trimmed. Equivalent to the old {@code (?:to|from)\s+([\w\s]+)\s+(?:via|...)}
+     * but matched on whole words and in one pass over each run. Returns false
+     * when there is no such phrase.
+     */
+    private static boolean extractMerchant(String message, RulePack.RuleSet rules, Deadline deadline,
+                                           TextSlice out) {
+        int n = message.length();
+        int i = 0;
+        while (i < n) {
+            deadline.tick(i);
+            char c = message.charAt(i);
+            if (!isWordChar(c) && !isSpace(c)) {
+                i++;
+                continue;
+            }
+            // Walk one maximal [\w\s] run, word by word
+            int leadEnd = -1;
+            int lastTerminatorStart = -1;
+            boolean wordSinceLead = false;
+            while (i < n && (isWordChar(message.charAt(i)) || isSpace(message.charAt(i)))) {
+                deadline.tick(i);
+                if (isSpace(message.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                int wordStart = i;
+                while (i < n && isWordChar(message.charAt(i))) {
+                    i++;
+                }
+                if (leadEnd < 0) {
+                    if (isOneOf(message, wordStart, i, rules.merchantLeads)) {
+                        leadEnd = i;
+                    }
+                } else if (wordSinceLead && isOneOf(message, wordStart, i, rules.merchantTerminators)) {
+                    lastTerminatorStart = wordStart;
+                } else {
+                    wordSinceLead = true;
+                }
+            }
+            if (lastTerminatorStart >= 0) {
+                int start = skipSpaces(message, leadEnd);
+                int end = lastTerminatorStart;
+                while (end > start && isSpace(message.charAt(end - 1))) {
+                    end--;
+                }
+                out.set(message, start, end);
+                return true;
+            }
+        }
+        out.clear();
+        return false;
+    }
+
+    /** Same answer as {@code message.toLowerCase().contains(lowerKeyword)} for ASCII keywords, without the copy. */
+    private static boolean containsIgnoreCase(String message, String lowerKeyword) {
+        int last = message.length() - lowerKeyword.length();
+        for (int i = 0; i <= last; i++) {
+            if (matchesAt(message, i, lowerKeyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@code regionMatches(true, ...)} for a lowercase keyword, but an ASCII
+     * first character that differs is rejected without the call: most
+     * positions of most messages fail there, and every scan tries several
+     * keywords at each position.
+     */
+    private static boolean matchesAt(String message, int i, String lowerKeyword) {
+        if (!lowerKeyword.isEmpty() && i < message.length()) {
+            char c = message.charAt(i);
+            if (c < 0x80 && (c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c) != lowerKeyword.charAt(0)) {
+                return false;
+            }
+        }
+        return message.regionMatches(true, i, lowerKeyword, 0, lowerKeyword.length());
+    }
+
+    private static boolean isOneOf(String message, int start, int end, String[] words) {
+        for (String word : words) {
+            if (word.length() == end - start && matchesAt(message, start, word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int skipSpaces(String message, int i) {
+        while (i < message.length() && isSpace(message.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+
+    // Character classes below match java.util.regex's default (ASCII) \w, \s and \d
+
+    private static boolean isWordChar(char c) {
+        return isLetter(c) || isDigit(c) || c == '_';
+    }
+
+    private static boolean isHandleChar(char c) {
+        return isWordChar(c) || c == '.' || c == '-';
+    }
+
+    private static boolean isMaskChar(char c) {
+        return c == 'X' || c == 'x' || c == '*';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /** Reads the clock once every {@link #DEADLINE_CHECK_INTERVAL} scan steps. */
+    private static final class Deadline {
+        private long startNanos;
+        private long budgetNanos;
+        private int steps;
+
+        Deadline start(long budgetNanos) {
+            this.startNanos = System.nanoTime();
+            this.budgetNanos = budgetNanos;
+            this.steps = 0;
+            return this;
+        }
+
+        void tick(int position) {
+            if (++steps % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - startNanos > budgetNanos) {
+                throw new ParseTimeoutException(position);
+            }
+        }
+    }
+
+    public static class TransactionDetails {
+        public boolean isDebit;
+        public double amount;
+        public String accountNumber = "";
+        public String merchantName = "";
+        public String transactionMode = "";
+        public String upiId = "";
+        public String referenceNumber = "";
+        public boolean hasBalance;
+        public double balance;
+        public boolean isRefund;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.smartfianacetracker.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Weighted SpaceSaving (Metwally et al.): the heaviest keys of a stream,
+ * kept in a fixed number of counters. A key without a counter takes over
+ * the lightest one and starts from its weight, which is recorded as the
+ * new counter's error. Any key heavier than the total weight divided by the
+ * capacity is guaranteed a counter, and a counter's weight overestimates
+ * its key's by at most its error.
+ *
+ * <p>Not thread-safe.
+ */
+public final class SpaceSaving {
+    public static final class Counter {
+        public final String key;
+        /** Display name, as first seen. */
+        public final String name;
+        public double weight;
+        public double error;
+
+        Counter(String key, String name, double weight, double error) {
+            this.key = key;
+            this.name = name;
+            this.weight = weight;
+            this.error = error;
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        counters = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Adds {@code weight} to {@code key} and returns the key whose counter
+     * it took over, if any.
+     */
+    public String offer(String key, CharSequence name, double weight) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.weight += weight;
+            return null;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new Counter(key, name.toString(), weight, 0));
+            return null;
+        }
+        Counter lightest = null;
+        for (Counter candidate : counters.values()) {
+            if (lightest == null || candidate.weight < lightest.weight) {
+                lightest = candidate;
+            }
+        }
+        counters.remove(lightest.key);
+        counters.put(key, new Counter(key, name.toString(), lightest.weight + weight, lightest.weight));
+        return lightest.key;
+    }
+
+    public Counter get(String key) {
+        return counters.get(key);
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    Collection<Counter> counters() {
+        return counters.values();
+    }
+
+    /** The {@code limit} heaviest counters, heaviest first. */
+    public List<Counter> top(int limit) {
+        List<Counter> all = new ArrayList<>(counters.values());
+        Collections.sort(all, (a, b) -> Double.compare(b.weight, a.weight));
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    void restore(String key, String name, double weight, double error) {
+        counters.put(key, new Counter(key, name, weight, error));
+    }
+}
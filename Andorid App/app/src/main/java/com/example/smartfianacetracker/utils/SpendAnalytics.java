@@ -0,0 +1,333 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import com.example.smartfianacetracker.models.BudgetPeriod;
+import com.example.smartfianacetracker.models.Transaction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Spend breakdowns by category, payee, mode and account, computed on the
+ * phone from the {@link LocalTransactionStore} without a network read. The
+ * home screen shows this month's spend and its largest categories from it.
+ *
+ * <p>Records are kept as columns of primitive arrays, one row per record:
+ * timestamp, amount, local month, kind, and a dictionary code for each
+ * {@link Dimension}. A breakdown is a single pass over those arrays adding
+ * amounts into an array indexed by code, with no objects touched per row.
+ *
+ * <p>{@link #monthly} answers from per-month totals built by one such pass
+ * the first time a dimension is asked for. After that, each record the store
+ * adds or replaces takes its old amount out of its month and puts its new
+ * one in, so totals stay current without another pass. {@link #spend} scans
+ * the columns directly, for ranges that do not fall on month boundaries.
+ *
+ * <p>Spend is debits not moved between the user's own accounts, less what
+ * was refunded on them; see {@link RefundMatcher} and
+ * {@link TransferCorrelator}. A refunded debit counts for what the
+ * reversing credit did not give back, or nothing until that credit is in
+ * the store.
+ */
+public class SpendAnalytics implements LocalTransactionStore.RecordListener {
+    private static final int INITIAL_CAPACITY = 1_024;
+    static final byte SPEND = 0;
+    static final byte INCOME = 1;
+    /** Refunded in full, a reversal, or a transfer between the user's own accounts. */
+    static final byte EXCLUDED = 2;
+    private static SpendAnalytics instance;
+
+    public enum Dimension { CATEGORY, PAYEE, MODE, ACCOUNT }
+
+    /** One group of a breakdown. */
+    public static final class Total {
+        public final String name;
+        public final double amount;
+        public final int count;
+
+        Total(String name, double amount, int count) {
+            this.name = name;
+            this.amount = amount;
+            this.count = count;
+        }
+    }
+
+    /** Codes for the values of one dimension, in order of first appearance. */
+    private static final class Dictionary {
+        final Map<String, Integer> codes = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+
+        int code(String key, String name) {
+            Integer code = codes.get(key);
+            if (code == null) {
+                code = names.size();
+                codes.put(key, code);
+                names.add(name);
+            }
+            return code;
+        }
+    }
+
+    /** A dimension's spend per month: amount and count per code. */
+    private static final class MonthlyTotals {
+        final TreeMap<Integer, double[]> amounts = new TreeMap<>();
+        final TreeMap<Integer, int[]> counts = new TreeMap<>();
+
+        void add(int month, int code, double amount, int count, int codes) {
+            double[] monthAmounts = amounts.get(month);
+            int[] monthCounts = counts.get(month);
+            if (monthAmounts == null || monthAmounts.length <= code) {
+                int length = Math.max(codes, code + 1);
+                monthAmounts = monthAmounts == null ? new double[length] : Arrays.copyOf(monthAmounts, length);
+                monthCounts = monthCounts == null ? new int[length] : Arrays.copyOf(monthCounts, length);
+                amounts.put(month, monthAmounts);
+                counts.put(month, monthCounts);
+            }
+            monthAmounts[code] += amount;
+            monthCounts[code] += count;
+        }
+    }
+
+    private final TimeZone zone;
+    private final Map<String, Integer> rows = new HashMap<>();
+    // Refunded debits by id, and the amount of each reversing credit, to net one against the other
+    private final Map<String, Transaction> reversedDebits = new HashMap<>();
+    private final Map<String, Double> refunds = new HashMap<>();
+    private final Map<Dimension, Dictionary> dictionaries = new EnumMap<>(Dimension.class);
+    private final Map<Dimension, MonthlyTotals> monthly = new EnumMap<>(Dimension.class);
+    private int size;
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private double[] amounts = new double[INITIAL_CAPACITY];
+    private int[] months = new int[INITIAL_CAPACITY];
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private final EnumMap<Dimension, int[]> codes = new EnumMap<>(Dimension.class);
+
+    public SpendAnalytics(LocalTransactionStore store, TimeZone zone) {
+        this.zone = zone;
+        for (Dimension dimension : Dimension.values()) {
+            dictionaries.put(dimension, new Dictionary());
+            codes.put(dimension, new int[INITIAL_CAPACITY]);
+        }
+        store.addRecordListener(this);
+    }
+
+    public static synchronized SpendAnalytics getInstance(Context context) {
+        if (instance == null) {
+            instance = new SpendAnalytics(LocalTransactionStore.getInstance(context.getApplicationContext()),
+                    TimeZone.getDefault());
+        }
+        return instance;
+    }
+
+    /** The local month {@code timestamp} falls in, as {@link #monthly} takes it. */
+    public int month(long timestamp) {
+        return BudgetPeriod.month(timestamp, zone);
+    }
+
+    @Override
+    public synchronized void onRecordsPut(Map<String, Transaction> records) {
+        for (Map.Entry<String, Transaction> entry : records.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public synchronized void onCleared() {
+        rows.clear();
+        reversedDebits.clear();
+        refunds.clear();
+        size = 0;
+        for (Dimension dimension : Dimension.values()) {
+            dictionaries.put(dimension, new Dictionary());
+        }
+        monthly.clear();
+    }
+
+    /**
+     * Spend from {@code fromMonth} to {@code toMonth} inclusive, grouped by
+     * {@code by}, largest first; at most {@code limit} groups.
+     */
+    public synchronized List<Total> monthly(Dimension by, int fromMonth, int toMonth, int limit) {
+        MonthlyTotals totals = monthlyTotals(by);
+        int groups = dictionaries.get(by).names.size();
+        double[] sums = new double[groups];
+        int[] counts = new int[groups];
+        for (Map.Entry<Integer, double[]> month : totals.amounts.subMap(fromMonth, true, toMonth, true).entrySet()) {
+            double[] monthAmounts = month.getValue();
+            int[] monthCounts = totals.counts.get(month.getKey());
+            for (int code = 0; code < monthAmounts.length; code++) {
+                sums[code] += monthAmounts[code];
+                counts[code] += monthCounts[code];
+            }
+        }
+        return top(by, sums, counts, limit);
+    }
+
+    /** Total spend in each month from {@code fromMonth} to {@code toMonth} inclusive. */
+    public synchronized double[] spendByMonth(int fromMonth, int toMonth) {
+        double[] spend = new double[Math.max(0, toMonth - fromMonth + 1)];
+        MonthlyTotals totals = monthlyTotals(Dimension.CATEGORY);
+        for (Map.Entry<Integer, double[]> month : totals.amounts.subMap(fromMonth, true, toMonth, true).entrySet()) {
+            double sum = 0;
+            for (double amount : month.getValue()) {
+                sum += amount;
+            }
+            spend[month.getKey() - fromMonth] = sum;
+        }
+        return spend;
+    }
+
+    /**
+     * Spend with a timestamp in {@code [from, to)}, grouped by {@code by},
+     * largest first; at most {@code limit} groups. With a {@code where}
+     * dimension, only records whose value of it is {@code value} count.
+     */
+    public synchronized List<Total> spend(Dimension by, long from, long to, Dimension where, String value,
+                                          int limit) {
+        int groups = dictionaries.get(by).names.size();
+        double[] sums = new double[groups];
+        int[] counts = new int[groups];
+        int[] keys = codes.get(by);
+        int[] filter = null;
+        int wanted = -1;
+        if (where != null) {
+            Integer code = dictionaries.get(where).codes.get(value);
+            if (code == null) {
+                return Collections.emptyList();
+            }
+            filter = codes.get(where);
+            wanted = code;
+        }
+        long[] timestamps = this.timestamps;
+        double[] amounts = this.amounts;
+        byte[] kinds = this.kinds;
+        for (int row = 0; row < size; row++) {
+            long timestamp = timestamps[row];
+            if (kinds[row] != SPEND || timestamp < from || timestamp >= to
+                    || (filter != null && filter[row] != wanted)) {
+                continue;
+            }
+            sums[keys[row]] += amounts[row];
+            counts[keys[row]]++;
+        }
+        return top(by, sums, counts, limit);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void put(String id, Transaction transaction) {
+        Integer existing = rows.get(id);
+        int row;
+        if (existing != null) {
+            row = existing;
+            count(row, -1);
+        } else {
+            if (size == timestamps.length) {
+                grow();
+            }
+            row = size++;
+            rows.put(id, row);
+        }
+        double amount = transaction.amount;
+        if (transaction.isDebit && transaction.reversedBy != null) {
+            reversedDebits.put(id, transaction);
+            Double refunded = refunds.get(transaction.reversedBy);
+            amount = refunded != null ? Math.max(0, amount - refunded) : 0;
+        } else if (transaction.isDebit) {
+            reversedDebits.remove(id);
+        }
+        timestamps[row] = transaction.timestamp;
+        amounts[row] = amount;
+        months[row] = month(transaction.timestamp);
+        kinds[row] = kind(transaction, amount);
+        String category = transaction.category != null ? transaction.category : CategoryDatabase.OTHER;
+        String payee = transaction.payeeId != null ? transaction.payeeId : transaction.merchantName;
+        codes.get(Dimension.CATEGORY)[row] = dictionaries.get(Dimension.CATEGORY).code(category, category);
+        codes.get(Dimension.PAYEE)[row] = dictionaries.get(Dimension.PAYEE).code(payee, transaction.merchantName);
+        codes.get(Dimension.MODE)[row] = dictionaries.get(Dimension.MODE)
+                .code(transaction.transactionMode, transaction.transactionMode);
+        codes.get(Dimension.ACCOUNT)[row] = dictionaries.get(Dimension.ACCOUNT)
+                .code(transaction.accountNumber, transaction.accountNumber);
+        count(row, 1);
+
+        if (!transaction.isDebit && transaction.reversalOf != null) {
+            refunds.put(id, transaction.amount);
+            // The debit it reverses, if already here, now knows how much came back
+            Transaction reversed = reversedDebits.get(transaction.reversalOf);
+            if (reversed != null && id.equals(reversed.reversedBy)) {
+                put(transaction.reversalOf, reversed);
+            }
+        } else if (!transaction.isDebit) {
+            refunds.remove(id);
+        }
+    }
+
+    /** Adds a row to, or with {@code sign} -1 takes it out of, every monthly total built so far. */
+    private void count(int row, int sign) {
+        if (kinds[row] != SPEND) {
+            return;
+        }
+        for (Map.Entry<Dimension, MonthlyTotals> entry : monthly.entrySet()) {
+            Dimension dimension = entry.getKey();
+            entry.getValue().add(months[row], codes.get(dimension)[row], sign * amounts[row], sign,
+                    dictionaries.get(dimension).names.size());
+        }
+    }
+
+    private MonthlyTotals monthlyTotals(Dimension by) {
+        MonthlyTotals totals = monthly.get(by);
+        if (totals != null) {
+            return totals;
+        }
+        totals = new MonthlyTotals();
+        int groups = dictionaries.get(by).names.size();
+        int[] keys = codes.get(by);
+        for (int row = 0; row < size; row++) {
+            if (kinds[row] == SPEND) {
+                totals.add(months[row], keys[row], amounts[row], 1, groups);
+            }
+        }
+        monthly.put(by, totals);
+        return totals;
+    }
+
+    private List<Total> top(Dimension by, double[] sums, int[] counts, int limit) {
+        List<String> names = dictionaries.get(by).names;
+        List<Total> totals = new ArrayList<>();
+        for (int code = 0; code < sums.length; code++) {
+            if (counts[code] > 0) {
+                totals.add(new Total(names.get(code), sums[code], counts[code]));
+            }
+        }
+        Collections.sort(totals, (a, b) -> Double.compare(b.amount, a.amount));
+        return totals.size() > limit ? new ArrayList<>(totals.subList(0, limit)) : totals;
+    }
+
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        months = Arrays.copyOf(months, capacity);
+        kinds = Arrays.copyOf(kinds, capacity);
+        for (Map.Entry<Dimension, int[]> entry : codes.entrySet()) {
+            entry.setValue(Arrays.copyOf(entry.getValue(), capacity));
+        }
+    }
+
+    /** The kind of {@code transaction}, counting {@code amount} of it after refunds. */
+    private static byte kind(Transaction transaction, double amount) {
+        if (transaction.internalTransfer != null
+                || (transaction.isDebit ? amount <= 0 : transaction.reversalOf != null)) {
+            return EXCLUDED;
+        }
+        return transaction.isDebit ? SPEND : INCOME;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import com.example.smartfianacetracker.models.SpendSketchMapper;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streaming summaries of the user's spend, updated as each debit is stored
+ * and published for the dashboards to read without going through the
+ * transactions:
+ *
+ * <ul>
+ * <li>the top payees by spend, as a {@link SpaceSaving} of
+ *     {@link #TOP_PAYEES} counters, so memory stays fixed however many
+ *     payees there are;
+ * <li>the distribution of debit amounts in each category, as a
+ *     {@link TDigest}, from which the 50th, 90th and 99th percentiles are
+ *     published.
+ * </ul>
+ *
+ * Only entries that changed are written, through
+ * {@link ServiceManager#recordSketches}, at most once per
+ * {@link #PUBLISH_DELAY_MILLIS}; a payee that loses its counter is removed.
+ * The layout is in {@link SpendSketchMapper}. Sketches only grow: a later
+ * refund or transfer link does not take a debit back out. State is
+ * kept in {@code spend_sketches.bin}; see {@link StateFile}.
+ *
+ * <p>The sketches are the signed-in user's: they start over when someone
+ * else signs in, and are neither read nor published while signed out.
+ */
+public class SpendSketches implements TransactionIngestor.Listener {
+    private static final String TAG = "SpendSketches";
+    private static final String FILE_NAME = "spend_sketches.bin";
+    private static final int FORMAT_VERSION = 2;
+    static final int TOP_PAYEES = 50;
+    static final double COMPRESSION = 100;
+    static final long PUBLISH_DELAY_MILLIS = 30_000;
+    private static SpendSketches instance;
+
+    private static final class State {
+        // User the sketches were built for; null before the first debit
+        String owner;
+        final SpaceSaving payees = new SpaceSaving(TOP_PAYEES);
+        final Map<String, TDigest> amounts = new TreeMap<>();
+    }
+
+    private final ServiceManager serviceManager;
+    private final long publishDelayMillis;
+    private final StateFile<State> stateFile;
+    private final AtomicBoolean publishPending = new AtomicBoolean();
+
+    // Null until the file has been read
+    private State state;
+    // Changed since the last publish
+    private final Set<String> dirtyPayees = new HashSet<>();
+    private final Set<String> evictedPayees = new HashSet<>();
+    private final Set<String> dirtyCategories = new HashSet<>();
+
+    public SpendSketches(File directory, ServiceManager serviceManager, long publishDelayMillis) {
+        this.serviceManager = serviceManager;
+        this.publishDelayMillis = publishDelayMillis;
+        stateFile = new StateFile<>(directory, FILE_NAME, "spend sketches", State::new, SpendSketches::read,
+                this::write);
+    }
+
+    public static synchronized SpendSketches getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new SpendSketches(appContext.getFilesDir(), ServiceManager.getInstance(appContext),
+                    PUBLISH_DELAY_MILLIS);
+        }
+        return instance;
+    }
+
+    @Override
+    public synchronized void onTransactionStored(TransactionRecord record, long keyMillis) {
+        if (keyMillis == 0 || !record.isDebit || record.amount <= 0) {
+            return;
+        }
+        ensureLoaded();
+        if (checkOwner() == null) {
+            return;
+        }
+        if (record.payeeId != null) {
+            String evicted = state.payees.offer(record.payeeId, record.merchantName, record.amount);
+            dirtyPayees.add(record.payeeId);
+            evictedPayees.remove(record.payeeId);
+            if (evicted != null) {
+                dirtyPayees.remove(evicted);
+                evictedPayees.add(evicted);
+            }
+        }
+        TDigest digest = state.amounts.get(record.category);
+        if (digest == null) {
+            digest = new TDigest(COMPRESSION);
+            state.amounts.put(record.category, digest);
+        }
+        digest.add(record.amount);
+        dirtyCategories.add(record.category);
+        stateFile.scheduleSave();
+        schedulePublish();
+    }
+
+    /** The {@code limit} payees with the most spend, heaviest first. */
+    public synchronized List<SpaceSaving.Counter> topPayees(int limit) {
+        ensureLoaded();
+        return checkOwner() != null ? state.payees.top(limit) : Collections.emptyList();
+    }
+
+    /** The debit amount in {@code category} below which a fraction {@code q} fall; NaN with none. */
+    public synchronized double percentile(String category, double q) {
+        ensureLoaded();
+        TDigest digest = checkOwner() != null ? state.amounts.get(category) : null;
+        return digest != null ? digest.quantile(q) : Double.NaN;
+    }
+
+    /** Completes once every change made so far has been written and published. */
+    Future<?> flush() {
+        return stateFile.executor().submit(this::publish);
+    }
+
+    private void publish() {
+        publishPending.set(false);
+        Map<String, Object> updates = new HashMap<>();
+        synchronized (this) {
+            if (state == null || checkOwner() == null) {
+                return;
+            }
+            for (String payeeId : dirtyPayees) {
+                SpaceSaving.Counter counter = state.payees.get(payeeId);
+                updates.put(SpendSketchMapper.PAYEES + "/" + payeeId,
+                        SpendSketchMapper.payeeMap(counter.name, counter.weight, counter.error));
+            }
+            for (String payeeId : evictedPayees) {
+                updates.put(SpendSketchMapper.PAYEES + "/" + payeeId, null);
+            }
+            for (String category : dirtyCategories) {
+                TDigest digest = state.amounts.get(category);
+                updates.put(SpendSketchMapper.AMOUNTS + "/" + SpendSketchMapper.categoryKey(category),
+                        SpendSketchMapper.amountMap(category, digest.count(), digest.quantile(0.5),
+                                digest.quantile(0.9), digest.quantile(0.99), digest.encode()));
+            }
+            dirtyPayees.clear();
+            evictedPayees.clear();
+            dirtyCategories.clear();
+        }
+        if (!updates.isEmpty()) {
+            serviceManager.recordSketches(updates);
+        }
+    }
+
+    /**
+     * The signed-in user, starting the sketches over when they were built
+     * for someone else; null when signed out.
+     */
+    private String checkOwner() {
+        String userId = serviceManager.getUserId();
+        if (userId == null || userId.equals(state.owner)) {
+            return userId;
+        }
+        if (state.payees.size() > 0 || !state.amounts.isEmpty()) {
+            Log.d(TAG, "Signed-in user changed; dropping the spend sketches");
+        }
+        state = new State();
+        state.owner = userId;
+        // Changes not yet published were the other user's
+        dirtyPayees.clear();
+        evictedPayees.clear();
+        dirtyCategories.clear();
+        stateFile.scheduleSave();
+        return userId;
+    }
+
+    private void ensureLoaded() {
+        if (state != null) {
+            return;
+        }
+        state = stateFile.load();
+    }
+
+    private void schedulePublish() {
+        if (publishPending.compareAndSet(false, true)) {
+            stateFile.executor().schedule(this::publish, publishDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Written under the lock: the sketches change in place, and are a few KB
+    private synchronized void write(DataOutputStream out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        out.writeUTF(state.owner != null ? state.owner : "");
+        out.writeInt(state.payees.size());
+        for (SpaceSaving.Counter counter : state.payees.counters()) {
+            out.writeUTF(counter.key);
+            out.writeUTF(counter.name);
+            out.writeDouble(counter.weight);
+            out.writeDouble(counter.error);
+        }
+        out.writeInt(state.amounts.size());
+        for (Map.Entry<String, TDigest> entry : state.amounts.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().write(out);
+        }
+    }
+
+    private static State read(DataInputStream in) throws IOException {
+        State read = new State();
+        int version = in.readByte();
+        // Earlier formats did not say whose sketches they were
+        if (version != FORMAT_VERSION) {
+            Log.w(TAG, "Ignoring spend sketch format " + version);
+            return read;
+        }
+        String owner = in.readUTF();
+        read.owner = owner.isEmpty() ? null : owner;
+        int payees = in.readInt();
+        for (int i = 0; i < payees; i++) {
+            read.payees.restore(in.readUTF(), in.readUTF(), in.readDouble(), in.readDouble());
+        }
+        int categories = in.readInt();
+        for (int i = 0; i < categories; i++) {
+            read.amounts.put(in.readUTF(), TDigest.read(in, COMPRESSION));
+        }
+        return read;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import com.google.android.gms.auth.api.signin.GoogleSignIn;
+import com.google.android.gms.auth.api.signin.GoogleSignInClient;
+import com.google.android.gms.auth.api.signin.GoogleSignInOptions;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.database.FirebaseDatabase;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps {@code Application.onCreate} cheap. Firebase itself is brought up by
+ * its content provider before we run, so all we do here is warm the session
+ * store and the Firebase singletons on a background thread, then start a
+ * {@link DeltaSync} for a signed-in user. Google Sign-In is only configured
+ * the first time an auth screen asks for it, which keeps the SMS capture
+ * path (boot receiver and service) free of any auth UI cost.
+ */
+public class StartupOrchestrator {
+    private static final String TAG = "StartupOrchestrator";
+    private static final String WEB_CLIENT_ID =
+            "687898768842-016uetfn4soao9j866tbn1hg50d2dr1k.apps.googleusercontent.com";
+
+    private static StartupOrchestrator instance;
+
+    private final Context context;
+    private final ExecutorService startupExecutor;
+    private GoogleSignInClient googleSignInClient;
+    private boolean started;
+
+    private StartupOrchestrator(Context context) {
+        this.context = context;
+        startupExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "StartupWarmup");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public static synchronized StartupOrchestrator getInstance(Context context) {
+        if (instance == null) {
+            instance = new StartupOrchestrator(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /** Schedules background warm-up; returns immediately. Safe to call more than once. */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        startupExecutor.execute(() -> {
+            long start = System.nanoTime();
+            PreferenceManager preferenceManager = PreferenceManager.getInstance(context);
+            FirebaseAuth firebaseAuth = FirebaseAuth.getInstance();
+            FirebaseDatabase.getInstance();
+            if (preferenceManager.isLoggedIn() && firebaseAuth.getCurrentUser() != null) {
+                // Primes the token cache and its proactive refresh schedule
+                TokenManager.getInstance(context).getToken();
+                // Pulls whatever other devices and the web app wrote meanwhile
+                DeltaSync.getInstance(context).requestSync();
+            }
+            Log.d(TAG, "Background warm-up finished in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        });
+    }
+
+    /** Builds the Google Sign-In client on first use only. */
+    public synchronized GoogleSignInClient getGoogleSignInClient() {
+        if (googleSignInClient == null) {
+            GoogleSignInOptions gso = new GoogleSignInOptions.Builder(GoogleSignInOptions.DEFAULT_SIGN_IN)
+                    .requestIdToken(WEB_CLIENT_ID)
+                    .requestEmail()
+                    .build();
+            googleSignInClient = GoogleSignIn.getClient(context, gso);
+        }
+        return googleSignInClient;
+    }
+
+    /** True once an auth screen has needed Google Sign-In in this process. */
+    public synchronized boolean isGoogleSignInConfigured() {
+        return googleSignInClient != null;
+    }
+}
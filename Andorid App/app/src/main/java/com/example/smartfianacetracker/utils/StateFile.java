@@ -0,0 +1,126 @@
+package com.example.smartfianacetracker.utils;
+
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * State an ingest listener keeps on the device, as one small file rewritten
+ * whole. The file is read on a background thread as soon as this is created,
+ * and rewritten on that thread after changes, one write per burst. A null
+ * directory keeps the state in memory only.
+ */
+final class StateFile<T> {
+    private static final String TAG = "StateFile";
+
+    interface Reader<T> {
+        /** The state in {@code in}; called only when the file exists. */
+        T read(DataInputStream in) throws IOException;
+    }
+
+    interface Writer {
+        /** Writes the current state; runs on the background thread, so takes its own locks. */
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final File file;
+    private final String description;
+    private final Supplier<T> empty;
+    private final Writer writer;
+    private final ScheduledExecutorService executor;
+    private final Future<T> loaded;
+    private final AtomicBoolean savePending = new AtomicBoolean();
+
+    /**
+     * @param description what the file holds, for the log, e.g. "the account ledger"
+     * @param empty the state when there is no file, or it cannot be read
+     */
+    StateFile(File directory, String fileName, String description, Supplier<T> empty, Reader<T> reader,
+              Writer writer) {
+        this.file = directory != null ? new File(directory, fileName) : null;
+        this.description = description;
+        this.empty = empty;
+        this.writer = writer;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, fileName);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        loaded = executor.submit(() -> {
+            if (file == null || !file.exists()) {
+                return empty.get();
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                return reader.read(in);
+            }
+        });
+    }
+
+    /** Waits for the file to be read; the empty state if it could not be. */
+    T load() {
+        try {
+            return loaded.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Failed to read " + description + "; starting empty", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.w(TAG, "Interrupted reading " + description + "; starting empty");
+        }
+        return empty.get();
+    }
+
+    /** Rewrites the file in the background, once for any number of calls made before it runs. */
+    void scheduleSave() {
+        if (file != null && savePending.compareAndSet(false, true)) {
+            executor.execute(this::save);
+        }
+    }
+
+    /** The background thread, for other work that must be ordered with the writes. */
+    ScheduledExecutorService executor() {
+        return executor;
+    }
+
+    /** Completes once every change made so far has been written. */
+    Future<?> flush() {
+        return executor.submit(() -> { });
+    }
+
+    private void save() {
+        savePending.set(false);
+        try {
+            replace(file, writer);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save " + description, e);
+        }
+    }
+
+    /**
+     * Writes {@code file} through a temporary file that is synced before it
+     * is renamed over it, so a crash leaves either the old file or the new.
+     */
+    static void replace(File file, Writer writer) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            writer.write(out);
+            out.flush();
+            stream.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+}
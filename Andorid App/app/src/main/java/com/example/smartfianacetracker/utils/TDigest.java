@@ -0,0 +1,217 @@
+package com.example.smartfianacetracker.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Merging t-digest (Dunning): a summary of a stream of values from which
+ * quantiles can be read, in memory that depends on the compression rather
+ * than the number of values. Values are clustered into centroids that are
+ * small at the tails and large in the middle, so extreme percentiles stay
+ * accurate. Incoming values are buffered and merged into the centroids a
+ * buffer at a time.
+ *
+ * <p>Not thread-safe.
+ */
+public final class TDigest {
+    private final double compression;
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+    private double[] buffer;
+    private int buffered;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    /** Keeps on the order of {@code compression / 2} centroids. */
+    public TDigest(double compression) {
+        this.compression = compression;
+        int capacity = (int) Math.ceil(2 * compression) + 8;
+        means = new double[capacity];
+        weights = new double[capacity];
+        buffer = new double[(int) Math.ceil(5 * compression)];
+    }
+
+    public void add(double value) {
+        if (buffered == buffer.length) {
+            compress();
+        }
+        buffer[buffered++] = value;
+        count++;
+        if (count == 1) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /** Number of centroids once the buffer is merged. */
+    public int centroids() {
+        compress();
+        return centroids;
+    }
+
+    /** The value below which a fraction {@code q} of the values fall; NaN while empty. */
+    public double quantile(double q) {
+        compress();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (centroids == 1) {
+            return means[0];
+        }
+        double target = Math.max(0, Math.min(1, q)) * count;
+        // Each centroid's mean sits at the middle of its weight
+        double cumulative = weights[0] / 2;
+        if (target <= cumulative) {
+            return interpolate(min, means[0], target / cumulative);
+        }
+        for (int i = 1; i < centroids; i++) {
+            double next = cumulative + (weights[i - 1] + weights[i]) / 2;
+            if (target <= next) {
+                return interpolate(means[i - 1], means[i], (target - cumulative) / (next - cumulative));
+            }
+            cumulative = next;
+        }
+        double rest = count - cumulative;
+        return interpolate(means[centroids - 1], max, rest > 0 ? (target - cumulative) / rest : 1);
+    }
+
+    /**
+     * The centroids as {@code mean:weight} pairs separated by spaces, means
+     * to two decimal places, for storing as a single string.
+     */
+    public String encode() {
+        compress();
+        StringBuilder text = new StringBuilder(centroids * 12);
+        for (int i = 0; i < centroids; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(String.format(Locale.US, "%.2f", means[i])).append(':').append((long) weights[i]);
+        }
+        return text.toString();
+    }
+
+    /** Rebuilds a digest from {@link #encode}; min and max become the outer means. */
+    public static TDigest decode(String text, double compression) {
+        TDigest digest = new TDigest(compression);
+        if (text == null || text.isEmpty()) {
+            return digest;
+        }
+        String[] pairs = text.split(" ");
+        digest.ensureCapacity(pairs.length);
+        for (String pair : pairs) {
+            int colon = pair.indexOf(':');
+            double mean = Double.parseDouble(pair.substring(0, colon));
+            double weight = Double.parseDouble(pair.substring(colon + 1));
+            digest.means[digest.centroids] = mean;
+            digest.weights[digest.centroids++] = weight;
+            digest.count += (long) weight;
+        }
+        digest.min = digest.means[0];
+        digest.max = digest.means[digest.centroids - 1];
+        return digest;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        compress();
+        out.writeLong(count);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeInt(centroids);
+        for (int i = 0; i < centroids; i++) {
+            out.writeDouble(means[i]);
+            out.writeDouble(weights[i]);
+        }
+    }
+
+    static TDigest read(DataInputStream in, double compression) throws IOException {
+        TDigest digest = new TDigest(compression);
+        digest.count = in.readLong();
+        digest.min = in.readDouble();
+        digest.max = in.readDouble();
+        int centroids = in.readInt();
+        digest.ensureCapacity(centroids);
+        for (int i = 0; i < centroids; i++) {
+            digest.means[i] = in.readDouble();
+            digest.weights[i] = in.readDouble();
+        }
+        digest.centroids = centroids;
+        return digest;
+    }
+
+    /** Merges the buffer into the centroids. */
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        Arrays.sort(buffer, 0, buffered);
+        int total = centroids + buffered;
+        double[] mergedMeans = new double[total];
+        double[] mergedWeights = new double[total];
+        // Merge two sorted runs: the centroids and the buffer, weight 1 each
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < total; k++) {
+            if (j >= buffered || (i < centroids && means[i] <= buffer[j])) {
+                mergedMeans[k] = means[i];
+                mergedWeights[k] = weights[i++];
+            } else {
+                mergedMeans[k] = buffer[j++];
+                mergedWeights[k] = 1;
+            }
+        }
+        buffered = 0;
+
+        centroids = 0;
+        ensureCapacity(total);
+        double soFar = 0;
+        double kLeft = scale(0);
+        double mean = mergedMeans[0];
+        double weight = mergedWeights[0];
+        for (int k = 1; k < total; k++) {
+            double proposed = weight + mergedWeights[k];
+            // A centroid may span at most one unit of the scale, which is steep at the tails
+            if (scale((soFar + proposed) / count) - kLeft <= 1) {
+                mean += (mergedMeans[k] - mean) * mergedWeights[k] / proposed;
+                weight = proposed;
+            } else {
+                means[centroids] = mean;
+                weights[centroids++] = weight;
+                soFar += weight;
+                kLeft = scale(soFar / count);
+                mean = mergedMeans[k];
+                weight = mergedWeights[k];
+            }
+        }
+        means[centroids] = mean;
+        weights[centroids++] = weight;
+    }
+
+    /** The k1 scale function: {@code compression / 2 pi * asin(2q - 1)}. */
+    private double scale(double q) {
+        return compression / (2 * Math.PI) * Math.asin(Math.max(-1, Math.min(1, 2 * q - 1)));
+    }
+
+    private void ensureCapacity(int size) {
+        if (means.length < size) {
+            means = Arrays.copyOf(means, size);
+            weights = Arrays.copyOf(weights, size);
+        }
+    }
+
+    private static double interpolate(double from, double to, double fraction) {
+        return from + (to - from) * fraction;
+    }
+}
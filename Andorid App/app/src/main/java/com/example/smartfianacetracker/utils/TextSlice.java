@@ -0,0 +1,69 @@
+package com.example.smartfianacetracker.utils;
+
+/**
+ * A reusable view of part of another character sequence, used in place of
+ * {@code substring} on the ingest path. The view is only valid while the
+ * source is; call {@link #toString()} to keep the text.
+ */
+public final class TextSlice implements CharSequence {
+    private CharSequence source = "";
+    private int start;
+    private int end;
+
+    public TextSlice set(CharSequence source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    public TextSlice set(TextSlice other) {
+        return set(other.source, other.start, other.end);
+    }
+
+    public TextSlice clear() {
+        return set("", 0, 0);
+    }
+
+    public boolean isEmpty() {
+        return start == end;
+    }
+
+    public boolean contentEquals(String text) {
+        if (text.length() != length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+        }
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length() || from > to) {
+            throw new IndexOutOfBoundsException("[" + from + ", " + to + "), length " + length());
+        }
+        return new TextSlice().set(source, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        return source.subSequence(start, end).toString();
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.auth.GetTokenResult;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the Firebase ID token together with its expiry. Callers get the
+ * cached token immediately while it is fresh; a background refresh is
+ * scheduled shortly before it expires, and concurrent callers that do need a
+ * refresh all share the same in-flight task. A refresh still running when
+ * {@link #clear} is called is discarded when it completes.
+ */
+public class TokenManager {
+    private static final String TAG = "TokenManager";
+    private static final long REFRESH_MARGIN_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MIN_REFRESH_DELAY_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private static TokenManager instance;
+
+    private final FirebaseAuth firebaseAuth;
+    private final PreferenceManager preferenceManager;
+    private final ScheduledExecutorService scheduler;
+    private String cachedToken;
+    private long expiresAtMillis;
+    private Task<String> inFlightRefresh;
+    private ScheduledFuture<?> scheduledRefresh;
+    // Bumped by clear(); refreshes started before it are discarded
+    private int generation;
+
+    private TokenManager(Context context) {
+        firebaseAuth = FirebaseAuth.getInstance();
+        preferenceManager = PreferenceManager.getInstance(context);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "TokenRefresh");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public static synchronized TokenManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new TokenManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached token when it is still outside the refresh margin,
+     * otherwise joins (or starts) a single refresh.
+     */
+    public synchronized Task<String> getToken() {
+        if (cachedToken != null && System.currentTimeMillis() < expiresAtMillis - REFRESH_MARGIN_MS) {
+            return Tasks.forResult(cachedToken);
+        }
+        return refresh(false);
+    }
+
+    /**
+     * Fetches a token for the current user. With {@code forceRefresh} false the
+     * SDK answers from its own cache when it can, which is the case right after
+     * sign-in, so login does not pay for an extra network round trip.
+     */
+    public synchronized Task<String> refresh(boolean forceRefresh) {
+        if (inFlightRefresh != null) {
+            return inFlightRefresh;
+        }
+        FirebaseUser user = firebaseAuth.getCurrentUser();
+        if (user == null) {
+            return Tasks.forException(new IllegalStateException("No signed-in user"));
+        }
+        int started = generation;
+
+        Task<String> refresh = user.getIdToken(forceRefresh)
+                .continueWith(task -> {
+                    if (!task.isSuccessful() || task.getResult() == null) {
+                        throw task.getException() != null
+                                ? task.getException()
+                                : new IllegalStateException("Token refresh returned no result");
+                    }
+                    if (!onTokenRefreshed(task.getResult(), started)) {
+                        throw new IllegalStateException("Signed out during the token refresh");
+                    }
+                    return task.getResult().getToken();
+                });
+        inFlightRefresh = refresh;
+        refresh.addOnCompleteListener(task -> {
+            synchronized (TokenManager.this) {
+                if (inFlightRefresh == refresh) {
+                    inFlightRefresh = null;
+                }
+            }
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Token refresh failed", task.getException());
+            }
+        });
+        return refresh;
+    }
+
+    /** Drops the cached token and any pending background refresh. */
+    public synchronized void clear() {
+        cachedToken = null;
+        expiresAtMillis = 0;
+        inFlightRefresh = null;
+        generation++;
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+            scheduledRefresh = null;
+        }
+    }
+
+    /** Caches {@code result} unless {@link #clear} ran since the refresh {@code started}; says which. */
+    private synchronized boolean onTokenRefreshed(GetTokenResult result, int started) {
+        if (started != generation) {
+            // The previous user's token: must not overwrite whoever signed in since
+            Log.d(TAG, "Discarding a token refreshed before sign-out");
+            return false;
+        }
+        cachedToken = result.getToken();
+        expiresAtMillis = TimeUnit.SECONDS.toMillis(result.getExpirationTimestamp());
+        preferenceManager.updateAuthToken(cachedToken);
+        scheduleProactiveRefresh();
+        return true;
+    }
+
+    private void scheduleProactiveRefresh() {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        long delay = Math.max(MIN_REFRESH_DELAY_MS,
+                expiresAtMillis - REFRESH_MARGIN_MS - System.currentTimeMillis());
+        scheduledRefresh = scheduler.schedule(() -> {
+            Log.d(TAG, "Refreshing ID token ahead of expiry");
+            refresh(true);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+}
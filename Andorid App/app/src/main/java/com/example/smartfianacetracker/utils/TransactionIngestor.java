@@ -0,0 +1,195 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+
+/**
+ * The SMS ingest pipeline: classify, parse, persist. {@code SmsReceiver}
+ * feeds it from the broadcast; tests drive it directly with synthetic traffic.
+ * Financial messages that do not yield a usable transaction are quarantined
+ * with the reason rather than stored half-parsed or dropped.
+ */
+public class TransactionIngestor {
+    private static final String TAG = "TransactionIngestor";
+    // Enough for every concurrent ingest thread we run; extra threads just allocate
+    private static final int RECORD_POOL_SIZE = 8;
+    private static final int CATEGORY_CACHE_SIZE = 256;
+    private static final int PAYEE_CACHE_SIZE = 256;
+    private static TransactionIngestor instance;
+
+    /**
+     * Notified on the ingest thread after each transaction has been handed to
+     * storage, with the key millis it was stored under (0 if it could not
+     * be). The record goes back to the pool once this returns, so copy
+     * anything worth keeping.
+     */
+    public interface Listener {
+        void onTransactionStored(TransactionRecord record, long keyMillis);
+    }
+
+    private final SmsParser parser;
+    private final ServiceManager serviceManager;
+    private final QuarantineStore quarantineStore;
+    private final MerchantCategorizer categorizer;
+    private final PayeeCanonicalizer payees;
+    private final ReferenceIndex references;
+    private final TransactionRecord.Pool recordPool = new TransactionRecord.Pool(RECORD_POOL_SIZE);
+    // Copied on write and walked by index, so notifying allocates nothing
+    private volatile Listener[] listeners = new Listener[0];
+
+    public TransactionIngestor(SmsParser parser, ServiceManager serviceManager,
+                               QuarantineStore quarantineStore) {
+        this(parser, serviceManager, quarantineStore,
+            new MerchantCategorizer(CategoryDatabase.EMPTY, CATEGORY_CACHE_SIZE),
+            new PayeeCanonicalizer(null, PAYEE_CACHE_SIZE), new ReferenceIndex(null));
+    }
+
+    public TransactionIngestor(SmsParser parser, ServiceManager serviceManager,
+                               QuarantineStore quarantineStore, MerchantCategorizer categorizer,
+                               PayeeCanonicalizer payees, ReferenceIndex references) {
+        this.parser = parser;
+        this.serviceManager = serviceManager;
+        this.quarantineStore = quarantineStore;
+        this.categorizer = categorizer;
+        this.payees = payees;
+        this.references = references;
+    }
+
+    public static synchronized TransactionIngestor getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            RulePackRegistry rulePacks = RulePackRegistry.getInstance(appContext);
+            instance = new TransactionIngestor(
+                new SmsParser(rulePacks::current, SmsParser.DEFAULT_BUDGET_NANOS),
+                ServiceManager.getInstance(appContext),
+                new QuarantineStore(appContext.getFilesDir()),
+                new MerchantCategorizer(openCategories(appContext), CATEGORY_CACHE_SIZE),
+                new PayeeCanonicalizer(appContext.getFilesDir(), PAYEE_CACHE_SIZE),
+                ReferenceIndex.getInstance(appContext)
+            );
+            // A newer pack may recognise formats the previous one quarantined
+            TransactionIngestor ingestor = instance;
+            rulePacks.addListener(pack -> ingestor.replayQuarantine());
+            ingestor.addListener(AccountLedger.getInstance(appContext));
+            ingestor.addListener(RefundMatcher.getInstance(appContext));
+            ingestor.addListener(TransferCorrelator.getInstance(appContext));
+            ingestor.addListener(RecurringDetector.getInstance(appContext));
+            ingestor.addListener(AnomalyDetector.getInstance(appContext));
+            ingestor.addListener(SpendSketches.getInstance(appContext));
+            ingestor.addListener(LocalTransactionStore.getInstance(appContext));
+        }
+        return instance;
+    }
+
+    private static CategoryDatabase openCategories(Context context) {
+        try {
+            return CategoryDatabase.open(context);
+        } catch (IOException e) {
+            Log.e(TAG, "Category database unavailable; transactions will be uncategorized", e);
+            return CategoryDatabase.EMPTY;
+        }
+    }
+
+    public synchronized void addListener(Listener listener) {
+        Listener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    public boolean ingest(String sender, String messageBody) {
+        return ingest(sender, messageBody, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns true if the message was recognised as a transaction and handed
+     * to storage, or is a repeat of one already stored under its reference.
+     */
+    public boolean ingest(String sender, String messageBody, long receivedAt) {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Processing SMS from: " + sender);
+        }
+
+        // Check if the message is from a bank or financial institution
+        if (messageBody == null || !parser.isFinancialMessage(sender, messageBody)) {
+            return false;
+        }
+
+        // SMSC timestamps can run ahead of the device clock; the rules reject future timestamps
+        receivedAt = Math.min(receivedAt, System.currentTimeMillis());
+        QuarantineStore.Reason reason = parseAndStore(sender, messageBody, receivedAt);
+        if (reason != null) {
+            Log.w(TAG, "Quarantining SMS from " + sender + ": " + reason);
+            quarantineStore.add(new QuarantineStore.Entry(
+                reason, parser.version(), receivedAt, sender, messageBody));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs every message quarantined by an older parser or rule pack through
+     * the current one in a single batch, storing the ones that now parse.
+     */
+    public Future<QuarantineStore.ReplayResult> replayQuarantine() {
+        return quarantineStore.replay(parser.version(), false,
+            entry -> parseAndStore(entry.sender, entry.body, entry.receivedAt));
+    }
+
+    /** Returns null once stored (or known as a duplicate), otherwise why the message could not be. */
+    private QuarantineStore.Reason parseAndStore(String sender, String messageBody, long receivedAt) {
+        TransactionRecord record = recordPool.acquire();
+        try {
+            try {
+                parser.parse(sender, messageBody, record);
+            } catch (ParseTimeoutException e) {
+                Log.w(TAG, "SMS exceeded the parse budget (" + messageBody.length() + " chars)", e);
+                return QuarantineStore.Reason.PARSE_TIMEOUT;
+            } catch (Exception e) {
+                Log.e(TAG, "Error extracting transaction details", e);
+                return QuarantineStore.Reason.PARSE_ERROR;
+            }
+
+            if (record.amount <= 0) {
+                return QuarantineStore.Reason.ZERO_AMOUNT;
+            }
+            if (record.merchantName.contentEquals(SmsParser.UNKNOWN_MERCHANT)) {
+                return QuarantineStore.Reason.UNKNOWN_MERCHANT;
+            }
+
+            long keyMillis;
+            // Checked and indexed as one step: a quarantine replay runs alongside live ingest
+            synchronized (references) {
+                // The same transaction reported twice (bank and UPI app, or a resent SMS)
+                if (references.contains(record.referenceNumber, record.isDebit)) {
+                    if (Log.isLoggable(TAG, Log.DEBUG)) {
+                        Log.d(TAG, "Skipping duplicate of reference " + record.referenceNumber);
+                    }
+                    return null;
+                }
+
+                record.category = categorizer.categorize(record.merchantName, record.upiId);
+                record.payeeId = payees.resolve(record.merchantName, record.upiId);
+                record.timestamp = receivedAt;
+                keyMillis = serviceManager.storeTransaction(record);
+                if (keyMillis != 0) {
+                    references.add(record, keyMillis);
+                }
+            }
+            Listener[] listeners = this.listeners;
+            for (int i = 0; i < listeners.length; i++) {
+                try {
+                    listeners[i].onTransactionStored(record, keyMillis);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Transaction listener failed", e);
+                }
+            }
+            return null;
+        } finally {
+            recordPool.release(record);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.smartfianacetracker.utils;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Mutable carrier for one transaction from parse to persist. Text fields are
+ * {@link TextSlice} views over the SMS body, so filling a record allocates
+ * nothing; records are borrowed from a {@link Pool} and returned once the
+ * transaction has been handed to storage.
+ */
+public final class TransactionRecord {
+    public boolean isDebit;
+    /** A credit worded as a refund or reversal. */
+    public boolean isRefund;
+    public double amount;
+    /** Available balance after the transaction, when the bank included it. */
+    public boolean hasBalance;
+    public double balance;
+    public final TextSlice accountNumber = new TextSlice();
+    public final TextSlice merchantName = new TextSlice();
+    public final TextSlice upiId = new TextSlice();
+    /** UPI reference, UTR or RRN; empty when the SMS has none. */
+    public final TextSlice referenceNumber = new TextSlice();
+    /** One of the rule pack's mode strings, or {@code "OTHER"}. */
+    public String transactionMode = "";
+    /** Set by {@link MerchantCategorizer}; one of the category database's names. */
+    public String category = CategoryDatabase.OTHER;
+    /** Set by {@link PayeeCanonicalizer}; null until resolved. */
+    public String payeeId;
+    /** Set by {@link ServiceManager} on store: ids of the budgets a debit was charged to. */
+    public List<String> chargedBudgets = Collections.emptyList();
+    public long timestamp;
+
+    public TransactionRecord reset() {
+        isDebit = false;
+        isRefund = false;
+        amount = 0;
+        hasBalance = false;
+        balance = 0;
+        accountNumber.clear();
+        merchantName.clear();
+        upiId.clear();
+        referenceNumber.clear();
+        transactionMode = "";
+        category = CategoryDatabase.OTHER;
+        payeeId = null;
+        chargedBudgets = Collections.emptyList();
+        timestamp = 0;
+        return this;
+    }
+
+    /**
+     * A bounded free list. Acquiring from an empty pool creates a record;
+     * releasing into a full one drops it, so bursts from many threads still
+     * work, they just allocate.
+     */
+    public static final class Pool {
+        private final TransactionRecord[] free;
+        private int size;
+
+        public Pool(int capacity) {
+            free = new TransactionRecord[capacity];
+        }
+
+        public synchronized TransactionRecord acquire() {
+            if (size == 0) {
+                return new TransactionRecord();
+            }
+            TransactionRecord record = free[--size];
+            free[size] = null;
+            return record;
+        }
+
+        public synchronized void release(TransactionRecord record) {
+            if (size < free.length) {
+                free[size++] = record.reset();
+            }
+        }
+    }
+}
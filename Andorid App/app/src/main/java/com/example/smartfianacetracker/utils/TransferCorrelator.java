@@ -0,0 +1,157 @@
+package com.example.smartfianacetracker.utils;
+
+import android.content.Context;
+import android.util.Log;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Links the two legs of a transfer between the user's own accounts, so
+ * moving money from {@code XX4521} to {@code XX9911} is neither spend nor
+ * income. Every account a bank SMS names as debited or credited is the
+ * user's, so a debit on one masked account and a credit of the same amount
+ * on another, within {@link #DEFAULT_WINDOW_MILLIS} of each other, are one
+ * transfer. Both legs of an IMPS or UPI transfer carry its reference, so
+ * legs with different references are never paired, and a credit worded as
+ * a refund is never a leg. When several legs qualify, one with the same
+ * reference wins, then the closest in time.
+ *
+ * <p>Unmatched legs wait in memory, bucketed by amount and dropped once
+ * they fall out of the window, so correlating is one bucket lookup and never
+ * a scan of history. Matched pairs are written by
+ * {@link ServiceManager#recordInternalTransfer}.
+ */
+public class TransferCorrelator implements TransactionIngestor.Listener {
+    private static final String TAG = "TransferCorrelator";
+    /** Both legs of an IMPS or UPI transfer arrive within seconds; NEFT batches within hours. */
+    public static final long DEFAULT_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(2);
+    private static TransferCorrelator instance;
+
+    private static final class Leg {
+        final boolean isDebit;
+        final long amountPaise;
+        final String accountNumber;
+        final String reference;
+        final long timestamp;
+        final long keyMillis;
+        final List<String> chargedBudgets;
+        boolean matched;
+
+        Leg(TransactionRecord record, long keyMillis) {
+            isDebit = record.isDebit;
+            amountPaise = Math.round(record.amount * 100);
+            accountNumber = record.accountNumber.toString();
+            reference = record.referenceNumber.toString();
+            timestamp = record.timestamp;
+            this.keyMillis = keyMillis;
+            chargedBudgets = record.chargedBudgets;
+        }
+    }
+
+    private final ServiceManager serviceManager;
+    private final long windowMillis;
+    // Unmatched legs by amount in paise
+    private final Map<Long, ArrayDeque<Leg>> byAmount = new HashMap<>();
+    // In the order seen; matched legs stay until they age out
+    private final ArrayDeque<Leg> byAge = new ArrayDeque<>();
+    private long latestTimestamp;
+
+    public TransferCorrelator(ServiceManager serviceManager, long windowMillis) {
+        this.serviceManager = serviceManager;
+        this.windowMillis = windowMillis;
+    }
+
+    public static synchronized TransferCorrelator getInstance(Context context) {
+        if (instance == null) {
+            instance = new TransferCorrelator(ServiceManager.getInstance(context.getApplicationContext()),
+                    DEFAULT_WINDOW_MILLIS);
+        }
+        return instance;
+    }
+
+    @Override
+    public synchronized void onTransactionStored(TransactionRecord record, long keyMillis) {
+        if (keyMillis == 0 || record.accountNumber.isEmpty() || record.isRefund) {
+            return;
+        }
+        if (record.timestamp > latestTimestamp) {
+            latestTimestamp = record.timestamp;
+            evictBefore(latestTimestamp - windowMillis);
+        }
+
+        Leg leg = new Leg(record, keyMillis);
+        ArrayDeque<Leg> bucket = byAmount.get(leg.amountPaise);
+        Leg other = bucket != null ? counterpart(bucket, leg) : null;
+        if (other == null) {
+            if (bucket == null) {
+                bucket = new ArrayDeque<>(2);
+                byAmount.put(leg.amountPaise, bucket);
+            }
+            bucket.add(leg);
+            byAge.add(leg);
+            return;
+        }
+
+        other.matched = true;
+        bucket.remove(other);
+        if (bucket.isEmpty()) {
+            byAmount.remove(leg.amountPaise);
+        }
+        Leg debit = leg.isDebit ? leg : other;
+        Leg credit = leg.isDebit ? other : leg;
+        Log.d(TAG, "Transfer " + debit.accountNumber + " -> " + credit.accountNumber
+                + " (" + leg.amountPaise / 100.0 + ")");
+        serviceManager.recordInternalTransfer(debit.keyMillis, credit.keyMillis, leg.amountPaise / 100.0,
+                debit.timestamp, BudgetBook.chargeId(false, credit.accountNumber, credit.amountPaise / 100.0,
+                        credit.timestamp, credit.reference), debit.chargedBudgets);
+    }
+
+    /** Number of legs still waiting for their other half. */
+    public synchronized int pendingCount() {
+        int count = 0;
+        for (ArrayDeque<Leg> bucket : byAmount.values()) {
+            count += bucket.size();
+        }
+        return count;
+    }
+
+    private Leg counterpart(ArrayDeque<Leg> bucket, Leg leg) {
+        Leg best = null;
+        long bestGap = Long.MAX_VALUE;
+        for (Leg candidate : bucket) {
+            long gap = Math.abs(candidate.timestamp - leg.timestamp);
+            if (candidate.isDebit == leg.isDebit || gap > windowMillis
+                    || candidate.accountNumber.equals(leg.accountNumber)) {
+                continue;
+            }
+            if (!leg.reference.isEmpty() && !candidate.reference.isEmpty()) {
+                if (leg.reference.equalsIgnoreCase(candidate.reference)) {
+                    return candidate;
+                }
+                continue;
+            }
+            if (gap < bestGap) {
+                best = candidate;
+                bestGap = gap;
+            }
+        }
+        return best;
+    }
+
+    private void evictBefore(long cutoff) {
+        while (!byAge.isEmpty() && byAge.peekFirst().timestamp < cutoff) {
+            Leg leg = byAge.pollFirst();
+            if (leg.matched) {
+                continue;
+            }
+            ArrayDeque<Leg> bucket = byAmount.get(leg.amountPaise);
+            bucket.remove(leg);
+            if (bucket.isEmpty()) {
+                byAmount.remove(leg.amountPaise);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.smartfianacetracker.utils;
+
+/**
+ * Which transaction schema {@link ServiceManager} writes. {@code BOTH} is the
+ * migration setting: every transaction goes to the v1 debit/credit nodes and
+ * to the compact v2 node under the same timestamp, so readers can move over
+ * one at a time.
+ */
+public enum WireFormat {
+    V1,
+    BOTH,
+    V2;
+
+    public boolean writesV1() {
+        return this != V2;
+    }
+
+    public boolean writesV2() {
+        return this != V1;
+    }
+
+    /** Falls back to {@link #V1} for anything unrecognised, including null. */
+    public static WireFormat parse(String name) {
+        for (WireFormat format : values()) {
+            if (format.name().equals(name)) {
+                return format;
+            }
+        }
+        return V1;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.smartfianacetracker.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Compares the hand-written mappers with reflective bean mapping of the
+ * kind the Firebase SDK does for {@code setValue(bean)} and
+ * {@code getValue(Class)}.
+ */
+public class MapperBenchmarkTest {
+    private static final int ITERATIONS = 200_000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void mappers_beatReflectiveMapping() throws Exception {
+        Transaction transaction = new Transaction(true, "XX4521", 1250.5, "SAI STORES",
+                1_000L, "UPI", "sai.stores@okaxis");
+        Map<String, Object> snapshot = TransactionMapper.toMap(transaction);
+        assertEquals(snapshot, reflectiveToMap(transaction));
+
+        long reflective = Long.MAX_VALUE;
+        long mapped = Long.MAX_VALUE;
+        int sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                Map<String, Object> map = reflectiveToMap(transaction);
+                sink += reflectiveFromMap(map).merchantName.length();
+            }
+            reflective = Math.min(reflective, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                Map<String, Object> map = TransactionMapper.toMap(transaction);
+                sink += TransactionMapper.fromMap(map, true).merchantName.length();
+            }
+            mapped = Math.min(mapped, System.nanoTime() - start);
+        }
+
+        System.out.printf("transaction round trip: reflective %.0f ns, mapper %.0f ns (sink %d)%n",
+                reflective / (double) ITERATIONS, mapped / (double) ITERATIONS, sink);
+        assertTrue("mapper " + mapped + " ns vs reflective " + reflective + " ns", mapped < reflective);
+    }
+
+    /** Public non-static fields by name, boxing primitives and skipping nulls. */
+    private static Map<String, Object> reflectiveToMap(Object bean) throws IllegalAccessException {
+        Map<String, Object> map = new HashMap<>();
+        for (Field field : bean.getClass().getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.getName().equals("isDebit")) {
+                continue;
+            }
+            Object value = field.get(bean);
+            if (value != null) {
+                map.put(field.getName(), value);
+            }
+        }
+        return map;
+    }
+
+    private static Transaction reflectiveFromMap(Map<String, Object> map) throws Exception {
+        Transaction transaction = Transaction.class.getConstructor().newInstance();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            Field field = Transaction.class.getField(entry.getKey());
+            Object value = entry.getValue();
+            if (field.getType() == double.class) {
+                field.setDouble(transaction, ((Number) value).doubleValue());
+            } else if (field.getType() == long.class) {
+                field.setLong(transaction, ((Number) value).longValue());
+            } else if (field.getType() == Long.class) {
+                field.set(transaction, ((Number) value).longValue());
+            } else {
+                field.set(transaction, value);
+            }
+        }
+        return transaction;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.smartfianacetracker.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.smartfianacetracker.utils.RulesValidator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Keeps the mappers and database.rules.json in step: same field names, same
+ * types, required fields always written, and mapped values accepted.
+ */
+public class ModelSchemaTest {
+    private static final String DEBIT_PATH = "users/u1/debit/debit_1";
+    private static final String CREDIT_PATH = "users/u1/credit/credit_1";
+    private static final String BUDGET_PATH = "users/u1/budgets/budget_1";
+
+    private static RulesValidator rules;
+
+    @BeforeClass
+    public static void loadRules() throws Exception {
+        rules = RulesValidator.load();
+    }
+
+    @Test
+    public void transactionSchema_matchesRules() {
+        assertEquals(rules.declaredChildren(DEBIT_PATH), TransactionMapper.SCHEMA);
+        assertEquals(rules.declaredChildren(CREDIT_PATH), TransactionMapper.SCHEMA);
+        Map<String, Object> minimal = TransactionMapper.toMap(new Transaction());
+        assertTrue(minimal.keySet().containsAll(rules.requiredChildren(DEBIT_PATH)));
+    }
+
+    @Test
+    public void budgetSchema_matchesRules() {
+        assertEquals(rules.declaredChildren(BUDGET_PATH), BudgetMapper.SCHEMA);
+        Map<String, Object> minimal = BudgetMapper.toMap(new Budget());
+        assertTrue(minimal.keySet().containsAll(rules.requiredChildren(BUDGET_PATH)));
+    }
+
+    @Test
+    public void wireV2Schema_matchesRules() {
+        assertEquals(rules.declaredChildren("users/u1/tx2/lx2k9a0b"), TransactionWireV2.SCHEMA);
+        assertEquals(rules.declaredChildren("users/u1/payees2/p1"), TransactionWireV2.PAYEE_SCHEMA);
+        Map<String, Object> minimal = TransactionWireV2.encode(new Transaction(), "p1");
+        assertTrue(minimal.keySet().containsAll(rules.requiredChildren("users/u1/tx2/lx2k9a0b")));
+    }
+
+    @Test
+    public void recurringSchema_matchesRules() {
+        String path = "users/u1/" + RecurringPaymentMapper.NODE + "/p1";
+        assertEquals(rules.declaredChildren(path), RecurringPaymentMapper.SCHEMA);
+        RecurringPayment payment = new RecurringPayment();
+        payment.merchantName = "NETFLIX";
+        payment.periodDays = 30.4;
+        payment.amount = 649;
+        payment.nextDueAt = 4_000L;
+        payment.lastPaidAt = 1_000L;
+        payment.occurrences = 3;
+        Map<String, Object> map = RecurringPaymentMapper.toMap(payment);
+        assertTrue(map.keySet().containsAll(rules.requiredChildren(path)));
+        assertEquals(Collections.emptyList(), rules.validate(path, map));
+        assertEquals(map, RecurringPaymentMapper.toMap(RecurringPaymentMapper.fromMap(map)));
+    }
+
+    @Test
+    public void sketchSchema_matchesRules() {
+        String payeePath = "users/u1/" + SpendSketchMapper.NODE + "/" + SpendSketchMapper.PAYEES + "/p1";
+        String amountPath = "users/u1/" + SpendSketchMapper.NODE + "/" + SpendSketchMapper.AMOUNTS + "/Food";
+        assertEquals(rules.declaredChildren(payeePath), SpendSketchMapper.PAYEE_SCHEMA);
+        assertEquals(rules.declaredChildren(amountPath), SpendSketchMapper.AMOUNT_SCHEMA);
+        assertEquals(Collections.emptyList(),
+                rules.validate(payeePath, SpendSketchMapper.payeeMap("SWIGGY", 1250.555, 10)));
+        assertEquals(Collections.emptyList(), rules.validate(amountPath,
+                SpendSketchMapper.amountMap("Food", 3, 240, 900, 1200, "120.00:1 240.00:1 1200.00:1")));
+        assertEquals("Food___Dining", SpendSketchMapper.categoryKey("Food & Dining"));
+    }
+
+    @Test
+    public void mappedValues_passValidation() {
+        Transaction transaction = new Transaction(true, "XX4521", 1250.5, "SAI STORES",
+                1_000L, "UPI", "sai.stores@okaxis");
+        transaction.uploadedAt = 2_000L;
+        assertEquals(Collections.emptyList(),
+                rules.validate(DEBIT_PATH, TransactionMapper.toMap(transaction)));
+
+        Budget budget = sampleBudget();
+        assertEquals(Collections.emptyList(), rules.validate(BUDGET_PATH, BudgetMapper.toMap(budget)));
+    }
+
+    @Test
+    public void transaction_roundTripsThroughSnapshotShapedMap() {
+        Transaction original = new Transaction(false, "9876", 500, "9371110123@superyes",
+                3_000L, "UPI", "9371110123@superyes");
+        // Whole-number doubles come back from the database as Long
+        Map<String, Object> snapshot = new HashMap<>(TransactionMapper.toMap(original));
+        snapshot.put(TransactionMapper.AMOUNT, 500L);
+
+        Transaction read = TransactionMapper.fromMap(snapshot, false);
+        assertEquals(TransactionMapper.toMap(original), TransactionMapper.toMap(read));
+        assertNull(read.uploadedAt);
+    }
+
+    @Test
+    public void budget_roundTripsAndAcceptsSparseArrays() {
+        Budget original = sampleBudget();
+        Map<String, Object> snapshot = new HashMap<>(BudgetMapper.toMap(original));
+        Map<String, Object> sparse = new HashMap<>();
+        sparse.put("0", "Swiggy");
+        snapshot.put(BudgetMapper.MERCHANTS, sparse);
+
+        Budget read = BudgetMapper.fromMap(snapshot);
+        assertEquals(Collections.singletonList("Swiggy"), read.merchants);
+        assertEquals(original.upiIds, read.upiIds);
+        assertEquals(original.spent, read.spent, 0);
+        assertEquals(original.createdAt, read.createdAt);
+        assertEquals(original.period, read.period);
+        assertEquals(original.spentByPeriod, read.spentByPeriod);
+    }
+
+    static Budget sampleBudget() {
+        Budget budget = new Budget();
+        budget.amount = 5000;
+        budget.spent = 1200.75;
+        budget.category = "Food";
+        budget.description = "Eating out";
+        budget.merchants = Arrays.asList("Swiggy", "Zomato");
+        budget.upiIds = Arrays.asList("swiggy@icici");
+        budget.createdAt = 1_000L;
+        budget.period = BudgetPeriod.MONTHLY;
+        budget.spentByPeriod.put("2024-03-01", 1200.75);
+        return budget;
+    }
+}
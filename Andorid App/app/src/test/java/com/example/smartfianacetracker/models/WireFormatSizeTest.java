@@ -0,0 +1,97 @@
+package com.example.smartfianacetracker.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * Sizes a year of synthetic history in both schemas, as the JSON the
+ * database sends, and checks every v2 record decodes back to its v1 form.
+ */
+public class WireFormatSizeTest {
+    private static final int DAYS = 365;
+    private static final int PER_DAY = 4;
+    private static final long START_MILLIS = 1_704_067_200_000L;
+    private static final String[][] PAYEES = new String[60][];
+    private static final String[] MODES = {"UPI", "UPI", "UPI", "NEFT", "IMPS", "OTHER"};
+    // Typical mobile links: 3G and 4G
+    private static final double[] LINK_MBPS = {1, 10};
+
+    static {
+        for (int i = 0; i < PAYEES.length; i++) {
+            PAYEES[i] = new String[] {"MERCHANT STORE " + i, "merchant" + i + "@okaxis"};
+        }
+    }
+
+    @Test
+    public void yearOfHistory_v2IsSmallerAndDecodesToV1() throws Exception {
+        Random random = new Random(36);
+        Map<String, Object> debitV1 = new HashMap<>();
+        Map<String, Object> creditV1 = new HashMap<>();
+        Map<String, Object> tx2 = new HashMap<>();
+        Map<String, Object> payees2 = new HashMap<>();
+
+        int count = DAYS * PER_DAY;
+        for (int i = 0; i < count; i++) {
+            String[] payee = PAYEES[random.nextInt(PAYEES.length)];
+            long millis = START_MILLIS + i * (86_400_000L / PER_DAY) + random.nextInt(1000);
+            Transaction transaction = new Transaction(random.nextInt(5) > 0, "XX" + (1000 + random.nextInt(3)),
+                    Math.round(random.nextDouble() * 500_000) / 100.0, payee[0], millis,
+                    MODES[random.nextInt(MODES.length)], payee[1]);
+
+            (transaction.isDebit ? debitV1 : creditV1).put(transaction.node() + "_" + millis,
+                    TransactionMapper.toMap(transaction));
+            String payeeId = TransactionWireV2.payeeId(payee[0], payee[1]);
+            tx2.put(TransactionWireV2.key(millis), TransactionWireV2.encode(transaction, payeeId));
+            payees2.put(payeeId, TransactionWireV2.encodePayee(payee[0], payee[1]));
+        }
+
+        for (Map.Entry<String, Object> entry : tx2.entrySet()) {
+            Transaction decoded = TransactionWireV2.decode((Map<?, ?>) entry.getValue(), payees2);
+            long millis = Long.parseLong(entry.getKey(), 36);
+            Object v1 = (decoded.isDebit ? debitV1 : creditV1).get(decoded.node() + "_" + millis);
+            assertEquals(v1, TransactionMapper.toMap(decoded));
+        }
+
+        Map<String, Object> v1 = new HashMap<>();
+        v1.put(Transaction.DEBIT_NODE, debitV1);
+        v1.put(Transaction.CREDIT_NODE, creditV1);
+        Map<String, Object> v2 = new HashMap<>();
+        v2.put(TransactionWireV2.NODE, tx2);
+        v2.put(TransactionWireV2.PAYEE_NODE, payees2);
+        byte[] v1Json = new JSONObject(v1).toString().getBytes(StandardCharsets.UTF_8);
+        byte[] v2Json = new JSONObject(v2).toString().getBytes(StandardCharsets.UTF_8);
+        int v1Gzip = gzipSize(v1Json);
+        int v2Gzip = gzipSize(v2Json);
+
+        System.out.printf("wire: %d transactions, v1 %.0f B/tx (%d KB, gzip %d KB), v2 %.0f B/tx (%d KB, gzip %d KB)%n",
+                count, v1Json.length / (double) count, v1Json.length / 1024, v1Gzip / 1024,
+                v2Json.length / (double) count, v2Json.length / 1024, v2Gzip / 1024);
+        for (double mbps : LINK_MBPS) {
+            System.out.printf("wire: year download at %.0f Mbps: v1 %.2f s, v2 %.2f s%n",
+                    mbps, seconds(v1Json.length, mbps), seconds(v2Json.length, mbps));
+        }
+        assertTrue("v2 " + v2Json.length + " B vs v1 " + v1Json.length + " B",
+                v2Json.length < v1Json.length * 0.6);
+    }
+
+    private static double seconds(int bytes, double mbps) {
+        return bytes * 8 / (mbps * 1_000_000);
+    }
+
+    private static int gzipSize(byte[] bytes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.size();
+    }
+}
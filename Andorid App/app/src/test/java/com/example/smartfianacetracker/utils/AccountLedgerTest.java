@@ -0,0 +1,88 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AccountLedgerTest {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void balance_isUnknownUntilReportedThenCarriedForward() {
+        AccountLedger ledger = new AccountLedger(null);
+
+        ledger.onTransactionStored(RecordBuilder.debit(100).at(1_000L).build(), 1L);
+        assertTrue(Double.isNaN(ledger.balance("XX4521")));
+
+        ledger.onTransactionStored(RecordBuilder.debit(250.50).balance(9_749.50).at(2_000L).build(), 1L);
+        ledger.onTransactionStored(RecordBuilder.credit(1_000).at(3_000L).build(), 1L);
+        ledger.onTransactionStored(RecordBuilder.debit(0.10).at(4_000L).build(), 1L);
+
+        assertEquals(10_749.40, ledger.balance("XX4521"), 0.0001);
+        assertEquals(0, ledger.entry("XX4521").gapCount);
+        assertTrue(Double.isNaN(ledger.balance("XX9999")));
+        assertNull(ledger.entry("XX9999"));
+    }
+
+    @Test
+    public void mismatchedReport_isFlaggedAsGapAndReanchors() {
+        AccountLedger ledger = new AccountLedger(null);
+        ledger.onTransactionStored(RecordBuilder.debit(100).balance(5_000).at(1_000L).build(), 1L);
+        // A 300 debit SMS never arrived
+        ledger.onTransactionStored(RecordBuilder.debit(200).balance(4_500).at(2_000L).build(), 1L);
+        ledger.onTransactionStored(RecordBuilder.credit(50).balance(4_550).at(3_000L).build(), 1L);
+
+        AccountLedger.Entry entry = ledger.entry("XX4521");
+        assertEquals(4_550, entry.balance, 0.0001);
+        assertEquals(1, entry.gapCount);
+        assertEquals(-300, entry.lastGap, 0.0001);
+        assertEquals(2_000L, entry.lastGapAt);
+    }
+
+    @Test
+    public void olderTransactions_areNotReapplied() {
+        AccountLedger ledger = new AccountLedger(null);
+        ledger.onTransactionStored(RecordBuilder.debit(100).balance(5_000).at(2_000L).build(), 1L);
+        ledger.onTransactionStored(RecordBuilder.debit(100).balance(5_100).at(1_000L).build(), 1L);
+
+        assertEquals(5_000, ledger.balance("XX4521"), 0.0001);
+        assertEquals(0, ledger.entry("XX4521").gapCount);
+    }
+
+    @Test
+    public void ledger_survivesARestart() throws Exception {
+        AccountLedger ledger = new AccountLedger(tempDir.getRoot());
+        ledger.onTransactionStored(RecordBuilder.debit(100).balance(5_000).at(1_000L).build(), 1L);
+        ledger.onTransactionStored(RecordBuilder.debit(200).balance(4_500).at(2_000L).build(), 1L);
+        ledger.onTransactionStored(RecordBuilder.credit(10).account("9876").at(3_000L).build(), 1L);
+        ledger.flush().get();
+
+        AccountLedger reopened = new AccountLedger(tempDir.getRoot());
+        assertEquals(2, reopened.entries().size());
+        assertEquals(4_500, reopened.balance("XX4521"), 0.0001);
+        assertEquals(1, reopened.entry("XX4521").gapCount);
+        assertTrue(Double.isNaN(reopened.balance("9876")));
+        assertEquals(3_000L, reopened.entry("9876").asOf);
+    }
+
+    @Test
+    public void ingestedMessages_feedTheLedger() throws Exception {
+        TransactionIngestor ingestor = new TransactionIngestor(new SmsParser(),
+            new ServiceManager(new FakeDatabaseWriter(RulesValidator.load(), 0), new PreferenceManager("test-user")),
+            new QuarantineStore(tempDir.getRoot()));
+        AccountLedger ledger = new AccountLedger(null);
+        ingestor.addListener(ledger);
+
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.250 debited from A/c XX4521 to SAI STORES via UPI. Avl Bal: Rs 9,750.00", 1_000L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.50 debited from A/c XX4521 to BLUE TOKAI via UPI", 2_000L));
+
+        assertEquals(9_700, ledger.balance("XX4521"), 0.0001);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AnomalyDetectorTest {
+    private static final long HOUR = 3_600_000L;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final List<AnomalyDetector.Anomaly> alerts = new ArrayList<>();
+    private AnomalyDetector detector;
+
+    @Before
+    public void setUp() {
+        detector = new AnomalyDetector(null, alerts::add);
+    }
+
+    @Test
+    public void amountFarAboveThePayeesUsual_alertsOnce() {
+        double[] usual = {300, 280, 320, 310, 290, 305, 295, 300};
+        for (int i = 0; i < usual.length; i++) {
+            debit(detector, usual[i], "swiggy", "XX4521", (i + 1) * HOUR);
+        }
+        debit(detector, 450, "swiggy", "XX4521", 10 * HOUR);
+        assertTrue(alerts.isEmpty());
+
+        debit(detector, 6_000, "swiggy", "XX4521", 11 * HOUR);
+        assertEquals(1, alerts.size());
+        AnomalyDetector.Anomaly alert = alerts.get(0);
+        assertEquals(AnomalyDetector.Kind.UNUSUAL_FOR_PAYEE, alert.kind);
+        assertEquals("SWIGGY", alert.merchantName);
+        assertEquals(300, alert.typicalAmount, 30);
+        assertTrue(alert.score >= AnomalyDetector.Z_THRESHOLD);
+    }
+
+    @Test
+    public void newPayeeFarAboveTheAccountsUsual_alerts() {
+        double[] usual = {200, 400, 800, 300, 600, 250, 500, 350};
+        for (int i = 0; i < usual.length; i++) {
+            debit(detector, usual[i], "payee" + i, "XX4521", (i + 1) * HOUR);
+        }
+        // Small amounts never alert, and a new payee has no history of its own
+        debit(detector, 400, "landlord", "XX4521", 10 * HOUR);
+        debit(detector, 40_000, "jeweller", "XX9911", 11 * HOUR);
+        assertTrue(alerts.isEmpty());
+
+        debit(detector, 40_000, "jeweller", "XX4521", 12 * HOUR);
+        assertEquals(1, alerts.size());
+        assertEquals(AnomalyDetector.Kind.UNUSUAL_FOR_ACCOUNT, alerts.get(0).kind);
+        assertEquals("XX4521", alerts.get(0).accountNumber);
+    }
+
+    @Test
+    public void debitsInQuickSuccession_alertOncePerBurst() {
+        for (int i = 0; i < 8; i++) {
+            debit(detector, 100 + i, "shop" + i, "XX4521", HOUR + i * 20_000L);
+        }
+        assertEquals(1, alerts.size());
+        assertEquals(AnomalyDetector.Kind.BURST, alerts.get(0).kind);
+        assertEquals(104, alerts.get(0).amount, 0.001);
+
+        // Once it has quietened down, the next burst alerts again
+        for (int i = 0; i < 5; i++) {
+            debit(detector, 100, "shop" + i, "XX4521", 3 * HOUR + i * 20_000L);
+        }
+        assertEquals(2, alerts.size());
+    }
+
+    @Test
+    public void creditsAndReplays_neverAlert() {
+        for (int i = 0; i < 8; i++) {
+            debit(detector, 300, "swiggy", "XX4521", (i + 10) * HOUR);
+        }
+        detector.onTransactionStored(RecordBuilder.credit(50_000).payee("swiggy").at(20 * HOUR).build(), 1L);
+        // Older than what has already been seen for the payee: a quarantine replay
+        debit(detector, 6_000, "swiggy", "XX4521", HOUR);
+        assertTrue(alerts.isEmpty());
+    }
+
+    @Test
+    public void statistics_surviveARestart() throws Exception {
+        File dir = tempDir.newFolder();
+        AnomalyDetector first = new AnomalyDetector(dir, alerts::add);
+        for (int i = 0; i < 8; i++) {
+            debit(first, 300, "swiggy", "XX4521", (i + 1) * HOUR);
+        }
+        for (int i = 0; i < 300; i++) {
+            debit(first, 100, "payee" + i, "XX7777", (i + 1) * HOUR);
+        }
+        first.flush().get();
+
+        AnomalyDetector reopened = new AnomalyDetector(dir, alerts::add);
+        assertEquals(first.keyCount(), reopened.keyCount());
+        debit(reopened, 6_000, "swiggy", "XX4521", 400 * HOUR);
+        assertEquals(1, alerts.size());
+        assertEquals(AnomalyDetector.Kind.UNUSUAL_FOR_PAYEE, alerts.get(0).kind);
+    }
+
+    @Test
+    public void steadySpend_neverAlerts() {
+        TransactionRecord record = RecordBuilder.debit(300).payee("swiggy").build();
+        for (int i = 0; i < 1_000; i++) {
+            record.timestamp = (i + 1) * HOUR;
+            assertNull(detector.score(record));
+        }
+        assertEquals(2, detector.keyCount());
+    }
+
+    private static void debit(AnomalyDetector detector, double amount, String payeeId, String account,
+                              long timestamp) {
+        detector.onTransactionStored(RecordBuilder.debit(amount).payee(payeeId).account(account).at(timestamp).build(),
+                1L);
+    }
+}
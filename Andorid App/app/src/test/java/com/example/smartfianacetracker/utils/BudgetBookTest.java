@@ -0,0 +1,229 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.smartfianacetracker.models.Budget;
+import com.example.smartfianacetracker.models.BudgetMapper;
+import com.example.smartfianacetracker.models.BudgetPeriod;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BudgetBookTest {
+    private static final String USER = "users/test-user";
+    private static final String BUDGET = USER + "/budgets/b1";
+    private static final TimeZone IST = TimeZone.getTimeZone("Asia/Kolkata");
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long DAY = 86_400_000L;
+    // 2024-03-01T00:00:00Z
+    private static final long MARCH_1 = 1_709_251_200_000L;
+    private static final List<String> B1 = Collections.singletonList("b1");
+
+    private final AtomicLong now = new AtomicLong();
+    private FakeDatabaseWriter db;
+    private BudgetBook book;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        book = new BudgetBook(now::get, IST);
+    }
+
+    @Test
+    public void periodKeys_areTheLocalStartDate() {
+        Budget budget = new Budget();
+        assertNull(BudgetPeriod.key(budget, MARCH_1, UTC));
+
+        budget.period = BudgetPeriod.MONTHLY;
+        assertEquals("2024-02-01", BudgetPeriod.key(budget, MARCH_1 - 1, UTC));
+        assertEquals("2024-03-01", BudgetPeriod.key(budget, MARCH_1 - 1, IST));
+        assertEquals("2023-12-01", BudgetPeriod.key(budget, MARCH_1 - 70 * DAY, UTC));
+
+        budget.period = BudgetPeriod.WEEKLY;
+        // A Friday; its week starts on Monday 26 February
+        assertEquals("2024-02-26", BudgetPeriod.key(budget, MARCH_1, UTC));
+        assertEquals("2024-03-04", BudgetPeriod.key(budget, MARCH_1 + 3 * DAY, UTC));
+        assertEquals("1969-12-29", BudgetPeriod.key(budget, 0, UTC));
+
+        budget.period = BudgetPeriod.CUSTOM;
+        budget.periodDays = 10;
+        budget.createdAt = MARCH_1 + DAY;
+        assertEquals("2024-03-02", BudgetPeriod.key(budget, MARCH_1 + 5 * DAY, UTC));
+        assertEquals("2024-03-12", BudgetPeriod.key(budget, MARCH_1 + 11 * DAY, UTC));
+        assertEquals("2024-02-21", BudgetPeriod.key(budget, MARCH_1, UTC));
+        budget.periodDays = 0;
+        assertNull(BudgetPeriod.key(budget, MARCH_1, UTC));
+    }
+
+    @Test
+    public void newPeriod_startsFromNothingWithoutAReset() {
+        Budget monthly = new Budget();
+        monthly.amount = 1_000;
+        monthly.category = "Food";
+        monthly.createdAt = MARCH_1;
+        monthly.period = BudgetPeriod.MONTHLY;
+        publish(monthly);
+
+        now.set(MARCH_1 + 20 * DAY);
+        charge(900, MARCH_1 + 5 * DAY);
+        charge(200, MARCH_1 + 19 * DAY);
+        assertEquals(1_100.0, (Double) db.values.get(BUDGET + "/spentByPeriod/2024-03-01"), 0.001);
+        assertEquals(Boolean.TRUE, db.values.get(BUDGET + "/budgetReached"));
+        assertEquals(1_100, book.currentSpend("b1"), 0.001);
+
+        // April: nothing is written at rollover, and the first charge clears budgetReached
+        now.set(MARCH_1 + 33 * DAY);
+        assertEquals(0, book.currentSpend("b1"), 0.001);
+        charge(100, MARCH_1 + 32 * DAY);
+        assertEquals(100.0, (Double) db.values.get(BUDGET + "/spentByPeriod/2024-04-01"), 0.001);
+        assertEquals(Boolean.FALSE, db.values.get(BUDGET + "/budgetReached"));
+
+        // A refund of a March debit comes off March
+        charge(-200, MARCH_1 + 19 * DAY);
+        assertEquals(900.0, (Double) db.values.get(BUDGET + "/spentByPeriod/2024-03-01"), 0.001);
+        assertEquals(100, book.currentSpend("b1"), 0.001);
+        assertEquals(1_000.0, (Double) db.values.get(BUDGET + "/spent"), 0.001);
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+    }
+
+    @Test
+    public void budgetWithoutPeriod_keepsLifetimeSpend() {
+        Budget once = new Budget();
+        once.amount = 500;
+        once.category = "Travel";
+        once.createdAt = MARCH_1;
+        publish(once);
+
+        now.set(MARCH_1 + 40 * DAY);
+        charge(300, MARCH_1);
+        charge(300, MARCH_1 + 35 * DAY);
+        assertEquals(600, book.currentSpend("b1"), 0.001);
+        assertEquals(Boolean.TRUE, db.values.get(BUDGET + "/budgetReached"));
+        for (String path : db.values.keySet()) {
+            assertTrue(path, !path.contains("/spentByPeriod"));
+        }
+    }
+
+    @Test
+    public void chargeSeenTwice_countsOnce() {
+        Budget food = new Budget();
+        food.amount = 1_000;
+        food.category = "Food";
+        food.createdAt = MARCH_1;
+        food.period = BudgetPeriod.MONTHLY;
+        publish(food);
+        now.set(MARCH_1 + DAY);
+
+        String id = BudgetBook.chargeId(true, "XX4521", 300, MARCH_1 + DAY, "412233445566");
+        charge(300, MARCH_1 + DAY, id);
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+
+        // The same message from a second device: rejected whole by the marker
+        BudgetBook otherDevice = new BudgetBook(now::get, IST);
+        otherDevice.update(Collections.singletonMap("b1", BudgetMapper.toMap(food)));
+        Map<String, Object> updates = new HashMap<>();
+        otherDevice.addSpend(B1, 300, MARCH_1 + DAY, id, updates, db);
+        db.updateChildren(USER, updates, error -> { });
+
+        assertEquals(1, db.ruleViolations.size());
+        assertEquals(300.0, (Double) db.values.get(BUDGET + "/spent"), 0.001);
+        assertEquals(300.0, (Double) db.values.get(BUDGET + "/spentByPeriod/2024-03-01"), 0.001);
+        assertEquals(300.0, db.values.get(USER + "/budgetCharges/b1/" + id));
+    }
+
+    @Test
+    public void concurrentChargesFromSeveralDevices_loseNothing() throws Exception {
+        Budget food = new Budget();
+        food.amount = 100_000;
+        food.category = "Food";
+        food.createdAt = MARCH_1;
+        food.period = BudgetPeriod.WEEKLY;
+        publish(food);
+        now.set(MARCH_1);
+
+        int devices = 4;
+        int perDevice = 250;
+        ExecutorService pool = Executors.newFixedThreadPool(devices);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int d = 0; d < devices; d++) {
+            String account = "XX000" + d;
+            pool.execute(() -> {
+                BudgetBook device = new BudgetBook(now::get, IST);
+                device.update(Collections.singletonMap("b1", BudgetMapper.toMap(food)));
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perDevice; i++) {
+                    long timestamp = MARCH_1 + i * 1_000L;
+                    Map<String, Object> updates = new HashMap<>();
+                    device.addSpend(B1, 2, timestamp, BudgetBook.chargeId(true, account, 2, timestamp, null),
+                            updates, db);
+                    db.updateChildren(USER, updates, error -> { });
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+        assertEquals(2.0 * devices * perDevice, (Double) db.values.get(BUDGET + "/spent"), 0.001);
+        assertEquals(2.0 * devices * perDevice,
+                (Double) db.values.get(BUDGET + "/spentByPeriod/2024-02-26"), 0.001);
+    }
+
+    @Test
+    public void refundLargerThanTheSpend_stopsAtZero() {
+        Budget food = new Budget();
+        food.amount = 1_000;
+        food.category = "Food";
+        food.createdAt = MARCH_1;
+        food.period = BudgetPeriod.MONTHLY;
+        publish(food);
+        now.set(MARCH_1 + DAY);
+
+        charge(300, MARCH_1 + DAY);
+        charge(-500, MARCH_1 + DAY);
+
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+        assertEquals(0.0, (Double) db.values.get(BUDGET + "/spent"), 0.001);
+        assertEquals(0.0, (Double) db.values.get(BUDGET + "/spentByPeriod/2024-03-01"), 0.001);
+        assertEquals(0, book.currentSpend("b1"), 0.001);
+    }
+
+    @Test
+    public void chargeIds_areKeySafe() {
+        assertEquals("d_lt7w16o0_29950_XX4521_AB12-9",
+                BudgetBook.chargeId(true, "XX4521", 299.5, MARCH_1, "AB.12/-9"));
+        assertEquals("c_lt7w16o0_10000_XX4521", BudgetBook.chargeId(false, "XX 4521", 100, MARCH_1, ""));
+    }
+
+    private void publish(Budget budget) {
+        Map<String, Object> map = BudgetMapper.toMap(budget);
+        db.setValue(BUDGET, map, error -> { });
+        book.update(Collections.singletonMap("b1", map));
+    }
+
+    private void charge(double amount, long timestamp) {
+        charge(amount, timestamp, BudgetBook.chargeId(amount >= 0, "XX4521", Math.abs(amount), timestamp, null));
+    }
+
+    private void charge(double amount, long timestamp, String chargeId) {
+        Map<String, Object> updates = new HashMap<>();
+        book.addSpend(B1, amount, timestamp, chargeId, updates, db);
+        db.updateChildren(USER, updates, error -> { });
+    }
+}
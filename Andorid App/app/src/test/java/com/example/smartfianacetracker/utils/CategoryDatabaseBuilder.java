@@ -0,0 +1,110 @@
+package com.example.smartfianacetracker.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiles merchant_categories.tsv into the binary table described in
+ * {@link CategoryDatabase}. Run from the app module directory after editing
+ * the TSV:
+ *
+ * <pre>java ... com.example.smartfianacetracker.utils.CategoryDatabaseBuilder</pre>
+ */
+public class CategoryDatabaseBuilder {
+    static final Path SOURCE = Paths.get("src/test/resources/merchant_categories.tsv");
+    static final Path ASSET = Paths.get("src/main/assets", CategoryDatabase.ASSET);
+    private static final String[] KINDS = {"vpa", "handle", "name"};
+
+    public static void main(String[] args) throws IOException {
+        byte[] table = build(Files.readAllLines(SOURCE, StandardCharsets.UTF_8));
+        Files.write(ASSET, table);
+        System.out.println("Wrote " + ASSET + " (" + table.length + " bytes)");
+    }
+
+    static byte[] build(List<String> lines) throws IOException {
+        List<String> categories = new ArrayList<>();
+        List<Map<String, Integer>> kinds = new ArrayList<>();
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            // String order is byte order for the ASCII keys we accept
+            kinds.add(new TreeMap<>());
+        }
+        for (String line : lines) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Expected kind, key, category: " + line);
+            }
+            int kind = Arrays.asList(KINDS).indexOf(fields[0]);
+            if (kind < 0) {
+                throw new IllegalArgumentException("Unknown kind: " + line);
+            }
+            String key = fields[1];
+            if (!key.equals(canonicalKey(kind, key)) || key.length() > 64) {
+                throw new IllegalArgumentException("Key not in canonical form: " + line);
+            }
+            if (!categories.contains(fields[2])) {
+                categories.add(fields[2]);
+            }
+            if (kinds.get(kind).put(key, categories.indexOf(fields[2])) != null) {
+                throw new IllegalArgumentException("Duplicate key: " + line);
+            }
+        }
+
+        int entryCount = 0;
+        for (Map<String, Integer> entries : kinds) {
+            entryCount += entries.size();
+        }
+        int headerSize = 12 + 4 * CategoryDatabase.KIND_COUNT;
+        for (String category : categories) {
+            headerSize += 1 + category.length();
+        }
+        int keyOffset = headerSize + entryCount * 8;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(CategoryDatabase.MAGIC);
+        out.writeInt(categories.size());
+        out.writeInt(entryCount);
+        int start = 0;
+        for (Map<String, Integer> entries : kinds) {
+            out.writeInt(start);
+            start += entries.size();
+        }
+        for (String category : categories) {
+            out.writeByte(category.length());
+            out.writeBytes(category);
+        }
+        ByteArrayOutputStream keys = new ByteArrayOutputStream();
+        for (Map<String, Integer> entries : kinds) {
+            for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+                out.writeInt(keyOffset + keys.size());
+                out.writeShort(entry.getKey().length());
+                out.writeShort(entry.getValue());
+                keys.write(entry.getKey().getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        keys.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static String canonicalKey(int kind, String key) {
+        if (kind == CategoryDatabase.KIND_NAME) {
+            char[] normalized = new char[key.length()];
+            return new String(normalized, 0, CategoryDatabase.normalizeName(key, normalized));
+        }
+        return key.matches("[a-z0-9._-]+") ? key : "";
+    }
+}
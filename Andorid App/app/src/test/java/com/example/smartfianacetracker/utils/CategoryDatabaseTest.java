@@ -0,0 +1,85 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CategoryDatabaseTest {
+    private static CategoryDatabase database;
+
+    @BeforeClass
+    public static void openAsset() throws Exception {
+        database = CategoryDatabase.open(CategoryDatabaseBuilder.ASSET.toFile());
+    }
+
+    @Test
+    public void asset_isUpToDateWithSource() throws Exception {
+        byte[] expected = CategoryDatabaseBuilder.build(
+                Files.readAllLines(CategoryDatabaseBuilder.SOURCE, StandardCharsets.UTF_8));
+        assertArrayEquals("Run CategoryDatabaseBuilder to regenerate " + CategoryDatabaseBuilder.ASSET,
+                expected, Files.readAllBytes(CategoryDatabaseBuilder.ASSET));
+    }
+
+    @Test
+    public void categorize_prefersVpaPrefixThenNameThenHandle() {
+        MerchantCategorizer categorizer = new MerchantCategorizer(database, 16);
+
+        assertEquals("Food", categorizer.categorize("SAI STORES", "swiggy.instamart@icici"));
+        assertEquals("Groceries", categorizer.categorize("Unknown", "jiomart@axisbank"));
+        assertEquals("Groceries", categorizer.categorize("Big-Bazaar  Pune", ""));
+        assertEquals("Travel", categorizer.categorize("RAILWAY TICKET", "pay123@irctc"));
+        assertEquals("Shopping", categorizer.categorize("", "amazon@apl"));
+        // A personal VPA that merely starts with a merchant word
+        assertEquals(CategoryDatabase.OTHER, categorizer.categorize("RAHUL UBEROI", "uberoi.rahul@okaxis"));
+        assertEquals("Transport", categorizer.categorize("RIDE", "uber.rides@hdfcbank"));
+    }
+
+    @Test
+    public void categorize_repeatsComeFromCacheAndStayCorrect() {
+        MerchantCategorizer categorizer = new MerchantCategorizer(database, 2);
+        for (int round = 0; round < 3; round++) {
+            assertEquals("Food", categorizer.categorize("ZOMATO", ""));
+            assertEquals("Fuel", categorizer.categorize("INDIAN OIL PETROL PUMP", ""));
+            assertEquals("Bills", categorizer.categorize("", "airtel.prepaid@ybl"));
+        }
+    }
+
+    @Test
+    public void lruCache_evictsLeastRecentlyUsed() {
+        LongLruCache cache = new LongLruCache(2);
+        cache.put(1, 10);
+        cache.put(2, 20);
+        assertEquals(10, cache.get(1));
+        cache.put(3, 30);
+        assertEquals(LongLruCache.MISSING, cache.get(2));
+        assertEquals(10, cache.get(1));
+        assertEquals(30, cache.get(3));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void uncachedLookup_isFast() {
+        MerchantCategorizer categorizer = new MerchantCategorizer(database, 1);
+        String[][] inputs = {
+            {"DOMINOS PIZZA KORAMANGALA", ""}, {"X", "netflix.upi@icici"}, {"NOT A MERCHANT", "friend@okaxis"},
+        };
+        // Cache of one with rotating inputs: every call searches the table
+        for (int i = 0; i < 50_000; i++) {
+            categorizer.categorize(inputs[i % 3][0], inputs[i % 3][1]);
+        }
+        int iterations = 200_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            categorizer.categorize(inputs[i % 3][0], inputs[i % 3][1]);
+        }
+        double nanos = (System.nanoTime() - start) / (double) iterations;
+        System.out.printf("categorize: %.0f ns per uncached lookup over %d entries%n",
+                nanos, database.entryCount());
+        assertTrue(nanos < 20_000);
+    }
+}
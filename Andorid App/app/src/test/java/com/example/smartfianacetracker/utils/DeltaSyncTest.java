@@ -0,0 +1,148 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.smartfianacetracker.models.Transaction;
+import com.example.smartfianacetracker.models.TransactionMapper;
+import com.example.smartfianacetracker.models.TransactionWireV2;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeltaSyncTest {
+    private static final String USER_ID = "test-user";
+    private static final String ROOT = "users/" + USER_ID + "/";
+    private static final long DAY = 86_400_000L;
+    private static final long START = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private FakeDatabaseWriter db;
+    private PreferenceManager preferences;
+    private ServiceManager serviceManager;
+    private LocalTransactionStore store;
+    private DeltaSync sync;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        preferences = new PreferenceManager(USER_ID);
+        preferences.setWireFormat(WireFormat.BOTH);
+        serviceManager = new ServiceManager(db, preferences);
+        store = new LocalTransactionStore(tempDir.newFolder());
+        sync = new DeltaSync(db, preferences, store);
+    }
+
+    @Test
+    public void firstSync_pullsEverything_thenOnlyWhatIsNew() throws Exception {
+        // Written before records were stamped: only the first pass, by key, sees it
+        Map<String, Object> legacy = TransactionMapper.toMap(
+                new Transaction(true, "XX4521", 99, "OLD SHOP", START - 400 * DAY, "UPI", ""));
+        db.setValue(ROOT + "debit/debit_1600000000000", legacy, error -> { });
+        // The v1 and v2 copies of a record are separate writes; stamp them alike
+        db.serverTime.set(1_000_000L);
+        for (int i = 0; i < 450; i++) {
+            serviceManager.storeDebitTransaction("XX4521", "SHOP " + i, 100 + i, "UPI", "", START + i * 60_000L);
+        }
+
+        assertEquals(451, sync.syncNow());
+        assertEquals(451, store.size());
+        assertEquals("OLD SHOP", store.get(DeltaSync.localId("debit", "debit_1600000000000")).merchantName);
+        assertEquals(0, sync.syncNow());
+
+        db.serverTime.set(2_000_000L);
+        serviceManager.storeCreditTransaction("XX4521", "EMPLOYER", 50_000, "NEFT", "", START + DAY);
+        serviceManager.storeDebitTransaction("XX4521", "SHOP X", 10, "UPI", "", START + DAY);
+        assertEquals(2, sync.syncNow());
+        assertEquals(453, store.size());
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+    }
+
+    @Test
+    public void statementImports_withOldDates_arePulledByUploadTime() throws Exception {
+        db.serverTime.set(1_000_000L);
+        serviceManager.storeDebitTransaction("XX4521", "SWIGGY", 300, "UPI", "", START);
+        sync.syncNow();
+
+        // What the web app's statement import writes: a push key and last year's date
+        db.serverTime.set(2_000_000L);
+        Map<String, Object> imported = new HashMap<>(TransactionMapper.toMap(
+                new Transaction(false, "XX4521", 1_200, "INTEREST", START - 300 * DAY, "NEFT", "")));
+        imported.put(TransactionMapper.UPLOADED_AT, db.serverTimestamp());
+        db.updateChildren(ROOT.substring(0, ROOT.length() - 1),
+                Collections.singletonMap("credit/-NxStatement01", imported), error -> { });
+
+        assertEquals(1, sync.syncNow());
+        Transaction pulled = store.get("-NxStatement01");
+        assertNotNull(pulled);
+        assertEquals(START - 300 * DAY, pulled.timestamp);
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+    }
+
+    @Test
+    public void laterChangesToARecord_arePulledAgain() throws Exception {
+        preferences.setWireFormat(WireFormat.V2);
+        db.serverTime.set(1_000_000L);
+        long debitKey = serviceManager.storeTransaction(
+                new Transaction(true, "XX4521", 500, "AMAZON", START, "UPI", "amazon@apl"));
+        long creditKey = serviceManager.storeTransaction(
+                new Transaction(false, "XX4521", 500, "AMAZON", START + DAY, "UPI", "amazon@apl"));
+        sync.syncNow();
+        Transaction debit = store.get(TransactionWireV2.key(debitKey));
+        // The payee entry supplies the name
+        assertEquals("AMAZON", debit.merchantName);
+        assertEquals("amazon@apl", debit.upiId);
+
+        db.serverTime.set(2_000_000L);
+        serviceManager.recordReversal(debitKey, creditKey, 500, START, "c_test", Collections.emptyList());
+        assertEquals(2, sync.syncNow());
+        assertEquals(TransactionWireV2.key(creditKey), store.get(TransactionWireV2.key(debitKey)).reversedBy);
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+    }
+
+    @Test
+    public void store_keepsWholeBatchesOnly() throws Exception {
+        File dir = tempDir.newFolder();
+        LocalTransactionStore first = new LocalTransactionStore(dir);
+        first.apply(new LocalTransactionStore.Batch()
+                .put("a", new Transaction(true, "XX1", 10, "A", START, "UPI", null))
+                .advance("debit", new LocalTransactionStore.Cursor(true, "a", 5_000)));
+        first.apply(new LocalTransactionStore.Batch()
+                .put("b", new Transaction(false, "XX1", 20, "B", START, "NEFT", "b@upi")));
+        first.flush().get();
+        // A batch cut short by a crash
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "transactions.log"), true)) {
+            out.write(new byte[] {0, 0, 1, 0, 1, 2, 3});
+        }
+
+        LocalTransactionStore reopened = new LocalTransactionStore(dir);
+        assertEquals(2, reopened.size());
+        assertEquals("b@upi", reopened.get("b").upiId);
+        assertEquals(5_000, reopened.cursor("debit").value, 0);
+        reopened.apply(new LocalTransactionStore.Batch()
+                .put("c", new Transaction(true, "XX1", 30, "C", START, "UPI", null)));
+        reopened.flush().get();
+        assertEquals(3, new LocalTransactionStore(dir).size());
+    }
+
+    @Test
+    public void anotherUser_startsFromAnEmptyStore() throws Exception {
+        serviceManager.storeDebitTransaction("XX4521", "SWIGGY", 300, "UPI", "", START);
+        sync.syncNow();
+        assertEquals(1, store.size());
+
+        preferences.saveUserSession("other-user", "other@example.com", "token");
+        assertEquals(0, sync.syncNow());
+        assertEquals(0, store.size());
+        assertEquals("other-user", store.owner());
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.smartfianacetracker.utils;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the Realtime Database. Writes are validated against
+ * database.rules.json, stored by path and acknowledged on a separate
+ * "network" thread after an optional simulated latency, the way the SDK
+ * acknowledges them asynchronously. Increments apply to the number stored
+ * at exactly their path, and listeners see the last value passed to
+ * {@link #publish} for theirs, at once unless {@link #deferListens} is set. Reads and queries see what has been written,
+ * with the values written below a child merged into it, and are delivered
+ * on the network thread too.
+ */
+class FakeDatabaseWriter implements DatabaseWriter {
+    final Map<String, Object> values = new ConcurrentHashMap<>();
+    final Map<String, Long> completedAtNanos = new ConcurrentHashMap<>();
+    final List<String> ruleViolations = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger overwrites = new AtomicInteger();
+    final AtomicInteger writes = new AtomicInteger();
+    /** What server timestamps resolve to; the clock while 0. */
+    final AtomicLong serverTime = new AtomicLong();
+    /** When set, a new listener hears nothing until the next {@link #publish}, like a snapshot still on its way. */
+    volatile boolean deferListens;
+
+    private final RulesValidator rules;
+    private final long latencyMicros;
+    private final ExecutorService network = Executors.newSingleThreadExecutor();
+    private final Map<String, List<ValueListener>> listeners = new ConcurrentHashMap<>();
+    private final Map<String, Object> published = new ConcurrentHashMap<>();
+
+    private static final Object SERVER_TIMESTAMP = new Object();
+
+    /** What {@link #increment} returns; resolved against the stored value on write. */
+    static final class Increment {
+        final double delta;
+
+        Increment(double delta) {
+            this.delta = delta;
+        }
+    }
+
+    FakeDatabaseWriter(RulesValidator rules, long latencyMicros) {
+        this.rules = rules;
+        this.latencyMicros = latencyMicros;
+    }
+
+    @Override
+    public void setValue(String path, Object value, CompletionListener listener) {
+        writes.incrementAndGet();
+        List<String> violations;
+        // Checked and applied as one step, as the server applies each write
+        synchronized (values) {
+            Object resolved = resolve(path, value);
+            violations = rules.validate(path, resolved, values::containsKey);
+            if (violations.isEmpty()) {
+                store(path, resolved);
+            }
+        }
+        if (!violations.isEmpty()) {
+            ruleViolations.addAll(violations);
+            network.execute(() -> listener.onComplete(new IllegalStateException("Permission denied: " + violations)));
+            return;
+        }
+        acknowledge(path, listener);
+    }
+
+    @Override
+    public void updateChildren(String path, Map<String, Object> updates, CompletionListener listener) {
+        writes.incrementAndGet();
+        List<String> violations = new ArrayList<>();
+        // All paths are checked and applied together or not at all, as on the server
+        synchronized (values) {
+            Map<String, Object> resolved = new HashMap<>();
+            for (Map.Entry<String, Object> entry : updates.entrySet()) {
+                String childPath = path + "/" + entry.getKey();
+                Object value = resolve(childPath, entry.getValue());
+                resolved.put(childPath, value);
+                violations.addAll(rules.validate(childPath, value, values::containsKey));
+            }
+            if (violations.isEmpty()) {
+                for (Map.Entry<String, Object> entry : resolved.entrySet()) {
+                    store(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        if (!violations.isEmpty()) {
+            ruleViolations.addAll(violations);
+            network.execute(() -> listener.onComplete(new IllegalStateException("Permission denied: " + violations)));
+            return;
+        }
+        acknowledge(path, listener);
+    }
+
+    /** A null value deletes what was written at exactly {@code path}. */
+    private void store(String path, Object value) {
+        if (value == null) {
+            values.remove(path);
+        } else if (values.put(path, value) != null) {
+            overwrites.incrementAndGet();
+        }
+    }
+
+    @Override
+    public Object increment(double delta) {
+        return new Increment(delta);
+    }
+
+    @Override
+    public Object serverTimestamp() {
+        return SERVER_TIMESTAMP;
+    }
+
+    @Override
+    public void get(String path, ReadListener listener) {
+        Object value = read(path);
+        network.execute(() -> listener.onRead(value, null));
+    }
+
+    @Override
+    public void query(String path, String orderByChild, double startAt, String startKey, int limit,
+                      ReadListener listener) {
+        Object value = read(path);
+        List<Map.Entry<String, Object>> children = new ArrayList<>();
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                children.add(new AbstractMap.SimpleEntry<>(String.valueOf(entry.getKey()),
+                        entry.getValue()));
+            }
+        }
+        Comparator<Map.Entry<String, Object>> byKey = Map.Entry.comparingByKey();
+        List<Map.Entry<String, Object>> matched = new ArrayList<>();
+        if (orderByChild == null) {
+            children.sort(byKey);
+            for (Map.Entry<String, Object> child : children) {
+                if (startKey == null || child.getKey().compareTo(startKey) >= 0) {
+                    matched.add(child);
+                }
+            }
+        } else {
+            children.sort(Comparator.comparingDouble((Map.Entry<String, Object> child) ->
+                    orderValue(child, orderByChild)).thenComparing(byKey));
+            for (Map.Entry<String, Object> child : children) {
+                double order = orderValue(child, orderByChild);
+                if (order > startAt || (order == startAt
+                        && (startKey == null || child.getKey().compareTo(startKey) >= 0))) {
+                    matched.add(child);
+                }
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int i = 0; i < matched.size() && i < limit; i++) {
+            result.put(matched.get(i).getKey(), matched.get(i).getValue());
+        }
+        network.execute(() -> listener.onRead(result, null));
+    }
+
+    /** The field as a number, or negative infinity, which no query starts at, when absent. */
+    private static double orderValue(Map.Entry<String, Object> child, String field) {
+        Object value = child.getValue() instanceof Map ? ((Map<?, ?>) child.getValue()).get(field) : null;
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NEGATIVE_INFINITY;
+    }
+
+    /** The value at {@code path}, with everything written below it merged in; null if nothing. */
+    @SuppressWarnings("unchecked")
+    Object read(String path) {
+        Object exact = values.get(path);
+        Map<String, Object> tree = exact instanceof Map ? deepCopy((Map<?, ?>) exact) : null;
+        String prefix = path + "/";
+        List<String> below = new ArrayList<>();
+        for (String key : values.keySet()) {
+            if (key.startsWith(prefix)) {
+                below.add(key);
+            }
+        }
+        if (below.isEmpty()) {
+            return tree != null ? tree : exact;
+        }
+        // Shorter paths first, so a deeper write lands inside the map a shallower one put there
+        below.sort(Comparator.comparingInt(String::length));
+        if (tree == null) {
+            tree = new HashMap<>();
+        }
+        for (String key : below) {
+            Object value = values.get(key);
+            String[] segments = key.substring(prefix.length()).split("/");
+            Map<String, Object> node = tree;
+            for (int i = 0; i < segments.length - 1; i++) {
+                Object child = node.get(segments[i]);
+                if (!(child instanceof Map)) {
+                    child = new HashMap<String, Object>();
+                    node.put(segments[i], child);
+                }
+                node = (Map<String, Object>) child;
+            }
+            node.put(segments[segments.length - 1], value instanceof Map ? deepCopy((Map<?, ?>) value) : value);
+        }
+        return tree;
+    }
+
+    private static Map<String, Object> deepCopy(Map<?, ?> map) {
+        Map<String, Object> copy = new HashMap<>();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Object value = entry.getValue();
+            copy.put(String.valueOf(entry.getKey()), value instanceof Map ? deepCopy((Map<?, ?>) value) : value);
+        }
+        return copy;
+    }
+
+    @Override
+    public Subscription listen(String path, ValueListener listener) {
+        listeners.computeIfAbsent(path, p -> new CopyOnWriteArrayList<>()).add(listener);
+        if (!deferListens) {
+            listener.onValue(published.get(path));
+        }
+        return () -> listeners.get(path).remove(listener);
+    }
+
+    /** Delivers {@code value} to the listeners on {@code path}, as a server change would. */
+    void publish(String path, Object value) {
+        published.put(path, value);
+        for (ValueListener listener : listeners.getOrDefault(path, Collections.emptyList())) {
+            listener.onValue(value);
+        }
+    }
+
+    private Object resolve(String path, Object value) {
+        if (value == SERVER_TIMESTAMP) {
+            long now = serverTime.get();
+            return now != 0 ? now : System.currentTimeMillis();
+        }
+        if (value instanceof Map && ((Map<?, ?>) value).containsValue(SERVER_TIMESTAMP)) {
+            Map<Object, Object> resolved = new HashMap<>((Map<?, ?>) value);
+            for (Map.Entry<Object, Object> entry : resolved.entrySet()) {
+                entry.setValue(resolve(path + "/" + entry.getKey(), entry.getValue()));
+            }
+            return resolved;
+        }
+        if (!(value instanceof Increment)) {
+            return value;
+        }
+        Object current = values.get(path);
+        double base = current instanceof Number ? ((Number) current).doubleValue() : 0;
+        return base + ((Increment) value).delta;
+    }
+
+    List<Object> valuesUnder(String prefix) {
+        List<Object> result = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                result.add(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /** Waits until every write submitted so far has been acknowledged. */
+    void drain() throws InterruptedException {
+        network.shutdown();
+        network.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private void acknowledge(String path, CompletionListener listener) {
+        network.execute(() -> {
+            if (latencyMicros > 0) {
+                long until = System.nanoTime() + latencyMicros * 1000;
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+            }
+            completedAtNanos.put(path, System.nanoTime());
+            listener.onComplete(null);
+        });
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Measures heap allocated by the ingest thread per message once warmed up,
+ * using the JVM's per-thread allocation counter.
+ */
+public class IngestAllocationTest {
+    private static final String USER_ID = "test-user";
+    private static final int WARMUP = 20_000;
+    private static final int MEASURED = 20_000;
+    // Every message gets its own reference, or all but the first would be skipped as duplicates
+    private static final String[] TEMPLATES = {
+        "Rs.1,250.50 debited from A/c XX4521 to SAI STORES via UPI Ref %d. sai.stores@okaxis",
+        "Your account no. 9876 is credited with INR 500 on 03-04-25. UPI: 9371110123@superyes RRN %d",
+        "INR 89.00 spent on card XX1111 at CAFE to BLUE TOKAI via POS. Ref %d",
+        "Sent Rs.40 from A/c *7788 to rahul.k@okicici using IMPS. IMPS Ref No %d",
+    };
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void parse_allocatesNothingInSteadyState() {
+        SmsParser parser = new SmsParser();
+        TransactionRecord record = new TransactionRecord();
+        String[] warmup = messages(0, WARMUP);
+        String[] measured = messages(WARMUP, MEASURED);
+        for (String message : warmup) {
+            parseOne(parser, record, message);
+        }
+
+        long before = allocatedBytes();
+        for (String message : measured) {
+            parseOne(parser, record, message);
+        }
+        double perMessage = (allocatedBytes() - before) / (double) MEASURED;
+
+        System.out.printf("parse: %.2f bytes allocated per message%n", perMessage);
+        assertTrue("parse allocated " + perMessage + " bytes per message", perMessage < 1);
+    }
+
+    @Test
+    public void ingest_allocatesOnlyThePersistedRecord() throws Exception {
+        DatabaseWriter discard = new DatabaseWriter() {
+            @Override
+            public void setValue(String path, Object value, CompletionListener listener) {
+            }
+
+            @Override
+            public void updateChildren(String path, Map<String, Object> values, CompletionListener listener) {
+            }
+
+            @Override
+            public Object increment(double delta) {
+                return delta;
+            }
+
+            @Override
+            public Object serverTimestamp() {
+                return 0L;
+            }
+
+            @Override
+            public Subscription listen(String path, ValueListener listener) {
+                return () -> { };
+            }
+
+            @Override
+            public void get(String path, ReadListener listener) {
+            }
+
+            @Override
+            public void query(String path, String orderByChild, double startAt, String startKey, int limit,
+                              ReadListener listener) {
+            }
+        };
+        ServiceManager serviceManager = new ServiceManager(discard, new PreferenceManager(USER_ID));
+        SmsParser parser = new SmsParser();
+        TransactionIngestor ingestor = new TransactionIngestor(
+            parser, serviceManager, new QuarantineStore(tempDir.getRoot()),
+            new MerchantCategorizer(CategoryDatabase.open(CategoryDatabaseBuilder.ASSET.toFile()), 256),
+            new PayeeCanonicalizer(tempDir.newFolder(), 256), new ReferenceIndex(null));
+        String[] warmup = messages(0, WARMUP);
+        String[] measured = messages(WARMUP, MEASURED);
+
+        for (String message : warmup) {
+            assertTrue(ingestor.ingest("VM-HDFCBK", message, 1_000L));
+        }
+        long before = allocatedBytes();
+        for (String message : measured) {
+            ingestor.ingest("VM-HDFCBK", message, 1_000L);
+        }
+        double ingestPerMessage = (allocatedBytes() - before) / (double) MEASURED;
+
+        // What persisting alone costs: the field map, its boxed values and strings, the key and
+        // path, and indexing the reference (growing the table at the same sizes as above)
+        TransactionRecord record = new TransactionRecord();
+        ReferenceIndex references = new ReferenceIndex(null);
+        for (String message : warmup) {
+            persistOne(parser, serviceManager, references, record, message);
+        }
+        before = allocatedBytes();
+        for (String message : measured) {
+            persistOne(parser, serviceManager, references, record, message);
+        }
+        double persistPerMessage = (allocatedBytes() - before) / (double) MEASURED;
+
+        System.out.printf("ingest: %.1f bytes per message, of which persisting %.1f%n",
+                ingestPerMessage, persistPerMessage);
+        // Escape analysis may elide the Transaction model in one loop and not the other,
+        // so allow one small object of slack
+        assertTrue("ingest allocated " + ingestPerMessage + " bytes per message beyond persisting "
+                + persistPerMessage, ingestPerMessage - persistPerMessage < 64);
+        assertEquals(0, ingestor.replayQuarantine().get().replayed);
+    }
+
+    private static String[] messages(int first, int count) {
+        String[] messages = new String[count];
+        for (int i = 0; i < count; i++) {
+            int n = first + i;
+            messages[i] = String.format(TEMPLATES[n % TEMPLATES.length], 500_000_000_000L + n);
+        }
+        return messages;
+    }
+
+    private static void parseOne(SmsParser parser, TransactionRecord record, String message) {
+        if (parser.isFinancialMessage("VM-HDFCBK", message)) {
+            parser.parse("VM-HDFCBK", message, record);
+        }
+    }
+
+    private static void persistOne(SmsParser parser, ServiceManager serviceManager, ReferenceIndex references,
+                                   TransactionRecord record, String message) {
+        parser.parse("VM-HDFCBK", message, record);
+        record.timestamp = 1_000L;
+        references.add(record, serviceManager.storeTransaction(record));
+    }
+
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
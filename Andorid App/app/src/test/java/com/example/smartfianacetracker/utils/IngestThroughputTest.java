@@ -0,0 +1,158 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Replays a synthetic bank-SMS stream through {@link TransactionIngestor} into
+ * {@link FakeDatabaseWriter} and checks that every transaction lands exactly
+ * once and passes database.rules.json. Volume, arrival rate and simulated
+ * write latency come from the ingest.messages, ingest.rate (messages per
+ * second, 0 = unthrottled) and ingest.writeLatencyMicros system properties.
+ */
+public class IngestThroughputTest {
+    private static final String USER_ID = "test-user";
+    private static final int MESSAGES = Integer.getInteger("ingest.messages", 5000);
+    private static final int RATE = Integer.getInteger("ingest.rate", 0);
+    private static final long WRITE_LATENCY_MICROS = Long.getLong("ingest.writeLatencyMicros", 0);
+    private static final int PRODUCERS = 4;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private RulesValidator rules;
+
+    @Before
+    public void setUp() throws Exception {
+        rules = RulesValidator.load();
+    }
+
+    @Test
+    public void syntheticStream_isStoredExactlyOnce() throws Exception {
+        FakeDatabaseWriter db = new FakeDatabaseWriter(rules, WRITE_LATENCY_MICROS);
+        ServiceManager serviceManager = new ServiceManager(db, new PreferenceManager(USER_ID));
+        QuarantineStore quarantine = new QuarantineStore(tempDir.getRoot());
+        TransactionIngestor ingestor = new TransactionIngestor(new SmsParser(), serviceManager, quarantine);
+
+        String[] messages = new String[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = syntheticMessage(i);
+        }
+        long[] submittedAt = new long[MESSAGES];
+
+        CountDownLatch done = new CountDownLatch(PRODUCERS);
+        long start = System.nanoTime();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            new Thread(() -> {
+                for (int i = producer; i < MESSAGES; i += PRODUCERS) {
+                    if (RATE > 0) {
+                        long due = start + (long) i * 1_000_000_000L / RATE;
+                        while (System.nanoTime() < due) {
+                            Thread.onSpinWait();
+                        }
+                    }
+                    submittedAt[i] = System.nanoTime();
+                    ingestor.ingest("VM-BANKSMS", messages[i]);
+                }
+                done.countDown();
+            }, "sms-producer-" + p).start();
+        }
+        done.await();
+        db.drain();
+        long elapsed = System.nanoTime() - start;
+
+        assertTrue("Rule violations: " + db.ruleViolations, db.ruleViolations.isEmpty());
+        assertEquals("Well-formed messages were quarantined", 0, quarantine.entries().get().size());
+        assertEquals("Writes overwrote an existing transaction key", 0, db.overwrites.get());
+
+        int[] storedCount = new int[MESSAGES];
+        List<Long> latencies = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : db.values.entrySet()) {
+            String path = entry.getKey();
+            if (!path.startsWith("users/" + USER_ID + "/debit/")
+                    && !path.startsWith("users/" + USER_ID + "/credit/")) {
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> record = (Map<String, Object>) entry.getValue();
+            int index = (int) Math.round(((Number) record.get("amount")).doubleValue()) - 1;
+            storedCount[index]++;
+            latencies.add(db.completedAtNanos.get(path) - submittedAt[index]);
+        }
+
+        int expected = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            if (isFinancial(i)) {
+                expected++;
+                assertEquals("Message " + i + " stored wrong number of times", 1, storedCount[i]);
+            } else {
+                assertEquals("Non-financial message " + i + " was stored", 0, storedCount[i]);
+            }
+        }
+        assertEquals(expected, latencies.size());
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        System.out.println(String.format(Locale.US,
+            "ingest: %d messages (%d stored) in %.1f ms, %.0f msg/s; "
+                + "end-to-end latency p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+            MESSAGES, expected, elapsed / 1e6, MESSAGES / (elapsed / 1e9),
+            percentile(sorted, 0.50) / 1e3, percentile(sorted, 0.99) / 1e3,
+            percentile(sorted, 0.999) / 1e3, sorted[sorted.length - 1] / 1e3));
+    }
+
+    @Test
+    public void rulesValidator_rejectsIncompleteTransaction() {
+        Map<String, Object> record = new HashMap<>();
+        record.put("amount", 10.0);
+        record.put("timestamp", System.currentTimeMillis());
+        assertFalse(rules.validate("users/" + USER_ID + "/debit/debit_1", record).isEmpty());
+        assertFalse(rules.validate("users/" + USER_ID + "/unknown_node", "x").isEmpty());
+    }
+
+    private static boolean isFinancial(int i) {
+        return i % 10 != 9;
+    }
+
+    /** Amount is index + 1 so each stored record identifies its source message. */
+    private static String syntheticMessage(int i) {
+        String amount = String.format(Locale.US, "%,d.00", i + 1);
+        switch (i % 10) {
+            case 9:
+                return "Your OTP for login is " + (100000 + i) + ". Do not share it with anyone.";
+            case 0:
+            case 3:
+            case 6:
+                return "Rs." + amount + " credited to A/c XX4521 from RAHUL SHARMA via UPI Ref 4" + (10000000 + i)
+                    + ". rahul" + i + "@oksbi";
+            case 1:
+            case 4:
+                return "INR " + amount + " debited from A/c XX4521 on 04-04-25 to payee" + (i % 50)
+                    + "@ybl via UPI. Avl Bal INR 52,310.10";
+            case 2:
+            case 7:
+                return "Rs " + amount + " spent on Card XX4521 to STORE " + (i % 40)
+                    + " using IMPS. Not you? Call 1800-000-000";
+            default:
+                return "Acct XX4521 debited with Rs." + amount + " to SUPPLIER " + (i % 30) + " via NEFT";
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+}
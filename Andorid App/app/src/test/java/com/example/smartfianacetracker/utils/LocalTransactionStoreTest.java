@@ -0,0 +1,187 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.example.smartfianacetracker.models.Transaction;
+import com.example.smartfianacetracker.models.TransactionWireV2;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalTransactionStoreTest {
+    private static final long START = 1_700_000_000_000L;
+    private static final String[] MODES = {"UPI", "NEFT", "IMPS", "CARD"};
+    private static final String[] ACCOUNTS = {"XX4521", "XX0917", "XX3300"};
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void pages_walkNewestFirstWithoutGapsOrRepeats() {
+        LocalTransactionStore store = new LocalTransactionStore(null);
+        List<LocalTransactionStore.PageKey> expected = fill(store, 1_000, new Random(7));
+        expected.sort(null);
+
+        List<String> walked = walk(store, LocalTransactionStore.Filter.ALL, 37);
+        assertEquals(ids(expected), walked);
+    }
+
+    @Test
+    public void filters_matchAScanOfEveryRecord() {
+        LocalTransactionStore store = new LocalTransactionStore(null);
+        fill(store, 2_000, new Random(11));
+        LocalTransactionStore.Filter[] filters = {
+                new LocalTransactionStore.Filter(true, null, null),
+                new LocalTransactionStore.Filter(false, "NEFT", null),
+                new LocalTransactionStore.Filter(null, null, "XX0917"),
+                new LocalTransactionStore.Filter(true, "UPI", "XX4521"),
+                new LocalTransactionStore.Filter(null, "CHEQUE", null),
+        };
+        for (LocalTransactionStore.Filter filter : filters) {
+            List<String> scanned = new ArrayList<>();
+            for (LocalTransactionStore.Item item : store.page(LocalTransactionStore.Filter.ALL, null, 10_000).items) {
+                if (filter.matches(item.transaction)) {
+                    scanned.add(item.id);
+                }
+            }
+            assertEquals(scanned, walk(store, filter, 50));
+        }
+        assertEquals(Arrays.asList("CARD", "IMPS", "NEFT", "UPI"), store.modes());
+        assertEquals(Arrays.asList("XX0917", "XX3300", "XX4521"), store.accounts());
+    }
+
+    @Test
+    public void changedRecord_movesInEveryIndex() {
+        LocalTransactionStore store = new LocalTransactionStore(null);
+        store.apply(new LocalTransactionStore.Batch()
+                .put("a", new Transaction(true, "XX1", 10, "A", START, "UPI", null))
+                .put("b", new Transaction(true, "XX1", 20, "B", START + 1, "UPI", null)));
+        store.apply(new LocalTransactionStore.Batch()
+                .put("a", new Transaction(false, "XX2", 10, "A", START + 2, "NEFT", null)));
+
+        assertEquals(Arrays.asList("a", "b"), walk(store, LocalTransactionStore.Filter.ALL, 1));
+        assertEquals(Arrays.asList("b"), walk(store, new LocalTransactionStore.Filter(true, null, null), 10));
+        assertEquals(Arrays.asList("XX1", "XX2"), store.accounts());
+        assertEquals(Arrays.asList("a"), walk(store, new LocalTransactionStore.Filter(null, "NEFT", "XX2"), 10));
+
+        store.reset("other-user");
+        assertEquals(0, store.page(LocalTransactionStore.Filter.ALL, null, 10).items.size());
+        assertEquals(0, store.accounts().size());
+    }
+
+    @Test
+    public void reopenedStore_pagesFromTheLog() throws Exception {
+        File dir = tempDir.newFolder();
+        LocalTransactionStore first = new LocalTransactionStore(dir);
+        List<LocalTransactionStore.PageKey> expected = fill(first, 300, new Random(3));
+        first.flush().get();
+        expected.sort(null);
+
+        LocalTransactionStore reopened = new LocalTransactionStore(dir);
+        LocalTransactionStore.Page page = reopened.page(LocalTransactionStore.Filter.ALL, null, 20);
+        assertEquals(ids(expected.subList(0, 20)), ids(page));
+        assertEquals(expected.get(19).id, page.next.id);
+    }
+
+    @Test
+    public void reopenedStore_servesTheNewestPagesFromItsHead() throws Exception {
+        File dir = tempDir.newFolder();
+        LocalTransactionStore first = new LocalTransactionStore(dir);
+        List<LocalTransactionStore.PageKey> expected = fill(first, 300, new Random(5));
+        // The head is rewritten after the append the first flush waits for
+        first.flush().get();
+        first.flush().get();
+        expected.sort(null);
+
+        LocalTransactionStore reopened = new LocalTransactionStore(dir);
+        LocalTransactionStore.Page page = reopened.headPage(LocalTransactionStore.Filter.ALL, null, 20);
+        assertEquals(ids(expected.subList(0, 20)), ids(page));
+        assertEquals(ids(expected.subList(180, 200)),
+                ids(reopened.headPage(LocalTransactionStore.Filter.ALL, expected.get(179), 20)));
+        // Past the newest HEAD_SIZE records only the log can answer
+        assertNull(reopened.headPage(LocalTransactionStore.Filter.ALL, expected.get(189), 20));
+        assertEquals(first.accounts(), reopened.accounts());
+        // Loaded, so its own check of the log is done before the log changes below
+        assertEquals(300, reopened.size());
+
+        // A log that has moved on since is not described by the head
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "transactions.log"), true)) {
+            out.write(new byte[] {0, 0, 0, 9});
+        }
+        assertNull(new LocalTransactionStore(dir).headPage(LocalTransactionStore.Filter.ALL, null, 20));
+    }
+
+    @Test
+    public void storedMessages_areAddedOnce_andListenersTold() throws Exception {
+        LocalTransactionStore store = new LocalTransactionStore(null);
+        AtomicInteger changes = new AtomicInteger();
+        store.addChangeListener(changes::incrementAndGet);
+
+        TransactionRecord record = RecordBuilder.debit(250).merchant("SWIGGY").mode("UPI").at(START).build();
+        store.onTransactionStored(record, START);
+        // Already there, say from the sync: kept as it is
+        store.onTransactionStored(record.reset(), START);
+        // Not stored: nothing to add
+        store.onTransactionStored(RecordBuilder.debit(99).at(START + 1).build(), 0);
+        store.flush().get();
+
+        Transaction stored = store.get(TransactionWireV2.key(START));
+        assertEquals("SWIGGY", stored.merchantName);
+        assertNull(stored.uploadedAt);
+        assertEquals(1, changes.get());
+        assertEquals(1, store.size());
+        assertSame(stored, store.page(new LocalTransactionStore.Filter(true, "UPI", "XX4521"), null, 1)
+                .items.get(0).transaction);
+    }
+
+    /** Adds {@code count} records, a few sharing a timestamp, and returns their keys. */
+    private static List<LocalTransactionStore.PageKey> fill(LocalTransactionStore store, int count, Random random) {
+        List<LocalTransactionStore.PageKey> keys = new ArrayList<>(count);
+        LocalTransactionStore.Batch batch = new LocalTransactionStore.Batch();
+        for (int i = 0; i < count; i++) {
+            String id = "id" + i;
+            long timestamp = START + random.nextInt(count / 2) * 60_000L;
+            batch.put(id, new Transaction(random.nextBoolean(), ACCOUNTS[random.nextInt(ACCOUNTS.length)],
+                    1 + random.nextInt(5_000), "M" + i, timestamp, MODES[random.nextInt(MODES.length)], null));
+            keys.add(new LocalTransactionStore.PageKey(timestamp, id));
+        }
+        store.apply(batch);
+        return keys;
+    }
+
+    private static List<String> walk(LocalTransactionStore store, LocalTransactionStore.Filter filter, int limit) {
+        List<String> ids = new ArrayList<>();
+        LocalTransactionStore.PageKey after = null;
+        do {
+            LocalTransactionStore.Page page = store.page(filter, after, limit);
+            ids.addAll(ids(page));
+            after = page.next;
+        } while (after != null);
+        return ids;
+    }
+
+    private static List<String> ids(LocalTransactionStore.Page page) {
+        List<String> ids = new ArrayList<>(page.items.size());
+        for (LocalTransactionStore.Item item : page.items) {
+            ids.add(item.id);
+        }
+        return ids;
+    }
+
+    private static List<String> ids(List<LocalTransactionStore.PageKey> keys) {
+        List<String> ids = new ArrayList<>(keys.size());
+        for (LocalTransactionStore.PageKey key : keys) {
+            ids.add(key.id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PayeeCanonicalizerTest {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void aliasesOfOnePayee_shareAnId() {
+        PayeeCanonicalizer payees = new PayeeCanonicalizer(null, 16);
+
+        String id = payees.resolve("9371110123", "9371110123@superyes");
+        assertEquals(id, payees.resolve("9371110123", ""));
+        assertEquals(id, payees.resolve("Ramesh Kumar", "919371110123@ybl"));
+        // Learned from the previous transaction
+        assertEquals(id, payees.resolve("RAMESH  KUMAR.", ""));
+        assertEquals(id, payees.resolve("9371110123", "9371110123@SuperYes "));
+    }
+
+    @Test
+    public void differentVpas_stayApartEvenWithOneName() {
+        PayeeCanonicalizer payees = new PayeeCanonicalizer(null, 16);
+
+        String first = payees.resolve("Rahul", "rahul.k@okicici");
+        String second = payees.resolve("Rahul", "rahul.s@ybl");
+        assertNotEquals(first, second);
+        // A name on its own goes to the payee it was first seen with
+        assertEquals(first, payees.resolve("rahul", ""));
+    }
+
+    @Test
+    public void nameOnlyPayees_normalizeTheName() {
+        PayeeCanonicalizer payees = new PayeeCanonicalizer(null, 16);
+
+        String id = payees.resolve("SAI STORES", "");
+        assertEquals(id, payees.resolve("Sai-Stores", ""));
+        assertNotEquals(id, payees.resolve("SAI STORE", ""));
+    }
+
+    @Test
+    public void learnedAliases_surviveARestart() throws Exception {
+        File directory = tempDir.getRoot();
+        PayeeCanonicalizer payees = new PayeeCanonicalizer(directory, 16);
+        String id = payees.resolve("Blue Tokai", "bluetokai.cafe@okhdfc");
+        payees.resolve("Zomato", "");
+        payees.flush().get();
+
+        PayeeCanonicalizer reopened = new PayeeCanonicalizer(directory, 16);
+        assertEquals(3, reopened.aliasCount());
+        assertEquals(id, reopened.resolve("BLUE TOKAI", ""));
+    }
+
+    @Test
+    public void aliasesLearnedAfterATornPair_surviveTheNextRestart() throws Exception {
+        File directory = tempDir.getRoot();
+        PayeeCanonicalizer payees = new PayeeCanonicalizer(directory, 16);
+        String id = payees.resolve("Blue Tokai", "bluetokai.cafe@okhdfc");
+        payees.flush().get();
+
+        // A crash part way through a key: its length promises more than was written
+        try (FileOutputStream out = new FileOutputStream(new File(directory, "payee_aliases.bin"), true)) {
+            out.write(new byte[] {0, 40, 'v', ':', 'x'});
+        }
+        PayeeCanonicalizer restarted = new PayeeCanonicalizer(directory, 16);
+        String swiggy = restarted.resolve("Swiggy", "swiggy@icici");
+        restarted.flush().get();
+
+        PayeeCanonicalizer reopened = new PayeeCanonicalizer(directory, 16);
+        assertEquals(4, reopened.aliasCount());
+        assertEquals(id, reopened.resolve("BLUE TOKAI", ""));
+        assertEquals(swiggy, reopened.resolve("SWIGGY", ""));
+    }
+
+    @Test
+    public void cachedResolves_matchUncachedOnes() {
+        PayeeCanonicalizer cached = new PayeeCanonicalizer(null, 2);
+        PayeeCanonicalizer uncached = new PayeeCanonicalizer(null, 0);
+        String[][] pairs = {
+            {"SAI STORES", "sai.stores@okaxis"},
+            {"9876543210", ""},
+            {"Sai Stores", ""},
+            {"CAFE", "9876543210@paytm"},
+            {"SAI STORES", "sai.stores@okaxis"},
+        };
+        for (int round = 0; round < 3; round++) {
+            for (String[] pair : pairs) {
+                assertEquals(uncached.resolve(pair[0], pair[1]), cached.resolve(pair[0], pair[1]));
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.smartfianacetracker.utils;
+
+/**
+ * Builds the {@link TransactionRecord}s that ingest listeners are handed,
+ * for tests that drive a listener directly. A record is on account
+ * {@code XX4521} unless set otherwise; {@link #payee} also sets the
+ * merchant name, the payee id in upper case, as the canonicalizer would
+ * have resolved it from.
+ */
+final class RecordBuilder {
+    private final TransactionRecord record = new TransactionRecord();
+
+    private RecordBuilder(boolean isDebit, double amount) {
+        record.isDebit = isDebit;
+        record.amount = amount;
+        account("XX4521");
+    }
+
+    static RecordBuilder debit(double amount) {
+        return new RecordBuilder(true, amount);
+    }
+
+    static RecordBuilder credit(double amount) {
+        return new RecordBuilder(false, amount);
+    }
+
+    /** A credit worded as a refund or reversal. */
+    RecordBuilder refund() {
+        record.isRefund = true;
+        return this;
+    }
+
+    RecordBuilder at(long timestamp) {
+        record.timestamp = timestamp;
+        return this;
+    }
+
+    RecordBuilder account(String account) {
+        record.accountNumber.set(account, 0, account.length());
+        return this;
+    }
+
+    RecordBuilder payee(String payeeId) {
+        record.payeeId = payeeId;
+        return merchant(payeeId.toUpperCase());
+    }
+
+    RecordBuilder merchant(String name) {
+        record.merchantName.set(name, 0, name.length());
+        return this;
+    }
+
+    RecordBuilder category(String category) {
+        record.category = category;
+        return this;
+    }
+
+    RecordBuilder mode(String mode) {
+        record.transactionMode = mode;
+        return this;
+    }
+
+    RecordBuilder reference(String reference) {
+        record.referenceNumber.set(reference, 0, reference.length());
+        return this;
+    }
+
+    RecordBuilder balance(double balance) {
+        record.hasBalance = true;
+        record.balance = balance;
+        return this;
+    }
+
+    TransactionRecord build() {
+        return record;
+    }
+}
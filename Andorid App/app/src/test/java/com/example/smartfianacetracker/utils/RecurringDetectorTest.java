@@ -0,0 +1,137 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.smartfianacetracker.models.RecurringPaymentMapper;
+import java.io.File;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RecurringDetectorTest {
+    private static final String USER_ID = "test-user";
+    private static final String RECURRING = "users/" + USER_ID + "/" + RecurringPaymentMapper.NODE + "/";
+    private static final long DAY = 86_400_000L;
+    private static final long START = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private FakeDatabaseWriter db;
+    private ServiceManager serviceManager;
+    private RecurringDetector detector;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        serviceManager = new ServiceManager(db, new PreferenceManager(USER_ID));
+        detector = new RecurringDetector(null, serviceManager);
+    }
+
+    @Test
+    public void monthlyDebits_areWrittenWithTheNextDueDate() {
+        debit(detector, 649, "netflix", START);
+        debit(detector, 649, "netflix", START + 31 * DAY);
+        assertNull(db.values.get(RECURRING + "netflix"));
+
+        debit(detector, 649, "netflix", START + 61 * DAY);
+        Map<?, ?> written = (Map<?, ?>) db.values.get(RECURRING + "netflix");
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+        assertEquals("NETFLIX", written.get(RecurringPaymentMapper.NAME));
+        assertEquals(30.5, (Double) written.get(RecurringPaymentMapper.PERIOD_DAYS), 0.01);
+        assertEquals(649.0, (Double) written.get(RecurringPaymentMapper.AMOUNT), 0.001);
+        assertEquals(START + 61 * DAY + 30 * DAY + DAY / 2, written.get(RecurringPaymentMapper.NEXT_DUE_AT));
+        assertEquals(3, written.get(RecurringPaymentMapper.OCCURRENCES));
+
+        // A missed month counts as one period, and a price rise carries into the prediction
+        debit(detector, 699, "netflix", START + 122 * DAY);
+        written = (Map<?, ?>) db.values.get(RECURRING + "netflix");
+        assertEquals(4, written.get(RecurringPaymentMapper.OCCURRENCES));
+        assertEquals(30.5, (Double) written.get(RecurringPaymentMapper.PERIOD_DAYS), 0.1);
+        assertTrue((Double) written.get(RecurringPaymentMapper.AMOUNT) > 649);
+        assertEquals(1, detector.recurringCount());
+    }
+
+    @Test
+    public void irregularOrFrequentPayees_areNotRecurring() {
+        long[] groceryDays = {0, 5, 24, 33, 50, 53};
+        for (long day : groceryDays) {
+            debit(detector, 800, "grocer", START + day * DAY);
+        }
+        for (int i = 0; i < 20; i++) {
+            debit(detector, 250, "swiggy", START + i * DAY);
+        }
+        // Steady timing but nothing like a steady amount
+        double[] amounts = {120, 900, 300, 2_000};
+        for (int i = 0; i < amounts.length; i++) {
+            debit(detector, amounts[i], "amazon", START + i * 14 * DAY);
+        }
+
+        assertEquals(0, detector.recurringCount());
+        for (String path : db.values.keySet()) {
+            assertFalse(path, path.startsWith(RECURRING));
+        }
+    }
+
+    @Test
+    public void brokenSeries_isRemoved() {
+        for (int i = 0; i < 4; i++) {
+            debit(detector, 15_000, "landlord", START + i * 30 * DAY);
+        }
+        assertTrue(db.values.get(RECURRING + "landlord") instanceof Map);
+
+        // A second payment days after the last: no longer a once-a-period bill
+        debit(detector, 15_000, "landlord", START + 92 * DAY);
+        assertNull(db.values.get(RECURRING + "landlord"));
+        assertEquals(0, detector.recurringCount());
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+    }
+
+    @Test
+    public void series_surviveARestart() throws Exception {
+        File dir = tempDir.newFolder();
+        RecurringDetector first = new RecurringDetector(dir, serviceManager);
+        for (int i = 0; i < 3; i++) {
+            debit(first, 5_000, "sip", START + i * 30 * DAY);
+        }
+        // Replays of older debits are ignored
+        debit(first, 90_000, "sip", START + DAY);
+        first.flush().get();
+
+        RecurringDetector reopened = new RecurringDetector(dir, serviceManager);
+        assertEquals(1, reopened.recurringCount());
+        debit(reopened, 5_000, "sip", START + 90 * DAY);
+        Map<?, ?> written = (Map<?, ?>) db.values.get(RECURRING + "sip");
+        assertEquals(4, written.get(RecurringPaymentMapper.OCCURRENCES));
+        assertEquals(5_000.0, (Double) written.get(RecurringPaymentMapper.AMOUNT), 0.001);
+    }
+
+    @Test
+    public void anotherUser_startsFromNothing() throws Exception {
+        File dir = tempDir.newFolder();
+        RecurringDetector first = new RecurringDetector(dir, serviceManager);
+        for (int i = 0; i < 3; i++) {
+            debit(first, 5_000, "sip", START + i * 30 * DAY);
+        }
+        first.flush().get();
+
+        // Signed out and back in as someone else on the same phone
+        ServiceManager otherUser = new ServiceManager(db, new PreferenceManager("other-user"));
+        RecurringDetector reopened = new RecurringDetector(dir, otherUser);
+        debit(reopened, 5_000, "sip", START + 90 * DAY);
+        assertEquals(0, reopened.recurringCount());
+        assertTrue(db.valuesUnder("users/other-user/" + RecurringPaymentMapper.NODE + "/").isEmpty());
+        reopened.flush().get();
+
+        assertEquals(0, new RecurringDetector(dir, serviceManager).recurringCount());
+    }
+
+    private static void debit(RecurringDetector detector, double amount, String payeeId, long timestamp) {
+        detector.onTransactionStored(RecordBuilder.debit(amount).payee(payeeId).at(timestamp).build(), timestamp);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReferenceIndexTest {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void find_returnsWhereTheReferenceWasStored() {
+        ReferenceIndex index = new ReferenceIndex(null);
+        assertTrue(index.add(RecordBuilder.debit(1_250.50).reference("512345678901").at(1_000L).build(), 1_001L));
+
+        ReferenceIndex.Entry entry = new ReferenceIndex.Entry();
+        assertTrue(index.find("512345678901", true, entry));
+        assertEquals(1_250.50, entry.amount, 0.001);
+        assertEquals(1_000L, entry.timestamp);
+        assertEquals(1_001L, entry.keyMillis);
+        assertFalse(index.find("512345678901", false, entry));
+        assertFalse(index.find("", true, entry));
+    }
+
+    @Test
+    public void references_areCaseInsensitiveAndAddedOnce() {
+        ReferenceIndex index = new ReferenceIndex(null);
+        assertTrue(index.add(RecordBuilder.credit(10).reference("hdfcn5202503141234").at(1_000L).build(), 1L));
+        assertFalse(index.add(RecordBuilder.credit(10).reference("HDFCN5202503141234").at(2_000L).build(), 2L));
+        assertFalse(index.add(RecordBuilder.credit(10).reference("").at(3_000L).build(), 3L));
+
+        assertTrue(index.contains("HDFCN5202503141234", false));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void index_growsAndSurvivesARestart() throws Exception {
+        ReferenceIndex index = new ReferenceIndex(tempDir.getRoot());
+        for (int i = 0; i < 5_000; i++) {
+            RecordBuilder record = i % 3 == 0 ? RecordBuilder.debit(i) : RecordBuilder.credit(i);
+            index.add(record.reference(String.valueOf(400_000_000_000L + i)).at(i).build(), i + 1);
+        }
+        index.flush().get();
+
+        ReferenceIndex reopened = new ReferenceIndex(tempDir.getRoot());
+        assertEquals(5_000, reopened.size());
+        ReferenceIndex.Entry entry = new ReferenceIndex.Entry();
+        for (int i = 0; i < 5_000; i++) {
+            assertTrue(reopened.find(String.valueOf(400_000_000_000L + i), i % 3 == 0, entry));
+            assertEquals(i + 1, entry.keyMillis);
+        }
+        assertFalse(reopened.contains("400000005000", true));
+    }
+
+    @Test
+    public void referencesAddedAfterATornEntry_surviveTheNextRestart() throws Exception {
+        File directory = tempDir.getRoot();
+        ReferenceIndex index = new ReferenceIndex(directory);
+        index.add(RecordBuilder.debit(100).reference("512345678901").at(1_000L).build(), 1L);
+        index.flush().get();
+
+        // A crash part way through an entry
+        try (FileOutputStream out = new FileOutputStream(new File(directory, "reference_index.bin"), true)) {
+            out.write(new byte[12]);
+        }
+        ReferenceIndex restarted = new ReferenceIndex(directory);
+        assertTrue(restarted.add(RecordBuilder.credit(50).reference("512345678902").at(2_000L).build(), 2L));
+        restarted.flush().get();
+
+        ReferenceIndex reopened = new ReferenceIndex(directory);
+        assertEquals(2, reopened.size());
+        ReferenceIndex.Entry entry = new ReferenceIndex.Entry();
+        assertTrue(reopened.find("512345678901", true, entry));
+        assertEquals(1L, entry.keyMillis);
+        assertTrue(reopened.find("512345678902", false, entry));
+        assertEquals(2L, entry.keyMillis);
+        assertEquals(50, entry.amount, 0.001);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.smartfianacetracker.models.Budget;
+import com.example.smartfianacetracker.models.BudgetMapper;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RefundMatcherTest {
+    private static final String USER_ID = "test-user";
+    private static final String USER = "users/" + USER_ID + "/";
+    private static final long WINDOW = 100_000L;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private FakeDatabaseWriter db;
+    private ServiceManager serviceManager;
+    private ReferenceIndex references;
+    private TransactionIngestor ingestor;
+    private RefundMatcher matcher;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        serviceManager = new ServiceManager(db, new PreferenceManager(USER_ID));
+        references = new ReferenceIndex(null);
+        ingestor = new TransactionIngestor(new SmsParser(), serviceManager,
+            new QuarantineStore(tempDir.newFolder()),
+            new MerchantCategorizer(CategoryDatabase.EMPTY, 16), new PayeeCanonicalizer(null, 16), references);
+        matcher = new RefundMatcher(null, serviceManager, references, WINDOW);
+        ingestor.addListener(matcher);
+    }
+
+    @Test
+    public void reversalWithTheDebitsReference_cancelsItAndRefundsTheBudget() throws Exception {
+        Budget groceries = budget(1_000, "Groceries", "sai stores");
+        db.publish(USER + "budgets", Collections.singletonMap("b1", BudgetMapper.toMap(groceries)));
+
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.250 debited from A/c XX4521 to SAI STORES via UPI Ref 512345678901", 1_000L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.250 credited to A/c XX4521 from SAI STORES via UPI Ref 512345678901. Reversal of failed txn",
+            5_000L));
+        db.drain();
+
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+        String debitKey = onlyKey("debit");
+        String creditKey = onlyKey("credit");
+        assertEquals(creditKey, db.values.get(USER + "debit/" + debitKey + "/reversedBy"));
+        assertEquals(debitKey, db.values.get(USER + "credit/" + creditKey + "/reversalOf"));
+        assertEquals(0.0, (Double) db.values.get(USER + "budgets/b1/spent"), 0.0001);
+        assertEquals(0, matcher.openCount());
+    }
+
+    @Test
+    public void refundWithoutReference_matchesLatestDebitToThePayeeForThatAmount() throws Exception {
+        Budget food = budget(600, "Food", "swiggy");
+        db.publish(USER + "budgets", Collections.singletonMap("b1", BudgetMapper.toMap(food)));
+
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.499 debited from A/c XX4521 to SWIGGY via UPI Ref 112233445566", 1_000L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.120 debited from A/c XX4521 to SWIGGY via UPI Ref 112233445577", 2_000L));
+        // Writes land in the fake as they are made; only acknowledgements are asynchronous
+        assertEquals(Boolean.TRUE, db.values.get(USER + "budgets/b1/budgetReached"));
+
+        // Same payee and amount but not worded as a refund: a payment, not a reversal
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.499 credited to A/c XX4521 from SWIGGY via UPI Ref 556677889900", 3_000L));
+        assertEquals(2, matcher.openCount());
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Refund of Rs.499 credited to A/c XX4521 from SWIGGY via UPI Ref 998877665544", 4_000L));
+        db.drain();
+
+        assertEquals(1, matcher.openCount());
+        assertEquals(120.0, (Double) db.values.get(USER + "budgets/b1/spent"), 0.0001);
+        assertEquals(Boolean.FALSE, db.values.get(USER + "budgets/b1/budgetReached"));
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+    }
+
+    @Test
+    public void creditToAnotherAccountOrOutsideTheWindow_isNotAReversal() throws Exception {
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.250 debited from A/c XX4521 to SELF via UPI Ref 512345678901", 1_000L));
+        // The other leg of a transfer between the user's own accounts
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.250 credited to A/c XX9911 from SELF via UPI Ref 512345678901", 1_300L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.80 debited from A/c XX4521 to CAFE 77 via UPI Ref 712345678901", 2_000L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Refund of Rs.80 credited to A/c XX4521 from CAFE 77 via UPI Ref 712345678999", 2_000L + WINDOW + 1));
+        db.drain();
+
+        for (String path : db.values.keySet()) {
+            assertTrue(path, !path.endsWith("/reversalOf") && !path.endsWith("/reversedBy"));
+        }
+        // The first debit aged out of the window along with the second
+        assertEquals(0, matcher.openCount());
+    }
+
+    @Test
+    public void openDebits_surviveARestart() throws Exception {
+        File dir = tempDir.newFolder();
+        RefundMatcher first = new RefundMatcher(dir, serviceManager, references, WINDOW);
+        TransactionRecord debit = RecordBuilder.debit(499).payee("p1").at(1_000L).build();
+        debit.chargedBudgets = Arrays.asList("b1", "b2");
+        first.onTransactionStored(debit, 1_000L);
+        first.onTransactionStored(RecordBuilder.debit(80).payee("p2").at(1_500L).build(), 1_500L);
+        first.flush().get();
+
+        RefundMatcher reopened = new RefundMatcher(dir, serviceManager, references, WINDOW);
+        assertEquals(2, reopened.openCount());
+        reopened.onTransactionStored(RecordBuilder.credit(499).refund().payee("p1").at(2_000L).build(), 2_000L);
+        assertEquals(1, reopened.openCount());
+        db.drain();
+        assertEquals("credit_2000", db.values.get(USER + "debit/debit_1000/reversedBy"));
+    }
+
+    @Test
+    public void anotherUser_startsWithNoOpenDebits() throws Exception {
+        File dir = tempDir.newFolder();
+        RefundMatcher first = new RefundMatcher(dir, serviceManager, references, WINDOW);
+        first.onTransactionStored(RecordBuilder.debit(499).payee("p1").at(1_000L).build(), 1_000L);
+        first.flush().get();
+
+        // Signed out and back in as someone else on the same phone
+        ServiceManager otherUser = new ServiceManager(db, new PreferenceManager("other-user"));
+        RefundMatcher reopened = new RefundMatcher(dir, otherUser, references, WINDOW);
+        assertEquals(0, reopened.openCount());
+        reopened.onTransactionStored(RecordBuilder.credit(499).refund().payee("p1").at(2_000L).build(), 2_000L);
+        db.drain();
+        assertTrue(db.valuesUnder("users/other-user/").isEmpty());
+        assertNull(db.values.get(USER + "debit/debit_1000/reversedBy"));
+        reopened.flush().get();
+
+        assertEquals(0, new RefundMatcher(dir, serviceManager, references, WINDOW).openCount());
+    }
+
+    private String onlyKey(String node) {
+        String prefix = USER + node + "/";
+        String key = null;
+        for (String path : db.values.keySet()) {
+            if (path.startsWith(prefix) && path.indexOf('/', prefix.length()) < 0) {
+                assertNull("more than one " + node, key);
+                key = path.substring(prefix.length());
+            }
+        }
+        return key;
+    }
+
+    private static Budget budget(double amount, String category, String merchant) {
+        Budget budget = new Budget();
+        budget.amount = amount;
+        budget.category = category;
+        budget.merchants = Collections.singletonList(merchant);
+        budget.createdAt = 1_000L;
+        return budget;
+    }
+}
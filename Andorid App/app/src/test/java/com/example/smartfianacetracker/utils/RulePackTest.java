@@ -0,0 +1,145 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RulePackTest {
+    private static final int BANK_FORMATS = 500;
+    private static final int SENDERS_PER_BANK = 3;
+    private static final String ICICI_POS_SMS = "Rs 450 debited from A/c XX1 at POS 77 on 12-10";
+
+    private static KeyPair keys;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        keys = generator.generateKeyPair();
+    }
+
+    @Test
+    public void bundledPack_isSignedByTrustedKeyAndCompiles() throws Exception {
+        byte[] json = Files.readAllBytes(Paths.get("src/main/assets/parser_rules.json"));
+        byte[] signature = Files.readAllBytes(Paths.get("src/main/assets/parser_rules.json.sig"));
+
+        assertTrue(RulePackRegistry.verify(json, signature, RulePackRegistry.trustedKey()));
+        RulePack pack = RulePack.compile(new String(json, StandardCharsets.UTF_8));
+        assertTrue(pack.version > RulePack.BUILT_IN.version);
+        assertNotSame(pack.defaults, pack.forSender("VM-HDFCBK"));
+        assertSame(pack.defaults, pack.forSender("FRIEND"));
+    }
+
+    @Test
+    public void normalizeSender_stripsDltPrefixAndSuffix() {
+        assertEquals("HDFCBK", RulePack.normalizeSender("VM-HDFCBK"));
+        assertEquals("HDFCBK", RulePack.normalizeSender("AD-HDFCBK-S"));
+        assertEquals("HDFCBK", RulePack.normalizeSender("hdfcbk"));
+    }
+
+    @Test
+    public void offer_swapsInNewerSignedPackForItsSenders() throws Exception {
+        RulePackRegistry registry = new RulePackRegistry(keys.getPublic());
+        SmsParser parser = new SmsParser(registry::current, SmsParser.DEFAULT_BUDGET_NANOS);
+        List<RulePack> notified = new ArrayList<>();
+        registry.addListener(notified::add);
+        assertEquals("Unknown", parser.extractTransactionDetails("AD-ICICIB", ICICI_POS_SMS).merchantName);
+
+        byte[] json = iciciPack(1).getBytes(StandardCharsets.UTF_8);
+        RulePack published = registry.offer(json, sign(json), "test");
+
+        assertNotNull(published);
+        assertSame(published, registry.current());
+        assertEquals(1, notified.size());
+        assertEquals("POS 77", parser.extractTransactionDetails("AD-ICICIB", ICICI_POS_SMS).merchantName);
+        assertEquals("Unknown", parser.extractTransactionDetails("VM-HDFCBK", ICICI_POS_SMS).merchantName);
+        assertEquals(SmsParser.VERSION * 100_000 + 1, parser.version());
+    }
+
+    @Test
+    public void offer_rejectsTamperedAndStalePacks() throws Exception {
+        RulePackRegistry registry = new RulePackRegistry(keys.getPublic());
+        byte[] v2 = iciciPack(2).getBytes(StandardCharsets.UTF_8);
+        byte[] tampered = iciciPack(3).getBytes(StandardCharsets.UTF_8);
+        byte[] v1 = iciciPack(1).getBytes(StandardCharsets.UTF_8);
+
+        assertNull(registry.offer(tampered, sign(v2), "test"));
+        assertSame(RulePack.BUILT_IN, registry.current());
+        assertNotNull(registry.offer(v2, sign(v2), "test"));
+        assertNull(registry.offer(v1, sign(v1), "test"));
+        assertEquals(2, registry.current().version);
+    }
+
+    @Test
+    public void loadAndCompile_hundredsOfBankFormats() throws Exception {
+        byte[] json = largePack().getBytes(StandardCharsets.UTF_8);
+        byte[] signature = sign(json);
+
+        long best = Long.MAX_VALUE;
+        RulePack pack = null;
+        for (int round = 0; round < 20; round++) {
+            RulePackRegistry registry = new RulePackRegistry(keys.getPublic());
+            long start = System.nanoTime();
+            pack = registry.offer(json, signature, "bench");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        assertNotNull(pack);
+        assertEquals(BANK_FORMATS * SENDERS_PER_BANK, pack.bankCount());
+        assertNotSame(pack.defaults, pack.forSender("VM-BANK" + (BANK_FORMATS - 1) + "C"));
+        System.out.printf("Rule pack with %d bank formats (%d KB): verify + compile %.2f ms%n",
+                BANK_FORMATS, json.length / 1024, best / 1e6);
+        // Runs once per process on a background thread; this only guards against a blow-up
+        assertTrue(best < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    private static String iciciPack(int version) {
+        return "{\"version\": " + version + ", \"defaults\": {}, \"banks\": [{\"id\": \"icici\","
+                + " \"senders\": [\"ICICIB\"], \"merchantLeads\": [\"to\", \"from\", \"at\"],"
+                + " \"merchantTerminators\": [\"via\", \"on\"]}]}";
+    }
+
+    private static String largePack() {
+        JSONArray banks = new JSONArray();
+        for (int i = 0; i < BANK_FORMATS; i++) {
+            JSONArray senders = new JSONArray();
+            for (char suffix = 'A'; suffix < 'A' + SENDERS_PER_BANK; suffix++) {
+                senders.put("BANK" + i + suffix);
+            }
+            banks.put(new JSONObject()
+                    .put("id", "bank" + i)
+                    .put("senders", senders)
+                    .put("debitKeywords", new JSONArray().put("debited").put("sent").put("dr" + i))
+                    .put("accountKeywords", new JSONArray().put("a/c").put("ac").put("acct" + i))
+                    .put("merchantLeads", new JSONArray().put("to").put("at").put("info" + i))
+                    .put("merchantTerminators", new JSONArray().put("on").put("ref").put("via")));
+        }
+        return new JSONObject().put("version", 7).put("defaults", new JSONObject()).put("banks", banks)
+                .toString();
+    }
+
+    private static byte[] sign(byte[] json) throws Exception {
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keys.getPrivate());
+        signer.update(json);
+        return signer.sign();
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.smartfianacetracker.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Evaluates the {@code .validate} rules of Frontend/database.rules.json
+ * against a write, the way the server would. Only the expression forms the
+ * rules file actually uses are understood; anything else fails loudly so a
+ * new rule cannot silently go unchecked.
+ */
+public class RulesValidator {
+    private static final Map<String, Class<?>> TYPE_CHECKS = new LinkedHashMap<>();
+
+    static {
+        TYPE_CHECKS.put("newData.isString()", String.class);
+        TYPE_CHECKS.put("newData.isNumber()", Number.class);
+        TYPE_CHECKS.put("newData.isBoolean()", Boolean.class);
+        TYPE_CHECKS.put("newData.isArray()", List.class);
+    }
+
+    private final JSONObject rules;
+
+    private RulesValidator(JSONObject rules) {
+        this.rules = rules;
+    }
+
+    public static RulesValidator load() throws IOException {
+        Path[] candidates = {
+            Paths.get("../../Frontend/database.rules.json"),
+            Paths.get("../Frontend/database.rules.json"),
+            Paths.get("Frontend/database.rules.json")
+        };
+        for (Path candidate : candidates) {
+            if (Files.exists(candidate)) {
+                String json = new String(Files.readAllBytes(candidate), StandardCharsets.UTF_8);
+                return new RulesValidator(new JSONObject(json).getJSONObject("rules"));
+            }
+        }
+        throw new IOException("database.rules.json not found from " + Paths.get("").toAbsolutePath());
+    }
+
+    /**
+     * Returns human-readable violations; empty when the write would be accepted.
+     * Like a partial update, only the rules at and below {@code path} are
+     * evaluated, not the parent's {@code .validate}.
+     */
+    public List<String> validate(String path, Object value) {
+        return validate(path, value, existing -> false);
+    }
+
+    /**
+     * As {@link #validate(String, Object)}, with {@code exists} telling
+     * whether data is already stored at a path (no leading slash), for rules
+     * that look at {@code data}.
+     */
+    public List<String> validate(String path, Object value, Predicate<String> exists) {
+        List<String> violations = new ArrayList<>();
+        JSONObject node = rules;
+        StringBuilder walked = new StringBuilder();
+        for (String segment : path.split("/")) {
+            walked.append('/').append(segment);
+            JSONObject child = childRule(node, segment);
+            if (child == null) {
+                // Nothing declared below this point: no further validation applies
+                return violations;
+            }
+            node = child;
+            if (Boolean.FALSE.equals(node.opt(".validate"))) {
+                violations.add(walked + ": rejected by .validate false");
+                return violations;
+            }
+        }
+        validateNode(walked.toString(), node, value, exists, violations);
+        return violations;
+    }
+
+    /**
+     * Named children declared under {@code path} (wildcards like {@code $id}
+     * match any segment), with the type their {@code .validate} requires:
+     * String, Number, Boolean or List, or Object when it allows any or several.
+     */
+    public Map<String, Class<?>> declaredChildren(String path) {
+        JSONObject node = node(path);
+        Map<String, Class<?>> children = new LinkedHashMap<>();
+        for (String key : node.keySet()) {
+            if (key.startsWith(".") || key.startsWith("$") || !(node.get(key) instanceof JSONObject)) {
+                continue;
+            }
+            String validate = node.getJSONObject(key).optString(".validate", "");
+            Class<?> type = null;
+            for (Map.Entry<String, Class<?>> check : TYPE_CHECKS.entrySet()) {
+                if (validate.contains(check.getKey())) {
+                    // A field that may hold more than one type is just Object
+                    type = type == null ? check.getValue() : Object.class;
+                }
+            }
+            children.put(key, type != null ? type : Object.class);
+        }
+        return children;
+    }
+
+    /** Children named by {@code newData.hasChildren([...])} at {@code path}. */
+    public List<String> requiredChildren(String path) {
+        String validate = node(path).optString(".validate", "");
+        List<String> required = new ArrayList<>();
+        int start = validate.indexOf("newData.hasChildren([");
+        if (start >= 0) {
+            int from = start + "newData.hasChildren(".length();
+            JSONArray names = new JSONArray(
+                validate.substring(from, validate.indexOf(']', from) + 1).replace('\'', '"'));
+            for (int i = 0; i < names.length(); i++) {
+                required.add(names.getString(i));
+            }
+        }
+        return required;
+    }
+
+    private JSONObject node(String path) {
+        JSONObject node = rules;
+        for (String segment : path.split("/")) {
+            node = childRule(node, segment);
+            if (node == null) {
+                throw new IllegalArgumentException("No rules declared at " + path);
+            }
+        }
+        return node;
+    }
+
+    private void validateNode(String path, JSONObject node, Object value, Predicate<String> exists,
+                              List<String> violations) {
+        if (value == null) {
+            // Deleting is governed by .write alone; .validate rules are not evaluated
+            return;
+        }
+        Object validate = node.opt(".validate");
+        if (validate instanceof String && !evaluate((String) validate, value, exists.test(path.substring(1)))) {
+            violations.add(path + ": " + validate + " failed for " + value);
+        } else if (Boolean.FALSE.equals(validate)) {
+            violations.add(path + ": rejected by .validate false");
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                JSONObject child = childRule(node, key);
+                if (child != null) {
+                    validateNode(path + "/" + key, child, entry.getValue(), exists, violations);
+                }
+            }
+        }
+    }
+
+    private static JSONObject childRule(JSONObject node, String key) {
+        if (node.has(key) && node.get(key) instanceof JSONObject) {
+            return node.getJSONObject(key);
+        }
+        for (String candidate : node.keySet()) {
+            if (candidate.startsWith("$") && node.get(candidate) instanceof JSONObject) {
+                return node.getJSONObject(candidate);
+            }
+        }
+        return null;
+    }
+
+    private boolean evaluate(String expression, Object value, boolean dataExists) {
+        expression = stripParens(expression.trim());
+        List<String> anyOf = splitTopLevel(expression, "||");
+        if (anyOf.size() > 1) {
+            for (String term : anyOf) {
+                if (evaluate(term, value, dataExists)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        List<String> allOf = splitTopLevel(expression, "&&");
+        if (allOf.size() > 1) {
+            for (String term : allOf) {
+                if (!evaluate(term, value, dataExists)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (expression.startsWith("!")) {
+            return !evaluate(expression.substring(1), value, dataExists);
+        }
+        return evaluateTerm(expression, value, dataExists);
+    }
+
+    private boolean evaluateTerm(String term, Object value, boolean dataExists) {
+        switch (term) {
+            case "data.exists()":
+                return dataExists;
+            case "newData.exists()":
+                return value != null;
+            case "newData.isString()":
+                return value instanceof String;
+            case "newData.isNumber()":
+                return value instanceof Number;
+            case "newData.isBoolean()":
+                return value instanceof Boolean;
+            case "newData.isArray()":
+                return value instanceof Collection || value instanceof Map;
+            case "newData.val() >= 0":
+                return value instanceof Number && ((Number) value).doubleValue() >= 0;
+            case "newData.val() <= now":
+                return value instanceof Number && ((Number) value).longValue() <= System.currentTimeMillis();
+            case "newData.val().length > 0":
+                return value instanceof String && !((String) value).isEmpty();
+            default:
+                if (term.startsWith("newData.hasChildren([")) {
+                    JSONArray required = new JSONArray(
+                        term.substring("newData.hasChildren(".length(), term.length() - 1).replace('\'', '"'));
+                    if (!(value instanceof Map)) {
+                        return false;
+                    }
+                    for (int i = 0; i < required.length(); i++) {
+                        if (((Map<?, ?>) value).get(required.getString(i)) == null) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+                throw new IllegalArgumentException("Unsupported rule expression: " + term);
+        }
+    }
+
+    private static String stripParens(String expression) {
+        while (expression.startsWith("(") && expression.endsWith(")")
+                && balanced(expression.substring(1, expression.length() - 1))) {
+            expression = expression.substring(1, expression.length() - 1).trim();
+        }
+        return expression;
+    }
+
+    private static boolean balanced(String expression) {
+        int depth = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth < 0) {
+                return false;
+            }
+        }
+        return depth == 0;
+    }
+
+    private static List<String> splitTopLevel(String expression, String operator) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0 && expression.startsWith(operator, i)) {
+                parts.add(expression.substring(start, i).trim());
+                i += operator.length() - 1;
+                start = i + 1;
+            }
+        }
+        parts.add(expression.substring(start).trim());
+        return parts;
+    }
+}
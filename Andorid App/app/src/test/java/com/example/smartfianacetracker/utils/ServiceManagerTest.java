@@ -0,0 +1,142 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.smartfianacetracker.models.Budget;
+import com.example.smartfianacetracker.models.BudgetMapper;
+import com.example.smartfianacetracker.models.Transaction;
+import com.example.smartfianacetracker.models.TransactionMapper;
+import com.example.smartfianacetracker.models.TransactionWireV2;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Test;
+
+public class ServiceManagerTest {
+    private static final String USER_ID = "test-user";
+    private static final String USER = "users/" + USER_ID + "/";
+
+    @Test
+    public void bothFormats_writeV1AndV2SideBySideUnderOneTimestamp() throws Exception {
+        FakeDatabaseWriter db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        PreferenceManager preferences = new PreferenceManager(USER_ID);
+        preferences.setWireFormat(WireFormat.BOTH);
+        ServiceManager serviceManager = new ServiceManager(db, preferences);
+        // The two formats go out as separate writes; fix the server time they are stamped with
+        db.serverTime.set(5_000L);
+
+        serviceManager.storeDebitTransaction("XX4521", "SAI STORES", 1250.5, "UPI", "sai.stores@okaxis", 1_000L);
+        serviceManager.storeDebitTransaction("XX4521", "SAI STORES", 80, "UPI", "sai.stores@okaxis", 2_000L);
+        db.drain();
+
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+        String root = "users/" + USER_ID + "/";
+        assertEquals(2, db.valuesUnder(root + "debit/").size());
+        assertEquals(2, db.valuesUnder(root + TransactionWireV2.NODE + "/").size());
+        // The payee is only written with the first transaction
+        assertEquals(1, db.valuesUnder(root + TransactionWireV2.PAYEE_NODE + "/").size());
+
+        Map<?, ?> payees = Map.of(TransactionWireV2.payeeId("SAI STORES", "sai.stores@okaxis"),
+                db.valuesUnder(root + TransactionWireV2.PAYEE_NODE + "/").get(0));
+        for (Map.Entry<String, Object> entry : db.values.entrySet()) {
+            if (!entry.getKey().startsWith(root + TransactionWireV2.NODE + "/")) {
+                continue;
+            }
+            String key = entry.getKey().substring(entry.getKey().lastIndexOf('/') + 1);
+            Transaction decoded = TransactionWireV2.decode((Map<?, ?>) entry.getValue(), payees);
+            Object v1 = db.values.get(root + "debit/debit_" + Long.parseLong(key, 36));
+            assertEquals(v1, TransactionMapper.toMap(decoded));
+        }
+    }
+
+    @Test
+    public void defaultFormat_writesV1Only() throws Exception {
+        FakeDatabaseWriter db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        ServiceManager serviceManager = new ServiceManager(db, new PreferenceManager(USER_ID));
+
+        serviceManager.storeCreditTransaction("9876", "EMPLOYER", 50_000, "NEFT", "", 1_000L);
+        db.drain();
+
+        assertEquals(1, db.valuesUnder("users/" + USER_ID + "/credit/").size());
+        assertTrue(db.valuesUnder("users/" + USER_ID + "/" + TransactionWireV2.NODE + "/").isEmpty());
+    }
+
+    @Test
+    public void chargesBeforeTheFirstBudgetSnapshot_areReplayedWhenItLands() throws Exception {
+        FakeDatabaseWriter db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        db.deferListens = true;
+        ServiceManager serviceManager = new ServiceManager(db, new PreferenceManager(USER_ID));
+        Map<String, Object> groceries = BudgetMapper.toMap(budget(1_000, "sai stores"));
+
+        long refunded = serviceManager.storeTransaction(new Transaction(true, "XX4521", 250, "SAI STORES", 1_000L,
+                "UPI", ""));
+        serviceManager.storeTransaction(new Transaction(true, "XX4521", 100, "SAI STORES", 2_000L, "UPI", ""));
+        long credit = serviceManager.storeTransaction(new Transaction(false, "XX4521", 250, "SAI STORES", 3_000L,
+                "UPI", ""));
+        // Neither the debit nor the book knew of any budget yet
+        serviceManager.recordReversal(refunded, credit, 250, 1_000L,
+                BudgetBook.chargeId(false, "XX4521", 250, 3_000L, null), Collections.emptyList());
+        assertNull(db.values.get(USER + "budgets/b1/spent"));
+
+        db.publish(USER + "budgets", Collections.singletonMap("b1", groceries));
+        db.drain();
+
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+        assertEquals(100.0, (Double) db.values.get(USER + "budgets/b1/spent"), 0.0001);
+        assertEquals(2, db.valuesUnder(USER + "budgetCharges/b1/d_").size());
+        assertEquals("credit_" + credit, db.values.get(USER + "debit/debit_" + refunded + "/reversedBy"));
+    }
+
+    @Test
+    public void refundTheRulesReject_stillLinksThePair() throws Exception {
+        FakeDatabaseWriter db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        ServiceManager serviceManager = new ServiceManager(db, new PreferenceManager(USER_ID));
+        Budget groceries = budget(1_000, "sai stores");
+        groceries.spent = 250;
+        db.publish(USER + "budgets", Collections.singletonMap("b1", BudgetMapper.toMap(groceries)));
+        long debit = serviceManager.storeTransaction(new Transaction(true, "XX4521", 250, "SAI STORES", 1_000L,
+                "UPI", ""));
+        long credit = serviceManager.storeTransaction(new Transaction(false, "XX4521", 250, "SAI STORES", 3_000L,
+                "UPI", ""));
+        // The web reset the spend meanwhile, and the book has not heard yet
+        db.setValue(USER + "budgets/b1/spent", 0.0, error -> { });
+
+        serviceManager.recordReversal(debit, credit, 250, 1_000L,
+                BudgetBook.chargeId(false, "XX4521", 250, 3_000L, null), Collections.singletonList("b1"));
+        db.drain();
+
+        assertEquals(1, db.ruleViolations.size());
+        assertEquals(0.0, (Double) db.values.get(USER + "budgets/b1/spent"), 0.0001);
+        assertEquals("credit_" + credit, db.values.get(USER + "debit/debit_" + debit + "/reversedBy"));
+        assertEquals("debit_" + debit, db.values.get(USER + "credit/credit_" + credit + "/reversalOf"));
+    }
+
+    @Test
+    public void chargeTheRulesReject_stillStoresTheDebit() throws Exception {
+        FakeDatabaseWriter db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        ServiceManager serviceManager = new ServiceManager(db, new PreferenceManager(USER_ID));
+        db.publish(USER + "budgets", Collections.singletonMap("b1", BudgetMapper.toMap(budget(1_000, "sai stores"))));
+        // Another device already charged the same debit
+        db.setValue(USER + "budgetCharges/b1/" + BudgetBook.chargeId(true, "XX4521", 250, 1_000L, null), 250.0,
+                error -> { });
+
+        long debit = serviceManager.storeTransaction(new Transaction(true, "XX4521", 250, "SAI STORES", 1_000L,
+                "UPI", ""));
+        db.drain();
+
+        assertEquals(1, db.ruleViolations.size());
+        assertNull(db.values.get(USER + "budgets/b1/spent"));
+        Map<?, ?> stored = (Map<?, ?>) db.values.get(USER + "debit/debit_" + debit);
+        assertEquals(250.0, ((Number) stored.get(TransactionMapper.AMOUNT)).doubleValue(), 0.0001);
+    }
+
+    private static Budget budget(double amount, String merchant) {
+        Budget budget = new Budget();
+        budget.amount = amount;
+        budget.category = "Groceries";
+        budget.merchants = Collections.singletonList(merchant);
+        budget.createdAt = 1_000L;
+        return budget;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Mutation fuzzer for {@link SmsParser}. Starts from real bank-SMS shapes and
+ * inputs built to make backtracking regexes go super-linear (long space/word
+ * runs after "to", '@'-free handle runs, whitespace after "a/c"), then
+ * repeats, splices and flips them. Records the worst per-message parse time
+ * and fails if any input exceeds the parse budget or throws anything other
+ * than {@link ParseTimeoutException}. Iterations come from fuzz.iterations.
+ */
+public class SmsParserFuzzTest {
+    private static final int ITERATIONS = Integer.getInteger("fuzz.iterations", 20_000);
+    private static final long SEED = Long.getLong("fuzz.seed", 0x5EEDL);
+
+    private static final String[] SEEDS = {
+        "Rs.1,250.50 debited from A/c XX4521 to SAI STORES via UPI Ref 512345678901. sai.stores@okaxis",
+        "Your account no. 9876 is credited with INR 500 on 03-04-25. UPI: 9371110123@superyes",
+        "INR 2,000.00 spent on Card XX9912 at AMAZON using IMPS. Avl Bal INR 10,210.11",
+        "Acct XX12 debited for ₹ 99.9 at ATM",
+        "Money transferred from A/c: XX0001 to RENT OWNER through NEFT",
+    };
+
+    private static final String[] HOSTILE_UNITS = {
+        " ", "to ", "from ", "word ", "a", "a.", "-", "@", "a/c ", "\t", "Rs", "rs.", "..", "1,", "X", "via",
+    };
+
+    @Test
+    public void randomizedInputs_stayWithinBudget() {
+        SmsParser parser = new SmsParser();
+        Random random = new Random(SEED);
+        long worstNanos = 0;
+        String worstInput = "";
+
+        // Let the JIT settle so the report reflects steady state, not interpretation
+        for (int warmup = 0; warmup < 2_000; warmup++) {
+            try {
+                parser.extractTransactionDetails(mutate(random));
+            } catch (ParseTimeoutException ignored) {
+                // Still warming up
+            }
+        }
+
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            String input = mutate(random);
+            // Best of three filters GC pauses and scheduler noise out of the worst case
+            long elapsed = Long.MAX_VALUE;
+            for (int run = 0; run < 3; run++) {
+                long start = System.nanoTime();
+                try {
+                    SmsParser.TransactionDetails details = parser.extractTransactionDetails(input);
+                    assertTrue(details.amount >= 0 && !Double.isInfinite(details.amount));
+                } catch (ParseTimeoutException e) {
+                    // Acceptable outcome: the message is set aside, not a hang
+                }
+                elapsed = Math.min(elapsed, System.nanoTime() - start);
+            }
+            if (elapsed > worstNanos) {
+                worstNanos = elapsed;
+                worstInput = input;
+            }
+        }
+
+        // A JIT compile or preemption lasting all three runs can still land on one input
+        // (the build machine may have a single core), so time the worst one again, settled
+        long sweepNanos = worstNanos;
+        worstNanos = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            try {
+                parser.extractTransactionDetails(worstInput);
+            } catch (ParseTimeoutException e) {
+                // As above
+            }
+            worstNanos = Math.min(worstNanos, System.nanoTime() - start);
+        }
+
+        System.out.println(String.format(Locale.US,
+            "fuzz: %d inputs, worst parse %.1fus on %d chars (%.1fus during the sweep)",
+            ITERATIONS, worstNanos / 1e3, worstInput.length(), sweepNanos / 1e3));
+        assertTrue("Worst-case parse took " + worstNanos / 1e6 + " ms",
+            worstNanos < SmsParser.DEFAULT_BUDGET_NANOS);
+    }
+
+    @Test
+    public void adversarialInputs_scaleLinearly() {
+        SmsParser parser = new SmsParser(Long.MAX_VALUE);
+        for (String unit : new String[] {"to word ", "a", " ", "a/c ", "rs. "}) {
+            long small = bestOf(parser, "debited " + unit.repeat(5_000) + "x");
+            long large = bestOf(parser, "debited " + unit.repeat(80_000) + "x");
+            // 16x the input; a quadratic path would be ~256x slower
+            assertTrue("'" + unit + "' scaled " + (large / Math.max(1, small)) + "x",
+                large < Math.max(small, 50_000) * 64);
+        }
+    }
+
+    private static long bestOf(SmsParser parser, String input) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            parser.extractTransactionDetails(input);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static String mutate(Random random) {
+        StringBuilder input = new StringBuilder(SEEDS[random.nextInt(SEEDS.length)]);
+        int mutations = 1 + random.nextInt(6);
+        for (int m = 0; m < mutations; m++) {
+            int at = random.nextInt(input.length() + 1);
+            switch (random.nextInt(5)) {
+                case 0: // long hostile run
+                    input.insert(at, HOSTILE_UNITS[random.nextInt(HOSTILE_UNITS.length)]
+                        .repeat(1 + random.nextInt(2_000)));
+                    break;
+                case 1: // splice another seed
+                    input.insert(at, SEEDS[random.nextInt(SEEDS.length)]);
+                    break;
+                case 2: // delete a slice
+                    int end = Math.min(input.length(), at + random.nextInt(20));
+                    input.delete(Math.min(at, end), end);
+                    break;
+                case 3: // random printable or unicode char
+                    input.insert(at, (char) (random.nextBoolean() ? 32 + random.nextInt(95) : random.nextInt(0x3000)));
+                    break;
+                default: // duplicate a slice
+                    int from = random.nextInt(input.length() + 1);
+                    int to = Math.min(input.length(), from + random.nextInt(40));
+                    input.insert(at, input.substring(from, to));
+            }
+        }
+        return input.toString();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SmsParserTest {
+    private final SmsParser parser = new SmsParser();
+
+    @Test
+    public void upiDebit_extractsAllFields() {
+        SmsParser.TransactionDetails details = parser.extractTransactionDetails(
+            "Rs.1,250.50 debited from A/c XX4521 to SAI STORES via UPI Ref 512345678901. sai.stores@okaxis");
+        assertTrue(details.isDebit);
+        assertEquals(1250.50, details.amount, 0.001);
+        assertEquals("XX4521", details.accountNumber);
+        assertEquals("UPI", details.transactionMode);
+        assertEquals("sai.stores@okaxis", details.upiId);
+        assertEquals("SAI STORES", details.merchantName);
+    }
+
+    @Test
+    public void credit_withoutMerchantPhrase_fallsBackToUpiId() {
+        SmsParser.TransactionDetails details = parser.extractTransactionDetails(
+            "Your account no. 9876 is credited with INR 500 on 03-04-25. UPI: 9371110123@superyes");
+        assertFalse(details.isDebit);
+        assertEquals(500, details.amount, 0.001);
+        assertEquals("9876", details.accountNumber);
+        assertEquals("9371110123@superyes", details.merchantName);
+    }
+
+    @Test
+    public void noUpiAndNoMerchantPhrase_isUnknown() {
+        SmsParser.TransactionDetails details = parser.extractTransactionDetails(
+            "Acct XX12 debited for ₹ 99.9 at ATM");
+        assertEquals(99.9, details.amount, 0.001);
+        assertEquals("OTHER", details.transactionMode);
+        assertEquals("", details.upiId);
+        assertEquals("Unknown", details.merchantName);
+    }
+
+    @Test
+    public void merchant_usesWholeWordsAndLastTerminatorInRun() {
+        SmsParser.TransactionDetails details = parser.extractTransactionDetails(
+            "Paid Rs 20 into wallet from CITY BUS by card by NEFT");
+        assertEquals("CITY BUS by card", details.merchantName);
+    }
+
+    @Test
+    public void availableBalance_isCapturedWhenPresent() {
+        SmsParser.TransactionDetails details = parser.extractTransactionDetails(
+            "Rs.1,250.50 debited from A/c XX4521 to SAI STORES via UPI. Avl Bal: INR 12,034.75");
+        assertEquals(1250.50, details.amount, 0.001);
+        assertTrue(details.hasBalance);
+        assertEquals(12034.75, details.balance, 0.001);
+
+        details = parser.extractTransactionDetails(
+            "INR 500 credited to a/c no. 9876 by NEFT. Available Balance is Rs.3,02,000");
+        assertTrue(details.hasBalance);
+        assertEquals(302000, details.balance, 0.001);
+
+        details = parser.extractTransactionDetails("Rs 75 spent at CAFE via UPI. Bal 1040.2");
+        assertEquals(1040.2, details.balance, 0.001);
+    }
+
+    @Test
+    public void referenceNumber_isCapturedAfterRefUtrOrRrn() {
+        assertEquals("512345678901", parser.extractTransactionDetails(
+            "Rs.1,250.50 debited from A/c XX4521 to SAI STORES via UPI Ref 512345678901. sai.stores@okaxis")
+            .referenceNumber);
+        assertEquals("HDFCN52025031412345678", parser.extractTransactionDetails(
+            "INR 5,000 credited to A/c XX12 by NEFT. UTR: HDFCN52025031412345678").referenceNumber);
+        assertEquals("412233445566", parser.extractTransactionDetails(
+            "Rs 40 sent via IMPS. Ref No.412233445566, Avl Bal Rs 120").referenceNumber);
+        assertEquals("309912345678", parser.extractTransactionDetails(
+            "Rs 99 spent on card XX11. Txn ID is 309912345678").referenceNumber);
+    }
+
+    @Test
+    public void refundsAndShortCodes_areNotReferences() {
+        assertEquals("", parser.extractTransactionDetails(
+            "Refund of Rs 250 credited to A/c XX4521 by UPI").referenceNumber);
+        assertEquals("", parser.extractTransactionDetails(
+            "Rs 250 debited via UPI, ref AB12").referenceNumber);
+    }
+
+    @Test
+    public void balanceWordsWithoutAnAmount_leaveBalanceUnset() {
+        SmsParser.TransactionDetails details = parser.extractTransactionDetails(
+            "Rs 75 debited to BALAJI STORES via UPI. Check balance on the app");
+        assertFalse(details.hasBalance);
+
+        details = parser.extractTransactionDetails("Rs 75 debited via UPI. Avl Bal: -Rs 20.00");
+        assertFalse(details.hasBalance);
+    }
+
+    @Test
+    public void refundWording_marksCreditsOnly() {
+        assertTrue(parser.extractTransactionDetails(
+            "Refund of Rs.499 credited to A/c XX4521 from SWIGGY via UPI").isRefund);
+        assertTrue(parser.extractTransactionDetails(
+            "Rs 250 credited to A/c XX1 towards reversal of failed UPI txn").isRefund);
+        assertFalse(parser.extractTransactionDetails(
+            "Rs 250 debited from A/c XX1 to AMAZON REFUNDS via UPI").isRefund);
+        assertFalse(parser.extractTransactionDetails(
+            "Rs 250 credited to A/c XX1 from RAHUL via UPI").isRefund);
+    }
+
+    @Test
+    public void currencyInsideWord_isNotAnAmount() {
+        SmsParser.TransactionDetails details = parser.extractTransactionDetails(
+            "Office hours 9 to 5. Rs 75 debited");
+        assertEquals(75, details.amount, 0.001);
+    }
+
+    @Test(expected = ParseTimeoutException.class)
+    public void exhaustedBudget_throwsInsteadOfStalling() {
+        StringBuilder message = new StringBuilder("debited ");
+        for (int i = 0; i < 100_000; i++) {
+            message.append("to word ");
+        }
+        new SmsParser(0).extractTransactionDetails(message.toString());
+    }
+}
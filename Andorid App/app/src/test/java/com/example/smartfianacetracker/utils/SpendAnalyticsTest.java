@@ -0,0 +1,210 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.smartfianacetracker.models.BudgetPeriod;
+import com.example.smartfianacetracker.models.Transaction;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpendAnalyticsTest {
+    private static final TimeZone IST = TimeZone.getTimeZone("Asia/Kolkata");
+    // 2024-01-01T00:00:00+05:30
+    private static final long JANUARY_1 = 1_704_047_400_000L;
+    private static final long YEAR = 366 * 86_400_000L;
+    private static final String[] CATEGORIES = {"Food", "Travel", "Shopping", "Bills", null};
+    private static final String[] MODES = {"UPI", "CARD", "NEFT"};
+
+    private LocalTransactionStore store;
+    private SpendAnalytics analytics;
+
+    @Before
+    public void setUp() {
+        store = new LocalTransactionStore(null);
+        analytics = new SpendAnalytics(store, IST);
+    }
+
+    @Test
+    public void months_areLocal() {
+        int january = analytics.month(JANUARY_1);
+        assertEquals("2024-01", BudgetPeriod.monthKey(january));
+        assertEquals("2023-12", BudgetPeriod.monthKey(analytics.month(JANUARY_1 - 1)));
+        assertEquals(january + 11, analytics.month(JANUARY_1 + YEAR - 1));
+    }
+
+    @Test
+    public void breakdowns_matchACountOfEveryRecord() {
+        Map<String, Transaction> all = fill(20_000, new Random(5));
+        int march = analytics.month(JANUARY_1) + 2;
+
+        Map<String, Double> expected = new HashMap<>();
+        double upiFood = 0;
+        double[] byMonth = new double[12];
+        for (Transaction transaction : all.values()) {
+            if (!transaction.isDebit || transaction.reversedBy != null) {
+                continue;
+            }
+            int month = analytics.month(transaction.timestamp);
+            byMonth[month - analytics.month(JANUARY_1)] += transaction.amount;
+            String category = transaction.category != null ? transaction.category : CategoryDatabase.OTHER;
+            if (month == march) {
+                expected.merge(category, transaction.amount, Double::sum);
+            }
+            if ("UPI".equals(transaction.transactionMode) && "Food".equals(category)) {
+                upiFood += transaction.amount;
+            }
+        }
+
+        List<SpendAnalytics.Total> categories = analytics.monthly(SpendAnalytics.Dimension.CATEGORY, march, march, 10);
+        assertEquals(expected.size(), categories.size());
+        for (int i = 0; i < categories.size(); i++) {
+            SpendAnalytics.Total total = categories.get(i);
+            assertEquals(total.name, expected.get(total.name), total.amount, 0.001);
+            assertTrue(i == 0 || categories.get(i - 1).amount >= total.amount);
+        }
+        double[] spend = analytics.spendByMonth(analytics.month(JANUARY_1), analytics.month(JANUARY_1) + 11);
+        for (int i = 0; i < 12; i++) {
+            assertEquals(byMonth[i], spend[i], 0.001);
+        }
+        List<SpendAnalytics.Total> food = analytics.spend(SpendAnalytics.Dimension.CATEGORY, JANUARY_1,
+                JANUARY_1 + YEAR, SpendAnalytics.Dimension.MODE, "UPI", 10);
+        double scanned = 0;
+        for (SpendAnalytics.Total total : food) {
+            scanned += total.name.equals("Food") ? total.amount : 0;
+        }
+        assertEquals(upiFood, scanned, 0.001);
+        assertEquals(3, analytics.monthly(SpendAnalytics.Dimension.PAYEE, march, march, 3).size());
+        assertTrue(analytics.spend(SpendAnalytics.Dimension.MODE, 0, Long.MAX_VALUE,
+                SpendAnalytics.Dimension.ACCOUNT, "XX9999", 10).isEmpty());
+    }
+
+    @Test
+    public void monthlyTotals_followChangedRecords() {
+        int january = analytics.month(JANUARY_1);
+        store.apply(new LocalTransactionStore.Batch()
+                .put("a", debit("Food", "SWIGGY", 300, JANUARY_1))
+                .put("b", debit("Food", "ZOMATO", 200, JANUARY_1 + 1_000)));
+        assertEquals(500, only(analytics.monthly(SpendAnalytics.Dimension.CATEGORY, january, january, 5)), 0.001);
+
+        // Refunded later: no longer spend
+        Transaction refunded = debit("Food", "ZOMATO", 200, JANUARY_1 + 1_000);
+        refunded.reversedBy = "c";
+        // Recategorized and moved to February
+        Transaction moved = debit("Travel", "SWIGGY", 300, JANUARY_1 + 40 * 86_400_000L);
+        store.apply(new LocalTransactionStore.Batch()
+                .put("b", refunded)
+                .put("a", moved)
+                .put("d", debit("Food", "SWIGGY", 50, JANUARY_1 + 2_000)));
+
+        List<SpendAnalytics.Total> jan = analytics.monthly(SpendAnalytics.Dimension.CATEGORY, january, january, 5);
+        assertEquals("Food", jan.get(0).name);
+        assertEquals(50, only(jan), 0.001);
+        assertEquals(300, only(analytics.monthly(SpendAnalytics.Dimension.CATEGORY, january + 1, january + 1, 5)),
+                0.001);
+
+        store.reset("other-user");
+        assertEquals(0, analytics.size());
+        assertTrue(analytics.monthly(SpendAnalytics.Dimension.CATEGORY, january, january + 1, 5).isEmpty());
+    }
+
+    @Test
+    public void partialRefunds_countWhatWasNotGivenBack() {
+        int january = analytics.month(JANUARY_1);
+        Transaction order = debit("Shopping", "AMAZON", 2_000, JANUARY_1);
+        order.reversedBy = "refund";
+        store.apply(new LocalTransactionStore.Batch()
+                .put("order", order)
+                .put("other", debit("Shopping", "FLIPKART", 300, JANUARY_1 + 1_000)));
+        // Until the refund itself arrives, the order is taken as refunded in full
+        assertEquals(300, only(analytics.monthly(SpendAnalytics.Dimension.CATEGORY, january, january, 5)), 0.001);
+
+        // One item of the order sent back
+        Transaction refund = new Transaction(false, "XX4521", 750, "AMAZON", JANUARY_1 + 86_400_000L, "UPI", null);
+        refund.reversalOf = "order";
+        store.apply(new LocalTransactionStore.Batch().put("refund", refund));
+
+        assertEquals(1_550, only(analytics.monthly(SpendAnalytics.Dimension.CATEGORY, january, january, 5)), 0.001);
+        List<SpendAnalytics.Total> payees = analytics.spend(SpendAnalytics.Dimension.PAYEE, 0, Long.MAX_VALUE,
+                null, null, 5);
+        assertEquals("AMAZON", payees.get(0).name);
+        assertEquals(1_250, payees.get(0).amount, 0.001);
+        assertEquals(1, payees.get(0).count);
+
+        // Both in one batch, the refund for the whole amount
+        Transaction fullOrder = debit("Shopping", "MYNTRA", 900, JANUARY_1 + 2_000);
+        fullOrder.reversedBy = "fullRefund";
+        Transaction fullRefund = new Transaction(false, "XX4521", 900, "MYNTRA", JANUARY_1 + 3_000, "UPI", null);
+        fullRefund.reversalOf = "fullOrder";
+        store.apply(new LocalTransactionStore.Batch().put("fullRefund", fullRefund).put("fullOrder", fullOrder));
+        assertEquals(1_550, only(analytics.monthly(SpendAnalytics.Dimension.CATEGORY, january, january, 5)), 0.001);
+        assertEquals(2, analytics.spend(SpendAnalytics.Dimension.PAYEE, 0, Long.MAX_VALUE, null, null, 5).size());
+    }
+
+    @Test
+    public void existingRecords_areCountedOnSubscribing() {
+        store.apply(new LocalTransactionStore.Batch().put("a", debit("Bills", "TATA POWER", 1_200, JANUARY_1)));
+        SpendAnalytics late = new SpendAnalytics(store, IST);
+        assertEquals(1_200, only(late.spend(SpendAnalytics.Dimension.PAYEE, 0, Long.MAX_VALUE, null, null, 5)),
+                0.001);
+    }
+
+    @Test
+    public void yearOfData_aggregatesInMilliseconds() {
+        fill(100_000, new Random(9));
+        int january = analytics.month(JANUARY_1);
+        long start = System.nanoTime();
+        analytics.monthly(SpendAnalytics.Dimension.CATEGORY, january, january + 11, 10);
+        long cold = System.nanoTime() - start;
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            start = System.nanoTime();
+            analytics.spend(SpendAnalytics.Dimension.PAYEE, JANUARY_1, JANUARY_1 + YEAR,
+                    SpendAnalytics.Dimension.MODE, "UPI", 10);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        start = System.nanoTime();
+        analytics.monthly(SpendAnalytics.Dimension.CATEGORY, january, january + 11, 10);
+        long cached = System.nanoTime() - start;
+
+        System.out.printf("analytics: 100000 records, first monthly %.2f ms, cached %.3f ms, scan %.2f ms%n",
+                cold / 1e6, cached / 1e6, best / 1e6);
+        assertTrue(best < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    private Map<String, Transaction> fill(int count, Random random) {
+        Map<String, Transaction> all = new HashMap<>();
+        LocalTransactionStore.Batch batch = new LocalTransactionStore.Batch();
+        for (int i = 0; i < count; i++) {
+            Transaction transaction = new Transaction(random.nextInt(4) != 0, "XX" + (4500 + random.nextInt(3)),
+                    1 + random.nextInt(5_000), "PAYEE " + random.nextInt(300),
+                    JANUARY_1 + (long) (random.nextDouble() * YEAR), MODES[random.nextInt(MODES.length)], null);
+            transaction.category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            if (random.nextInt(50) == 0) {
+                transaction.reversedBy = "refund" + i;
+            }
+            batch.put("id" + i, transaction);
+            all.put("id" + i, transaction);
+        }
+        store.apply(batch);
+        return all;
+    }
+
+    private static Transaction debit(String category, String merchant, double amount, long timestamp) {
+        Transaction transaction = new Transaction(true, "XX4521", amount, merchant, timestamp, "UPI", null);
+        transaction.category = category;
+        return transaction;
+    }
+
+    private static double only(List<SpendAnalytics.Total> totals) {
+        assertEquals(1, totals.size());
+        return totals.get(0).amount;
+    }
+}
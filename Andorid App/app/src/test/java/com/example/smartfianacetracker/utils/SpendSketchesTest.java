@@ -0,0 +1,182 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.smartfianacetracker.models.SpendSketchMapper;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpendSketchesTest {
+    private static final String USER_ID = "test-user";
+    private static final String SKETCHES = "users/" + USER_ID + "/" + SpendSketchMapper.NODE + "/";
+    private static final long START = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private FakeDatabaseWriter db;
+    private ServiceManager serviceManager;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        serviceManager = new ServiceManager(db, new PreferenceManager(USER_ID));
+    }
+
+    @Test
+    public void spaceSaving_keepsTheHeaviestPayees() {
+        // Zipf-like spend over 5,000 payees, far more than the counters
+        Random random = new Random(1);
+        SpaceSaving sketch = new SpaceSaving(50);
+        Map<String, Double> exact = new HashMap<>();
+        double total = 0;
+        for (int i = 0; i < 200_000; i++) {
+            int rank = (int) Math.floor(Math.pow(5_000, random.nextDouble()));
+            String payee = "p" + rank;
+            double amount = 100 + random.nextInt(200);
+            sketch.offer(payee, payee, amount);
+            exact.merge(payee, amount, Double::sum);
+            total += amount;
+        }
+        List<String> trueTop = new ArrayList<>(exact.keySet());
+        trueTop.sort((a, b) -> Double.compare(exact.get(b), exact.get(a)));
+
+        assertEquals(50, sketch.size());
+        // Anything over a fiftieth of the total is guaranteed a counter; the clear leaders come out in order
+        for (String payee : trueTop) {
+            if (exact.get(payee) > total / 50) {
+                assertNotNull(payee, sketch.get(payee));
+            }
+        }
+        List<SpaceSaving.Counter> top = sketch.top(3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(trueTop.get(i), top.get(i).key);
+        }
+        for (SpaceSaving.Counter counter : sketch.top(50)) {
+            double actual = exact.get(counter.key);
+            assertTrue(counter.weight >= actual - 1e-6);
+            assertTrue(counter.weight - counter.error <= actual + 1e-6);
+        }
+    }
+
+    @Test
+    public void tDigest_percentilesAreCloseInRank() {
+        Random random = new Random(2);
+        TDigest digest = new TDigest(SpendSketches.COMPRESSION);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Spend is roughly log-normal: mostly small, a long tail
+            values[i] = Math.round(Math.exp(5.5 + 1.2 * random.nextGaussian()) * 100) / 100.0;
+            digest.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (double q : new double[] {0.01, 0.1, 0.5, 0.9, 0.99, 0.999}) {
+            double estimate = digest.quantile(q);
+            double rank = rank(values, estimate);
+            assertEquals("q=" + q, q, rank, Math.max(0.005, q * (1 - q) * 0.05));
+        }
+        assertTrue(digest.centroids() < 4 * SpendSketches.COMPRESSION);
+
+        TDigest decoded = TDigest.decode(digest.encode(), SpendSketches.COMPRESSION);
+        assertEquals(digest.count(), decoded.count());
+        assertEquals(digest.quantile(0.5), decoded.quantile(0.5), digest.quantile(0.5) * 0.01);
+        assertTrue(Double.isNaN(new TDigest(SpendSketches.COMPRESSION).quantile(0.5)));
+    }
+
+    @Test
+    public void ingest_publishesSmallNodes_andRemovesEvictedPayees() throws Exception {
+        SpendSketches sketches = new SpendSketches(null, serviceManager, 0);
+        for (int i = 0; i < 200; i++) {
+            debit(sketches, 300 + i % 50, "swiggy", "Food", START + i);
+        }
+        debit(sketches, 900, "tata-power", "Bills", START);
+        for (int i = 0; i < SpendSketches.TOP_PAYEES - 2; i++) {
+            debit(sketches, 5_000, "big" + i, "Shopping", START);
+        }
+        sketches.flush().get();
+        assertNotNull(db.values.get(SKETCHES + "payees/tata-power"));
+
+        // One more payee than counters: the lightest, tata-power, gives up its counter
+        debit(sketches, 1_000, "irctc", "Travel & Transport", START);
+        sketches.flush().get();
+
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+        assertNull(db.values.get(SKETCHES + "payees/tata-power"));
+        Map<?, ?> irctc = (Map<?, ?>) db.values.get(SKETCHES + "payees/irctc");
+        assertEquals(1_900.0, (Double) irctc.get(SpendSketchMapper.WEIGHT), 0.001);
+        assertEquals(900.0, (Double) irctc.get(SpendSketchMapper.ERROR), 0.001);
+        assertEquals("SWIGGY", sketches.topPayees(3).get(0).name);
+        assertEquals(SpendSketches.TOP_PAYEES, sketches.topPayees(60).size());
+
+        Map<?, ?> food = (Map<?, ?>) db.values.get(SKETCHES + "amounts/Food");
+        assertEquals(200L, food.get(SpendSketchMapper.COUNT));
+        assertEquals(324.5, (Double) food.get(SpendSketchMapper.P50), 1.0);
+        Map<?, ?> travel = (Map<?, ?>) db.values.get(SKETCHES + "amounts/Travel___Transport");
+        assertEquals("Travel & Transport", travel.get(SpendSketchMapper.CATEGORY));
+    }
+
+    @Test
+    public void sketches_surviveARestart() throws Exception {
+        File dir = tempDir.newFolder();
+        SpendSketches first = new SpendSketches(dir, serviceManager, 0);
+        for (int i = 1; i <= 100; i++) {
+            debit(first, i * 10, "amazon", "Shopping", START + i);
+        }
+        first.flush().get();
+        first.flush().get();
+
+        SpendSketches reopened = new SpendSketches(dir, serviceManager, 0);
+        assertEquals(50_500, reopened.topPayees(1).get(0).weight, 0.001);
+        assertEquals(first.percentile("Shopping", 0.9), reopened.percentile("Shopping", 0.9), 0.001);
+        assertTrue(Double.isNaN(reopened.percentile("Food", 0.5)));
+    }
+
+    @Test
+    public void anotherUser_startsFromNothing() throws Exception {
+        File dir = tempDir.newFolder();
+        SpendSketches first = new SpendSketches(dir, serviceManager, 0);
+        debit(first, 700, "swiggy", "Food", START);
+        debit(first, 300, "uber", "Travel & Transport", START + 1);
+        first.flush().get();
+        first.flush().get();
+
+        // Signed out and back in as someone else on the same phone
+        ServiceManager otherUser = new ServiceManager(db, new PreferenceManager("other-user"));
+        SpendSketches reopened = new SpendSketches(dir, otherUser, 0);
+        assertTrue(reopened.topPayees(5).isEmpty());
+        debit(reopened, 120, "irctc", "Travel & Transport", START + 2);
+        reopened.flush().get();
+        reopened.flush().get();
+
+        String others = "users/other-user/" + SpendSketchMapper.NODE + "/";
+        assertEquals(1, reopened.topPayees(5).size());
+        assertNull(db.values.get(others + "payees/swiggy"));
+        assertNotNull(db.values.get(others + "payees/irctc"));
+        Map<?, ?> travel = (Map<?, ?>) db.values.get(others + "amounts/Travel___Transport");
+        assertEquals(1L, travel.get(SpendSketchMapper.COUNT));
+        assertTrue(Double.isNaN(new SpendSketches(dir, serviceManager, 0).percentile("Food", 0.5)));
+    }
+
+    private static double rank(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        return (index >= 0 ? index : -index - 1) / (double) sorted.length;
+    }
+
+    private static void debit(SpendSketches sketches, double amount, String payeeId, String category,
+                              long timestamp) {
+        sketches.onTransactionStored(RecordBuilder.debit(amount).payee(payeeId).category(category).at(timestamp)
+                .build(), timestamp);
+    }
+}
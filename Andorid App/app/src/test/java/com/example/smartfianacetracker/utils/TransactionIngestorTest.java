@@ -0,0 +1,152 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TransactionIngestorTest {
+    private static final String USER_ID = "test-user";
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final SmsParser parser = new SmsParser();
+    private FakeDatabaseWriter db;
+    private ServiceManager serviceManager;
+    private QuarantineStore quarantine;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        serviceManager = new ServiceManager(db, new PreferenceManager(USER_ID));
+        quarantine = new QuarantineStore(tempDir.getRoot());
+    }
+
+    @Test
+    public void unusableFinancialMessages_areQuarantinedWithReason() throws Exception {
+        TransactionIngestor ingestor = new TransactionIngestor(parser, serviceManager, quarantine);
+
+        assertFalse(ingestor.ingest("BANK", "Your UPI payment failed, please retry", 1_000L));
+        assertFalse(ingestor.ingest("BANK", "Rs 450 debited from A/c XX1 at POS 77", 2_000L));
+        assertFalse(ingestor.ingest("FRIEND", "see you at 5", 3_000L));
+
+        List<QuarantineStore.Entry> entries = quarantine.entries().get();
+        assertEquals(2, entries.size());
+        assertEquals(QuarantineStore.Reason.ZERO_AMOUNT, entries.get(0).reason);
+        assertEquals(QuarantineStore.Reason.UNKNOWN_MERCHANT, entries.get(1).reason);
+        assertEquals(parser.version(), entries.get(1).parserVersion);
+        assertEquals(2_000L, entries.get(1).receivedAt);
+        db.drain();
+        assertTrue(db.valuesUnder("users/" + USER_ID + "/debit/").isEmpty());
+    }
+
+    @Test
+    public void replay_storesRecoveredEntriesAndKeepsTheRest() throws Exception {
+        quarantine.add(new QuarantineStore.Entry(QuarantineStore.Reason.UNKNOWN_MERCHANT,
+            parser.version() - 1, 5_000L, "BANK", "Rs 450 debited from A/c XX1 to CAFE 77 via UPI"));
+        quarantine.add(new QuarantineStore.Entry(QuarantineStore.Reason.ZERO_AMOUNT,
+            parser.version() - 1, 6_000L, "BANK", "Your UPI payment failed, please retry"));
+        quarantine.add(new QuarantineStore.Entry(QuarantineStore.Reason.ZERO_AMOUNT,
+            parser.version(), 7_000L, "BANK", "Payment of Rs ... pending"));
+
+        TransactionIngestor ingestor = new TransactionIngestor(parser, serviceManager, quarantine);
+        QuarantineStore.ReplayResult result = ingestor.replayQuarantine().get();
+
+        assertEquals(2, result.replayed);
+        assertEquals(1, result.recovered);
+        assertEquals(2, result.remaining);
+        List<QuarantineStore.Entry> remaining = quarantine.entries().get();
+        assertEquals(parser.version(), remaining.get(0).parserVersion);
+        assertEquals(6_000L, remaining.get(0).receivedAt);
+
+        db.drain();
+        List<Object> stored = db.valuesUnder("users/" + USER_ID + "/debit/");
+        assertEquals(1, stored.size());
+        assertEquals(5_000L, ((Map<?, ?>) stored.get(0)).get("timestamp"));
+    }
+
+    @Test
+    public void repeatedReference_isStoredOnce() throws Exception {
+        TransactionIngestor ingestor = new TransactionIngestor(parser, serviceManager, quarantine);
+
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.250 debited from A/c XX4521 to SAI STORES via UPI Ref 512345678901", 1_000L));
+        // The UPI app's own SMS for the same payment
+        assertTrue(ingestor.ingest("JD-PAYTM",
+            "Paid Rs.250 to SAI STORES using UPI. UPI Ref No: 512345678901", 1_200L));
+        // Same reference on the credit side is the other leg, not a duplicate
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.250 credited to A/c XX9911 from SELF via UPI Ref 512345678901", 1_300L));
+
+        db.drain();
+        assertEquals(1, db.valuesUnder("users/" + USER_ID + "/debit/").size());
+        assertEquals(1, db.valuesUnder("users/" + USER_ID + "/credit/").size());
+        assertTrue(db.ruleViolations.isEmpty());
+    }
+
+    @Test
+    public void quarantine_keepsLongBodies_andEntriesAfterATornTail() throws Exception {
+        char[] filler = new char[70_000];
+        Arrays.fill(filler, '\u20b9');
+        String longBody = new String(filler);
+        quarantine.add(new QuarantineStore.Entry(QuarantineStore.Reason.PARSE_TIMEOUT,
+            parser.version(), 1_000L, "BANK", longBody));
+        quarantine.add(new QuarantineStore.Entry(QuarantineStore.Reason.ZERO_AMOUNT,
+            parser.version(), 2_000L, "BANK", "Payment of Rs ... pending"));
+        assertEquals(2, quarantine.entries().get().size());
+
+        // A crash part way through an append, then a restart that quarantines another message
+        try (FileOutputStream out = new FileOutputStream(new File(tempDir.getRoot(), "sms_quarantine.bin"), true)) {
+            out.write(new byte[] {0, 0, 0, 40, 7, 1, 2});
+        }
+        QuarantineStore restarted = new QuarantineStore(tempDir.getRoot());
+        restarted.add(new QuarantineStore.Entry(QuarantineStore.Reason.UNKNOWN_MERCHANT,
+            parser.version(), 3_000L, "BANK", "Rs 450 debited from A/c XX1 at POS 77"));
+        assertEquals(3, restarted.entries().get().size());
+
+        List<QuarantineStore.Entry> entries = new QuarantineStore(tempDir.getRoot()).entries().get();
+        assertEquals(3, entries.size());
+        assertEquals(longBody, entries.get(0).body);
+        assertEquals(2_000L, entries.get(1).receivedAt);
+        assertEquals(3_000L, entries.get(2).receivedAt);
+    }
+
+    @Test
+    public void sameReferenceFromTwoThreads_isStoredOnce() throws Exception {
+        TransactionIngestor ingestor = new TransactionIngestor(parser, serviceManager, quarantine);
+        int messages = 300;
+        CountDownLatch start = new CountDownLatch(1);
+        Runnable sender = () -> {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (int i = 0; i < messages; i++) {
+                ingestor.ingest("VM-HDFCBK", "Rs." + (100 + i) + " debited from A/c XX4521 to SAI STORES via UPI Ref "
+                    + (512_300_000_000L + i), 1_000L + i);
+            }
+        };
+        Thread live = new Thread(sender);
+        Thread replay = new Thread(sender);
+        live.start();
+        replay.start();
+        start.countDown();
+        live.join();
+        replay.join();
+
+        db.drain();
+        assertEquals(messages, db.valuesUnder("users/" + USER_ID + "/debit/").size());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.smartfianacetracker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.smartfianacetracker.models.Budget;
+import com.example.smartfianacetracker.models.BudgetMapper;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TransferCorrelatorTest {
+    private static final String USER_ID = "test-user";
+    private static final String USER = "users/" + USER_ID + "/";
+    private static final long WINDOW = 60_000L;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private FakeDatabaseWriter db;
+    private TransactionIngestor ingestor;
+    private TransferCorrelator correlator;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new FakeDatabaseWriter(RulesValidator.load(), 0);
+        ServiceManager serviceManager = new ServiceManager(db, new PreferenceManager(USER_ID));
+        ingestor = new TransactionIngestor(new SmsParser(), serviceManager, new QuarantineStore(tempDir.getRoot()));
+        correlator = new TransferCorrelator(serviceManager, WINDOW);
+        ingestor.addListener(correlator);
+    }
+
+    @Test
+    public void legsOnTwoOwnAccounts_areMarkedAsOneTransfer() throws Exception {
+        Budget everything = new Budget();
+        everything.amount = 10_000;
+        everything.category = "Other";
+        everything.createdAt = 1_000L;
+        db.publish(USER + "budgets", Collections.singletonMap("b1", BudgetMapper.toMap(everything)));
+
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.5,000 debited from A/c XX4521 to RAHUL SHARMA via IMPS", 1_000L));
+        assertTrue(ingestor.ingest("VM-SBIINB",
+            "Rs.5,000 credited to A/c XX9911 from RAHUL SHARMA via IMPS", 31_000L));
+        db.drain();
+
+        assertTrue(db.ruleViolations.toString(), db.ruleViolations.isEmpty());
+        String debitKey = onlyKey("debit");
+        String creditKey = onlyKey("credit");
+        assertEquals(creditKey, db.values.get(USER + "debit/" + debitKey + "/internalTransfer"));
+        assertEquals(debitKey, db.values.get(USER + "credit/" + creditKey + "/internalTransfer"));
+        // Charged on the debit, given back when it turned out to be a transfer
+        assertEquals(0.0, (Double) db.values.get(USER + "budgets/b1/spent"), 0.0001);
+        assertEquals(0, correlator.pendingCount());
+    }
+
+    @Test
+    public void sameAccountDifferentReferencesOrOutsideTheWindow_areNotTransfers() throws Exception {
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.500 debited from A/c XX4521 to CAFE 77 via UPI", 1_000L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.500 credited to A/c XX4521 from RAHUL via UPI", 2_000L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.700 debited from A/c XX4521 to CAFE 77 via UPI Ref 512345678901", 3_000L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.700 credited to A/c XX9911 from RAHUL via UPI Ref 612345678901", 4_000L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.900 debited from A/c XX4521 to SELF via NEFT", 5_000L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.900 credited to A/c XX9911 from SELF via NEFT", 5_000L + WINDOW + 1));
+        db.drain();
+
+        for (String path : db.values.keySet()) {
+            assertTrue(path, !path.endsWith("/internalTransfer"));
+        }
+        // Only the last credit is still inside the window
+        assertEquals(1, correlator.pendingCount());
+    }
+
+    @Test
+    public void matchingReference_winsOverACloserLeg() throws Exception {
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.2,000 debited from A/c XX4521 to SELF via UPI Ref 712345678901", 1_000L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.2,000 debited from A/c XX7777 to SELF via UPI", 9_000L));
+        assertTrue(ingestor.ingest("VM-HDFCBK",
+            "Rs.2,000 credited to A/c XX9911 from SELF via UPI Ref 712345678901", 10_000L));
+        db.drain();
+
+        String linked = null;
+        for (String path : db.values.keySet()) {
+            if (path.startsWith(USER + "debit/") && path.endsWith("/internalTransfer")) {
+                assertNull("more than one debit linked", linked);
+                linked = path;
+            }
+        }
+        Object debit = db.values.get(linked.substring(0, linked.lastIndexOf('/')));
+        assertEquals("XX4521", ((Map<?, ?>) debit).get("accountNumber"));
+        assertEquals(1, correlator.pendingCount());
+    }
+
+    private String onlyKey(String node) {
+        String prefix = USER + node + "/";
+        String key = null;
+        for (String path : db.values.keySet()) {
+            if (path.startsWith(prefix) && path.indexOf('/', prefix.length()) < 0) {
+                assertNull("more than one " + node, key);
+                key = path.substring(prefix.length());
+            }
+        }
+        return key;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.smartfianacetracker.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.Collections;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures cold start of the launcher activity. Run with
+ * {@code ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest} on a
+ * physical device and compare timeToInitialDisplayMs across builds.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    private static final String TARGET_PACKAGE = "com.example.smartfianacetracker";
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartNoCompilation() {
+        measureColdStart(new CompilationMode.None());
+    }
+
+    @Test
+    public void coldStartPartialCompilation() {
+        measureColdStart(new CompilationMode.Partial());
+    }
+
+    private void measureColdStart(CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+            TARGET_PACKAGE,
+            Collections.singletonList(new StartupTimingMetric()),
+            compilationMode,
+            StartupMode.COLD,
+            ITERATIONS,
+            scope -> Unit.INSTANCE,
+            scope -> {
+                scope.pressHome();
+                scope.startActivityAndWait();
+                return Unit.INSTANCE;
+            }
+        );
+    }
+}
@@ -16,6 +16,7 @@ import { BudgetForm } from "@/components/budget-form"
 import { DashboardNav } from "@/components/dashboard-nav"
 import { useFinance } from "@/hooks/useFinance"
 import { Budget } from "@/types/finance"
+import { currentSpend, isBudgetReached, periodLabel } from "@/lib/budget-period"
 
 export default function BudgetingPage() {
   const router = useRouter()
@@ -59,8 +60,8 @@ export default function BudgetingPage() {
     .sort((a, b) => b.createdAt - a.createdAt) || []
 
   const getBudgetColor = (budget: Budget) => {
-    if (budget.budgetReached) return 'border-l-rose-500'
-    const percentage = (budget.spent / budget.amount) * 100
+    if (isBudgetReached(budget)) return 'border-l-rose-500'
+    const percentage = (currentSpend(budget) / budget.amount) * 100
     if (percentage >= 90) return 'border-l-amber-500'
     return 'border-l-green-500'
   }
@@ -162,19 +163,23 @@ export default function BudgetingPage() {
                   </Card>
                 ) : (
                   activeBudgets.map((budget) => {
-                    const percentage = (budget.spent / budget.amount) * 100;
+                    const spent = currentSpend(budget);
+                    const percentage = (spent / budget.amount) * 100;
+                    const reached = isBudgetReached(budget);
+                    const period = periodLabel(budget);
                     return (
                       <Card key={budget.id} className={`border-l-4 ${getBudgetColor(budget)}`}>
                         <CardHeader>
                           <CardTitle className="flex items-center justify-between">
                             <span>{budget.category}</span>
                             <span className="text-sm font-normal">
-                              ₹{budget.spent.toLocaleString('en-IN')}/₹{budget.amount.toLocaleString('en-IN')}
+                              ₹{spent.toLocaleString('en-IN')}/₹{budget.amount.toLocaleString('en-IN')}
+                              {period && <span className="text-muted-foreground"> {period}</span>}
                             </span>
                           </CardTitle>
                           <CardDescription>
                             {budget.description}
-                            {budget.budgetReached && (
+                            {reached && (
                               <p className="mt-1 text-rose-500 font-medium">Budget limit exceeded!</p>
                             )}
                           </CardDescription>
@@ -182,7 +187,7 @@ export default function BudgetingPage() {
                         <CardContent>
                           <Progress 
                             value={percentage} 
-                            className={`h-2 ${budget.budgetReached ? 'bg-rose-100' : ''}`} 
+                            className={`h-2 ${reached ? 'bg-rose-100' : ''}`} 
                           />
                           <p className="mt-2 text-xs text-muted-foreground">
                             {percentage.toFixed(1)}% of budget used
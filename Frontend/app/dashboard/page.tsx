@@ -14,6 +14,8 @@ import {
 import { useEffect, useState } from "react"
 import { ref, onValue, DataSnapshot } from "firebase/database"
 import { database } from "@/lib/firebase"
+import { withoutInternalTransfers } from "@/lib/aggregates"
+import { upcomingBills, UpcomingBill } from "@/lib/recurring"
 import { getAuth, onAuthStateChanged } from "firebase/auth"
 import { useRouter } from "next/navigation"
 import { subMonths, startOfMonth, endOfMonth } from "date-fns"
@@ -26,6 +28,7 @@ import { DashboardNav } from "@/components/dashboard-nav"
 import ExpensePieChart from "@/components/expense-pie-chart"
 import { RecentTransactions } from "@/components/recent-transactions"
 import { BudgetStatus } from "@/components/budget-status"
+import { UpcomingBills } from "@/components/upcoming-bills"
 import { BaseTransaction, Transaction, Budget, MonthlyData, MerchantExpense } from "@/types/finance"
 import { useFinance } from "@/hooks/useFinance"
 
@@ -56,6 +59,7 @@ export default function DashboardPage() {
   const [monthlyData, setMonthlyData] = useState<MonthlyData[]>([])
   const [merchantExpenses, setMerchantExpenses] = useState<MerchantExpense[]>([])
   const [recentTransactions, setRecentTransactions] = useState<Transaction[]>([])
+  const [bills, setBills] = useState<UpcomingBill[]>([])
 
   // Handle authentication state
   useEffect(() => {
@@ -89,8 +93,8 @@ export default function DashboardPage() {
             return
           }
 
-          const creditData: Record<string, BaseTransaction> = userData?.credit || {}
-          const debitData: Record<string, BaseTransaction> = userData?.debit || {}
+          const creditData: Record<string, BaseTransaction> = withoutInternalTransfers(userData?.credit || {})
+          const debitData: Record<string, BaseTransaction> = withoutInternalTransfers(userData?.debit || {})
 
           // Process credit data
           const creditTotal = Object.values(creditData).reduce((sum: number, transaction: BaseTransaction) => 
@@ -147,6 +151,7 @@ export default function DashboardPage() {
           .sort((a, b) => b.timestamp - a.timestamp)
           .slice(0, 5)
           setRecentTransactions(allTransactions)
+          setBills(upcomingBills(userData?.recurring))
 
         } catch (err) {
           console.error('Error processing user data:', err)
@@ -370,6 +375,15 @@ export default function DashboardPage() {
                 </CardContent>
               </Card>
             </div>
+            <Card>
+              <CardHeader>
+                <CardTitle>Upcoming Bills</CardTitle>
+                <CardDescription>Recurring payments and when they are next due</CardDescription>
+              </CardHeader>
+              <CardContent>
+                <UpcomingBills bills={bills} />
+              </CardContent>
+            </Card>
           </div>
         </main>
       </div>
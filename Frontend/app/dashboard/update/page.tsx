@@ -5,6 +5,7 @@ import Link from "next/link"
 import { IndianRupee, Upload, Loader2 } from "lucide-react"
 import { collection, addDoc, Timestamp } from "firebase/firestore"
 import { firestore } from "@/lib/firebase"
+import { importStatementTransactions } from "@/lib/firebase-db"
 import { format } from "date-fns"
 import { extractTextFromPDF, extractTransactions, type Transaction } from "@/lib/pdf-extractor"
 import Script from 'next/script'
@@ -108,6 +109,17 @@ export default function UpdateTransactionsPage() {
       })
 
       await Promise.all(promises)
+
+      // Also into the user's history, where the phone's sync picks them up
+      await importStatementTransactions(transactions.map((transaction) => ({
+        type: transaction.amount > 0 ? 'credit' as const : 'debit' as const,
+        accountNumber: transaction.accountNumber ?? '',
+        amount: Math.abs(transaction.amount),
+        merchantName: transaction.merchantName,
+        timestamp: transaction.timestamp,
+        transactionMode: transaction.transactionMode,
+        ...(transaction.upiId ? { upiId: transaction.upiId } : {})
+      })))
       setSuccess(`Successfully uploaded ${transactions.length} transactions to Firestore!`)
     } catch (err) {
       console.error('Error processing file:', err)
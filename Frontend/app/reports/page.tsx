@@ -16,6 +16,9 @@ import { DashboardChart } from "@/components/dashboard-chart"
 import ExpensePieChart from "@/components/expense-pie-chart"
 import { useFinance } from "@/hooks/useFinance"
 import { Transaction, MerchantExpense } from "@/types/finance"
+import { isInternalTransfer } from "@/lib/aggregates"
+import { getSpendSketches, SpendSketches as SpendSketchesData } from "@/lib/firebase-db"
+import { SpendSketches } from "@/components/spend-sketches"
 
 // Import types from types directory
 import type { PDFViewerProps } from '@/types/pdf-viewer'
@@ -91,6 +94,7 @@ export default function ReportsPage() {
   const [error, setError] = useState<string | null>(null)
   const [creditTransactions, setCreditTransactions] = useState<Transaction[]>([])
   const [debitTransactions, setDebitTransactions] = useState<Transaction[]>([])
+  const [sketches, setSketches] = useState<SpendSketchesData | null>(null)
 
   useEffect(() => {
     const auth = getAuth()
@@ -106,11 +110,20 @@ export default function ReportsPage() {
     return () => unsubscribe()
   }, [router])
 
+  // A few KB summarising all spend, kept current by the phone
+  useEffect(() => {
+    if (!user) return
+    getSpendSketches()
+      .then(setSketches)
+      .catch((err) => console.error('Error loading spend sketches:', err))
+  }, [user])
+
   // Process transactions when data or date range changes
   useEffect(() => {
     if (credits && debits) {
       // Filter transactions by date range
       const filteredCredits = credits.filter(tx => {
+        if (isInternalTransfer(tx)) return false
         const txDate = new Date(tx.timestamp)
         return isWithinInterval(txDate, {
           start: startOfDay(dateRange?.from || new Date()),
@@ -119,6 +132,7 @@ export default function ReportsPage() {
       })
 
       const filteredDebits = debits.filter(tx => {
+        if (isInternalTransfer(tx)) return false
         const txDate = new Date(tx.timestamp)
         return isWithinInterval(txDate, {
           start: startOfDay(dateRange?.from || new Date()),
@@ -309,6 +323,18 @@ export default function ReportsPage() {
               )}
             </CardContent>
           </Card>
+
+          {sketches && (
+            <Card>
+              <CardHeader>
+                <CardTitle>Spending Insights</CardTitle>
+                <CardDescription>Where your money goes, across your whole history</CardDescription>
+              </CardHeader>
+              <CardContent>
+                <SpendSketches sketches={sketches} />
+              </CardContent>
+            </Card>
+          )}
         </main>
       </div>
     </div>
@@ -7,6 +7,7 @@ import { Button } from "@/components/ui/button"
 import { Input } from "@/components/ui/input"
 import { Textarea } from "@/components/ui/textarea"
 import { Label } from "@/components/ui/label"
+import { Select, SelectContent, SelectItem, SelectTrigger, SelectValue } from "@/components/ui/select"
 import { useToast } from "@/components/ui/use-toast"
 
 export function BudgetForm() {
@@ -16,6 +17,8 @@ export function BudgetForm() {
   const [description, setDescription] = useState("")
   const [merchants, setMerchants] = useState("")
   const [upiIds, setUpiIds] = useState("")
+  const [period, setPeriod] = useState("monthly")
+  const [periodDays, setPeriodDays] = useState("")
   const [isSubmitting, setIsSubmitting] = useState(false)
 
   const handleSubmit = async (e: React.FormEvent) => {
@@ -43,7 +46,9 @@ export function BudgetForm() {
         spent: 0,
         createdAt: Date.now(),
         isActive: true,
-        budgetReached: false
+        budgetReached: false,
+        ...(period !== "none" && { period }),
+        ...(period === "custom" && { periodDays: Number(periodDays) })
       })
 
       toast({
@@ -57,6 +62,8 @@ export function BudgetForm() {
       setDescription("")
       setMerchants("")
       setUpiIds("")
+      setPeriod("monthly")
+      setPeriodDays("")
     } catch (error) {
       console.error("Error creating budget:", error)
       toast({
@@ -92,6 +99,35 @@ export function BudgetForm() {
         />
       </div>
 
+      <div className="space-y-2">
+        <Label htmlFor="period">Resets</Label>
+        <Select value={period} onValueChange={setPeriod}>
+          <SelectTrigger id="period">
+            <SelectValue />
+          </SelectTrigger>
+          <SelectContent>
+            <SelectItem value="weekly">Every week</SelectItem>
+            <SelectItem value="monthly">Every month</SelectItem>
+            <SelectItem value="custom">Every few days</SelectItem>
+            <SelectItem value="none">Never</SelectItem>
+          </SelectContent>
+        </Select>
+      </div>
+
+      {period === "custom" && (
+        <div className="space-y-2">
+          <Label htmlFor="periodDays">Days per period</Label>
+          <Input
+            id="periodDays"
+            type="number"
+            min={1}
+            value={periodDays}
+            onChange={(e) => setPeriodDays(e.target.value)}
+            required
+          />
+        </div>
+      )}
+
       <div className="space-y-2">
         <Label htmlFor="description">Description</Label>
         <Textarea
@@ -5,6 +5,7 @@ import { ref, onValue, DataSnapshot } from "firebase/database"
 import { database } from "@/lib/firebase"
 import { CreditCard } from "lucide-react"
 import { Progress } from "@/components/ui/progress"
+import { currentSpend, isBudgetReached, periodLabel } from "@/lib/budget-period"
 
 interface Transaction {
   accountNumber: string
@@ -32,6 +33,9 @@ interface Budget {
   merchants: string[]
   spent: number
   upiIds?: string[]
+  period?: string
+  periodDays?: number
+  spentByPeriod?: Record<string, number>
 }
 
 interface BudgetStatusProps {
@@ -43,29 +47,35 @@ export function BudgetStatus({ budgets }: BudgetStatusProps) {
 
   return (
     <div className="space-y-4">
-      {activeBudgets.map((budget) => (
-        <div key={budget.id} className="space-y-2">
-          <div className="flex items-center justify-between">
-            <div className="space-y-0.5">
-              <div className="text-sm font-medium">{budget.category}</div>
-              <div className="text-xs text-muted-foreground">{budget.description}</div>
+      {activeBudgets.map((budget) => {
+        const spent = currentSpend(budget)
+        const period = periodLabel(budget)
+        return (
+          <div key={budget.id} className="space-y-2">
+            <div className="flex items-center justify-between">
+              <div className="space-y-0.5">
+                <div className="text-sm font-medium">{budget.category}</div>
+                <div className="text-xs text-muted-foreground">
+                  {budget.description}{period ? ` · ${period}` : ''}
+                </div>
+              </div>
+              <div className="text-sm font-medium">
+                ₹{spent.toLocaleString('en-IN')} / ₹{budget.amount.toLocaleString('en-IN')}
+              </div>
             </div>
-            <div className="text-sm font-medium">
-              ₹{budget.spent.toLocaleString('en-IN')} / ₹{budget.amount.toLocaleString('en-IN')}
+            <div className="h-2 w-full rounded-full bg-secondary">
+              <div
+                className={`h-2 rounded-full ${
+                  isBudgetReached(budget) ? 'bg-red-500' : 'bg-primary'
+                }`}
+                style={{
+                  width: `${Math.min((spent / budget.amount) * 100, 100)}%`,
+                }}
+              />
             </div>
           </div>
-          <div className="h-2 w-full rounded-full bg-secondary">
-            <div
-              className={`h-2 rounded-full ${
-                budget.budgetReached ? 'bg-red-500' : 'bg-primary'
-              }`}
-              style={{
-                width: `${Math.min((budget.spent / budget.amount) * 100, 100)}%`,
-              }}
-            />
-          </div>
-        </div>
-      ))}
+        )
+      })}
       {activeBudgets.length === 0 && (
         <div className="text-center text-sm text-muted-foreground">
           No active budgets
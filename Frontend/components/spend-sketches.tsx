@@ -0,0 +1,60 @@
+"use client"
+
+import { Store } from "lucide-react"
+import type { SpendSketches as SpendSketchesData } from "@/lib/firebase-db"
+
+interface SpendSketchesProps {
+  sketches: SpendSketchesData
+  // Payees listed, heaviest first
+  limit?: number
+}
+
+const rupees = (amount: number) => `₹${Math.round(amount).toLocaleString('en-IN')}`
+
+export function SpendSketches({ sketches, limit = 5 }: SpendSketchesProps) {
+  if (sketches.topPayees.length === 0 && sketches.amounts.length === 0) {
+    return (
+      <p className="text-sm text-muted-foreground">
+        No spending summarised yet. The phone app builds these as it records your debits.
+      </p>
+    )
+  }
+
+  const amounts = [...sketches.amounts].sort((a, b) => b.count - a.count)
+  return (
+    <div className="grid gap-6 md:grid-cols-2">
+      <div className="space-y-4">
+        <div className="text-sm font-medium">Top payees</div>
+        {sketches.topPayees.slice(0, limit).map((payee) => (
+          <div key={payee.payeeId} className="flex items-center justify-between">
+            <div className="flex items-center gap-3">
+              <Store className="h-4 w-4 text-muted-foreground" />
+              <div className="text-sm">{payee.name}</div>
+            </div>
+            <div className="text-right">
+              <div className="text-sm font-medium">{rupees(payee.amount)}</div>
+              {payee.error > 0 && (
+                <div className="text-xs text-muted-foreground">at least {rupees(payee.amount - payee.error)}</div>
+              )}
+            </div>
+          </div>
+        ))}
+      </div>
+      <div className="space-y-4">
+        <div className="text-sm font-medium">Typical debit by category</div>
+        {amounts.map((category) => (
+          <div key={category.category} className="flex items-center justify-between">
+            <div className="space-y-0.5">
+              <div className="text-sm">{category.category}</div>
+              <div className="text-xs text-muted-foreground">{category.count} debits</div>
+            </div>
+            <div className="text-right text-xs text-muted-foreground">
+              <div className="text-sm font-medium text-foreground">{rupees(category.p50)}</div>
+              90% under {rupees(category.p90)} · 99% under {rupees(category.p99)}
+            </div>
+          </div>
+        ))}
+      </div>
+    </div>
+  )
+}
@@ -0,0 +1,44 @@
+"use client"
+
+import { CalendarClock } from "lucide-react"
+import type { UpcomingBill } from "@/lib/recurring"
+
+interface UpcomingBillsProps {
+  bills: UpcomingBill[]
+}
+
+export function UpcomingBills({ bills }: UpcomingBillsProps) {
+  if (bills.length === 0) {
+    return (
+      <p className="text-sm text-muted-foreground">
+        No recurring payments detected yet. Rent, SIPs, subscriptions and EMIs show up here after a few payments.
+      </p>
+    )
+  }
+
+  const now = Date.now()
+  return (
+    <div className="space-y-4">
+      {bills.map((bill) => (
+        <div key={bill.payeeId} className="flex items-center justify-between">
+          <div className="flex items-center gap-3">
+            <CalendarClock className="h-4 w-4 text-muted-foreground" />
+            <div className="space-y-0.5">
+              <div className="text-sm font-medium">{bill.merchantName}</div>
+              <div className="text-xs text-muted-foreground">
+                Every {Math.round(bill.periodDays)} days{bill.category ? ` · ${bill.category}` : ''}
+              </div>
+            </div>
+          </div>
+          <div className="text-right">
+            <div className="text-sm font-medium">₹{bill.amount.toLocaleString('en-IN')}</div>
+            <div className={`text-xs ${bill.nextDueAt < now ? 'text-rose-500' : 'text-muted-foreground'}`}>
+              {bill.nextDueAt < now ? 'Overdue since ' : 'Due '}
+              {new Date(bill.nextDueAt).toLocaleDateString('en-IN', { day: 'numeric', month: 'short' })}
+            </div>
+          </div>
+        </div>
+      ))}
+    </div>
+  )
+}
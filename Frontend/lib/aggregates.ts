@@ -0,0 +1,13 @@
+// Both legs of a transfer between the user's own accounts carry
+// internalTransfer (written by the Android app's TransferCorrelator). They
+// move money without earning or spending it, so totals leave them out.
+
+export const isInternalTransfer = (transaction: { internalTransfer?: string }) =>
+  Boolean(transaction.internalTransfer);
+
+export const withoutInternalTransfers = <T extends { internalTransfer?: string }>(
+  transactions: Record<string, T>
+): Record<string, T> =>
+  Object.fromEntries(
+    Object.entries(transactions).filter(([, transaction]) => !isInternalTransfer(transaction))
+  );
@@ -0,0 +1,88 @@
+// Budget periods, mirroring BudgetPeriod.java; keep the two in step.
+//
+// A budget with a period keeps its spend per period in spentByPeriod, keyed
+// by the local date the period starts on (yyyy-MM-dd). A new period just
+// starts a new key, so the current period's spend is one lookup and past
+// periods stay for trends.
+
+export type BudgetPeriodName = "weekly" | "monthly" | "custom";
+
+interface PeriodicBudget {
+  amount: number;
+  spent: number;
+  createdAt: number;
+  period?: BudgetPeriodName | string;
+  periodDays?: number;
+  spentByPeriod?: Record<string, number>;
+}
+
+const DAY_MS = 24 * 60 * 60 * 1000;
+
+const epochDay = (millis: number) =>
+  Math.floor((millis - new Date(millis).getTimezoneOffset() * 60 * 1000) / DAY_MS);
+
+const pad = (value: number, width: number) => String(value).padStart(width, "0");
+
+const formatDay = (day: number) => {
+  // Epoch day 0 at UTC is the same calendar date as the local day it stands for
+  const date = new Date(day * DAY_MS);
+  return `${pad(date.getUTCFullYear(), 4)}-${pad(date.getUTCMonth() + 1, 2)}-${pad(date.getUTCDate(), 2)}`;
+};
+
+export const isPeriodic = (budget: PeriodicBudget) =>
+  budget.period === "weekly" ||
+  budget.period === "monthly" ||
+  (budget.period === "custom" && (budget.periodDays ?? 0) > 0);
+
+// Key of the period holding `timestamp`, or null for a budget without a period.
+export const periodKey = (budget: PeriodicBudget, timestamp: number): string | null => {
+  const day = epochDay(timestamp);
+  switch (budget.period) {
+    case "weekly":
+      // Day 0, 1970-01-01, was a Thursday; weeks start on Monday
+      return formatDay(day - (((day + 3) % 7) + 7) % 7);
+    case "monthly":
+      return `${formatDay(day).slice(0, 7)}-01`;
+    case "custom": {
+      const length = budget.periodDays ?? 0;
+      if (length <= 0) return null;
+      const anchor = epochDay(budget.createdAt);
+      return formatDay(anchor + Math.floor((day - anchor) / length) * length);
+    }
+    default:
+      return null;
+  }
+};
+
+// What counts against the limit now: this period's spend, or lifetime spend
+// for a budget without a period.
+export const currentSpend = (budget: PeriodicBudget, now: number = Date.now()) => {
+  const key = periodKey(budget, now);
+  return key === null ? budget.spent : budget.spentByPeriod?.[key] ?? 0;
+};
+
+// budgetReached as stored is only refreshed by the next charge, so a budget
+// with a period is judged on its current spend instead.
+export const isBudgetReached = (
+  budget: PeriodicBudget & { budgetReached: boolean },
+  now: number = Date.now()
+) => (isPeriodic(budget) ? budget.amount > 0 && currentSpend(budget, now) >= budget.amount : budget.budgetReached);
+
+// Spend per period, oldest first, for trends.
+export const spendHistory = (budget: PeriodicBudget) =>
+  Object.entries(budget.spentByPeriod ?? {})
+    .map(([start, spent]) => ({ start, spent }))
+    .sort((a, b) => a.start.localeCompare(b.start));
+
+export const periodLabel = (budget: PeriodicBudget) => {
+  switch (budget.period) {
+    case "weekly":
+      return "this week";
+    case "monthly":
+      return "this month";
+    case "custom":
+      return isPeriodic(budget) ? `this ${budget.periodDays}-day period` : "";
+    default:
+      return "";
+  }
+};
@@ -1,5 +1,6 @@
-import { getDatabase, ref, set, get, push, remove, update } from "firebase/database";
+import { getDatabase, ref, set, get, push, remove, update, serverTimestamp } from "firebase/database";
 import { getAuth } from "firebase/auth";
+import { isInternalTransfer } from "./aggregates";
 
 const db = getDatabase();
 
@@ -15,6 +16,9 @@ export interface Budget {
   merchants: string[];
   spent: number;
   upiIds?: string[];
+  period?: 'weekly' | 'monthly' | 'custom';
+  periodDays?: number;
+  spentByPeriod?: Record<string, number>;
 }
 
 export interface Transaction {
@@ -25,9 +29,37 @@ export interface Transaction {
   timestamp: number;
   transactionMode: string;
   upiId?: string;
+  category?: string;
+  payeeId?: string;
+  referenceNumber?: string;
+  reversedBy?: string;
+  reversalOf?: string;
+  internalTransfer?: string;
   uploadedAt?: number;
 }
 
+// Streaming summaries the phone keeps as debits arrive (SpendSketches on Android)
+export interface PayeeSpend {
+  payeeId: string;
+  name: string;
+  // Spend, overestimated by at most `error`
+  amount: number;
+  error: number;
+}
+
+export interface CategoryAmounts {
+  category: string;
+  count: number;
+  p50: number;
+  p90: number;
+  p99: number;
+}
+
+export interface SpendSketches {
+  topPayees: PayeeSpend[];
+  amounts: CategoryAmounts[];
+}
+
 // Helper function to get current user's reference
 const getUserRef = (path: string = '') => {
   const auth = getAuth();
@@ -105,9 +137,12 @@ export const getBudgets = async (): Promise<Budget[]> => {
   }
 };
 
+// Spend fields are only ever moved by the phone's server-side increments;
+// writing them here would overwrite charges made since the budget was read.
 export const updateBudget = async (budgetId: string, updates: Partial<Budget>) => {
   try {
-    await update(getUserRef(`/budgets/${budgetId}`), updates);
+    const { spent, spentByPeriod, budgetReached, ...settings } = updates;
+    await update(getUserRef(`/budgets/${budgetId}`), settings);
   } catch (error: any) {
     console.error('Failed to update budget:', error);
     throw new Error(`Failed to update budget: ${error.message}`);
@@ -116,7 +151,8 @@ export const updateBudget = async (budgetId: string, updates: Partial<Budget>) =
 
 export const deleteBudget = async (budgetId: string) => {
   try {
-    await remove(getUserRef(`/budgets/${budgetId}`));
+    // Its charge markers go with it
+    await update(getUserRef(), { [`budgets/${budgetId}`]: null, [`budgetCharges/${budgetId}`]: null });
   } catch (error: any) {
     console.error('Failed to delete budget:', error);
     throw new Error(`Failed to delete budget: ${error.message}`);
@@ -124,6 +160,9 @@ export const deleteBudget = async (budgetId: string) => {
 };
 
 // Transaction Operations
+//
+// Every write to a transaction stamps uploadedAt with the server's time: the
+// phone's DeltaSync pulls only records stamped after its cursor.
 export const addTransaction = async (
   transaction: Omit<Transaction, 'id' | 'timestamp'>, 
   type: 'credit' | 'debit'
@@ -132,7 +171,8 @@ export const addTransaction = async (
     const newTransactionRef = push(getUserRef(`/${type}`));
     const newTransaction = {
       ...transaction,
-      timestamp: Date.now()
+      timestamp: Date.now(),
+      uploadedAt: serverTimestamp()
     };
     await set(newTransactionRef, newTransaction);
     return { id: newTransactionRef.key };
@@ -142,6 +182,25 @@ export const addTransaction = async (
   }
 };
 
+// Statement lines keep the date they happened on, so it is uploadedAt, not
+// timestamp, that lets the phone find them. One write for the whole statement.
+export const importStatementTransactions = async (
+  transactions: Array<Omit<Transaction, 'id' | 'uploadedAt'> & { type: 'credit' | 'debit' }>
+) => {
+  try {
+    const updates: Record<string, unknown> = {};
+    for (const { type, ...transaction } of transactions) {
+      const key = push(getUserRef(`/${type}`)).key;
+      updates[`${type}/${key}`] = { ...transaction, uploadedAt: serverTimestamp() };
+    }
+    await update(getUserRef(), updates);
+    return transactions.length;
+  } catch (error: any) {
+    console.error('Failed to import transactions:', error);
+    throw new Error(`Failed to import transactions: ${error.message}`);
+  }
+};
+
 export const getTransactions = async (type: 'credit' | 'debit'): Promise<Transaction[]> => {
   try {
     const snapshot = await get(getUserRef(`/${type}`));
@@ -163,7 +222,7 @@ export const updateTransaction = async (
   updates: Partial<Transaction>
 ) => {
   try {
-    await update(getUserRef(`/${type}/${transactionId}`), updates);
+    await update(getUserRef(`/${type}/${transactionId}`), { ...updates, uploadedAt: serverTimestamp() });
   } catch (error: any) {
     console.error('Failed to update transaction:', error);
     throw new Error(`Failed to update transaction: ${error.message}`);
@@ -183,16 +242,49 @@ export const deleteTransaction = async (
 };
 
 // Analytics and Summary
+
+// One read of a few KB, however long the history: the phone keeps these up to date
+export const getSpendSketches = async (): Promise<SpendSketches> => {
+  try {
+    const snapshot = await get(getUserRef('/sketches'));
+    const sketches = snapshot.exists() ? snapshot.val() : {};
+    const topPayees = Object.entries(sketches.payees || {})
+      .map(([payeeId, value]: [string, any]) => ({
+        payeeId,
+        name: value.n,
+        amount: value.w,
+        error: value.e
+      }))
+      .sort((a, b) => b.amount - a.amount);
+    const amounts = Object.values(sketches.amounts || {}).map((value: any) => ({
+      category: value.g,
+      count: value.k,
+      p50: value.m,
+      p90: value.q,
+      p99: value.x
+    }));
+    return { topPayees, amounts };
+  } catch (error: any) {
+    console.error('Failed to fetch spend sketches:', error);
+    throw new Error(`Failed to fetch spend sketches: ${error.message}`);
+  }
+};
 export const getUserSummary = async () => {
   try {
-    const [credits, debits, budgets] = await Promise.all([
+    const [allCredits, allDebits, budgets] = await Promise.all([
       getTransactions('credit'),
       getTransactions('debit'),
       getBudgets()
     ]) as [Transaction[], Transaction[], Budget[]];
+    const credits = allCredits.filter(t => !isInternalTransfer(t));
+    const debits = allDebits.filter(t => !isInternalTransfer(t));
 
-    const totalCredit = credits.reduce((sum, t) => sum + (t.amount || 0), 0);
-    const totalDebit = debits.reduce((sum, t) => sum + (t.amount || 0), 0);
+    // A reversal cancels the debit it refers to rather than counting as income
+    const reversed = credits
+      .filter(t => t.reversalOf)
+      .reduce((sum, t) => sum + (t.amount || 0), 0);
+    const totalCredit = credits.reduce((sum, t) => sum + (t.amount || 0), 0) - reversed;
+    const totalDebit = debits.reduce((sum, t) => sum + (t.amount || 0), 0) - reversed;
     const activeBudgets = budgets.filter(b => b.isActive);
     const totalBudget = activeBudgets.reduce((sum, b) => sum + (b.amount || 0), 0);
     const totalSpent = activeBudgets.reduce((sum, b) => sum + (b.spent || 0), 0);
@@ -204,7 +296,7 @@ export const getUserSummary = async () => {
       totalBudget,
       totalSpent,
       budgetUtilization: totalBudget > 0 ? (totalSpent / totalBudget) * 100 : 0,
-      transactionCount: credits.length + debits.length,
+      transactionCount: allCredits.length + allDebits.length,
       activeBudgetCount: activeBudgets.length,
       totalBudgetCount: budgets.length
     };
@@ -0,0 +1,47 @@
+// Decoder for the recurring-payment node written by the Android app's
+// RecurringDetector. Mirrors RecurringPaymentMapper.java; keep the two in step.
+//
+//   users/{uid}/recurring/{payeeId}  { n, g?, p, a, d, l, k }
+
+const DAY_MS = 24 * 60 * 60 * 1000;
+
+export interface RecurringV2 {
+  n: string;
+  g?: string;
+  p: number;
+  a: number;
+  d: number;
+  l: number;
+  k: number;
+}
+
+export interface UpcomingBill {
+  payeeId: string;
+  merchantName: string;
+  category?: string;
+  periodDays: number;
+  amount: number;
+  nextDueAt: number;
+  lastPaidAt: number;
+  occurrences: number;
+}
+
+// Bills due from now on, soonest first. A series more than one period
+// overdue has most likely been cancelled and is left out.
+export const upcomingBills = (
+  recurring: Record<string, RecurringV2> | null | undefined,
+  now: number = Date.now()
+): UpcomingBill[] =>
+  Object.entries(recurring || {})
+    .map(([payeeId, series]) => ({
+      payeeId,
+      merchantName: series.n,
+      category: series.g,
+      periodDays: series.p,
+      amount: series.a,
+      nextDueAt: series.d,
+      lastPaidAt: series.l,
+      occurrences: series.k,
+    }))
+    .filter((bill) => bill.nextDueAt + bill.periodDays * DAY_MS >= now)
+    .sort((a, b) => a.nextDueAt - b.nextDueAt);
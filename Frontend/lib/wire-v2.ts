@@ -0,0 +1,64 @@
+// Decoder for the compact v2 transaction schema written by the Android app.
+// Mirrors TransactionWireV2.java; keep the two in step.
+//
+//   users/{uid}/tx2/{base36 millis}  { d, a, c?, p, t, o, g?, r?, rb?, ro?, it?, ua? }
+//   users/{uid}/payees2/{payeeId}    { n, u? }
+
+import type { Transaction } from "./firebase-db";
+
+export interface TransactionV2 {
+  d: boolean;
+  a: number;
+  c?: string;
+  p: string;
+  t: number;
+  o: number | string;
+  g?: string;
+  r?: string;
+  rb?: string;
+  ro?: string;
+  it?: string;
+  ua?: number;
+}
+
+export interface PayeeV2 {
+  n: string;
+  u?: string;
+}
+
+// Index is the wire code. Append only: codes are stored.
+export const MODES = ["OTHER", "UPI", "NEFT", "IMPS"];
+
+export const decodeTransactionV2 = (
+  id: string,
+  record: TransactionV2,
+  payees: Record<string, PayeeV2>
+): Transaction & { type: "credit" | "debit" } => {
+  const payee = payees[record.p];
+  const mode = typeof record.o === "number" ? MODES[record.o] ?? MODES[0] : record.o;
+  return {
+    id,
+    type: record.d ? "debit" : "credit",
+    accountNumber: record.c ?? "",
+    amount: record.a,
+    merchantName: payee?.n ?? "",
+    timestamp: record.t,
+    transactionMode: mode,
+    upiId: payee?.u ?? "",
+    payeeId: record.p,
+    ...(record.g !== undefined ? { category: record.g } : {}),
+    ...(record.r !== undefined ? { referenceNumber: record.r } : {}),
+    ...(record.rb !== undefined ? { reversedBy: record.rb } : {}),
+    ...(record.ro !== undefined ? { reversalOf: record.ro } : {}),
+    ...(record.it !== undefined ? { internalTransfer: record.it } : {}),
+    ...(record.ua !== undefined ? { uploadedAt: record.ua } : {}),
+  };
+};
+
+export const decodeHistoryV2 = (
+  records: Record<string, TransactionV2> | null,
+  payees: Record<string, PayeeV2> | null
+) =>
+  Object.entries(records ?? {}).map(([id, record]) =>
+    decodeTransactionV2(id, record, payees ?? {})
+  );
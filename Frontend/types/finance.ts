@@ -5,6 +5,12 @@ export interface BaseTransaction {
   timestamp: number
   transactionMode: string
   upiId?: string
+  category?: string
+  payeeId?: string
+  referenceNumber?: string
+  reversedBy?: string
+  reversalOf?: string
+  internalTransfer?: string
 }
 
 export interface Transaction extends BaseTransaction {
@@ -22,6 +28,9 @@ export interface Budget {
   merchants: string[]
   spent: number
   upiIds?: string[]
+  period?: 'weekly' | 'monthly' | 'custom'
+  periodDays?: number
+  spentByPeriod?: Record<string, number>
 }
 
 export interface MonthlyData {